@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.benchmark;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.giraph.aggregators.LongSumAggregator;
+import org.apache.giraph.combiner.DoubleSumCombiner;
+import org.apache.giraph.conf.GiraphConfiguration;
+import org.apache.giraph.conf.GiraphConstants;
+import org.apache.giraph.graph.BasicComputation;
+import org.apache.giraph.graph.Vertex;
+import org.apache.giraph.io.formats.PseudoRandomInputFormatConstants;
+import org.apache.giraph.io.formats.PseudoRandomVertexInputFormat;
+import org.apache.giraph.master.DefaultMasterCompute;
+import org.apache.giraph.worker.WorkerContext;
+import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.log4j.Logger;
+
+import com.google.common.collect.Sets;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Benchmark for receiving combined messages. Every vertex sends a double to
+ * all its neighbors in each superstep, and the messages are summed by the
+ * primitive message store of the receiving worker. Run it with different
+ * numbers of Netty server threads (-t) and message store stripes (-st) to
+ * see how receive throughput scales.
+ */
+public class CombinedMessageBenchmark extends GiraphBenchmark {
+  /** How many supersteps to run */
+  public static final String SUPERSTEP_COUNT =
+      "giraph.combinedMessageBenchmark.superstepCount";
+  /** All messages during this superstep */
+  public static final String AGG_SUPERSTEP_TOTAL_MESSAGES =
+      "superstep total messages";
+  /** All millis during this superstep */
+  public static final String AGG_SUPERSTEP_TOTAL_MILLIS =
+      "superstep total millis";
+  /** Workers for that superstep */
+  public static final String WORKERS_NUM = "workers";
+
+  /** Option for number of Netty server threads */
+  private static final BenchmarkOption SERVER_THREADS = new BenchmarkOption(
+      "t", "serverThreads", true, "Number of Netty server threads");
+  /** Option for number of message store stripes */
+  private static final BenchmarkOption STRIPES = new BenchmarkOption(
+      "st", "stripes", true, "Number of message store stripes per partition");
+
+  /**
+   * {@link WorkerContext} for {@link CombinedMessageBenchmark}, logging the
+   * message throughput of every superstep.
+   */
+  public static class CombinedMessageBenchmarkWorkerContext extends
+      WorkerContext {
+    /** Class logger */
+    private static final Logger LOG =
+        Logger.getLogger(CombinedMessageBenchmarkWorkerContext.class);
+    /** Number of supersteps */
+    private int numSupersteps = -1;
+    /** Start superstep millis */
+    private long startSuperstepMillis = 0;
+
+    @Override
+    public void preApplication() {
+      numSupersteps = getContext().getConfiguration().getInt(
+          SUPERSTEP_COUNT, -1);
+    }
+
+    @Override
+    public void preSuperstep() {
+      if (getSuperstep() > 0) {
+        long superstepMessages = this.<LongWritable>getAggregatedValue(
+            AGG_SUPERSTEP_TOTAL_MESSAGES).get();
+        long superstepMillis = this.<LongWritable>getAggregatedValue(
+            AGG_SUPERSTEP_TOTAL_MILLIS).get();
+        long workers =
+            this.<LongWritable>getAggregatedValue(WORKERS_NUM).get();
+        if (LOG.isInfoEnabled() && superstepMillis > 0) {
+          LOG.info("Superstep " + (getSuperstep() - 1) + ": " +
+              superstepMessages + " messages, " +
+              superstepMessages * workers * 1000d / superstepMillis +
+              " messages / second");
+        }
+      }
+      startSuperstepMillis = System.currentTimeMillis();
+      aggregate(WORKERS_NUM, new LongWritable(1));
+    }
+
+    @Override
+    public void postSuperstep() {
+      aggregate(AGG_SUPERSTEP_TOTAL_MILLIS, new LongWritable(
+          System.currentTimeMillis() - startSuperstepMillis));
+    }
+
+    @Override
+    public void postApplication() { }
+
+    /**
+     * Get the number of supersteps.
+     *
+     * @return Number of supersteps.
+     */
+    public int getNumSupersteps() {
+      return numSupersteps;
+    }
+  }
+
+  /**
+   * Master compute associated with {@link CombinedMessageBenchmark}.
+   * It registers required aggregators.
+   */
+  public static class CombinedMessageBenchmarkMasterCompute extends
+      DefaultMasterCompute {
+    @Override
+    public void initialize() throws InstantiationException,
+        IllegalAccessException {
+      registerAggregator(AGG_SUPERSTEP_TOTAL_MESSAGES,
+          LongSumAggregator.class);
+      registerAggregator(AGG_SUPERSTEP_TOTAL_MILLIS,
+          LongSumAggregator.class);
+      registerAggregator(WORKERS_NUM,
+          LongSumAggregator.class);
+    }
+  }
+
+  /**
+   * Sends the vertex value to all neighbors, and keeps the sum of the
+   * received messages.
+   */
+  public static class CombinedMessageComputation extends BasicComputation<
+      LongWritable, DoubleWritable, DoubleWritable, DoubleWritable> {
+    @Override
+    public void compute(
+        Vertex<LongWritable, DoubleWritable, DoubleWritable> vertex,
+        Iterable<DoubleWritable> messages) throws IOException {
+      CombinedMessageBenchmarkWorkerContext workerContext =
+          getWorkerContext();
+      for (DoubleWritable message : messages) {
+        vertex.getValue().set(message.get());
+      }
+      if (getSuperstep() < workerContext.getNumSupersteps()) {
+        sendMessageToAllEdges(vertex, vertex.getValue());
+        aggregate(AGG_SUPERSTEP_TOTAL_MESSAGES,
+            new LongWritable(vertex.getNumEdges()));
+      } else {
+        vertex.voteToHalt();
+      }
+    }
+  }
+
+  @Override
+  public Set<BenchmarkOption> getBenchmarkOptions() {
+    return Sets.newHashSet(BenchmarkOption.SUPERSTEPS,
+        BenchmarkOption.VERTICES, BenchmarkOption.EDGES_PER_VERTEX,
+        SERVER_THREADS, STRIPES);
+  }
+
+  @Override
+  protected void prepareConfiguration(GiraphConfiguration conf,
+      CommandLine cmd) {
+    conf.setComputationClass(CombinedMessageComputation.class);
+    conf.setVertexInputFormatClass(PseudoRandomVertexInputFormat.class);
+    conf.setWorkerContextClass(CombinedMessageBenchmarkWorkerContext.class);
+    conf.setMasterComputeClass(CombinedMessageBenchmarkMasterCompute.class);
+    conf.setCombinerClass(DoubleSumCombiner.class);
+    conf.setLong(PseudoRandomInputFormatConstants.AGGREGATE_VERTICES,
+        BenchmarkOption.VERTICES.getOptionLongValue(cmd));
+    conf.setLong(PseudoRandomInputFormatConstants.EDGES_PER_VERTEX,
+        BenchmarkOption.EDGES_PER_VERTEX.getOptionLongValue(cmd));
+    conf.setInt(SUPERSTEP_COUNT,
+        BenchmarkOption.SUPERSTEPS.getOptionIntValue(cmd));
+    if (SERVER_THREADS.optionTurnedOn(cmd)) {
+      GiraphConstants.NETTY_SERVER_THREADS.set(conf,
+          SERVER_THREADS.getOptionIntValue(cmd));
+    }
+    if (STRIPES.optionTurnedOn(cmd)) {
+      GiraphConstants.MESSAGE_STORE_STRIPES.set(conf,
+          STRIPES.getOptionIntValue(cmd));
+    }
+  }
+
+  /**
+   * Execute the benchmark.
+   *
+   * @param args Typically, this is the command line arguments.
+   * @throws Exception Any exception thrown during computation.
+   */
+  public static void main(String[] args) throws Exception {
+    System.exit(ToolRunner.run(new CombinedMessageBenchmark(), args));
+  }
+}
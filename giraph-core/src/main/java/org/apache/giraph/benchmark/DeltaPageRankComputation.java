@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.benchmark;
+
+import org.apache.giraph.graph.BasicComputation;
+import org.apache.giraph.graph.Vertex;
+import org.apache.hadoop.io.FloatWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.NullWritable;
+
+import java.io.IOException;
+
+/**
+ * Implementation of PageRank which sends the changes of the page rank
+ * values instead of the values, and stops sending them once they are
+ * smaller than a tolerance. Vertex ids are ints, page rank values are
+ * floats, and graph is unweighted. Changes are summed in any order, so the
+ * results are the same when messages are consumed in the superstep they
+ * were sent in (asynchronous mode), which makes it converge in fewer
+ * supersteps.
+ */
+public class DeltaPageRankComputation extends BasicComputation<IntWritable,
+    FloatWritable, NullWritable, FloatWritable> {
+  /** Maximum number of supersteps */
+  public static final String SUPERSTEP_COUNT =
+      "giraph.deltaPageRank.superstepCount";
+  /**
+   * Changes are not sent once they are smaller than this tolerance times
+   * the average page rank
+   */
+  public static final String TOLERANCE = "giraph.deltaPageRank.tolerance";
+  /** Default tolerance */
+  public static final float TOLERANCE_DEFAULT = 0.001f;
+  /** Damping factor */
+  private static final float DAMPING = 0.85f;
+
+  @Override
+  public void compute(
+      Vertex<IntWritable, FloatWritable, NullWritable> vertex,
+      Iterable<FloatWritable> messages) throws IOException {
+    float delta = 0;
+    if (getSuperstep() == 0) {
+      vertex.getValue().set(0);
+      delta = (1 - DAMPING) / getTotalNumVertices();
+    }
+    for (FloatWritable message : messages) {
+      delta += message.get();
+    }
+    vertex.getValue().set(vertex.getValue().get() + delta);
+
+    if (getSuperstep() < getConf().getInt(SUPERSTEP_COUNT, 0) &&
+        vertex.getNumEdges() > 0 && delta * getTotalNumVertices() >
+        getConf().getFloat(TOLERANCE, TOLERANCE_DEFAULT)) {
+      sendMessageToAllEdges(vertex,
+          new FloatWritable(DAMPING * delta / vertex.getNumEdges()));
+    }
+    vertex.voteToHalt();
+  }
+}
@@ -39,20 +39,40 @@ import com.google.common.collect.Sets;
 import java.util.Set;
 
 /**
- * Benchmark for {@link PageRankComputation}
+ * Benchmark for {@link PageRankComputation}. With a tolerance (-tol), runs
+ * {@link DeltaPageRankComputation} until it converges or reaches the
+ * number of supersteps instead. Run it with and without the asynchronous
+ * mode (-a) to compare the supersteps and time to convergence, reported in
+ * the job counters. The asynchronous mode needs delta PageRank, as plain
+ * PageRank sums every message received in a superstep as if they were all
+ * sent in the previous one.
  */
 public class PageRankBenchmark extends GiraphBenchmark {
+  /** Option for the asynchronous mode */
+  private static final BenchmarkOption ASYNC = new BenchmarkOption(
+      "a", "async", false, "Let vertices consume messages sent in the " +
+      "same superstep, requires -tol");
+  /** Option for the tolerance of delta PageRank */
+  private static final BenchmarkOption TOLERANCE = new BenchmarkOption(
+      "tol", "tolerance", true, "Run delta PageRank until changes are " +
+      "below this tolerance times the average rank");
+
   @Override
   public Set<BenchmarkOption> getBenchmarkOptions() {
     return Sets.newHashSet(BenchmarkOption.VERTICES,
         BenchmarkOption.EDGES_PER_VERTEX, BenchmarkOption.SUPERSTEPS,
         BenchmarkOption.LOCAL_EDGES_MIN_RATIO, BenchmarkOption.JYTHON,
-        BenchmarkOption.SCRIPT_PATH);
+        BenchmarkOption.SCRIPT_PATH, ASYNC, TOLERANCE);
   }
 
   @Override
   protected void prepareConfiguration(GiraphConfiguration conf,
       CommandLine cmd) {
+    if (ASYNC.optionTurnedOn(cmd) && (!TOLERANCE.optionTurnedOn(cmd) ||
+        BenchmarkOption.JYTHON.optionTurnedOn(cmd))) {
+      throw new IllegalArgumentException("prepareConfiguration: The " +
+          "asynchronous mode (-a) only works with delta PageRank (-tol)");
+    }
     if (BenchmarkOption.JYTHON.optionTurnedOn(cmd)) {
       GiraphTypes types = new GiraphTypes();
       types.inferFrom(PageRankComputation.class);
@@ -72,9 +92,18 @@ public class PageRankBenchmark extends GiraphBenchmark {
       ScriptLoader.setScriptsToLoad(conf, script, deployType, Language.JYTHON);
       types.writeIfUnset(conf);
       JythonUtils.init(conf, "PageRank");
+    } else if (TOLERANCE.optionTurnedOn(cmd)) {
+      conf.setComputationClass(DeltaPageRankComputation.class);
+      conf.setFloat(DeltaPageRankComputation.TOLERANCE,
+          TOLERANCE.getOptionFloatValue(cmd));
+      conf.setInt(DeltaPageRankComputation.SUPERSTEP_COUNT,
+          BenchmarkOption.SUPERSTEPS.getOptionIntValue(cmd));
     } else {
       conf.setComputationClass(PageRankComputation.class);
     }
+    if (ASYNC.optionTurnedOn(cmd)) {
+      conf.enableAsyncMessages();
+    }
     conf.setOutEdgesClass(IntNullArrayEdges.class);
     conf.setCombinerClass(FloatSumCombiner.class);
     conf.setVertexInputFormatClass(
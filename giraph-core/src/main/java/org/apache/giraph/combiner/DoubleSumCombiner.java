@@ -25,7 +25,8 @@ import org.apache.hadoop.io.LongWritable;
  * A combiner that sums double-valued messages
  */
 public class DoubleSumCombiner extends
-    Combiner<LongWritable, DoubleWritable> {
+    Combiner<LongWritable, DoubleWritable>
+    implements DoublePrimitiveCombiner {
   @Override
   public void combine(LongWritable vertexIndex, DoubleWritable originalMessage,
       DoubleWritable messageToCombine) {
@@ -36,4 +37,9 @@ public class DoubleSumCombiner extends
   public DoubleWritable createInitialMessage() {
     return new DoubleWritable(0);
   }
+
+  @Override
+  public double combine(double originalMessage, double messageToCombine) {
+    return originalMessage + messageToCombine;
+  }
 }
@@ -25,7 +25,8 @@ import org.apache.hadoop.io.IntWritable;
  * A combiner that sums float-valued messages
  */
 public class FloatSumCombiner extends
-    Combiner<IntWritable, FloatWritable> {
+    Combiner<IntWritable, FloatWritable>
+    implements FloatPrimitiveCombiner {
   @Override
   public void combine(IntWritable vertexIndex, FloatWritable originalMessage,
       FloatWritable messageToCombine) {
@@ -36,4 +37,9 @@ public class FloatSumCombiner extends
   public FloatWritable createInitialMessage() {
     return new FloatWritable(0);
   }
+
+  @Override
+  public float combine(float originalMessage, float messageToCombine) {
+    return originalMessage + messageToCombine;
+  }
 }
@@ -25,7 +25,8 @@ import org.apache.hadoop.io.LongWritable;
  * Combiner which finds the minimum of {@link DoubleWritable}.
  */
 public class MinimumDoubleCombiner extends
-    Combiner<LongWritable, DoubleWritable> {
+    Combiner<LongWritable, DoubleWritable>
+    implements DoublePrimitiveCombiner {
   @Override
   public void combine(LongWritable vertexIndex, DoubleWritable originalMessage,
       DoubleWritable messageToCombine) {
@@ -38,4 +39,10 @@ public class MinimumDoubleCombiner extends
   public DoubleWritable createInitialMessage() {
     return new DoubleWritable(Double.MAX_VALUE);
   }
+
+  @Override
+  public double combine(double originalMessage, double messageToCombine) {
+    return (originalMessage > messageToCombine) ? messageToCombine :
+        originalMessage;
+  }
 }
@@ -24,7 +24,8 @@ import org.apache.hadoop.io.IntWritable;
  * {@link Combiner} that finds the minimum {@link IntWritable}
  */
 public class MinimumIntCombiner
-    extends Combiner<IntWritable, IntWritable> {
+    extends Combiner<IntWritable, IntWritable>
+    implements IntPrimitiveCombiner {
   @Override
   public void combine(IntWritable vertexIndex, IntWritable originalMessage,
       IntWritable messageToCombine) {
@@ -37,4 +38,9 @@ public class MinimumIntCombiner
   public IntWritable createInitialMessage() {
     return new IntWritable(Integer.MAX_VALUE);
   }
+
+  @Override
+  public int combine(int originalMessage, int messageToCombine) {
+    return Math.min(originalMessage, messageToCombine);
+  }
 }
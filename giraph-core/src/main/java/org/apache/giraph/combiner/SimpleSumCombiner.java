@@ -25,7 +25,8 @@ import org.apache.hadoop.io.LongWritable;
  * Combiner which sums up {@link IntWritable} message values.
  */
 public class SimpleSumCombiner
-    extends Combiner<LongWritable, IntWritable> {
+    extends Combiner<LongWritable, IntWritable>
+    implements IntPrimitiveCombiner {
 
   @Override
   public void combine(LongWritable vertexIndex, IntWritable originalMessage,
@@ -37,4 +38,9 @@ public class SimpleSumCombiner
   public IntWritable createInitialMessage() {
     return new IntWritable(0);
   }
+
+  @Override
+  public int combine(int originalMessage, int messageToCombine) {
+    return originalMessage + messageToCombine;
+  }
 }
@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.comm;
+
+import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.giraph.partition.PartitionOwner;
+import org.apache.giraph.utils.WritableUtils;
+import org.apache.hadoop.io.WritableComparable;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Targets of the vertices which sent messages to all their edges, grouped
+ * by destination worker, so later supersteps of a static graph do not look
+ * up the partition owner of every edge again. Shared by the compute threads
+ * of a worker. The cache is cleared whenever a partition moves to another
+ * worker.
+ *
+ * @param <I> Vertex id
+ */
+@SuppressWarnings("rawtypes")
+public class BroadcastTargetCache<I extends WritableComparable> {
+  /** Configuration */
+  private final ImmutableClassesGiraphConfiguration<I, ?, ?> conf;
+  /** Map of source vertex ids to their grouped targets */
+  private final ConcurrentMap<I, BroadcastTargets> vertexTargets =
+      new ConcurrentHashMap<I, BroadcastTargets>();
+  /** Sorted (partition id, worker task id) pairs the targets are for */
+  private long[] partitionOwners = new long[0];
+
+  /**
+   * Constructor
+   *
+   * @param conf Configuration
+   */
+  public BroadcastTargetCache(
+      ImmutableClassesGiraphConfiguration<I, ?, ?> conf) {
+    this.conf = conf;
+  }
+
+  /**
+   * Clear the cache if any partition changed its worker since the last
+   * call. Must be called before using the cache in a superstep.
+   *
+   * @param owners Current partition owners
+   */
+  public synchronized void checkPartitionOwners(
+      Iterable<? extends PartitionOwner> owners) {
+    LongArrayList pairs = new LongArrayList();
+    for (PartitionOwner owner : owners) {
+      pairs.add(((long) owner.getPartitionId() << 32) |
+          owner.getWorkerInfo().getTaskId());
+    }
+    long[] newPartitionOwners = pairs.toLongArray();
+    Arrays.sort(newPartitionOwners);
+    if (!Arrays.equals(partitionOwners, newPartitionOwners)) {
+      vertexTargets.clear();
+      partitionOwners = newPartitionOwners;
+    }
+  }
+
+  /**
+   * Get the grouped targets of a vertex.
+   *
+   * @param vertexId Source vertex id
+   * @return Grouped targets, or null if they are not cached
+   */
+  public BroadcastTargets get(I vertexId) {
+    return vertexTargets.get(vertexId);
+  }
+
+  /**
+   * Cache the grouped targets of a vertex.
+   *
+   * @param vertexId Source vertex id (can be reused by the caller)
+   * @param targets Grouped targets
+   */
+  public void put(I vertexId, BroadcastTargets targets) {
+    I idCopy = conf.createVertexId();
+    WritableUtils.readFieldsFromByteArray(
+        WritableUtils.writeToByteArray(vertexId), idCopy);
+    vertexTargets.put(idCopy, targets);
+  }
+
+  /**
+   * Targets of a vertex grouped by destination worker: the serialized
+   * target ids of each worker, ready to be added to a request.
+   */
+  public static class BroadcastTargets {
+    /** Task ids of the destination workers */
+    private final int[] taskIds;
+    /** Number of targets on each worker */
+    private final int[] counts;
+    /** Serialized target ids on each worker */
+    private final byte[][] ids;
+    /** Partition id of the first target on each worker */
+    private final int[] firstPartitionIds;
+    /** Partition ids of the targets on this worker, in order (or null) */
+    private final int[] localPartitionIds;
+
+    /**
+     * Constructor
+     *
+     * @param taskIds Task ids of the destination workers
+     * @param counts Number of targets on each worker
+     * @param ids Serialized target ids on each worker
+     * @param firstPartitionIds Partition id of the first target on each
+     *                          worker
+     * @param localPartitionIds Partition ids of the targets on this worker,
+     *                          in order (null if there are none)
+     */
+    public BroadcastTargets(int[] taskIds, int[] counts, byte[][] ids,
+        int[] firstPartitionIds, int[] localPartitionIds) {
+      this.taskIds = taskIds;
+      this.counts = counts;
+      this.ids = ids;
+      this.firstPartitionIds = firstPartitionIds;
+      this.localPartitionIds = localPartitionIds;
+    }
+
+    /**
+     * Get the number of destination workers.
+     *
+     * @return Number of destination workers
+     */
+    public int getNumWorkers() {
+      return taskIds.length;
+    }
+
+    /**
+     * Get the task id of a destination worker.
+     *
+     * @param i Index of the destination worker
+     * @return Task id
+     */
+    public int getTaskId(int i) {
+      return taskIds[i];
+    }
+
+    /**
+     * Get the number of targets on a destination worker.
+     *
+     * @param i Index of the destination worker
+     * @return Number of targets
+     */
+    public int getCount(int i) {
+      return counts[i];
+    }
+
+    /**
+     * Get the serialized target ids on a destination worker.
+     *
+     * @param i Index of the destination worker
+     * @return Serialized target ids
+     */
+    public byte[] getIds(int i) {
+      return ids[i];
+    }
+
+    /**
+     * Get the partition id of the first target on a destination worker.
+     *
+     * @param i Index of the destination worker
+     * @return Partition id
+     */
+    public int getFirstPartitionId(int i) {
+      return firstPartitionIds[i];
+    }
+
+    public int[] getLocalPartitionIds() {
+      return localPartitionIds;
+    }
+  }
+}
@@ -18,9 +18,17 @@
 
 package org.apache.giraph.comm;
 
+import java.io.IOException;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.giraph.bsp.CentralizedServiceWorker;
+import org.apache.giraph.comm.messages.LocalMessageStore;
+import org.apache.giraph.comm.messages.MessageStore;
 import org.apache.giraph.comm.netty.NettyWorkerClientRequestProcessor;
 import org.apache.giraph.comm.requests.SendWorkerMessagesRequest;
 import org.apache.giraph.comm.requests.WritableRequest;
@@ -29,13 +37,18 @@ import org.apache.giraph.edge.Edge;
 import org.apache.giraph.graph.Vertex;
 import org.apache.giraph.partition.PartitionOwner;
 import org.apache.giraph.utils.ByteArrayVertexIdMessages;
+import org.apache.giraph.utils.ExtendedDataInput;
+import org.apache.giraph.utils.ExtendedDataOutput;
 import org.apache.giraph.utils.PairList;
 import org.apache.giraph.worker.WorkerInfo;
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.io.WritableComparable;
 import org.apache.log4j.Logger;
 
+import com.google.common.collect.Lists;
+
 import static org.apache.giraph.conf.GiraphConstants.ADDITIONAL_MSG_REQUEST_SIZE;
+import static org.apache.giraph.conf.GiraphConstants.HUB_BROADCAST_THREADS;
 import static org.apache.giraph.conf.GiraphConstants.MAX_MSG_REQUEST_SIZE;
 
 /**
@@ -58,6 +71,17 @@ public class SendMessageCache<I extends WritableComparable, M extends Writable>
   protected final int maxMessagesSizePerWorker;
   /** NettyWorkerClientRequestProcessor for message sending */
   protected final NettyWorkerClientRequestProcessor<I, ?, ?> clientProcessor;
+  /** Whether local messages can be added straight to the message store */
+  private final boolean directLocalMessages;
+  /** Minimum number of edges of a hub vertex (0 if not sent in parallel) */
+  private final int hubVertexEdges;
+  /** Number of threads sending the messages of hub vertices */
+  private final int hubBroadcastThreads;
+  /**
+   * Caches sending the chunks of hub vertices, one per chunk of a hub
+   * vertex (created when first needed)
+   */
+  private SendMessageCache<I, M>[] hubChunkCaches;
 
   /**
    * Constructor
@@ -75,6 +99,37 @@ public class SendMessageCache<I extends WritableComparable, M extends Writable>
         ADDITIONAL_MSG_REQUEST_SIZE.get(conf));
     maxMessagesSizePerWorker = maxMsgSize;
     clientProcessor = processor;
+    directLocalMessages = conf.isDirectLocalMessagesEnabled();
+    hubVertexEdges = conf.getHubVertexEdges();
+    hubBroadcastThreads = HUB_BROADCAST_THREADS.get(conf);
+  }
+
+  /**
+   * Create a cache sending a chunk of the messages of hub vertices. The
+   * chunk caches group and combine messages like this cache does, so
+   * subclasses create caches of their own kind.
+   *
+   * @return Empty cache
+   */
+  protected SendMessageCache<I, M> createHubChunkCache() {
+    return new SendMessageCache<I, M>(getConf(), getServiceWorker(),
+        clientProcessor, maxMessagesSizePerWorker);
+  }
+
+  /**
+   * Get the cache sending a chunk of the messages of hub vertices.
+   *
+   * @param chunk Index of the chunk
+   * @return Cache of the chunk
+   */
+  private SendMessageCache<I, M> getHubChunkCache(int chunk) {
+    if (hubChunkCaches == null) {
+      hubChunkCaches = new SendMessageCache[hubBroadcastThreads];
+    }
+    if (hubChunkCaches[chunk] == null) {
+      hubChunkCaches[chunk] = createHubChunkCache();
+    }
+    return hubChunkCaches[chunk];
   }
 
   @Override
@@ -114,6 +169,38 @@ public class SendMessageCache<I extends WritableComparable, M extends Writable>
       idSerializerPos, message);
   }
 
+  /**
+   * Add a message for a vertex of this worker straight to the incoming
+   * message store, without serializing it, if the store supports it.
+   *
+   * @param workerInfo Worker owning the partition of the vertex
+   * @param partitionId Partition of the vertex
+   * @param destVertexId Vertex id that is ultimate destination
+   * @param message Message to the vertex
+   * @return True iff the message was added to the store, false if it
+   *         still has to be sent
+   */
+  protected boolean addLocalMessage(WorkerInfo workerInfo, int partitionId,
+      I destVertexId, M message) {
+    if (!directLocalMessages || workerInfo.getTaskId() !=
+        getServiceWorker().getWorkerInfo().getTaskId()) {
+      return false;
+    }
+    MessageStore<I, M> messageStore =
+        getServiceWorker().getServerData().getIncomingMessageStore();
+    if (!(messageStore instanceof LocalMessageStore)) {
+      return false;
+    }
+    try {
+      ((LocalMessageStore<I, M>) messageStore).addLocalMessage(
+          partitionId, destVertexId, message);
+    } catch (IOException e) {
+      throw new IllegalStateException(
+          "addLocalMessage: Got IOException adding a local message", e);
+    }
+    return true;
+  }
+
   /**
    * Gets the messages for a worker and removes it from the cache.
    *
@@ -153,6 +240,9 @@ public class SendMessageCache<I extends WritableComparable, M extends Writable>
         ") to " + destVertexId + " on worker " + workerInfo);
     }
     ++totalMsgsSentInSuperstep;
+    if (addLocalMessage(workerInfo, partitionId, destVertexId, message)) {
+      return;
+    }
     // Add the message to the cache
     int workerMessageSize = addMessage(
       workerInfo, partitionId, destVertexId, message);
@@ -213,7 +303,154 @@ public class SendMessageCache<I extends WritableComparable, M extends Writable>
   public void sendMessageToAllRequest(Vertex<I, ?, ?> vertex, M message) {
     TargetVertexIdIterator targetVertexIterator =
       new TargetVertexIdIterator(vertex);
-    sendMessageToAllRequest(targetVertexIterator, message);
+    if (hubVertexEdges > 0 && vertex.getNumEdges() >= hubVertexEdges) {
+      sendHubMessageToAllRequest(targetVertexIterator, vertex.getNumEdges(),
+          message);
+    } else {
+      sendMessageToAllRequest(targetVertexIterator, message);
+    }
+  }
+
+  /**
+   * Send a message to all the neighbors of a hub vertex in parallel. The
+   * target ids are split into one chunk per broadcast thread, and each
+   * chunk is grouped by destination and sent by a cache of its own, which
+   * keeps the messages of the chunks of the next hub vertices until this
+   * cache is flushed. Returns once all the messages are added to the chunk
+   * caches, so the message can be reused by the caller.
+   *
+   * @param vertexIdIterator The iterator of target vertex ids
+   * @param numEdges Number of target vertex ids
+   * @param message The message sent to all the targets
+   */
+  private void sendHubMessageToAllRequest(Iterator<I> vertexIdIterator,
+      int numEdges, M message) {
+    ExecutorService executor =
+        getServiceWorker().getServerData().getBroadcastExecutor();
+    int chunkEdges = (numEdges + hubBroadcastThreads - 1) /
+        hubBroadcastThreads;
+    List<Future<HubChunkCallable>> chunkResults =
+        Lists.newArrayListWithCapacity(hubBroadcastThreads);
+    ExtendedDataOutput chunk = null;
+    int chunkSize = 0;
+    try {
+      while (vertexIdIterator.hasNext()) {
+        if (chunk == null) {
+          chunk = getConf().createExtendedDataOutput();
+        }
+        vertexIdIterator.next().write(chunk);
+        if (++chunkSize == chunkEdges) {
+          // Start sending this chunk while the next one is filled
+          chunkResults.add(executor.submit(new HubChunkCallable(
+              getHubChunkCache(chunkResults.size()), chunk, message)));
+          chunk = null;
+          chunkSize = 0;
+        }
+      }
+      if (chunk != null) {
+        chunkResults.add(executor.submit(new HubChunkCallable(
+            getHubChunkCache(chunkResults.size()), chunk, message)));
+      }
+      for (Future<HubChunkCallable> chunkResult : chunkResults) {
+        HubChunkCallable chunkCallable = chunkResult.get();
+        totalMsgsSentInSuperstep += chunkCallable.messageCount;
+        totalMsgBytesSentInSuperstep += chunkCallable.messageBytesCount;
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("sendHubMessageToAllRequest: Got " +
+          "IOException serializing a target vertex id", e);
+    } catch (InterruptedException e) {
+      throw new IllegalStateException("sendHubMessageToAllRequest: Got " +
+          "InterruptedException waiting for a chunk", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("sendHubMessageToAllRequest: " +
+          "Sending a chunk failed", e.getCause());
+    }
+  }
+
+  /**
+   * Sends a message to a chunk of serialized target ids of a hub vertex,
+   * through the cache of the chunk since caches are not thread-safe. The
+   * cache is reused by the same chunk of the next hub vertices, so the
+   * counts of the messages sent are kept by the callable.
+   */
+  private class HubChunkCallable implements Callable<HubChunkCallable> {
+    /** Cache of the chunk */
+    private final SendMessageCache<I, M> chunkCache;
+    /** Serialized target ids */
+    private final ExtendedDataOutput targetIds;
+    /** Message to send */
+    private final M message;
+    /** Number of messages sent */
+    private long messageCount;
+    /** Number of message bytes sent */
+    private long messageBytesCount;
+
+    /**
+     * Constructor
+     *
+     * @param chunkCache Cache of the chunk
+     * @param targetIds Serialized target ids
+     * @param message Message to send
+     */
+    public HubChunkCallable(SendMessageCache<I, M> chunkCache,
+        ExtendedDataOutput targetIds, M message) {
+      this.chunkCache = chunkCache;
+      this.targetIds = targetIds;
+      this.message = message;
+    }
+
+    @Override
+    public HubChunkCallable call() throws IOException {
+      chunkCache.sendMessageToAllRequest(new SerializedIdIterator(
+          getConf().createExtendedDataInput(
+              targetIds.getByteArray(), 0, targetIds.getPos())), message);
+      messageCount = chunkCache.resetMessageCount();
+      messageBytesCount = chunkCache.resetMessageBytesCount();
+      return this;
+    }
+  }
+
+  /**
+   * Iterator over serialized vertex ids, reusing the same vertex id object.
+   */
+  private class SerializedIdIterator implements Iterator<I> {
+    /** Serialized vertex ids */
+    private final ExtendedDataInput input;
+    /** Reused vertex id */
+    private final I vertexId;
+
+    /**
+     * Constructor
+     *
+     * @param input Serialized vertex ids
+     */
+    public SerializedIdIterator(ExtendedDataInput input) {
+      this.input = input;
+      vertexId = (I) getConf().createVertexId();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return input.available() > 0;
+    }
+
+    @Override
+    public I next() {
+      try {
+        vertexId.readFields(input);
+      } catch (IOException e) {
+        throw new IllegalStateException(
+            "next: Got IOException reading a target vertex id", e);
+      }
+      return vertexId;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException(
+          "remove: Not supported on serialized vertex ids");
+    }
   }
 
   /**
@@ -232,6 +469,16 @@ public class SendMessageCache<I extends WritableComparable, M extends Writable>
    * Flush the rest of the messages to the workers.
    */
   public void flush() {
+    if (hubChunkCaches != null) {
+      for (SendMessageCache<I, M> chunkCache : hubChunkCaches) {
+        if (chunkCache != null) {
+          chunkCache.flush();
+          totalMsgsSentInSuperstep += chunkCache.resetMessageCount();
+          totalMsgBytesSentInSuperstep +=
+              chunkCache.resetMessageBytesCount();
+        }
+      }
+    }
     PairList<WorkerInfo, PairList<Integer,
         ByteArrayVertexIdMessages<I, M>>>
     remainingMessageCache = removeAllMessages();
@@ -0,0 +1,484 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.giraph.comm;
+
+import it.unimi.dsi.fastutil.ints.Int2FloatMap;
+import it.unimi.dsi.fastutil.ints.Int2FloatOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2DoubleMap;
+import it.unimi.dsi.fastutil.longs.Long2DoubleOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.giraph.bsp.CentralizedServiceWorker;
+import org.apache.giraph.combiner.Combiner;
+import org.apache.giraph.combiner.DoublePrimitiveCombiner;
+import org.apache.giraph.combiner.FloatPrimitiveCombiner;
+import org.apache.giraph.comm.netty.NettyWorkerClientRequestProcessor;
+import org.apache.giraph.comm.requests.SendWorkerMessagesRequest;
+import org.apache.giraph.comm.requests.WritableRequest;
+import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.giraph.metrics.GiraphMetrics;
+import org.apache.giraph.metrics.MetricNames;
+import org.apache.giraph.partition.PartitionOwner;
+import org.apache.giraph.utils.ByteArrayVertexIdMessages;
+import org.apache.giraph.utils.PairList;
+import org.apache.giraph.utils.WritableUtils;
+import org.apache.giraph.worker.WorkerInfo;
+import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.FloatWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.log4j.Logger;
+
+import com.google.common.collect.Maps;
+import com.yammer.metrics.core.Counter;
+
+import static org.apache.giraph.conf.GiraphConstants.MAX_COMBINED_MSGS_PER_THREAD;
+
+/**
+ * Message cache which combines the messages to the same vertex with the
+ * job's {@link Combiner} before serializing them, so only one message per
+ * destination vertex is sent by each compute thread between flushes.
+ * Combined messages are kept by destination partition, in primitive maps
+ * for {@link LongWritable} and {@link IntWritable} vertex ids. Messages
+ * are kept as primitives too for {@link LongWritable} ids with
+ * {@link DoubleWritable} messages and {@link IntWritable} ids with
+ * {@link FloatWritable} messages, and combined without wrapping them when
+ * the combiner is a {@link DoublePrimitiveCombiner} or
+ * {@link FloatPrimitiveCombiner}. Messages to vertices of this worker
+ * are not cached when they can be added straight to the message store,
+ * which combines them in place. Not thread-safe.
+ *
+ * @param <I> Vertex id
+ * @param <M> Message data
+ */
+public class SendMessageCombiningCache<I extends WritableComparable,
+    M extends Writable> extends SendMessageCache<I, M> {
+  /** Class logger */
+  private static final Logger LOG =
+      Logger.getLogger(SendMessageCombiningCache.class);
+  /** Combiner of the messages */
+  private final Combiner<I, M> combiner;
+  /** Combined messages, by destination partition */
+  private final PartitionMessages[] partitionMessages;
+  /** Number of combined messages cached, by destination worker task id */
+  private final int[] workerMessageCounts;
+  /** Max combined messages cached for a worker before serializing them */
+  private final int maxCombinedMessagesPerWorker;
+  /** Vertex id class */
+  private final Class<?> vertexIdClass;
+  /** Message class */
+  private final Class<?> messageClass;
+  /** Messages sent since the last flush */
+  private long messagesSinceFlush = 0;
+  /** Messages combined into another one since the last flush */
+  private long messagesCombinedSinceFlush = 0;
+  /** Counter of messages combined into another one before sending */
+  private final Counter messagesCombinedCounter;
+
+  /**
+   * Constructor
+   *
+   * @param conf Giraph configuration
+   * @param serviceWorker Service worker
+   * @param processor NettyWorkerClientRequestProcessor
+   * @param maxMsgSize Max message size sent to a worker
+   */
+  public SendMessageCombiningCache(ImmutableClassesGiraphConfiguration conf,
+      CentralizedServiceWorker<?, ?, ?> serviceWorker,
+      NettyWorkerClientRequestProcessor<I, ?, ?> processor,
+      int maxMsgSize) {
+    super(conf, serviceWorker, processor, maxMsgSize);
+    combiner = conf.createCombiner();
+    int maxPartition = 0;
+    for (List<Integer> partitionIds : getWorkerPartitions().values()) {
+      for (Integer partitionId : partitionIds) {
+        maxPartition = Math.max(partitionId, maxPartition);
+      }
+    }
+    partitionMessages =
+        new SendMessageCombiningCache.PartitionMessages[maxPartition + 1];
+    workerMessageCounts = new int[getNumWorkers()];
+    maxCombinedMessagesPerWorker = Math.max(1,
+        MAX_COMBINED_MSGS_PER_THREAD.get(conf) /
+            getWorkerPartitions().size());
+    vertexIdClass = conf.getVertexIdClass();
+    messageClass = conf.getOutgoingMessageValueClass();
+    messagesCombinedCounter = GiraphMetrics.get().perSuperstep()
+        .getCounter(MetricNames.MESSAGES_COMBINED_ON_SEND);
+  }
+
+  @Override
+  protected SendMessageCache<I, M> createHubChunkCache() {
+    return new SendMessageCombiningCache<I, M>(getConf(), getServiceWorker(),
+        clientProcessor, maxMessagesSizePerWorker);
+  }
+
+  @Override
+  public void sendMessageRequest(I destVertexId, M message) {
+    PartitionOwner owner =
+        getServiceWorker().getVertexPartitionOwner(destVertexId);
+    WorkerInfo workerInfo = owner.getWorkerInfo();
+    int partitionId = owner.getPartitionId();
+    if (LOG.isTraceEnabled()) {
+      LOG.trace("sendMessageRequest: Combine (" + message.toString() +
+          ") to " + destVertexId + " on worker " + workerInfo);
+    }
+    ++totalMsgsSentInSuperstep;
+    if (addLocalMessage(workerInfo, partitionId, destVertexId, message)) {
+      return;
+    }
+    ++messagesSinceFlush;
+    PartitionMessages messages = partitionMessages[partitionId];
+    if (messages == null) {
+      messages = createPartitionMessages();
+      partitionMessages[partitionId] = messages;
+    }
+    if (messages.combine(destVertexId, message)) {
+      if (++workerMessageCounts[workerInfo.getTaskId()] >=
+          maxCombinedMessagesPerWorker) {
+        serializeWorkerMessages(workerInfo);
+      }
+    } else {
+      ++messagesCombinedSinceFlush;
+    }
+  }
+
+  @Override
+  public void flush() {
+    for (WorkerInfo workerInfo : getWorkerPartitions().keySet()) {
+      serializeWorkerMessages(workerInfo);
+    }
+    messagesCombinedCounter.inc(messagesCombinedSinceFlush);
+    if (LOG.isDebugEnabled() && messagesSinceFlush > 0) {
+      LOG.debug("flush: Combined " + messagesCombinedSinceFlush + " of " +
+          messagesSinceFlush + " messages before sending (" +
+          (100f * messagesCombinedSinceFlush / messagesSinceFlush) + "%)");
+    }
+    messagesSinceFlush = 0;
+    messagesCombinedSinceFlush = 0;
+    super.flush();
+  }
+
+  /**
+   * Create the combined messages of a partition, in the most compact maps
+   * for the vertex id and message classes.
+   *
+   * @return Empty combined messages
+   */
+  private PartitionMessages createPartitionMessages() {
+    if (LongWritable.class.equals(vertexIdClass)) {
+      if (DoubleWritable.class.equals(messageClass)) {
+        return new LongDoublePartitionMessages();
+      }
+      return new LongPartitionMessages();
+    } else if (IntWritable.class.equals(vertexIdClass)) {
+      if (FloatWritable.class.equals(messageClass)) {
+        return new IntFloatPartitionMessages();
+      }
+      return new IntPartitionMessages();
+    }
+    return new ObjectPartitionMessages();
+  }
+
+  /**
+   * Serializes the combined messages for a worker, sending requests
+   * whenever enough of them are serialized.
+   *
+   * @param workerInfo Destination worker
+   */
+  private void serializeWorkerMessages(WorkerInfo workerInfo) {
+    for (Integer partitionId : getWorkerPartitions().get(workerInfo)) {
+      PartitionMessages messages = partitionMessages[partitionId];
+      if (messages != null) {
+        messages.serialize(workerInfo, partitionId);
+      }
+    }
+    workerMessageCounts[workerInfo.getTaskId()] = 0;
+  }
+
+  /**
+   * Serializes a combined message, and sends the messages serialized for
+   * the worker if they reached the max request size.
+   *
+   * @param workerInfo Destination worker
+   * @param partitionId Destination partition
+   * @param destVertexId Destination vertex
+   * @param message Combined message
+   */
+  private void serializeMessage(WorkerInfo workerInfo, int partitionId,
+      I destVertexId, M message) {
+    int workerMessageSize =
+        addData(workerInfo, partitionId, destVertexId, message);
+    if (workerMessageSize >= maxMessagesSizePerWorker) {
+      PairList<Integer, ByteArrayVertexIdMessages<I, M>>
+          workerMessages = removeWorkerMessages(workerInfo);
+      WritableRequest writableRequest =
+          new SendWorkerMessagesRequest<I, M>(workerMessages);
+      totalMsgBytesSentInSuperstep += writableRequest.getSerializedSize();
+      clientProcessor.doRequest(workerInfo, writableRequest);
+      // Notify sending
+      getServiceWorker().getGraphTaskManager().notifySentMessages();
+    }
+  }
+
+  /**
+   * Combined messages to the vertices of a partition.
+   */
+  private abstract class PartitionMessages {
+    /**
+     * Combines a message with the cached one for its vertex.
+     *
+     * @param destVertexId Destination vertex, not kept by the cache
+     * @param message Message, not kept by the cache
+     * @return True if it is the first message cached for the vertex
+     */
+    public abstract boolean combine(I destVertexId, M message);
+
+    /**
+     * Serializes all the combined messages and removes them.
+     *
+     * @param workerInfo Destination worker
+     * @param partitionId Destination partition
+     */
+    public abstract void serialize(WorkerInfo workerInfo, int partitionId);
+
+    /**
+     * Creates a combined message out of the first message to a vertex.
+     *
+     * @param destVertexId Destination vertex
+     * @param message First message
+     * @return Combined message, owned by the cache
+     */
+    protected M createCombinedMessage(I destVertexId, M message) {
+      M combined = combiner.createInitialMessage();
+      combiner.combine(destVertexId, combined, message);
+      return combined;
+    }
+  }
+
+  /**
+   * Combined messages to a partition with LongWritable vertex ids.
+   */
+  private class LongPartitionMessages extends PartitionMessages {
+    /** Combined messages by vertex id */
+    private final Long2ObjectOpenHashMap<M> messages =
+        new Long2ObjectOpenHashMap<M>();
+    /** Reused vertex id for serialization */
+    private final LongWritable reusableId = new LongWritable();
+
+    @Override
+    public boolean combine(I destVertexId, M message) {
+      long id = ((LongWritable) destVertexId).get();
+      M combined = messages.get(id);
+      if (combined == null) {
+        messages.put(id, createCombinedMessage(destVertexId, message));
+        return true;
+      }
+      combiner.combine(destVertexId, combined, message);
+      return false;
+    }
+
+    @Override
+    public void serialize(WorkerInfo workerInfo, int partitionId) {
+      ObjectIterator<Long2ObjectMap.Entry<M>> iterator =
+          messages.long2ObjectEntrySet().fastIterator();
+      while (iterator.hasNext()) {
+        Long2ObjectMap.Entry<M> entry = iterator.next();
+        reusableId.set(entry.getLongKey());
+        serializeMessage(workerInfo, partitionId, (I) reusableId,
+            entry.getValue());
+      }
+      messages.clear();
+    }
+  }
+
+  /**
+   * Combined messages to a partition with LongWritable vertex ids and
+   * DoubleWritable messages.
+   */
+  private class LongDoublePartitionMessages extends PartitionMessages {
+    /** Combined messages by vertex id */
+    private final Long2DoubleOpenHashMap messages =
+        new Long2DoubleOpenHashMap();
+    /** Primitive form of the combiner, null if it does not have one */
+    private final DoublePrimitiveCombiner primitiveCombiner =
+        (combiner instanceof DoublePrimitiveCombiner) ?
+            (DoublePrimitiveCombiner) combiner : null;
+    /** Reused vertex id for serialization */
+    private final LongWritable reusableId = new LongWritable();
+    /** Reused message for combining and serialization */
+    private final DoubleWritable reusableMessage = new DoubleWritable();
+
+    @Override
+    public boolean combine(I destVertexId, M message) {
+      long id = ((LongWritable) destVertexId).get();
+      double value = ((DoubleWritable) message).get();
+      if (!messages.containsKey(id)) {
+        messages.put(id, value);
+        return true;
+      }
+      if (primitiveCombiner != null) {
+        messages.put(id, primitiveCombiner.combine(messages.get(id), value));
+      } else {
+        reusableMessage.set(messages.get(id));
+        combiner.combine(destVertexId, (M) reusableMessage, message);
+        messages.put(id, reusableMessage.get());
+      }
+      return false;
+    }
+
+    @Override
+    public void serialize(WorkerInfo workerInfo, int partitionId) {
+      ObjectIterator<Long2DoubleMap.Entry> iterator =
+          messages.long2DoubleEntrySet().fastIterator();
+      while (iterator.hasNext()) {
+        Long2DoubleMap.Entry entry = iterator.next();
+        reusableId.set(entry.getLongKey());
+        reusableMessage.set(entry.getDoubleValue());
+        serializeMessage(workerInfo, partitionId, (I) reusableId,
+            (M) reusableMessage);
+      }
+      messages.clear();
+    }
+  }
+
+  /**
+   * Combined messages to a partition with IntWritable vertex ids.
+   */
+  private class IntPartitionMessages extends PartitionMessages {
+    /** Combined messages by vertex id */
+    private final Int2ObjectOpenHashMap<M> messages =
+        new Int2ObjectOpenHashMap<M>();
+    /** Reused vertex id for serialization */
+    private final IntWritable reusableId = new IntWritable();
+
+    @Override
+    public boolean combine(I destVertexId, M message) {
+      int id = ((IntWritable) destVertexId).get();
+      M combined = messages.get(id);
+      if (combined == null) {
+        messages.put(id, createCombinedMessage(destVertexId, message));
+        return true;
+      }
+      combiner.combine(destVertexId, combined, message);
+      return false;
+    }
+
+    @Override
+    public void serialize(WorkerInfo workerInfo, int partitionId) {
+      ObjectIterator<Int2ObjectMap.Entry<M>> iterator =
+          messages.int2ObjectEntrySet().fastIterator();
+      while (iterator.hasNext()) {
+        Int2ObjectMap.Entry<M> entry = iterator.next();
+        reusableId.set(entry.getIntKey());
+        serializeMessage(workerInfo, partitionId, (I) reusableId,
+            entry.getValue());
+      }
+      messages.clear();
+    }
+  }
+
+  /**
+   * Combined messages to a partition with IntWritable vertex ids and
+   * FloatWritable messages.
+   */
+  private class IntFloatPartitionMessages extends PartitionMessages {
+    /** Combined messages by vertex id */
+    private final Int2FloatOpenHashMap messages = new Int2FloatOpenHashMap();
+    /** Primitive form of the combiner, null if it does not have one */
+    private final FloatPrimitiveCombiner primitiveCombiner =
+        (combiner instanceof FloatPrimitiveCombiner) ?
+            (FloatPrimitiveCombiner) combiner : null;
+    /** Reused vertex id for serialization */
+    private final IntWritable reusableId = new IntWritable();
+    /** Reused message for combining and serialization */
+    private final FloatWritable reusableMessage = new FloatWritable();
+
+    @Override
+    public boolean combine(I destVertexId, M message) {
+      int id = ((IntWritable) destVertexId).get();
+      float value = ((FloatWritable) message).get();
+      if (!messages.containsKey(id)) {
+        messages.put(id, value);
+        return true;
+      }
+      if (primitiveCombiner != null) {
+        messages.put(id, primitiveCombiner.combine(messages.get(id), value));
+      } else {
+        reusableMessage.set(messages.get(id));
+        combiner.combine(destVertexId, (M) reusableMessage, message);
+        messages.put(id, reusableMessage.get());
+      }
+      return false;
+    }
+
+    @Override
+    public void serialize(WorkerInfo workerInfo, int partitionId) {
+      ObjectIterator<Int2FloatMap.Entry> iterator =
+          messages.int2FloatEntrySet().fastIterator();
+      while (iterator.hasNext()) {
+        Int2FloatMap.Entry entry = iterator.next();
+        reusableId.set(entry.getIntKey());
+        reusableMessage.set(entry.getFloatValue());
+        serializeMessage(workerInfo, partitionId, (I) reusableId,
+            (M) reusableMessage);
+      }
+      messages.clear();
+    }
+  }
+
+  /**
+   * Combined messages to a partition with any other vertex ids.
+   */
+  private class ObjectPartitionMessages extends PartitionMessages {
+    /** Combined messages by vertex id */
+    private final Map<I, M> messages = Maps.newHashMap();
+
+    @Override
+    public boolean combine(I destVertexId, M message) {
+      M combined = messages.get(destVertexId);
+      if (combined == null) {
+        I idCopy = (I) getConf().createVertexId();
+        WritableUtils.readFieldsFromByteArray(
+            WritableUtils.writeToByteArray(destVertexId), idCopy);
+        messages.put(idCopy, createCombinedMessage(destVertexId, message));
+        return true;
+      }
+      combiner.combine(destVertexId, combined, message);
+      return false;
+    }
+
+    @Override
+    public void serialize(WorkerInfo workerInfo, int partitionId) {
+      for (Map.Entry<I, M> entry : messages.entrySet()) {
+        serializeMessage(workerInfo, partitionId, entry.getKey(),
+            entry.getValue());
+      }
+      messages.clear();
+    }
+  }
+}
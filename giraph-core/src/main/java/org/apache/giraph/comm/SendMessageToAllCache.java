@@ -22,15 +22,21 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.Iterator;
 
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
 import org.apache.giraph.bsp.CentralizedServiceWorker;
+import org.apache.giraph.comm.BroadcastTargetCache.BroadcastTargets;
 import org.apache.giraph.comm.netty.NettyWorkerClientRequestProcessor;
 import org.apache.giraph.comm.requests.SendWorkerMessagesRequest;
 import org.apache.giraph.comm.requests.SendWorkerOneToAllMessagesRequest;
 import org.apache.giraph.comm.requests.WritableRequest;
 import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.giraph.edge.Edge;
+import org.apache.giraph.graph.Vertex;
 import org.apache.giraph.partition.PartitionOwner;
 import org.apache.giraph.utils.ByteArrayOneToAllMessages;
 import org.apache.giraph.utils.ByteArrayVertexIdMessages;
+import org.apache.giraph.utils.ExtendedDataInput;
 import org.apache.giraph.utils.ExtendedDataOutput;
 import org.apache.giraph.utils.PairList;
 import org.apache.giraph.worker.WorkerInfo;
@@ -65,6 +71,8 @@ public class SendMessageToAllCache<I extends WritableComparable,
   private final int[] firstPartitionMap;
   /** The WorkerInfo list */
   private final WorkerInfo[] workerInfoList;
+  /** Grouped targets of the vertices (null if not cached) */
+  private final BroadcastTargetCache<I> broadcastTargetCache;
 
   /**
    * Constructor
@@ -102,6 +110,18 @@ public class SendMessageToAllCache<I extends WritableComparable,
     for (WorkerInfo workerInfo : serviceWorker.getWorkerInfoList()) {
       workerInfoList[workerInfo.getTaskId()] = workerInfo;
     }
+    broadcastTargetCache = (BroadcastTargetCache<I>)
+        serviceWorker.getServerData().getBroadcastTargetCache();
+    if (broadcastTargetCache != null) {
+      broadcastTargetCache.checkPartitionOwners(
+          serviceWorker.getPartitionOwners());
+    }
+  }
+
+  @Override
+  protected SendMessageCache<I, M> createHubChunkCache() {
+    return new SendMessageToAllCache<I, M>(getConf(), getServiceWorker(),
+        clientProcessor, maxMessagesSizePerWorker);
   }
 
   /**
@@ -213,6 +233,11 @@ public class SendMessageToAllCache<I extends WritableComparable,
       vertexId = vertexIdIterator.next();
       owner = getServiceWorker().getVertexPartitionOwner(vertexId);
       workerInfo = owner.getWorkerInfo();
+      if (addLocalMessage(
+          workerInfo, owner.getPartitionId(), vertexId, message)) {
+        ++totalMsgsSentInSuperstep;
+        continue;
+      }
       currentMachineId = workerInfo.getTaskId();
       // Serialize this target vertex id
       try {
@@ -229,61 +254,184 @@ public class SendMessageToAllCache<I extends WritableComparable,
         firstPartitionMap[currentMachineId] = owner.getPartitionId();
       }
     }
-    // Add the message to the cache
-    int idSerializerPos = 0;
-    int workerMessageSize = 0;
-    byte[] serializedId  = null;
+    for (int i = 0; i < idCounter.length; i++) {
+      if (idCounter[i] > 0) {
+        sendToWorker(workerInfoList[i], idSerializer[i].getByteArray(),
+            idSerializer[i].getPos(), idCounter[i], firstPartitionMap[i],
+            message);
+      }
+    }
+  }
+
+  /**
+   * Add a message to the serialized target ids on a worker, and send the
+   * messages cached for the worker if they are large enough.
+   *
+   * @param workerInfo The remote worker destination
+   * @param serializedIds A byte array holding the serialized target ids
+   * @param idPos The end position of the ids in the byte array
+   * @param count The number of target ids
+   * @param firstPartitionId The partition id of the first target
+   * @param message Message to send to remote worker
+   */
+  private void sendToWorker(WorkerInfo workerInfo, byte[] serializedIds,
+      int idPos, int count, int firstPartitionId, M message) {
     WritableRequest writableRequest = null;
+    int workerMessageSize = 0;
+    if (count == 1) {
+      // Add the message to the cache
+      workerMessageSize = addMessage(workerInfo,
+        firstPartitionId, serializedIds, idPos, message);
+
+      if (LOG.isTraceEnabled()) {
+        LOG.trace("sendMessageToAllRequest: Send bytes (" +
+          message.toString() + ") to one target in  worker " +
+          workerInfo);
+      }
+      ++totalMsgsSentInSuperstep;
+      if (workerMessageSize >= maxMessagesSizePerWorker) {
+        PairList<Integer, ByteArrayVertexIdMessages<I, M>>
+          workerMessages = removeWorkerMessages(workerInfo);
+        writableRequest =
+          new SendWorkerMessagesRequest<I, M>(workerMessages);
+        totalMsgBytesSentInSuperstep += writableRequest.getSerializedSize();
+        clientProcessor.doRequest(workerInfo, writableRequest);
+        // Notify sending
+        getServiceWorker().getGraphTaskManager().notifySentMessages();
+      }
+    } else {
+      workerMessageSize = addOneToAllMessage(
+        workerInfo, serializedIds, idPos, count, message);
+
+      if (LOG.isTraceEnabled()) {
+        LOG.trace("sendMessageToAllRequest: Send bytes (" +
+          message.toString() + ") to all targets in worker" +
+          workerInfo);
+      }
+      totalMsgsSentInSuperstep += count;
+      if (workerMessageSize >= maxMessagesSizePerWorker) {
+        ByteArrayOneToAllMessages<I, M> workerOneToAllMessages =
+          removeWorkerOneToAllMessages(workerInfo);
+        writableRequest =
+          new SendWorkerOneToAllMessagesRequest<I, M>(
+            workerOneToAllMessages, getConf());
+        totalMsgBytesSentInSuperstep += writableRequest.getSerializedSize();
+        clientProcessor.doRequest(workerInfo, writableRequest);
+        // Notify sending
+        getServiceWorker().getGraphTaskManager().notifySentMessages();
+      }
+    }
+  }
+
+  @Override
+  public void sendMessageToAllRequest(Vertex<I, ?, ?> vertex, M message) {
+    if (broadcastTargetCache == null) {
+      super.sendMessageToAllRequest(vertex, message);
+      return;
+    }
+    BroadcastTargets targets = broadcastTargetCache.get(vertex.getId());
+    if (targets == null) {
+      targets = groupTargets(vertex);
+      broadcastTargetCache.put(vertex.getId(), targets);
+    }
+    int localTaskId = getServiceWorker().getWorkerInfo().getTaskId();
+    for (int i = 0; i < targets.getNumWorkers(); i++) {
+      WorkerInfo workerInfo = workerInfoList[targets.getTaskId(i)];
+      if (targets.getTaskId(i) != localTaskId ||
+          !addLocalMessages(workerInfo, targets.getIds(i),
+              targets.getLocalPartitionIds(), message)) {
+        sendToWorker(workerInfo, targets.getIds(i),
+            targets.getIds(i).length, targets.getCount(i),
+            targets.getFirstPartitionId(i), message);
+      }
+    }
+  }
+
+  /**
+   * Group the targets of a vertex by destination worker.
+   *
+   * @param vertex The source vertex
+   * @return Grouped targets
+   */
+  private BroadcastTargets groupTargets(Vertex<I, ?, ?> vertex) {
+    resetIdSerializers();
+    resetIdCounter();
+    int localTaskId = getServiceWorker().getWorkerInfo().getTaskId();
+    IntArrayList localPartitionIds = new IntArrayList();
+    for (Edge<I, ?> edge : vertex.getEdges()) {
+      I vertexId = edge.getTargetVertexId();
+      PartitionOwner owner =
+          getServiceWorker().getVertexPartitionOwner(vertexId);
+      int taskId = owner.getWorkerInfo().getTaskId();
+      try {
+        vertexId.write(idSerializer[taskId]);
+      } catch (IOException e) {
+        throw new IllegalStateException(
+          "Failed to serialize the target vertex id.");
+      }
+      if (++idCounter[taskId] == 1) {
+        firstPartitionMap[taskId] = owner.getPartitionId();
+      }
+      if (taskId == localTaskId) {
+        localPartitionIds.add(owner.getPartitionId());
+      }
+    }
+    int numWorkers = 0;
+    for (int i = 0; i < idCounter.length; i++) {
+      if (idCounter[i] > 0) {
+        ++numWorkers;
+      }
+    }
+    int[] taskIds = new int[numWorkers];
+    int[] counts = new int[numWorkers];
+    byte[][] ids = new byte[numWorkers][];
+    int[] firstPartitionIds = new int[numWorkers];
+    int j = 0;
     for (int i = 0; i < idCounter.length; i++) {
-      if (idCounter[i] == 1) {
-        serializedId = idSerializer[i].getByteArray();
-        idSerializerPos = idSerializer[i].getPos();
-        // Add the message to the cache
-        workerMessageSize = addMessage(workerInfoList[i],
-          firstPartitionMap[i], serializedId, idSerializerPos, message);
+      if (idCounter[i] > 0) {
+        taskIds[j] = i;
+        counts[j] = idCounter[i];
+        ids[j] = Arrays.copyOf(idSerializer[i].getByteArray(),
+            idSerializer[i].getPos());
+        firstPartitionIds[j] = firstPartitionMap[i];
+        ++j;
+      }
+    }
+    return new BroadcastTargets(taskIds, counts, ids, firstPartitionIds,
+        localPartitionIds.isEmpty() ? null :
+            localPartitionIds.toIntArray());
+  }
 
-        if (LOG.isTraceEnabled()) {
-          LOG.trace("sendMessageToAllRequest: Send bytes (" +
-            message.toString() + ") to one target in  worker " +
-            workerInfoList[i]);
+  /**
+   * Add a message for the targets on this worker straight to the incoming
+   * message store.
+   *
+   * @param workerInfo This worker
+   * @param serializedIds Serialized target ids
+   * @param partitionIds Partition ids of the targets
+   * @param message Message to the targets
+   * @return True iff the messages were added to the store, false if they
+   *         still have to be sent
+   */
+  private boolean addLocalMessages(WorkerInfo workerInfo,
+      byte[] serializedIds, int[] partitionIds, M message) {
+    ExtendedDataInput input = getConf().createExtendedDataInput(
+        serializedIds, 0, serializedIds.length);
+    I vertexId = (I) getConf().createVertexId();
+    try {
+      for (int partitionId : partitionIds) {
+        vertexId.readFields(input);
+        if (!addLocalMessage(workerInfo, partitionId, vertexId, message)) {
+          // The store does not take local messages, so none were added
+          return false;
         }
         ++totalMsgsSentInSuperstep;
-        if (workerMessageSize >= maxMessagesSizePerWorker) {
-          PairList<Integer, ByteArrayVertexIdMessages<I, M>>
-            workerMessages = removeWorkerMessages(workerInfoList[i]);
-          writableRequest =
-            new SendWorkerMessagesRequest<I, M>(workerMessages);
-          totalMsgBytesSentInSuperstep += writableRequest.getSerializedSize();
-          clientProcessor.doRequest(workerInfoList[i], writableRequest);
-          // Notify sending
-          getServiceWorker().getGraphTaskManager().notifySentMessages();
-        }
-      } else if (idCounter[i] > 1) {
-        serializedId = idSerializer[i].getByteArray();
-        idSerializerPos = idSerializer[i].getPos();
-        workerMessageSize = addOneToAllMessage(
-          workerInfoList[i], serializedId, idSerializerPos, idCounter[i],
-          message);
-
-        if (LOG.isTraceEnabled()) {
-          LOG.trace("sendMessageToAllRequest: Send bytes (" +
-            message.toString() + ") to all targets in worker" +
-            workerInfoList[i]);
-        }
-        totalMsgsSentInSuperstep += idCounter[i];
-        if (workerMessageSize >= maxMessagesSizePerWorker) {
-          ByteArrayOneToAllMessages<I, M> workerOneToAllMessages =
-            removeWorkerOneToAllMessages(workerInfoList[i]);
-          writableRequest =
-            new SendWorkerOneToAllMessagesRequest<I, M>(
-              workerOneToAllMessages, getConf());
-          totalMsgBytesSentInSuperstep += writableRequest.getSerializedSize();
-          clientProcessor.doRequest(workerInfoList[i], writableRequest);
-          // Notify sending
-          getServiceWorker().getGraphTaskManager().notifySentMessages();
-        }
       }
+    } catch (IOException e) {
+      throw new IllegalStateException(
+        "Failed to deserialize the target vertex id.", e);
     }
+    return true;
   }
 
   @Override
@@ -21,12 +21,14 @@ package org.apache.giraph.comm;
 import org.apache.giraph.bsp.CentralizedServiceWorker;
 import org.apache.giraph.comm.aggregators.AllAggregatorServerData;
 import org.apache.giraph.comm.aggregators.OwnerAggregatorServerData;
+import org.apache.giraph.comm.messages.AsyncMessageStore;
 import org.apache.giraph.comm.messages.MessageStore;
 import org.apache.giraph.comm.messages.MessageStoreFactory;
 import org.apache.giraph.conf.GiraphConstants;
 import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
 import org.apache.giraph.edge.EdgeStore;
 import org.apache.giraph.graph.VertexMutations;
+import org.apache.giraph.partition.ActiveVertices;
 import org.apache.giraph.partition.DiskBackedPartitionStore;
 import org.apache.giraph.partition.PartitionStore;
 import org.apache.giraph.partition.SimplePartitionStore;
@@ -34,8 +36,14 @@ import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.io.WritableComparable;
 import org.apache.hadoop.mapreduce.Mapper;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import java.io.IOException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Anything that the server stores
@@ -47,6 +55,8 @@ import java.util.concurrent.ConcurrentHashMap;
 @SuppressWarnings("rawtypes")
 public class ServerData<I extends WritableComparable,
     V extends Writable, E extends Writable> {
+  /** Secs an idle broadcast thread is kept */
+  private static final int BROADCAST_THREAD_KEEP_ALIVE_SECS = 60;
   /** Configuration */
   private final ImmutableClassesGiraphConfiguration<I, V, E> conf;
   /** Partition store for this worker. */
@@ -82,6 +92,12 @@ public class ServerData<I extends WritableComparable,
   private final AllAggregatorServerData allAggregatorData;
   /** Service worker */
   private final CentralizedServiceWorker<I, V, E> serviceWorker;
+  /** Active vertices of the partitions (null if not tracked) */
+  private final ActiveVertices<I> activeVertices;
+  /** Threads sending the messages of hub vertices (null if not used) */
+  private final ExecutorService broadcastExecutor;
+  /** Grouped targets of messages sent to all edges (null if not cached) */
+  private final BroadcastTargetCache<I> broadcastTargetCache;
 
   /**
    * Constructor.
@@ -110,6 +126,23 @@ public class ServerData<I extends WritableComparable,
     edgeStore = new EdgeStore<I, V, E>(service, conf, context);
     ownerAggregatorData = new OwnerAggregatorServerData(context, conf);
     allAggregatorData = new AllAggregatorServerData(context, conf);
+    activeVertices = conf.isActiveVertexFrontierEnabled() ?
+        new ActiveVertices<I>(conf) : null;
+    if (conf.getHubVertexEdges() > 0) {
+      int threads = GiraphConstants.HUB_BROADCAST_THREADS.get(conf);
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+          BROADCAST_THREAD_KEEP_ALIVE_SECS, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<Runnable>(),
+          new ThreadFactoryBuilder().setNameFormat("hub-broadcast-%d")
+              .setDaemon(true).build());
+      // Hub vertices are rare, do not keep the threads when they are idle
+      executor.allowCoreThreadTimeOut(true);
+      broadcastExecutor = executor;
+    } else {
+      broadcastExecutor = null;
+    }
+    broadcastTargetCache = conf.isCacheBroadcastTargetsEnabled() ?
+        new BroadcastTargetCache<I>(conf) : null;
   }
 
   public EdgeStore<I, V, E> getEdgeStore() {
@@ -125,6 +158,34 @@ public class ServerData<I extends WritableComparable,
     return partitionStore;
   }
 
+  /**
+   * Get the active vertices of the partitions of this worker.
+   *
+   * @return Active vertices, or null if they are not tracked
+   */
+  public ActiveVertices<I> getActiveVertices() {
+    return activeVertices;
+  }
+
+  /**
+   * Get the threads sending the messages of hub vertices.
+   *
+   * @return Executor of the broadcast threads, or null if hub vertices are
+   *         not sent in parallel
+   */
+  public ExecutorService getBroadcastExecutor() {
+    return broadcastExecutor;
+  }
+
+  /**
+   * Get the cache of the grouped targets of messages sent to all edges.
+   *
+   * @return Broadcast target cache, or null if targets are not cached
+   */
+  public BroadcastTargetCache<I> getBroadcastTargetCache() {
+    return broadcastTargetCache;
+  }
+
   /**
    * Get message store for incoming messages (messages which will be consumed
    * in the next super step)
@@ -147,6 +208,25 @@ public class ServerData<I extends WritableComparable,
     return (MessageStore<I, M>) currentMessageStore;
   }
 
+  /**
+   * Get the store of incoming messages, if vertices can consume them in the
+   * current super step (asynchronous mode). It can only be used when the
+   * messages sent in this super step have the type the computation expects.
+   *
+   * @param <M> Message data
+   * @return Incoming message store, or null if the asynchronous mode is
+   *         disabled or not supported by the store
+   */
+  public <M extends Writable> AsyncMessageStore<I, M> getAsyncMessageStore() {
+    if (!conf.isAsyncMessagesEnabled() ||
+        !(incomingMessageStore instanceof AsyncMessageStore) ||
+        !conf.getIncomingMessageValueClass().equals(
+            conf.getOutgoingMessageValueClass())) {
+      return null;
+    }
+    return (AsyncMessageStore<I, M>) incomingMessageStore;
+  }
+
   /** Prepare for next super step */
   public void prepareSuperstep() {
     if (currentMessageStore != null) {
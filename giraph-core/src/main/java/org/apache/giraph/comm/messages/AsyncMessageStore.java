@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.comm.messages;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparable;
+
+import java.io.IOException;
+
+/**
+ * Message store whose messages can be consumed while messages are still
+ * being added to it, so that vertices can see messages sent in the same
+ * superstep in the asynchronous mode (see
+ * {@link org.apache.giraph.conf.GiraphConstants#ASYNC_MESSAGES}).
+ *
+ * @param <I> Vertex id
+ * @param <M> Message data
+ */
+public interface AsyncMessageStore<I extends WritableComparable,
+    M extends Writable> extends LocalMessageStore<I, M> {
+  /**
+   * Removes the messages for a vertex and returns them. Messages added
+   * concurrently for the vertex are either returned or kept in the store,
+   * never lost.
+   *
+   * @param vertexId Id of the vertex
+   * @return Messages which were in the store for the vertex
+   * @throws IOException
+   */
+  Iterable<M> removeVertexMessages(I vertexId) throws IOException;
+}
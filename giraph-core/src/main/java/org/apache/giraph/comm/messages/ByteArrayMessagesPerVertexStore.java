@@ -44,7 +44,8 @@ import java.util.concurrent.ConcurrentMap;
  * @param <M> Message data
  */
 public class ByteArrayMessagesPerVertexStore<I extends WritableComparable,
-    M extends Writable> extends SimpleMessageStore<I, M, DataInputOutput> {
+    M extends Writable> extends SimpleMessageStore<I, M, DataInputOutput>
+    implements LocalMessageStore<I, M> {
   /**
    * Constructor
    *
@@ -125,6 +126,25 @@ public class ByteArrayMessagesPerVertexStore<I extends WritableComparable,
     }
   }
 
+  @Override
+  public void addLocalMessage(int partitionId, I vertexId,
+      M message) throws IOException {
+    ConcurrentMap<I, DataInputOutput> partitionMap =
+        getOrCreatePartitionMap(partitionId);
+    DataInputOutput dataInputOutput = partitionMap.get(vertexId);
+    if (dataInputOutput == null) {
+      DataInputOutput newDataOutput = config.createMessagesInputOutput();
+      dataInputOutput =
+          partitionMap.putIfAbsent(copyVertexId(vertexId), newDataOutput);
+      if (dataInputOutput == null) {
+        dataInputOutput = newDataOutput;
+      }
+    }
+    synchronized (dataInputOutput) {
+      message.write(dataInputOutput.getDataOutput());
+    }
+  }
+
   @Override
   protected Iterable<M> getMessagesAsIterable(
       DataInputOutput dataInputOutput) {
@@ -21,9 +21,16 @@ package org.apache.giraph.comm.messages;
 import org.apache.giraph.bsp.CentralizedServiceWorker;
 import org.apache.giraph.combiner.Combiner;
 import org.apache.giraph.comm.messages.primitives.IntByteArrayMessageStore;
+import org.apache.giraph.comm.messages.primitives.IntDoubleMessageStore;
 import org.apache.giraph.comm.messages.primitives.IntFloatMessageStore;
+import org.apache.giraph.comm.messages.primitives.IntIntMessageStore;
+import org.apache.giraph.comm.messages.primitives.IntLongMessageStore;
 import org.apache.giraph.comm.messages.primitives.LongByteArrayMessageStore;
 import org.apache.giraph.comm.messages.primitives.LongDoubleMessageStore;
+import org.apache.giraph.comm.messages.primitives.LongFloatMessageStore;
+import org.apache.giraph.comm.messages.primitives.LongIntMessageStore;
+import org.apache.giraph.comm.messages.primitives.LongLongMessageStore;
+import org.apache.giraph.conf.GiraphConstants;
 import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
 import org.apache.giraph.factories.MessageValueFactory;
 import org.apache.hadoop.io.DoubleWritable;
@@ -38,7 +45,8 @@ import org.apache.log4j.Logger;
  * Message store factory which produces message stores which hold all
  * messages in memory. Depending on whether or not combiner is currently used,
  * this factory creates {@link OneMessagePerVertexStore} or
- * {@link ByteArrayMessagesPerVertexStore}
+ * {@link ByteArrayMessagesPerVertexStore}, or their counterparts using
+ * primitive maps when vertex ids (and messages, if combined) are numbers
  *
  * @param <I> Vertex id
  * @param <M> Message data
@@ -71,20 +79,9 @@ public class InMemoryMessageStoreFactory<I extends WritableComparable,
     Class<M> messageClass = messageValueFactory.getValueClass();
     MessageStore messageStore;
     if (conf.useCombiner()) {
-      Class<I> vertexIdClass = conf.getVertexIdClass();
-      if (vertexIdClass.equals(IntWritable.class) &&
-          messageClass.equals(FloatWritable.class)) {
-        messageStore = new IntFloatMessageStore(
-            (CentralizedServiceWorker<IntWritable, ?, ?>) service,
-            (Combiner<IntWritable, FloatWritable>)
-                conf.<FloatWritable>createCombiner());
-      } else if (vertexIdClass.equals(LongWritable.class) &&
-          messageClass.equals(DoubleWritable.class)) {
-        messageStore = new LongDoubleMessageStore(
-            (CentralizedServiceWorker<LongWritable, ?, ?>) service,
-            (Combiner<LongWritable, DoubleWritable>)
-                conf.<DoubleWritable>createCombiner());
-      } else {
+      messageStore = newPrimitiveCombinerStore(conf.getVertexIdClass(),
+          messageClass);
+      if (messageStore == null) {
         messageStore = new OneMessagePerVertexStore<I, M>(messageValueFactory,
           service, conf.<M>createCombiner(), conf);
       }
@@ -113,4 +110,44 @@ public class InMemoryMessageStoreFactory<I extends WritableComparable,
     }
     return (MessageStore<I, M>) messageStore;
   }
+
+  /**
+   * Create a message store using fastutil primitive maps for combined
+   * messages, if there is one for the vertex id and message types.
+   *
+   * @param vertexIdClass Vertex id class
+   * @param messageClass Message class
+   * @return Message store, or null if the types are not primitive
+   */
+  private MessageStore newPrimitiveCombinerStore(Class<I> vertexIdClass,
+      Class<M> messageClass) {
+    Combiner combiner = conf.createCombiner();
+    int numStripes = GiraphConstants.MESSAGE_STORE_STRIPES.get(conf);
+    if (vertexIdClass.equals(IntWritable.class)) {
+      CentralizedServiceWorker<IntWritable, ?, ?> intService =
+          (CentralizedServiceWorker<IntWritable, ?, ?>) service;
+      if (messageClass.equals(IntWritable.class)) {
+        return new IntIntMessageStore(intService, combiner, numStripes);
+      } else if (messageClass.equals(LongWritable.class)) {
+        return new IntLongMessageStore(intService, combiner, numStripes);
+      } else if (messageClass.equals(FloatWritable.class)) {
+        return new IntFloatMessageStore(intService, combiner, numStripes);
+      } else if (messageClass.equals(DoubleWritable.class)) {
+        return new IntDoubleMessageStore(intService, combiner, numStripes);
+      }
+    } else if (vertexIdClass.equals(LongWritable.class)) {
+      CentralizedServiceWorker<LongWritable, ?, ?> longService =
+          (CentralizedServiceWorker<LongWritable, ?, ?>) service;
+      if (messageClass.equals(IntWritable.class)) {
+        return new LongIntMessageStore(longService, combiner, numStripes);
+      } else if (messageClass.equals(LongWritable.class)) {
+        return new LongLongMessageStore(longService, combiner, numStripes);
+      } else if (messageClass.equals(FloatWritable.class)) {
+        return new LongFloatMessageStore(longService, combiner, numStripes);
+      } else if (messageClass.equals(DoubleWritable.class)) {
+        return new LongDoubleMessageStore(longService, combiner, numStripes);
+      }
+    }
+    return null;
+  }
 }
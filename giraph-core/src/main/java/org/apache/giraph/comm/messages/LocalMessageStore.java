@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.comm.messages;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparable;
+
+import java.io.IOException;
+
+/**
+ * Message store which can take single messages from compute threads of this
+ * worker, without them being serialized into
+ * {@link org.apache.giraph.utils.ByteArrayVertexIdMessages} first. Must be
+ * safe to call concurrently with itself and with
+ * {@link #addPartitionMessages}.
+ *
+ * @param <I> Vertex id
+ * @param <M> Message data
+ */
+public interface LocalMessageStore<I extends WritableComparable,
+    M extends Writable> extends MessageStore<I, M> {
+  /**
+   * Adds a message for a vertex of this worker. The vertex id and message
+   * can be reused by the caller after this returns, so the store has to
+   * copy them (or combine the message) if it keeps them.
+   *
+   * @param partitionId Id of the partition of the vertex
+   * @param vertexId Id of the vertex
+   * @param message Message to add
+   * @throws IOException
+   */
+  void addLocalMessage(int partitionId, I vertexId, M message)
+    throws IOException;
+}
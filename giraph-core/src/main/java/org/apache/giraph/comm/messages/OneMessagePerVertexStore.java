@@ -41,7 +41,8 @@ import java.util.concurrent.ConcurrentMap;
  * @param <M> Message data
  */
 public class OneMessagePerVertexStore<I extends WritableComparable,
-    M extends Writable> extends SimpleMessageStore<I, M, M> {
+    M extends Writable> extends SimpleMessageStore<I, M, M>
+    implements LocalMessageStore<I, M> {
   /** Combiner for messages */
   private final Combiner<I, M> combiner;
 
@@ -90,6 +91,25 @@ public class OneMessagePerVertexStore<I extends WritableComparable,
     }
   }
 
+  @Override
+  public void addLocalMessage(int partitionId, I vertexId,
+      M message) throws IOException {
+    ConcurrentMap<I, M> partitionMap =
+        getOrCreatePartitionMap(partitionId);
+    M currentMessage = partitionMap.get(vertexId);
+    if (currentMessage == null) {
+      M newMessage = combiner.createInitialMessage();
+      currentMessage =
+          partitionMap.putIfAbsent(copyVertexId(vertexId), newMessage);
+      if (currentMessage == null) {
+        currentMessage = newMessage;
+      }
+    }
+    synchronized (currentMessage) {
+      combiner.combine(vertexId, currentMessage, message);
+    }
+  }
+
   @Override
   protected Iterable<M> getMessagesAsIterable(M message) {
     return Collections.singleton(message);
@@ -29,6 +29,7 @@ import java.util.concurrent.ConcurrentMap;
 import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
 import org.apache.giraph.bsp.CentralizedServiceWorker;
 import org.apache.giraph.factories.MessageValueFactory;
+import org.apache.giraph.utils.WritableUtils;
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.io.WritableComparable;
 
@@ -117,6 +118,20 @@ public abstract class SimpleMessageStore<I extends WritableComparable,
     return service.getVertexPartitionOwner(vertexId).getPartitionId();
   }
 
+  /**
+   * Copy a vertex id which may be reused by its owner, to use it as a key
+   * of a partition map.
+   *
+   * @param vertexId Id of vertex
+   * @return Copy of the id
+   */
+  protected I copyVertexId(I vertexId) {
+    I idCopy = config.createVertexId();
+    WritableUtils.readFieldsFromByteArray(
+        WritableUtils.writeToByteArray(vertexId), idCopy);
+    return idCopy;
+  }
+
   /**
    * If there is already a map of messages related to the partition id
    * return that map, otherwise create a new one, put it in global map and
@@ -19,7 +19,7 @@
 package org.apache.giraph.comm.messages.primitives;
 
 import org.apache.giraph.bsp.CentralizedServiceWorker;
-import org.apache.giraph.comm.messages.MessageStore;
+import org.apache.giraph.comm.messages.AsyncMessageStore;
 import org.apache.giraph.comm.messages.MessagesIterable;
 import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
 import org.apache.giraph.factories.MessageValueFactory;
@@ -51,7 +51,7 @@ import java.util.List;
  * @param <M> Message type
  */
 public class IntByteArrayMessageStore<M extends Writable>
-    implements MessageStore<IntWritable, M> {
+    implements AsyncMessageStore<IntWritable, M> {
   /** Message value factory */
   protected final MessageValueFactory<M> messageValueFactory;
   /** Map from partition id to map from vertex id to message */
@@ -154,6 +154,33 @@ public class IntByteArrayMessageStore<M extends Writable>
     }
   }
 
+  @Override
+  public void addLocalMessage(int partitionId, IntWritable vertexId,
+      M message) throws IOException {
+    Int2ObjectOpenHashMap<DataInputOutput> partitionMap =
+        map.get(partitionId);
+    synchronized (partitionMap) {
+      message.write(getDataInputOutput(partitionMap, vertexId.get())
+          .getDataOutput());
+    }
+  }
+
+  @Override
+  public Iterable<M> removeVertexMessages(
+      IntWritable vertexId) throws IOException {
+    Int2ObjectOpenHashMap<DataInputOutput> partitionMap =
+        getPartitionMap(vertexId);
+    DataInputOutput dataInputOutput;
+    synchronized (partitionMap) {
+      dataInputOutput = partitionMap.remove(vertexId.get());
+    }
+    if (dataInputOutput == null) {
+      return EmptyIterable.get();
+    } else {
+      return new MessagesIterable<M>(dataInputOutput, messageValueFactory);
+    }
+  }
+
   @Override
   public void clearPartition(int partitionId) throws IOException {
     map.get(partitionId).clear();
@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.comm.messages.primitives;
+
+import org.apache.giraph.bsp.CentralizedServiceWorker;
+import org.apache.giraph.combiner.Combiner;
+import org.apache.giraph.combiner.DoublePrimitiveCombiner;
+import org.apache.giraph.utils.EmptyIterable;
+import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.IntWritable;
+
+import com.google.common.collect.Lists;
+
+import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
+import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Special message store to be used when ids are IntWritable and messages
+ * are DoubleWritable and combiner is used.
+ * Uses fastutil primitive maps in order to decrease number of objects and
+ * get better performance. If the combiner is a
+ * {@link DoublePrimitiveCombiner}, messages are combined without wrapping
+ * them in Writables. Messages of each partition can be split into stripes
+ * (see {@link PrimitiveCombinerMessageStore}), so that several threads can
+ * add messages for the same partition concurrently. Messages can also be
+ * removed while others are added, for the asynchronous mode.
+ */
+public class IntDoubleMessageStore extends PrimitiveCombinerMessageStore<
+    IntWritable, DoubleWritable, Int2DoubleOpenHashMap> {
+  /** Primitive form of the combiner, null if it does not have one */
+  private final DoublePrimitiveCombiner primitiveCombiner;
+
+  /**
+   * Constructor
+   *
+   * @param service Service worker
+   * @param combiner Message combiner
+   */
+  public IntDoubleMessageStore(
+      CentralizedServiceWorker<IntWritable, ?, ?> service,
+      Combiner<IntWritable, DoubleWritable> combiner) {
+    this(service, combiner, 1);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param service Service worker
+   * @param combiner Message combiner
+   * @param numStripes Number of stripes per partition (rounded up to a
+   *                   power of two)
+   */
+  public IntDoubleMessageStore(
+      CentralizedServiceWorker<IntWritable, ?, ?> service,
+      Combiner<IntWritable, DoubleWritable> combiner, int numStripes) {
+    super(service, combiner, numStripes);
+    primitiveCombiner = (combiner instanceof DoublePrimitiveCombiner) ?
+        (DoublePrimitiveCombiner) combiner : null;
+  }
+
+  @Override
+  protected Int2DoubleOpenHashMap[] newStripeArray(int numStripes) {
+    return new Int2DoubleOpenHashMap[numStripes];
+  }
+
+  @Override
+  protected Int2DoubleOpenHashMap newStripe(int expectedSize) {
+    return new Int2DoubleOpenHashMap(expectedSize);
+  }
+
+  @Override
+  protected int getStripe(IntWritable vertexId) {
+    return MessageStoreStripes.getStripe(vertexId.get(), stripeBits);
+  }
+
+  @Override
+  protected void addMessage(Int2DoubleOpenHashMap stripe,
+      IntWritable vertexId, DoubleWritable message) throws IOException {
+    int id = vertexId.get();
+    if (!stripe.containsKey(id)) {
+      stripe.put(id, message.get());
+    } else if (primitiveCombiner != null) {
+      stripe.put(id, primitiveCombiner.combine(stripe.get(id),
+          message.get()));
+    } else {
+      DoubleWritable currentMessage = new DoubleWritable(stripe.get(id));
+      combiner.combine(vertexId, currentMessage, message);
+      stripe.put(id, currentMessage.get());
+    }
+  }
+
+  @Override
+  protected Iterable<DoubleWritable> removeMessage(
+      Int2DoubleOpenHashMap stripe, IntWritable vertexId) {
+    int id = vertexId.get();
+    if (!stripe.containsKey(id)) {
+      return EmptyIterable.get();
+    }
+    return Collections.singleton(new DoubleWritable(stripe.remove(id)));
+  }
+
+  @Override
+  public boolean hasMessagesForVertex(IntWritable vertexId) {
+    return getStripeMap(vertexId).containsKey(vertexId.get());
+  }
+
+  @Override
+  public Iterable<DoubleWritable> getVertexMessages(
+      IntWritable vertexId) throws IOException {
+    Int2DoubleOpenHashMap stripe = getStripeMap(vertexId);
+    if (!stripe.containsKey(vertexId.get())) {
+      return EmptyIterable.get();
+    } else {
+      return Collections.singleton(
+          new DoubleWritable(stripe.get(vertexId.get())));
+    }
+  }
+
+  @Override
+  public void clearVertexMessages(IntWritable vertexId) throws IOException {
+    getStripeMap(vertexId).remove(vertexId.get());
+  }
+
+  @Override
+  public Iterable<IntWritable> getPartitionDestinationVertices(
+      int partitionId) {
+    Int2DoubleOpenHashMap[] stripes = map.get(partitionId);
+    List<IntWritable> vertices =
+        Lists.newArrayListWithCapacity(getSize(stripes));
+    for (Int2DoubleOpenHashMap stripe : stripes) {
+      IntIterator iterator = stripe.keySet().iterator();
+      while (iterator.hasNext()) {
+        vertices.add(new IntWritable(iterator.nextInt()));
+      }
+    }
+    return vertices;
+  }
+
+  @Override
+  public void writePartition(DataOutput out,
+      int partitionId) throws IOException {
+    Int2DoubleOpenHashMap[] stripes = map.get(partitionId);
+    out.writeInt(getSize(stripes));
+    for (Int2DoubleOpenHashMap stripe : stripes) {
+      ObjectIterator<Int2DoubleMap.Entry> iterator =
+          stripe.int2DoubleEntrySet().fastIterator();
+      while (iterator.hasNext()) {
+        Int2DoubleMap.Entry entry = iterator.next();
+        out.writeInt(entry.getIntKey());
+        out.writeDouble(entry.getDoubleValue());
+      }
+    }
+  }
+
+  @Override
+  public void readFieldsForPartition(DataInput in,
+      int partitionId) throws IOException {
+    int size = in.readInt();
+    Int2DoubleOpenHashMap[] stripes = createStripes(size);
+    while (size-- > 0) {
+      int vertexId = in.readInt();
+      double message = in.readDouble();
+      stripes[MessageStoreStripes.getStripe(vertexId, stripeBits)].put(
+          vertexId, message);
+    }
+    synchronized (map) {
+      map.put(partitionId, stripes);
+    }
+  }
+}
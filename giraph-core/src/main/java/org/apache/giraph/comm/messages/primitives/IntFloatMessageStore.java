@@ -20,9 +20,7 @@ package org.apache.giraph.comm.messages.primitives;
 
 import org.apache.giraph.bsp.CentralizedServiceWorker;
 import org.apache.giraph.combiner.Combiner;
-import org.apache.giraph.comm.messages.MessageStore;
-import org.apache.giraph.partition.Partition;
-import org.apache.giraph.utils.ByteArrayVertexIdMessages;
+import org.apache.giraph.combiner.FloatPrimitiveCombiner;
 import org.apache.giraph.utils.EmptyIterable;
 import org.apache.hadoop.io.FloatWritable;
 import org.apache.hadoop.io.IntWritable;
@@ -31,7 +29,6 @@ import com.google.common.collect.Lists;
 
 import it.unimi.dsi.fastutil.ints.Int2FloatMap;
 import it.unimi.dsi.fastutil.ints.Int2FloatOpenHashMap;
-import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.ints.IntIterator;
 import it.unimi.dsi.fastutil.objects.ObjectIterator;
 
@@ -45,16 +42,17 @@ import java.util.List;
  * Special message store to be used when ids are IntWritable and messages
  * are FloatWritable and combiner is used.
  * Uses fastutil primitive maps in order to decrease number of objects and
- * get better performance.
+ * get better performance. If the combiner is a
+ * {@link FloatPrimitiveCombiner}, messages are combined without wrapping
+ * them in Writables. Messages of each partition can be split into stripes
+ * (see {@link PrimitiveCombinerMessageStore}), so that several threads can
+ * add messages for the same partition concurrently. Messages can also be
+ * removed while others are added, for the asynchronous mode.
  */
-public class IntFloatMessageStore
-    implements MessageStore<IntWritable, FloatWritable> {
-  /** Map from partition id to map from vertex id to message */
-  private final Int2ObjectOpenHashMap<Int2FloatOpenHashMap> map;
-  /** Message combiner */
-  private final Combiner<IntWritable, FloatWritable> combiner;
-  /** Service worker */
-  private final CentralizedServiceWorker<IntWritable, ?, ?> service;
+public class IntFloatMessageStore extends PrimitiveCombinerMessageStore<
+    IntWritable, FloatWritable, Int2FloatOpenHashMap> {
+  /** Primitive form of the combiner, null if it does not have one */
+  private final FloatPrimitiveCombiner primitiveCombiner;
 
   /**
    * Constructor
@@ -65,100 +63,99 @@ public class IntFloatMessageStore
   public IntFloatMessageStore(
       CentralizedServiceWorker<IntWritable, ?, ?> service,
       Combiner<IntWritable, FloatWritable> combiner) {
-    this.service = service;
-    this.combiner = combiner;
-
-    map = new Int2ObjectOpenHashMap<Int2FloatOpenHashMap>();
-    for (int partitionId : service.getPartitionStore().getPartitionIds()) {
-      Partition<IntWritable, ?, ?> partition =
-          service.getPartitionStore().getPartition(partitionId);
-      Int2FloatOpenHashMap partitionMap =
-          new Int2FloatOpenHashMap((int) partition.getVertexCount());
-      map.put(partitionId, partitionMap);
-    }
+    this(service, combiner, 1);
   }
 
   /**
-   * Get map which holds messages for partition which vertex belongs to.
+   * Constructor
    *
-   * @param vertexId Id of the vertex
-   * @return Map which holds messages for partition which vertex belongs to.
+   * @param service Service worker
+   * @param combiner Message combiner
+   * @param numStripes Number of stripes per partition (rounded up to a
+   *                   power of two)
    */
-  private Int2FloatOpenHashMap getPartitionMap(IntWritable vertexId) {
-    return map.get(service.getPartitionId(vertexId));
+  public IntFloatMessageStore(
+      CentralizedServiceWorker<IntWritable, ?, ?> service,
+      Combiner<IntWritable, FloatWritable> combiner, int numStripes) {
+    super(service, combiner, numStripes);
+    primitiveCombiner = (combiner instanceof FloatPrimitiveCombiner) ?
+        (FloatPrimitiveCombiner) combiner : null;
   }
 
   @Override
-  public void addPartitionMessages(int partitionId,
-      ByteArrayVertexIdMessages<IntWritable, FloatWritable> messages) throws
-      IOException {
-    IntWritable reusableVertexId = new IntWritable();
-    FloatWritable reusableMessage = new FloatWritable();
-    FloatWritable reusableCurrentMessage = new FloatWritable();
-
-    Int2FloatOpenHashMap partitionMap = map.get(partitionId);
-    synchronized (partitionMap) {
-      ByteArrayVertexIdMessages<IntWritable,
-          FloatWritable>.VertexIdMessageIterator
-          iterator = messages.getVertexIdMessageIterator();
-      while (iterator.hasNext()) {
-        iterator.next();
-        int vertexId = iterator.getCurrentVertexId().get();
-        float message = iterator.getCurrentMessage().get();
-        if (partitionMap.containsKey(vertexId)) {
-          reusableVertexId.set(vertexId);
-          reusableMessage.set(message);
-          reusableCurrentMessage.set(partitionMap.get(vertexId));
-          combiner.combine(reusableVertexId, reusableCurrentMessage,
-              reusableMessage);
-          message = reusableCurrentMessage.get();
-        }
-        partitionMap.put(vertexId, message);
-      }
+  protected Int2FloatOpenHashMap[] newStripeArray(int numStripes) {
+    return new Int2FloatOpenHashMap[numStripes];
+  }
+
+  @Override
+  protected Int2FloatOpenHashMap newStripe(int expectedSize) {
+    return new Int2FloatOpenHashMap(expectedSize);
+  }
+
+  @Override
+  protected int getStripe(IntWritable vertexId) {
+    return MessageStoreStripes.getStripe(vertexId.get(), stripeBits);
+  }
+
+  @Override
+  protected void addMessage(Int2FloatOpenHashMap stripe,
+      IntWritable vertexId, FloatWritable message) throws IOException {
+    int id = vertexId.get();
+    if (!stripe.containsKey(id)) {
+      stripe.put(id, message.get());
+    } else if (primitiveCombiner != null) {
+      stripe.put(id, primitiveCombiner.combine(stripe.get(id),
+          message.get()));
+    } else {
+      FloatWritable currentMessage = new FloatWritable(stripe.get(id));
+      combiner.combine(vertexId, currentMessage, message);
+      stripe.put(id, currentMessage.get());
     }
   }
 
   @Override
-  public void clearPartition(int partitionId) throws IOException {
-    map.get(partitionId).clear();
+  protected Iterable<FloatWritable> removeMessage(
+      Int2FloatOpenHashMap stripe, IntWritable vertexId) {
+    int id = vertexId.get();
+    if (!stripe.containsKey(id)) {
+      return EmptyIterable.get();
+    }
+    return Collections.singleton(new FloatWritable(stripe.remove(id)));
   }
 
   @Override
   public boolean hasMessagesForVertex(IntWritable vertexId) {
-    return getPartitionMap(vertexId).containsKey(vertexId.get());
+    return getStripeMap(vertexId).containsKey(vertexId.get());
   }
 
   @Override
   public Iterable<FloatWritable> getVertexMessages(
       IntWritable vertexId) throws IOException {
-    Int2FloatOpenHashMap partitionMap = getPartitionMap(vertexId);
-    if (!partitionMap.containsKey(vertexId.get())) {
+    Int2FloatOpenHashMap stripe = getStripeMap(vertexId);
+    if (!stripe.containsKey(vertexId.get())) {
       return EmptyIterable.get();
     } else {
       return Collections.singleton(
-          new FloatWritable(partitionMap.get(vertexId.get())));
+          new FloatWritable(stripe.get(vertexId.get())));
     }
   }
 
   @Override
   public void clearVertexMessages(IntWritable vertexId) throws IOException {
-    getPartitionMap(vertexId).remove(vertexId.get());
-  }
-
-  @Override
-  public void clearAll() throws IOException {
-    map.clear();
+    getStripeMap(vertexId).remove(vertexId.get());
   }
 
   @Override
   public Iterable<IntWritable> getPartitionDestinationVertices(
       int partitionId) {
-    Int2FloatOpenHashMap partitionMap = map.get(partitionId);
+    Int2FloatOpenHashMap[] stripes = map.get(partitionId);
     List<IntWritable> vertices =
-        Lists.newArrayListWithCapacity(partitionMap.size());
-    IntIterator iterator = partitionMap.keySet().iterator();
-    while (iterator.hasNext()) {
-      vertices.add(new IntWritable(iterator.nextInt()));
+        Lists.newArrayListWithCapacity(getSize(stripes));
+    for (Int2FloatOpenHashMap stripe : stripes) {
+      IntIterator iterator = stripe.keySet().iterator();
+      while (iterator.hasNext()) {
+        vertices.add(new IntWritable(iterator.nextInt()));
+      }
     }
     return vertices;
   }
@@ -166,14 +163,16 @@ public class IntFloatMessageStore
   @Override
   public void writePartition(DataOutput out,
       int partitionId) throws IOException {
-    Int2FloatOpenHashMap partitionMap = map.get(partitionId);
-    out.writeInt(partitionMap.size());
-    ObjectIterator<Int2FloatMap.Entry> iterator =
-        partitionMap.int2FloatEntrySet().fastIterator();
-    while (iterator.hasNext()) {
-      Int2FloatMap.Entry entry = iterator.next();
-      out.writeInt(entry.getIntKey());
-      out.writeFloat(entry.getFloatValue());
+    Int2FloatOpenHashMap[] stripes = map.get(partitionId);
+    out.writeInt(getSize(stripes));
+    for (Int2FloatOpenHashMap stripe : stripes) {
+      ObjectIterator<Int2FloatMap.Entry> iterator =
+          stripe.int2FloatEntrySet().fastIterator();
+      while (iterator.hasNext()) {
+        Int2FloatMap.Entry entry = iterator.next();
+        out.writeInt(entry.getIntKey());
+        out.writeFloat(entry.getFloatValue());
+      }
     }
   }
 
@@ -181,14 +180,15 @@ public class IntFloatMessageStore
   public void readFieldsForPartition(DataInput in,
       int partitionId) throws IOException {
     int size = in.readInt();
-    Int2FloatOpenHashMap partitionMap = new Int2FloatOpenHashMap(size);
+    Int2FloatOpenHashMap[] stripes = createStripes(size);
     while (size-- > 0) {
       int vertexId = in.readInt();
       float message = in.readFloat();
-      partitionMap.put(vertexId, message);
+      stripes[MessageStoreStripes.getStripe(vertexId, stripeBits)].put(
+          vertexId, message);
     }
     synchronized (map) {
-      map.put(partitionId, partitionMap);
+      map.put(partitionId, stripes);
     }
   }
 }
@@ -20,16 +20,13 @@ package org.apache.giraph.comm.messages.primitives;
 
 import org.apache.giraph.bsp.CentralizedServiceWorker;
 import org.apache.giraph.combiner.Combiner;
-import org.apache.giraph.comm.messages.MessageStore;
-import org.apache.giraph.partition.Partition;
-import org.apache.giraph.utils.ByteArrayVertexIdMessages;
+import org.apache.giraph.combiner.DoublePrimitiveCombiner;
 import org.apache.giraph.utils.EmptyIterable;
 import org.apache.hadoop.io.DoubleWritable;
 import org.apache.hadoop.io.LongWritable;
 
 import com.google.common.collect.Lists;
 
-import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.longs.Long2DoubleMap;
 import it.unimi.dsi.fastutil.longs.Long2DoubleOpenHashMap;
 import it.unimi.dsi.fastutil.longs.LongIterator;
@@ -45,16 +42,17 @@ import java.util.List;
  * Special message store to be used when ids are LongWritable and messages
  * are DoubleWritable and combiner is used.
  * Uses fastutil primitive maps in order to decrease number of objects and
- * get better performance.
+ * get better performance. If the combiner is a
+ * {@link DoublePrimitiveCombiner}, messages are combined without wrapping
+ * them in Writables. Messages of each partition can be split into stripes
+ * (see {@link PrimitiveCombinerMessageStore}), so that several threads can
+ * add messages for the same partition concurrently. Messages can also be
+ * removed while others are added, for the asynchronous mode.
  */
-public class LongDoubleMessageStore
-    implements MessageStore<LongWritable, DoubleWritable> {
-  /** Map from partition id to map from vertex id to message */
-  private final Int2ObjectOpenHashMap<Long2DoubleOpenHashMap> map;
-  /** Message combiner */
-  private final Combiner<LongWritable, DoubleWritable> combiner;
-  /** Service worker */
-  private final CentralizedServiceWorker<LongWritable, ?, ?> service;
+public class LongDoubleMessageStore extends PrimitiveCombinerMessageStore<
+    LongWritable, DoubleWritable, Long2DoubleOpenHashMap> {
+  /** Primitive form of the combiner, null if it does not have one */
+  private final DoublePrimitiveCombiner primitiveCombiner;
 
   /**
    * Constructor
@@ -65,100 +63,99 @@ public class LongDoubleMessageStore
   public LongDoubleMessageStore(
       CentralizedServiceWorker<LongWritable, ?, ?> service,
       Combiner<LongWritable, DoubleWritable> combiner) {
-    this.service = service;
-    this.combiner = combiner;
-
-    map = new Int2ObjectOpenHashMap<Long2DoubleOpenHashMap>();
-    for (int partitionId : service.getPartitionStore().getPartitionIds()) {
-      Partition<LongWritable, ?, ?> partition =
-          service.getPartitionStore().getPartition(partitionId);
-      Long2DoubleOpenHashMap partitionMap =
-          new Long2DoubleOpenHashMap((int) partition.getVertexCount());
-      map.put(partitionId, partitionMap);
-    }
+    this(service, combiner, 1);
   }
 
   /**
-   * Get map which holds messages for partition which vertex belongs to.
+   * Constructor
    *
-   * @param vertexId Id of the vertex
-   * @return Map which holds messages for partition which vertex belongs to.
+   * @param service Service worker
+   * @param combiner Message combiner
+   * @param numStripes Number of stripes per partition (rounded up to a
+   *                   power of two)
    */
-  private Long2DoubleOpenHashMap getPartitionMap(LongWritable vertexId) {
-    return map.get(service.getPartitionId(vertexId));
+  public LongDoubleMessageStore(
+      CentralizedServiceWorker<LongWritable, ?, ?> service,
+      Combiner<LongWritable, DoubleWritable> combiner, int numStripes) {
+    super(service, combiner, numStripes);
+    primitiveCombiner = (combiner instanceof DoublePrimitiveCombiner) ?
+        (DoublePrimitiveCombiner) combiner : null;
   }
 
   @Override
-  public void addPartitionMessages(int partitionId,
-      ByteArrayVertexIdMessages<LongWritable, DoubleWritable> messages) throws
-      IOException {
-    LongWritable reusableVertexId = new LongWritable();
-    DoubleWritable reusableMessage = new DoubleWritable();
-    DoubleWritable reusableCurrentMessage = new DoubleWritable();
-
-    Long2DoubleOpenHashMap partitionMap = map.get(partitionId);
-    synchronized (partitionMap) {
-      ByteArrayVertexIdMessages<LongWritable,
-          DoubleWritable>.VertexIdMessageIterator
-          iterator = messages.getVertexIdMessageIterator();
-      while (iterator.hasNext()) {
-        iterator.next();
-        long vertexId = iterator.getCurrentVertexId().get();
-        double message = iterator.getCurrentMessage().get();
-        if (partitionMap.containsKey(vertexId)) {
-          reusableVertexId.set(vertexId);
-          reusableMessage.set(message);
-          reusableCurrentMessage.set(partitionMap.get(vertexId));
-          combiner.combine(reusableVertexId, reusableCurrentMessage,
-              reusableMessage);
-          message = reusableCurrentMessage.get();
-        }
-        partitionMap.put(vertexId, message);
-      }
+  protected Long2DoubleOpenHashMap[] newStripeArray(int numStripes) {
+    return new Long2DoubleOpenHashMap[numStripes];
+  }
+
+  @Override
+  protected Long2DoubleOpenHashMap newStripe(int expectedSize) {
+    return new Long2DoubleOpenHashMap(expectedSize);
+  }
+
+  @Override
+  protected int getStripe(LongWritable vertexId) {
+    return MessageStoreStripes.getStripe(vertexId.get(), stripeBits);
+  }
+
+  @Override
+  protected void addMessage(Long2DoubleOpenHashMap stripe,
+      LongWritable vertexId, DoubleWritable message) throws IOException {
+    long id = vertexId.get();
+    if (!stripe.containsKey(id)) {
+      stripe.put(id, message.get());
+    } else if (primitiveCombiner != null) {
+      stripe.put(id, primitiveCombiner.combine(stripe.get(id),
+          message.get()));
+    } else {
+      DoubleWritable currentMessage = new DoubleWritable(stripe.get(id));
+      combiner.combine(vertexId, currentMessage, message);
+      stripe.put(id, currentMessage.get());
     }
   }
 
   @Override
-  public void clearPartition(int partitionId) throws IOException {
-    map.get(partitionId).clear();
+  protected Iterable<DoubleWritable> removeMessage(
+      Long2DoubleOpenHashMap stripe, LongWritable vertexId) {
+    long id = vertexId.get();
+    if (!stripe.containsKey(id)) {
+      return EmptyIterable.get();
+    }
+    return Collections.singleton(new DoubleWritable(stripe.remove(id)));
   }
 
   @Override
   public boolean hasMessagesForVertex(LongWritable vertexId) {
-    return getPartitionMap(vertexId).containsKey(vertexId.get());
+    return getStripeMap(vertexId).containsKey(vertexId.get());
   }
 
   @Override
   public Iterable<DoubleWritable> getVertexMessages(
       LongWritable vertexId) throws IOException {
-    Long2DoubleOpenHashMap partitionMap = getPartitionMap(vertexId);
-    if (!partitionMap.containsKey(vertexId.get())) {
+    Long2DoubleOpenHashMap stripe = getStripeMap(vertexId);
+    if (!stripe.containsKey(vertexId.get())) {
       return EmptyIterable.get();
     } else {
       return Collections.singleton(
-          new DoubleWritable(partitionMap.get(vertexId.get())));
+          new DoubleWritable(stripe.get(vertexId.get())));
     }
   }
 
   @Override
   public void clearVertexMessages(LongWritable vertexId) throws IOException {
-    getPartitionMap(vertexId).remove(vertexId.get());
-  }
-
-  @Override
-  public void clearAll() throws IOException {
-    map.clear();
+    getStripeMap(vertexId).remove(vertexId.get());
   }
 
   @Override
   public Iterable<LongWritable> getPartitionDestinationVertices(
       int partitionId) {
-    Long2DoubleOpenHashMap partitionMap = map.get(partitionId);
+    Long2DoubleOpenHashMap[] stripes = map.get(partitionId);
     List<LongWritable> vertices =
-        Lists.newArrayListWithCapacity(partitionMap.size());
-    LongIterator iterator = partitionMap.keySet().iterator();
-    while (iterator.hasNext()) {
-      vertices.add(new LongWritable(iterator.nextLong()));
+        Lists.newArrayListWithCapacity(getSize(stripes));
+    for (Long2DoubleOpenHashMap stripe : stripes) {
+      LongIterator iterator = stripe.keySet().iterator();
+      while (iterator.hasNext()) {
+        vertices.add(new LongWritable(iterator.nextLong()));
+      }
     }
     return vertices;
   }
@@ -166,14 +163,16 @@ public class LongDoubleMessageStore
   @Override
   public void writePartition(DataOutput out,
       int partitionId) throws IOException {
-    Long2DoubleOpenHashMap partitionMap = map.get(partitionId);
-    out.writeInt(partitionMap.size());
-    ObjectIterator<Long2DoubleMap.Entry> iterator =
-        partitionMap.long2DoubleEntrySet().fastIterator();
-    while (iterator.hasNext()) {
-      Long2DoubleMap.Entry entry = iterator.next();
-      out.writeLong(entry.getLongKey());
-      out.writeDouble(entry.getDoubleValue());
+    Long2DoubleOpenHashMap[] stripes = map.get(partitionId);
+    out.writeInt(getSize(stripes));
+    for (Long2DoubleOpenHashMap stripe : stripes) {
+      ObjectIterator<Long2DoubleMap.Entry> iterator =
+          stripe.long2DoubleEntrySet().fastIterator();
+      while (iterator.hasNext()) {
+        Long2DoubleMap.Entry entry = iterator.next();
+        out.writeLong(entry.getLongKey());
+        out.writeDouble(entry.getDoubleValue());
+      }
     }
   }
 
@@ -181,14 +180,15 @@ public class LongDoubleMessageStore
   public void readFieldsForPartition(DataInput in,
       int partitionId) throws IOException {
     int size = in.readInt();
-    Long2DoubleOpenHashMap partitionMap = new Long2DoubleOpenHashMap(size);
+    Long2DoubleOpenHashMap[] stripes = createStripes(size);
     while (size-- > 0) {
       long vertexId = in.readLong();
       double message = in.readDouble();
-      partitionMap.put(vertexId, message);
+      stripes[MessageStoreStripes.getStripe(vertexId, stripeBits)].put(
+          vertexId, message);
     }
     synchronized (map) {
-      map.put(partitionId, partitionMap);
+      map.put(partitionId, stripes);
     }
   }
 }
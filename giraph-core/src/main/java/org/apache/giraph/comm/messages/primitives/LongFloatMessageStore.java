@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.comm.messages.primitives;
+
+import org.apache.giraph.bsp.CentralizedServiceWorker;
+import org.apache.giraph.combiner.Combiner;
+import org.apache.giraph.combiner.FloatPrimitiveCombiner;
+import org.apache.giraph.utils.EmptyIterable;
+import org.apache.hadoop.io.FloatWritable;
+import org.apache.hadoop.io.LongWritable;
+
+import com.google.common.collect.Lists;
+
+import it.unimi.dsi.fastutil.longs.Long2FloatMap;
+import it.unimi.dsi.fastutil.longs.Long2FloatOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Special message store to be used when ids are LongWritable and messages
+ * are FloatWritable and combiner is used.
+ * Uses fastutil primitive maps in order to decrease number of objects and
+ * get better performance. If the combiner is a
+ * {@link FloatPrimitiveCombiner}, messages are combined without wrapping
+ * them in Writables. Messages of each partition can be split into stripes
+ * (see {@link PrimitiveCombinerMessageStore}), so that several threads can
+ * add messages for the same partition concurrently. Messages can also be
+ * removed while others are added, for the asynchronous mode.
+ */
+public class LongFloatMessageStore extends PrimitiveCombinerMessageStore<
+    LongWritable, FloatWritable, Long2FloatOpenHashMap> {
+  /** Primitive form of the combiner, null if it does not have one */
+  private final FloatPrimitiveCombiner primitiveCombiner;
+
+  /**
+   * Constructor
+   *
+   * @param service Service worker
+   * @param combiner Message combiner
+   */
+  public LongFloatMessageStore(
+      CentralizedServiceWorker<LongWritable, ?, ?> service,
+      Combiner<LongWritable, FloatWritable> combiner) {
+    this(service, combiner, 1);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param service Service worker
+   * @param combiner Message combiner
+   * @param numStripes Number of stripes per partition (rounded up to a
+   *                   power of two)
+   */
+  public LongFloatMessageStore(
+      CentralizedServiceWorker<LongWritable, ?, ?> service,
+      Combiner<LongWritable, FloatWritable> combiner, int numStripes) {
+    super(service, combiner, numStripes);
+    primitiveCombiner = (combiner instanceof FloatPrimitiveCombiner) ?
+        (FloatPrimitiveCombiner) combiner : null;
+  }
+
+  @Override
+  protected Long2FloatOpenHashMap[] newStripeArray(int numStripes) {
+    return new Long2FloatOpenHashMap[numStripes];
+  }
+
+  @Override
+  protected Long2FloatOpenHashMap newStripe(int expectedSize) {
+    return new Long2FloatOpenHashMap(expectedSize);
+  }
+
+  @Override
+  protected int getStripe(LongWritable vertexId) {
+    return MessageStoreStripes.getStripe(vertexId.get(), stripeBits);
+  }
+
+  @Override
+  protected void addMessage(Long2FloatOpenHashMap stripe,
+      LongWritable vertexId, FloatWritable message) throws IOException {
+    long id = vertexId.get();
+    if (!stripe.containsKey(id)) {
+      stripe.put(id, message.get());
+    } else if (primitiveCombiner != null) {
+      stripe.put(id, primitiveCombiner.combine(stripe.get(id),
+          message.get()));
+    } else {
+      FloatWritable currentMessage = new FloatWritable(stripe.get(id));
+      combiner.combine(vertexId, currentMessage, message);
+      stripe.put(id, currentMessage.get());
+    }
+  }
+
+  @Override
+  protected Iterable<FloatWritable> removeMessage(
+      Long2FloatOpenHashMap stripe, LongWritable vertexId) {
+    long id = vertexId.get();
+    if (!stripe.containsKey(id)) {
+      return EmptyIterable.get();
+    }
+    return Collections.singleton(new FloatWritable(stripe.remove(id)));
+  }
+
+  @Override
+  public boolean hasMessagesForVertex(LongWritable vertexId) {
+    return getStripeMap(vertexId).containsKey(vertexId.get());
+  }
+
+  @Override
+  public Iterable<FloatWritable> getVertexMessages(
+      LongWritable vertexId) throws IOException {
+    Long2FloatOpenHashMap stripe = getStripeMap(vertexId);
+    if (!stripe.containsKey(vertexId.get())) {
+      return EmptyIterable.get();
+    } else {
+      return Collections.singleton(
+          new FloatWritable(stripe.get(vertexId.get())));
+    }
+  }
+
+  @Override
+  public void clearVertexMessages(LongWritable vertexId) throws IOException {
+    getStripeMap(vertexId).remove(vertexId.get());
+  }
+
+  @Override
+  public Iterable<LongWritable> getPartitionDestinationVertices(
+      int partitionId) {
+    Long2FloatOpenHashMap[] stripes = map.get(partitionId);
+    List<LongWritable> vertices =
+        Lists.newArrayListWithCapacity(getSize(stripes));
+    for (Long2FloatOpenHashMap stripe : stripes) {
+      LongIterator iterator = stripe.keySet().iterator();
+      while (iterator.hasNext()) {
+        vertices.add(new LongWritable(iterator.nextLong()));
+      }
+    }
+    return vertices;
+  }
+
+  @Override
+  public void writePartition(DataOutput out,
+      int partitionId) throws IOException {
+    Long2FloatOpenHashMap[] stripes = map.get(partitionId);
+    out.writeInt(getSize(stripes));
+    for (Long2FloatOpenHashMap stripe : stripes) {
+      ObjectIterator<Long2FloatMap.Entry> iterator =
+          stripe.long2FloatEntrySet().fastIterator();
+      while (iterator.hasNext()) {
+        Long2FloatMap.Entry entry = iterator.next();
+        out.writeLong(entry.getLongKey());
+        out.writeFloat(entry.getFloatValue());
+      }
+    }
+  }
+
+  @Override
+  public void readFieldsForPartition(DataInput in,
+      int partitionId) throws IOException {
+    int size = in.readInt();
+    Long2FloatOpenHashMap[] stripes = createStripes(size);
+    while (size-- > 0) {
+      long vertexId = in.readLong();
+      float message = in.readFloat();
+      stripes[MessageStoreStripes.getStripe(vertexId, stripeBits)].put(
+          vertexId, message);
+    }
+    synchronized (map) {
+      map.put(partitionId, stripes);
+    }
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.comm.messages.primitives;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Helpers for primitive message stores which split the messages of each
+ * partition into stripes with their own locks, so several threads can add
+ * messages for the same partition at once. Stripes are picked with the high
+ * bits of a multiplicative hash of the vertex id, which are independent from
+ * the low bits used to place ids inside fastutil maps.
+ */
+public class MessageStoreStripes {
+  /** Multiplier for hashing long ids (golden ratio) */
+  private static final long LONG_MULTIPLIER = 0x9E3779B97F4A7C15L;
+  /** Multiplier for hashing int ids (golden ratio) */
+  private static final int INT_MULTIPLIER = 0x9E3779B9;
+
+  /** Do not instantiate. */
+  private MessageStoreStripes() { }
+
+  /**
+   * Get the number of bits of the stripe index, rounding the number of
+   * stripes up to a power of two.
+   *
+   * @param numStripes Requested number of stripes
+   * @return Number of bits of the stripe index
+   */
+  public static int getStripeBits(int numStripes) {
+    Preconditions.checkArgument(numStripes > 0,
+        "getStripeBits: Number of stripes must be positive, got %s",
+        numStripes);
+    return Integer.SIZE - Integer.numberOfLeadingZeros(numStripes - 1);
+  }
+
+  /**
+   * Get the stripe of a long vertex id.
+   *
+   * @param vertexId Vertex id
+   * @param stripeBits Number of bits of the stripe index
+   * @return Stripe index
+   */
+  public static int getStripe(long vertexId, int stripeBits) {
+    return (stripeBits == 0) ? 0 :
+        (int) ((vertexId * LONG_MULTIPLIER) >>> (Long.SIZE - stripeBits));
+  }
+
+  /**
+   * Get the stripe of an int vertex id.
+   *
+   * @param vertexId Vertex id
+   * @param stripeBits Number of bits of the stripe index
+   * @return Stripe index
+   */
+  public static int getStripe(int vertexId, int stripeBits) {
+    return (stripeBits == 0) ? 0 :
+        (vertexId * INT_MULTIPLIER) >>> (Integer.SIZE - stripeBits);
+  }
+}
@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.comm.messages.primitives;
+
+import org.apache.giraph.bsp.CentralizedServiceWorker;
+import org.apache.giraph.combiner.Combiner;
+import org.apache.giraph.comm.messages.AsyncMessageStore;
+import org.apache.giraph.partition.Partition;
+import org.apache.giraph.utils.ByteArrayVertexIdMessages;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparable;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Base class of the message stores which keep one combined message per
+ * vertex in fastutil primitive maps. Messages of each partition are split
+ * into stripes (see {@link MessageStoreStripes}), each of them a map from
+ * vertex id to message, so that several threads can add messages for the
+ * same partition concurrently. A batch of messages for a partition with a
+ * single stripe takes its lock once rather than once per message.
+ *
+ * @param <I> Vertex id
+ * @param <M> Message data
+ * @param <S> Map from vertex id to message of a stripe
+ */
+public abstract class PrimitiveCombinerMessageStore<
+    I extends WritableComparable, M extends Writable, S extends Map<?, ?>>
+    implements AsyncMessageStore<I, M> {
+  /**
+   * Map from partition id to stripes of map from vertex id to message
+   * (synchronize on a stripe when adding to it)
+   */
+  protected final Int2ObjectOpenHashMap<S[]> map;
+  /** Message combiner */
+  protected final Combiner<I, M> combiner;
+  /** Service worker */
+  protected final CentralizedServiceWorker<I, ?, ?> service;
+  /** Number of bits of the stripe index */
+  protected final int stripeBits;
+
+  /**
+   * Constructor
+   *
+   * @param service Service worker
+   * @param combiner Message combiner
+   * @param numStripes Number of stripes per partition (rounded up to a
+   *                   power of two)
+   */
+  public PrimitiveCombinerMessageStore(
+      CentralizedServiceWorker<I, ?, ?> service, Combiner<I, M> combiner,
+      int numStripes) {
+    this.service = service;
+    this.combiner = combiner;
+    stripeBits = MessageStoreStripes.getStripeBits(numStripes);
+
+    map = new Int2ObjectOpenHashMap<S[]>();
+    for (int partitionId : service.getPartitionStore().getPartitionIds()) {
+      Partition<I, ?, ?> partition =
+          service.getPartitionStore().getPartition(partitionId);
+      map.put(partitionId, createStripes((int) partition.getVertexCount()));
+    }
+  }
+
+  /**
+   * Create an array of stripes.
+   *
+   * @param numStripes Number of stripes
+   * @return Empty array of stripes
+   */
+  protected abstract S[] newStripeArray(int numStripes);
+
+  /**
+   * Create a stripe.
+   *
+   * @param expectedSize Expected number of vertices with messages
+   * @return Empty stripe
+   */
+  protected abstract S newStripe(int expectedSize);
+
+  /**
+   * Get the stripe a vertex belongs to.
+   *
+   * @param vertexId Id of the vertex
+   * @return Stripe index
+   */
+  protected abstract int getStripe(I vertexId);
+
+  /**
+   * Add a message for a vertex to its stripe, combining it with the message
+   * already there. The caller holds the lock of the stripe.
+   *
+   * @param stripe Stripe of the vertex
+   * @param vertexId Id of the vertex
+   * @param message Message to add
+   * @throws IOException
+   */
+  protected abstract void addMessage(S stripe, I vertexId, M message)
+    throws IOException;
+
+  /**
+   * Remove the message of a vertex from its stripe. The caller holds the
+   * lock of the stripe.
+   *
+   * @param stripe Stripe of the vertex
+   * @param vertexId Id of the vertex
+   * @return Message of the vertex, empty if it has none
+   */
+  protected abstract Iterable<M> removeMessage(S stripe, I vertexId);
+
+  /**
+   * Create the stripes of a partition.
+   *
+   * @param expectedSize Expected number of vertices with messages
+   * @return Stripes of the partition
+   */
+  protected S[] createStripes(int expectedSize) {
+    S[] stripes = newStripeArray(1 << stripeBits);
+    for (int i = 0; i < stripes.length; ++i) {
+      stripes[i] = newStripe(expectedSize >> stripeBits);
+    }
+    return stripes;
+  }
+
+  /**
+   * Get map which holds messages for the stripe which vertex belongs to.
+   *
+   * @param vertexId Id of the vertex
+   * @return Map which holds messages for the stripe which vertex belongs to.
+   */
+  protected S getStripeMap(I vertexId) {
+    return map.get(service.getPartitionId(vertexId))[getStripe(vertexId)];
+  }
+
+  /**
+   * Get the number of vertices with messages in a partition.
+   *
+   * @param stripes Stripes of the partition
+   * @return Number of vertices with messages
+   */
+  protected int getSize(S[] stripes) {
+    int size = 0;
+    for (S stripe : stripes) {
+      size += stripe.size();
+    }
+    return size;
+  }
+
+  @Override
+  public void addPartitionMessages(int partitionId,
+      ByteArrayVertexIdMessages<I, M> messages) throws IOException {
+    S[] stripes = map.get(partitionId);
+    ByteArrayVertexIdMessages<I, M>.VertexIdMessageIterator
+        iterator = messages.getVertexIdMessageIterator();
+    if (stripeBits == 0) {
+      synchronized (stripes[0]) {
+        while (iterator.hasNext()) {
+          iterator.next();
+          addMessage(stripes[0], iterator.getCurrentVertexId(),
+              iterator.getCurrentMessage());
+        }
+      }
+    } else {
+      while (iterator.hasNext()) {
+        iterator.next();
+        I vertexId = iterator.getCurrentVertexId();
+        S stripe = stripes[getStripe(vertexId)];
+        synchronized (stripe) {
+          addMessage(stripe, vertexId, iterator.getCurrentMessage());
+        }
+      }
+    }
+  }
+
+  @Override
+  public void addLocalMessage(int partitionId, I vertexId,
+      M message) throws IOException {
+    S stripe = map.get(partitionId)[getStripe(vertexId)];
+    synchronized (stripe) {
+      addMessage(stripe, vertexId, message);
+    }
+  }
+
+  @Override
+  public Iterable<M> removeVertexMessages(I vertexId) throws IOException {
+    S stripe = getStripeMap(vertexId);
+    synchronized (stripe) {
+      return removeMessage(stripe, vertexId);
+    }
+  }
+
+  @Override
+  public void clearPartition(int partitionId) throws IOException {
+    for (S stripe : map.get(partitionId)) {
+      stripe.clear();
+    }
+  }
+
+  @Override
+  public void clearAll() throws IOException {
+    map.clear();
+  }
+}
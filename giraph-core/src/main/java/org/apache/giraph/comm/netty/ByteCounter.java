@@ -64,6 +64,14 @@ public class ByteCounter extends SimpleChannelHandler implements
   private final AtomicLong bytesReceived = new AtomicLong();
   /** Total received requests */
   private final AtomicLong receivedRequests = new AtomicLong();
+  /** Uncompressed bytes of the compressed requests sent */
+  private final AtomicLong rawBytesCompressed = new AtomicLong();
+  /** Compressed bytes of the compressed requests sent */
+  private final AtomicLong compressedBytesSent = new AtomicLong();
+  /** Compressed bytes of the compressed requests received */
+  private final AtomicLong compressedBytesReceived = new AtomicLong();
+  /** Uncompressed bytes of the compressed requests received */
+  private final AtomicLong rawBytesDecompressed = new AtomicLong();
   /** Start time (for bandwidth calculation) */
   private final AtomicLong startMsecs = new AtomicLong(TIME.getMilliseconds());
   /** Last updated msecs for getMetricsWindow */
@@ -144,6 +152,32 @@ public class ByteCounter extends SimpleChannelHandler implements
     sentRequests.set(0);
     bytesReceived.set(0);
     receivedRequests.set(0);
+    rawBytesCompressed.set(0);
+    compressedBytesSent.set(0);
+    compressedBytesReceived.set(0);
+    rawBytesDecompressed.set(0);
+  }
+
+  /**
+   * Keep track of a request compressed before being sent.
+   *
+   * @param rawBytes Uncompressed bytes of the request
+   * @param compressedBytes Compressed bytes of the request
+   */
+  public void addCompressedSent(long rawBytes, long compressedBytes) {
+    rawBytesCompressed.addAndGet(rawBytes);
+    compressedBytesSent.addAndGet(compressedBytes);
+  }
+
+  /**
+   * Keep track of a compressed request which was received.
+   *
+   * @param compressedBytes Compressed bytes of the request
+   * @param rawBytes Uncompressed bytes of the request
+   */
+  public void addDecompressedReceived(long compressedBytes, long rawBytes) {
+    compressedBytesReceived.addAndGet(compressedBytes);
+    rawBytesDecompressed.addAndGet(rawBytes);
   }
 
   /**
@@ -169,6 +203,22 @@ public class ByteCounter extends SimpleChannelHandler implements
     return bytesReceived.get();
   }
 
+  public long getRawBytesCompressed() {
+    return rawBytesCompressed.get();
+  }
+
+  public long getCompressedBytesSent() {
+    return compressedBytesSent.get();
+  }
+
+  public long getCompressedBytesReceived() {
+    return compressedBytesReceived.get();
+  }
+
+  public long getRawBytesDecompressed() {
+    return rawBytesDecompressed.get();
+  }
+
   /**
    * @return Mbytes sent / sec in the current interval
    */
@@ -197,6 +247,17 @@ public class ByteCounter extends SimpleChannelHandler implements
         (curSentRequests == 0) ? 0 : mBytesSent / curSentRequests;
     double mBytesReceivedPerReq =
         (curReceivedRequests == 0) ? 0 : mBytesReceived / curReceivedRequests;
+    String compression = "";
+    if (rawBytesCompressed.get() > 0 || rawBytesDecompressed.get() > 0) {
+      compression = ", compressed MBytes sent = " +
+          DOUBLE_FORMAT.format(compressedBytesSent.get() / MEGABYTE) +
+          " (raw " +
+          DOUBLE_FORMAT.format(rawBytesCompressed.get() / MEGABYTE) +
+          "), compressed MBytes received = " +
+          DOUBLE_FORMAT.format(compressedBytesReceived.get() / MEGABYTE) +
+          " (raw " +
+          DOUBLE_FORMAT.format(rawBytesDecompressed.get() / MEGABYTE) + ")";
+    }
     return "MBytes/sec sent = " +
         DOUBLE_FORMAT.format(getMbytesPerSecSent()) +
         ", MBytes/sec received = " +
@@ -208,7 +269,7 @@ public class ByteCounter extends SimpleChannelHandler implements
         ", ave received req MBytes = " +
         DOUBLE_FORMAT.format(mBytesReceivedPerReq) +
         ", secs waited = " +
-        ((TIME.getMilliseconds() - startMsecs.get()) / 1000f);
+        ((TIME.getMilliseconds() - startMsecs.get()) / 1000f) + compression;
   }
 
   /**
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.comm.netty;
+
+import org.apache.giraph.conf.GiraphConstants;
+import org.apache.hadoop.conf.Configuration;
+
+import com.google.common.collect.MapMaker;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client side of the credit-based flow control (see
+ * {@link GiraphConstants#CREDIT_FLOW_CONTROL}). Keeps track, per
+ * destination task, of the bytes of open requests and of the credits the
+ * destination granted in its last response.
+ */
+public class CreditFlowControl {
+  /** Credits of a destination before its first response */
+  private final long initialCreditBytes;
+  /** Bytes of open requests per destination task id */
+  private final ConcurrentMap<Integer, AtomicLong> openRequestBytes =
+      new MapMaker().makeMap();
+  /** Last credits granted per destination task id */
+  private final ConcurrentMap<Integer, AtomicLong> creditBytes =
+      new MapMaker().makeMap();
+
+  /**
+   * Constructor
+   *
+   * @param conf Configuration
+   */
+  public CreditFlowControl(Configuration conf) {
+    initialCreditBytes = GiraphConstants.MAX_CREDIT_BYTES.get(conf);
+  }
+
+  /**
+   * Get the counter of a destination in a map, creating it if needed.
+   *
+   * @param map Map of counters
+   * @param taskId Destination task id
+   * @param initialValue Value of a new counter
+   * @return Counter of the destination
+   */
+  private static AtomicLong getCounter(ConcurrentMap<Integer, AtomicLong> map,
+      int taskId, long initialValue) {
+    AtomicLong counter = map.get(taskId);
+    if (counter == null) {
+      counter = new AtomicLong(initialValue);
+      AtomicLong oldCounter = map.putIfAbsent(taskId, counter);
+      if (oldCounter != null) {
+        counter = oldCounter;
+      }
+    }
+    return counter;
+  }
+
+  /**
+   * Reserve the credits of a request to a destination, if it can be sent.
+   * It can if it fits in the credits, or if there is no open request to
+   * the destination (so a request larger than the credits is still sent).
+   * Checking and reserving is atomic, so concurrent senders cannot exceed
+   * the credits together.
+   *
+   * @param taskId Destination task id
+   * @param requestBytes Bytes of the request
+   * @return True iff the request can be sent, its bytes are then counted
+   *         as open
+   */
+  public boolean tryReserveCredits(int taskId, long requestBytes) {
+    AtomicLong openBytes = getCounter(openRequestBytes, taskId, 0);
+    while (true) {
+      long currentOpenBytes = openBytes.get();
+      if (currentOpenBytes != 0 && currentOpenBytes + requestBytes >
+          getCounter(creditBytes, taskId, initialCreditBytes).get()) {
+        return false;
+      }
+      if (openBytes.compareAndSet(currentOpenBytes,
+          currentOpenBytes + requestBytes)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Keep track of a request completed by a destination.
+   *
+   * @param taskId Destination task id
+   * @param requestBytes Bytes of the request
+   * @param grantedBytes Credits granted by the destination in its response
+   */
+  public void requestCompleted(int taskId, long requestBytes,
+      long grantedBytes) {
+    getCounter(openRequestBytes, taskId, 0).addAndGet(-requestBytes);
+    getCounter(creditBytes, taskId, initialCreditBytes).set(grantedBytes);
+  }
+
+  /**
+   * Get the bytes of open requests to a destination.
+   *
+   * @param taskId Destination task id
+   * @return Bytes of open requests
+   */
+  public long getOpenRequestBytes(int taskId) {
+    return getCounter(openRequestBytes, taskId, 0).get();
+  }
+
+  /**
+   * Get the credits last granted by a destination.
+   *
+   * @param taskId Destination task id
+   * @return Credits in bytes
+   */
+  public long getCreditBytes(int taskId) {
+    return getCounter(creditBytes, taskId, initialCreditBytes).get();
+  }
+}
@@ -72,6 +72,8 @@ import java.util.concurrent.atomic.AtomicLong;
 
 import static org.apache.giraph.conf.GiraphConstants.CLIENT_RECEIVE_BUFFER_SIZE;
 import static org.apache.giraph.conf.GiraphConstants.CLIENT_SEND_BUFFER_SIZE;
+import static org.apache.giraph.conf.GiraphConstants.CREDIT_FLOW_CONTROL;
+import static org.apache.giraph.conf.GiraphConstants.MAX_OPEN_REQUEST_BYTES;
 import static org.apache.giraph.conf.GiraphConstants.MAX_REQUEST_MILLISECONDS;
 import static org.apache.giraph.conf.GiraphConstants.MAX_RESOLVE_ADDRESS_ATTEMPTS;
 import static org.apache.giraph.conf.GiraphConstants.NETTY_CLIENT_EXECUTION_AFTER_HANDLER;
@@ -143,6 +145,12 @@ public class NettyClient {
   private final boolean limitNumberOfOpenRequests;
   /** Maximum number of requests without confirmation we can have */
   private final int maxNumberOfOpenRequests;
+  /** Maximum bytes of requests without confirmation (0 for no limit) */
+  private final long maxOpenRequestBytes;
+  /** Bytes of requests without confirmation (null if there is no limit) */
+  private final AtomicLong openRequestBytes;
+  /** Credits of each destination (null if there is no flow control) */
+  private final CreditFlowControl creditFlowControl;
   /** Maximum number of connection failures */
   private final int maxConnectionFailures;
   /** Maximum number of milliseconds for a request */
@@ -205,6 +213,27 @@ public class NettyClient {
       maxNumberOfOpenRequests = -1;
     }
 
+    maxOpenRequestBytes = MAX_OPEN_REQUEST_BYTES.get(conf);
+    if (maxOpenRequestBytes > 0) {
+      openRequestBytes = new AtomicLong();
+      if (LOG.isInfoEnabled()) {
+        LOG.info("NettyClient: Limit bytes of open requests to " +
+            maxOpenRequestBytes);
+      }
+    } else {
+      openRequestBytes = null;
+    }
+
+    if (CREDIT_FLOW_CONTROL.get(conf)) {
+      creditFlowControl = new CreditFlowControl(conf);
+      if (LOG.isInfoEnabled()) {
+        LOG.info("NettyClient: Limit bytes of open requests to each " +
+            "destination by its credits");
+      }
+    } else {
+      creditFlowControl = null;
+    }
+
     maxRequestMilliseconds = MAX_REQUEST_MILLISECONDS.get(conf);
 
     maxConnectionFailures = NETTY_MAX_CONNECTION_FAILURES.get(conf);
@@ -280,7 +309,8 @@ public class NettyClient {
           // completes (as in non-auth pipeline below).
           pipeline.addLast("length-field-based-frame-decoder",
               new LengthFieldBasedFrameDecoder(1024, 0, 4, 0, 4));
-          pipeline.addLast("request-encoder", new RequestEncoder(conf));
+          pipeline.addLast("request-encoder",
+              new RequestEncoder(conf, byteCounter));
           // The following pipeline component responds to the server's SASL
           // tokens with its own responses. Both client and server share the
           // same Hadoop Job token, which is used to create the SASL tokens to
@@ -289,7 +319,8 @@ public class NettyClient {
           pipeline.addLast("sasl-client-handler",
               new SaslClientHandler(conf));
           pipeline.addLast("response-handler",
-              new ResponseClientHandler(clientRequestIdRequestInfoMap, conf));
+              new ResponseClientHandler(clientRequestIdRequestInfoMap,
+                  openRequestBytes, creditFlowControl, conf));
           return pipeline;
         } else {
           LOG.info("Using Netty without authentication.");
@@ -297,10 +328,13 @@ public class NettyClient {
           ChannelPipeline pipeline = pipeline();
           pipeline.addLast("clientByteCounter", byteCounter);
           pipeline.addLast("responseFrameDecoder",
-              new FixedLengthFrameDecoder(RequestServerHandler.RESPONSE_BYTES));
-          pipeline.addLast("requestEncoder", new RequestEncoder(conf));
+              new FixedLengthFrameDecoder(
+                  RequestServerHandler.getResponseBytes(conf)));
+          pipeline.addLast("requestEncoder",
+              new RequestEncoder(conf, byteCounter));
           pipeline.addLast("responseClientHandler",
-              new ResponseClientHandler(clientRequestIdRequestInfoMap, conf));
+              new ResponseClientHandler(clientRequestIdRequestInfoMap,
+                  openRequestBytes, creditFlowControl, conf));
           if (executionHandler != null) {
             pipeline.addAfter(handlerBeforeExecutionHandler,
                 "executionHandler", executionHandler);
@@ -637,6 +671,10 @@ public class NettyClient {
     }
 /*end[HADOOP_NON_SECURE]*/
 
+    if (registerRequest && creditFlowControl != null) {
+      reserveCredits(destTaskId, request.getSerializedSize());
+    }
+
     Channel channel = getNextChannel(remoteServer);
     RequestInfo newRequestInfo = new RequestInfo(remoteServer, request);
     if (registerRequest) {
@@ -652,6 +690,9 @@ public class NettyClient {
           "have a previous request id = " + request.getRequestId() + ", " +
           "request info of " + oldRequestInfo);
       }
+      if (openRequestBytes != null) {
+        openRequestBytes.addAndGet(request.getSerializedSize());
+      }
     }
     ChannelFuture writeFuture = channel.write(request);
     newRequestInfo.setWriteFuture(writeFuture);
@@ -660,6 +701,74 @@ public class NettyClient {
         clientRequestIdRequestInfoMap.size() > maxNumberOfOpenRequests) {
       waitSomeRequests(maxNumberOfOpenRequests);
     }
+    if (openRequestBytes != null &&
+        openRequestBytes.get() > maxOpenRequestBytes) {
+      waitOpenRequestBytes();
+    }
+  }
+
+  /**
+   * Wait until the bytes of the requests which are not complete are within
+   * the limit, or until all requests are complete (a single request can be
+   * larger than the limit). Re-sends requests with problems like
+   * {@link #waitSomeRequests(int)}.
+   */
+  private void waitOpenRequestBytes() {
+    while (openRequestBytes.get() > maxOpenRequestBytes &&
+        !clientRequestIdRequestInfoMap.isEmpty()) {
+      requestLogger.info("waitOpenRequestBytes: Waiting for " +
+          openRequestBytes.get() + " bytes of open requests to be <= " +
+          maxOpenRequestBytes);
+      synchronized (clientRequestIdRequestInfoMap) {
+        if (openRequestBytes.get() <= maxOpenRequestBytes ||
+            clientRequestIdRequestInfoMap.isEmpty()) {
+          break;
+        }
+        try {
+          clientRequestIdRequestInfoMap.wait(waitingRequestMsecs);
+        } catch (InterruptedException e) {
+          LOG.error("waitOpenRequestBytes: Got unexpected " +
+              "InterruptedException", e);
+        }
+      }
+      // Make sure that waiting doesn't kill the job
+      context.progress();
+
+      checkRequestsForProblems();
+    }
+  }
+
+  /**
+   * Wait until a destination has enough credits for a request, and reserve
+   * them. Only the threads sending to a saturated destination wait,
+   * requests to other destinations are not held back. Re-sends requests
+   * with problems like {@link #waitSomeRequests(int)}.
+   *
+   * @param destTaskId Destination task id
+   * @param requestBytes Bytes of the request
+   */
+  private void reserveCredits(int destTaskId, long requestBytes) {
+    while (!creditFlowControl.tryReserveCredits(destTaskId, requestBytes)) {
+      requestLogger.info("reserveCredits: Waiting for " +
+          creditFlowControl.getOpenRequestBytes(destTaskId) +
+          " bytes of open requests to task " + destTaskId +
+          " to leave room for " + requestBytes + " bytes within its " +
+          creditFlowControl.getCreditBytes(destTaskId) + " bytes of credits");
+      synchronized (clientRequestIdRequestInfoMap) {
+        if (creditFlowControl.tryReserveCredits(destTaskId, requestBytes)) {
+          break;
+        }
+        try {
+          clientRequestIdRequestInfoMap.wait(waitingRequestMsecs);
+        } catch (InterruptedException e) {
+          LOG.error("reserveCredits: Got unexpected InterruptedException", e);
+        }
+      }
+      // Make sure that waiting doesn't kill the job
+      context.progress();
+
+      checkRequestsForProblems();
+    }
   }
 
   /**
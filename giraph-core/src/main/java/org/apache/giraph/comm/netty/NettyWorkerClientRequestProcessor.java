@@ -21,6 +21,7 @@ import org.apache.giraph.bsp.BspService;
 import org.apache.giraph.bsp.CentralizedServiceWorker;
 import org.apache.giraph.comm.SendEdgeCache;
 import org.apache.giraph.comm.SendMessageCache;
+import org.apache.giraph.comm.SendMessageCombiningCache;
 import org.apache.giraph.comm.SendMessageToAllCache;
 import org.apache.giraph.comm.SendMutationsCache;
 import org.apache.giraph.comm.SendPartitionCache;
@@ -131,6 +132,11 @@ public class NettyWorkerClientRequestProcessor<I extends WritableComparable,
       sendMessageCache =
         new SendMessageToAllCache<I, Writable>(conf, serviceWorker,
           this, maxMessagesSizePerWorker);
+    } else if (this.configuration.useCombiner() &&
+        this.configuration.isCombineMsgsOnSendEnabled()) {
+      sendMessageCache =
+        new SendMessageCombiningCache<I, Writable>(conf, serviceWorker,
+          this, maxMessagesSizePerWorker);
     } else {
       sendMessageCache =
         new SendMessageCache<I, Writable>(conf, serviceWorker,
@@ -32,6 +32,7 @@ import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
 import org.apache.giraph.graph.Vertex;
 import org.apache.giraph.graph.VertexMutations;
 import org.apache.giraph.graph.VertexResolver;
+import org.apache.giraph.partition.ActiveVertices;
 import org.apache.giraph.partition.Partition;
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.io.WritableComparable;
@@ -176,6 +177,7 @@ public class NettyWorkerServer<I extends WritableComparable,
     }
     // Resolve all graph mutations
     VertexResolver<I, V, E> vertexResolver = conf.createVertexResolver();
+    ActiveVertices<I> activeVertices = serverData.getActiveVertices();
     for (Entry<Integer, Collection<I>> e :
         resolveVertexIndices.asMap().entrySet()) {
       Partition<I, V, E> partition =
@@ -183,6 +185,8 @@ public class NettyWorkerServer<I extends WritableComparable,
       for (I vertexIndex : e.getValue()) {
         Vertex<I, V, E> originalVertex =
             partition.getVertex(vertexIndex);
+        int originalEdges = (originalVertex == null) ? 0 :
+            originalVertex.getNumEdges();
 
         VertexMutations<I, V, E> mutations = null;
         VertexMutations<I, V, E> vertexMutations =
@@ -212,6 +216,9 @@ public class NettyWorkerServer<I extends WritableComparable,
         } else if (originalVertex != null) {
           partition.removeVertex(originalVertex.getId());
         }
+        if (activeVertices != null) {
+          activeVertices.vertexResolved(e.getKey(), vertex, originalEdges);
+        }
       }
       service.getPartitionStore().putPartition(partition);
     }
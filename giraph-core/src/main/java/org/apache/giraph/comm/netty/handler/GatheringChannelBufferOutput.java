@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.comm.netty.handler;
+
+import org.apache.giraph.utils.GatheringDataOutput;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferFactory;
+import org.jboss.netty.buffer.ChannelBuffers;
+
+import com.google.common.collect.Lists;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Output building a composite {@link ChannelBuffer}. Small writes are
+ * copied into dynamic buffers, while large byte arrays given to
+ * {@link #writeWithoutCopy(byte[], int, int)} become components of the
+ * composite buffer without being copied.
+ */
+public class GatheringChannelBufferOutput extends DataOutputStream
+    implements GatheringDataOutput {
+  /** Components of the composite buffer */
+  private final SegmentOutputStream segments;
+  /** Smaller arrays are copied, since wrapping them costs more */
+  private final int minWrappedSize;
+
+  /**
+   * Constructor
+   *
+   * @param segmentStartingSize Starting size of the copied segments
+   * @param minWrappedSize Minimum size of the arrays to wrap
+   * @param bufferFactory Factory for the copied segments
+   */
+  public GatheringChannelBufferOutput(int segmentStartingSize,
+      int minWrappedSize, ChannelBufferFactory bufferFactory) {
+    this(new SegmentOutputStream(segmentStartingSize, bufferFactory),
+        minWrappedSize);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param segments Components of the composite buffer
+   * @param minWrappedSize Minimum size of the arrays to wrap
+   */
+  private GatheringChannelBufferOutput(SegmentOutputStream segments,
+      int minWrappedSize) {
+    super(segments);
+    this.segments = segments;
+    this.minWrappedSize = minWrappedSize;
+  }
+
+  @Override
+  public void writeWithoutCopy(byte[] b, int off, int len)
+    throws IOException {
+    if (len < minWrappedSize) {
+      write(b, off, len);
+    } else {
+      segments.wrap(b, off, len);
+      written += len;
+    }
+  }
+
+  /**
+   * Get the composite buffer with everything written so far.
+   *
+   * @return Composite buffer
+   */
+  public ChannelBuffer buffer() {
+    return ChannelBuffers.wrappedBuffer(segments.getSegments());
+  }
+
+  /**
+   * Stream appending to the last copied segment, or starting a new one
+   * after a wrapped array.
+   */
+  private static class SegmentOutputStream extends OutputStream {
+    /** Starting size of the copied segments */
+    private final int segmentStartingSize;
+    /** Factory for the copied segments */
+    private final ChannelBufferFactory bufferFactory;
+    /** All the segments, in order */
+    private final List<ChannelBuffer> segments = Lists.newArrayList();
+    /** Copied segment being written, null after a wrapped array */
+    private ChannelBuffer current;
+
+    /**
+     * Constructor
+     *
+     * @param segmentStartingSize Starting size of the copied segments
+     * @param bufferFactory Factory for the copied segments
+     */
+    public SegmentOutputStream(int segmentStartingSize,
+        ChannelBufferFactory bufferFactory) {
+      this.segmentStartingSize = segmentStartingSize;
+      this.bufferFactory = bufferFactory;
+    }
+
+    /**
+     * Get the copied segment being written, starting one if needed.
+     *
+     * @return Copied segment
+     */
+    private ChannelBuffer getCurrent() {
+      if (current == null) {
+        current = ChannelBuffers.dynamicBuffer(segmentStartingSize,
+            bufferFactory);
+        segments.add(current);
+      }
+      return current;
+    }
+
+    @Override
+    public void write(int b) {
+      getCurrent().writeByte(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      getCurrent().writeBytes(b, off, len);
+    }
+
+    /**
+     * Add a part of a byte array as a segment, without copying it.
+     *
+     * @param b Byte array
+     * @param off Offset of the part
+     * @param len Length of the part
+     */
+    public void wrap(byte[] b, int off, int len) {
+      segments.add(ChannelBuffers.wrappedBuffer(b, off, len));
+      current = null;
+    }
+
+    /**
+     * Get all the segments, in order.
+     *
+     * @return Segments
+     */
+    public ChannelBuffer[] getSegments() {
+      return segments.toArray(new ChannelBuffer[segments.size()]);
+    }
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.comm.netty.handler;
+
+import org.apache.giraph.comm.requests.RequestType;
+import org.apache.giraph.conf.GiraphConstants;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionInputStream;
+import org.apache.hadoop.io.compress.CompressionOutputStream;
+import org.apache.hadoop.io.compress.Compressor;
+import org.apache.hadoop.io.compress.Decompressor;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferInputStream;
+import org.jboss.netty.buffer.ChannelBufferOutputStream;
+import org.jboss.netty.buffer.ChannelBuffers;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+
+/**
+ * Compression of encoded requests, shared by {@link RequestEncoder} and
+ * {@link RequestDecoder}. The request types to compress and their codecs
+ * come from the configuration, so clients and servers agree on them. A
+ * compressed request has {@link #COMPRESSED_FLAG} set in its type byte,
+ * followed by its uncompressed size and the compressed request, so small
+ * requests can still be sent uncompressed.
+ */
+public class RequestCompression {
+  /** Set in the type byte of compressed requests */
+  public static final int COMPRESSED_FLAG = 0x80;
+  /** Bytes before the request: the frame length and the type byte */
+  private static final int HEADER_BYTES = 5;
+  /** Codec of each request type (by ordinal), null if not compressed */
+  private final CompressionCodec[] codecs =
+      new CompressionCodec[RequestType.values().length];
+  /** Smaller requests are not compressed */
+  private final int threshold;
+
+  /**
+   * Constructor
+   *
+   * @param conf Configuration
+   */
+  public RequestCompression(Configuration conf) {
+    threshold = GiraphConstants.NETTY_COMPRESSION_THRESHOLD.get(conf);
+    Class<? extends CompressionCodec> defaultCodecClass =
+        GiraphConstants.NETTY_COMPRESSION_CODEC.get(conf);
+    String[] types =
+        GiraphConstants.NETTY_COMPRESSED_REQUEST_TYPES.getArray(conf);
+    if (types == null) {
+      return;
+    }
+    for (String type : types) {
+      type = type.trim();
+      if (type.isEmpty()) {
+        continue;
+      }
+      Class<? extends CompressionCodec> codecClass = defaultCodecClass;
+      int separator = type.indexOf(':');
+      if (separator >= 0) {
+        codecClass = getCodecClass(conf, type.substring(separator + 1));
+        type = type.substring(0, separator);
+      }
+      codecs[RequestType.valueOf(type).ordinal()] =
+          ReflectionUtils.newInstance(codecClass, conf);
+    }
+  }
+
+  /**
+   * Get a codec class by name.
+   *
+   * @param conf Configuration
+   * @param name Class name
+   * @return Codec class
+   */
+  private static Class<? extends CompressionCodec> getCodecClass(
+      Configuration conf, String name) {
+    try {
+      return conf.getClassByName(name).asSubclass(CompressionCodec.class);
+    } catch (ClassNotFoundException e) {
+      throw new IllegalArgumentException(
+          "getCodecClass: Codec class " + name + " not found", e);
+    } catch (ClassCastException e) {
+      throw new IllegalArgumentException(
+          "getCodecClass: " + name + " is not a CompressionCodec", e);
+    }
+  }
+
+  /**
+   * Check whether any request type is compressed.
+   *
+   * @return True iff some request type is compressed
+   */
+  public boolean isEnabled() {
+    for (CompressionCodec codec : codecs) {
+      if (codec != null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Check whether an encoded request should be compressed.
+   *
+   * @param type Request type
+   * @param encodedBytes Size of the encoded request
+   * @return True iff the request should be compressed
+   */
+  public boolean shouldCompress(RequestType type, int encodedBytes) {
+    return codecs[type.ordinal()] != null && encodedBytes >= threshold;
+  }
+
+  /**
+   * Compress an encoded request.
+   *
+   * @param type Request type
+   * @param encoded Encoded request, starting with a placeholder for its
+   *                length and its type byte
+   * @return Compressed request, with a placeholder for its length
+   * @throws IOException
+   */
+  public ChannelBuffer compress(RequestType type, ChannelBuffer encoded)
+    throws IOException {
+    CompressionCodec codec = codecs[type.ordinal()];
+    int rawBytes = encoded.writerIndex() - HEADER_BYTES;
+    ChannelBufferOutputStream outputStream = new ChannelBufferOutputStream(
+        ChannelBuffers.dynamicBuffer(HEADER_BYTES + 4 + rawBytes / 2));
+    outputStream.writeInt(0);
+    outputStream.writeByte(type.ordinal() | COMPRESSED_FLAG);
+    outputStream.writeInt(rawBytes);
+    Compressor compressor = CodecPool.getCompressor(codec);
+    try {
+      CompressionOutputStream compressedStream =
+          codec.createOutputStream(outputStream, compressor);
+      encoded.getBytes(HEADER_BYTES, compressedStream, rawBytes);
+      compressedStream.finish();
+      compressedStream.close();
+    } finally {
+      if (compressor != null) {
+        CodecPool.returnCompressor(compressor);
+      }
+    }
+    return outputStream.buffer();
+  }
+
+  /**
+   * Decompress a request, after its type byte was read from the buffer.
+   *
+   * @param type Request type
+   * @param buffer Buffer positioned after the type byte
+   * @return Buffer with the uncompressed request
+   * @throws IOException
+   */
+  public ChannelBuffer decompress(RequestType type, ChannelBuffer buffer)
+    throws IOException {
+    CompressionCodec codec = codecs[type.ordinal()];
+    if (codec == null) {
+      throw new IllegalStateException("decompress: Got a compressed " +
+          type + ", which is not compressed with this configuration");
+    }
+    int rawBytes = buffer.readInt();
+    byte[] raw = new byte[rawBytes];
+    Decompressor decompressor = CodecPool.getDecompressor(codec);
+    try {
+      CompressionInputStream compressedStream = codec.createInputStream(
+          new ChannelBufferInputStream(buffer), decompressor);
+      new DataInputStream(compressedStream).readFully(raw);
+      compressedStream.close();
+    } finally {
+      if (decompressor != null) {
+        CodecPool.returnDecompressor(decompressor);
+      }
+    }
+    return ChannelBuffers.wrappedBuffer(raw);
+  }
+}
@@ -46,6 +46,8 @@ public class RequestDecoder extends OneToOneDecoder {
   private final ImmutableClassesGiraphConfiguration conf;
   /** Byte counter to output */
   private final ByteCounter byteCounter;
+  /** Compression of the requests */
+  private final RequestCompression compression;
   /** Start nanoseconds for the decoding time */
   private long startDecodingNanoseconds = -1;
   /**
@@ -58,6 +60,7 @@ public class RequestDecoder extends OneToOneDecoder {
                         ByteCounter byteCounter) {
     this.conf = conf;
     this.byteCounter = byteCounter;
+    compression = new RequestCompression(conf);
   }
 
   @Override
@@ -81,9 +84,16 @@ public class RequestDecoder extends OneToOneDecoder {
 
     // Decode the request
     ChannelBuffer buffer = (ChannelBuffer) msg;
+    int typeByte = buffer.readUnsignedByte();
+    RequestType type = RequestType.values()[
+        typeByte & ~RequestCompression.COMPRESSED_FLAG];
+    if ((typeByte & RequestCompression.COMPRESSED_FLAG) != 0) {
+      int compressedBytes = buffer.readableBytes();
+      buffer = compression.decompress(type, buffer);
+      byteCounter.addDecompressedReceived(compressedBytes,
+          buffer.readableBytes());
+    }
     ChannelBufferInputStream inputStream = new ChannelBufferInputStream(buffer);
-    int enumValue = inputStream.readByte();
-    RequestType type = RequestType.values()[enumValue];
     Class<? extends WritableRequest> writableRequestClass =
         type.getRequestClass();
 
@@ -94,7 +104,7 @@ public class RequestDecoder extends OneToOneDecoder {
       LOG.debug("decode: Client " + writableRequest.getClientId() +
           ", requestId " + writableRequest.getRequestId() +
           ", " +  writableRequest.getType() + ", with size " +
-          buffer.array().length + " took " +
+          buffer.capacity() + " took " +
           Times.getNanosSince(TIME, startDecodingNanoseconds) + " ns");
     }
 
@@ -18,6 +18,8 @@
 
 package org.apache.giraph.comm.netty.handler;
 
+import org.apache.giraph.comm.netty.ByteCounter;
+import org.apache.giraph.comm.requests.GatheringRequest;
 import org.apache.giraph.comm.requests.WritableRequest;
 import org.apache.giraph.conf.GiraphConfiguration;
 import org.apache.giraph.conf.GiraphConstants;
@@ -32,6 +34,8 @@ import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.handler.codec.oneone.OneToOneEncoder;
 
+import java.io.IOException;
+
 /**
  * Requests have a request type and an encoded request.
  */
@@ -42,10 +46,20 @@ public class RequestEncoder extends OneToOneEncoder {
   private static final Logger LOG = Logger.getLogger(RequestEncoder.class);
   /** Holds the place of the message length until known */
   private static final byte[] LENGTH_PLACEHOLDER = new byte[4];
+  /** Starting size of the copied parts of gathered requests */
+  private static final int GATHERING_SEGMENT_SIZE = 256;
+  /** Smaller byte arrays of gathered requests are copied */
+  private static final int MIN_GATHERED_ARRAY_SIZE = 4096;
   /** Buffer starting size */
   private final int bufferStartingSize;
   /** Whether or not to use direct byte buffers */
   private final boolean useDirectBuffers;
+  /** Whether to wrap the byte arrays of gathering requests */
+  private final boolean zeroCopy;
+  /** Compression of the requests, null if no request is compressed */
+  private final RequestCompression compression;
+  /** Keeps track of the compressed bytes */
+  private final ByteCounter byteCounter;
   /** Start nanoseconds for the encoding time */
   private long startEncodingNanoseconds = -1;
 
@@ -53,12 +67,17 @@ public class RequestEncoder extends OneToOneEncoder {
    * Constructor.
    *
    * @param conf Giraph configuration
+   * @param byteCounter Keeps track of the compressed bytes
    */
-  public RequestEncoder(GiraphConfiguration conf) {
+  public RequestEncoder(GiraphConfiguration conf, ByteCounter byteCounter) {
     bufferStartingSize =
         GiraphConstants.NETTY_REQUEST_ENCODER_BUFFER_SIZE.get(conf);
     useDirectBuffers =
         GiraphConstants.NETTY_REQUEST_ENCODER_USE_DIRECT_BUFFERS.get(conf);
+    zeroCopy = GiraphConstants.NETTY_REQUEST_ENCODER_ZERO_COPY.get(conf);
+    RequestCompression requestCompression = new RequestCompression(conf);
+    compression = requestCompression.isEnabled() ? requestCompression : null;
+    this.byteCounter = byteCounter;
   }
 
   @Override
@@ -74,6 +93,43 @@ public class RequestEncoder extends OneToOneEncoder {
       startEncodingNanoseconds = TIME.getNanoseconds();
     }
     WritableRequest writableRequest = (WritableRequest) msg;
+    ChannelBuffer encodedBuffer;
+    if (zeroCopy && writableRequest instanceof GatheringRequest) {
+      encodedBuffer = encodeGathering(ctx, writableRequest);
+    } else {
+      encodedBuffer = encodeCopying(ctx, writableRequest);
+    }
+    if (compression != null && compression.shouldCompress(
+        writableRequest.getType(), encodedBuffer.writerIndex())) {
+      ChannelBuffer compressedBuffer =
+          compression.compress(writableRequest.getType(), encodedBuffer);
+      byteCounter.addCompressedSent(encodedBuffer.writerIndex(),
+          compressedBuffer.writerIndex());
+      encodedBuffer = compressedBuffer;
+    }
+
+    // Set the correct size at the end
+    encodedBuffer.setInt(0, encodedBuffer.writerIndex() - 4);
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("encode: Client " + writableRequest.getClientId() + ", " +
+          "requestId " + writableRequest.getRequestId() +
+          ", size = " + encodedBuffer.writerIndex() + ", " +
+          writableRequest.getType() + " took " +
+          Times.getNanosSince(TIME, startEncodingNanoseconds) + " ns");
+    }
+    return encodedBuffer;
+  }
+
+  /**
+   * Encode a request by copying it into a single buffer.
+   *
+   * @param ctx Channel handler context
+   * @param writableRequest Request to encode
+   * @return Encoded request, with a placeholder for its length
+   * @throws IOException
+   */
+  private ChannelBuffer encodeCopying(ChannelHandlerContext ctx,
+      WritableRequest writableRequest) throws IOException {
     int requestSize = writableRequest.getSerializedSize();
     ChannelBuffer channelBuffer;
     if (requestSize == WritableRequest.UNKNOWN_SIZE) {
@@ -100,17 +156,27 @@ public class RequestEncoder extends OneToOneEncoder {
     }
     outputStream.flush();
     outputStream.close();
+    return outputStream.buffer();
+  }
 
-    // Set the correct size at the end
-    ChannelBuffer encodedBuffer = outputStream.buffer();
-    encodedBuffer.setInt(0, encodedBuffer.writerIndex() - 4);
-    if (LOG.isDebugEnabled()) {
-      LOG.debug("encode: Client " + writableRequest.getClientId() + ", " +
-          "requestId " + writableRequest.getRequestId() +
-          ", size = " + encodedBuffer.writerIndex() + ", " +
-          writableRequest.getType() + " took " +
-          Times.getNanosSince(TIME, startEncodingNanoseconds) + " ns");
-    }
-    return encodedBuffer;
+  /**
+   * Encode a request into a composite buffer, wrapping its large byte
+   * arrays instead of copying them.
+   *
+   * @param ctx Channel handler context
+   * @param writableRequest Request to encode
+   * @return Encoded request, with a placeholder for its length
+   * @throws IOException
+   */
+  private ChannelBuffer encodeGathering(ChannelHandlerContext ctx,
+      WritableRequest writableRequest) throws IOException {
+    GatheringChannelBufferOutput output = new GatheringChannelBufferOutput(
+        GATHERING_SEGMENT_SIZE, MIN_GATHERED_ARRAY_SIZE,
+        ctx.getChannel().getConfig().getBufferFactory());
+    output.write(LENGTH_PLACEHOLDER);
+    output.writeByte(writableRequest.getType().ordinal());
+    writableRequest.write(output);
+    output.close();
+    return output.buffer();
   }
 }
@@ -24,6 +24,7 @@ import org.apache.giraph.graph.TaskInfo;
 import org.apache.giraph.time.SystemTime;
 import org.apache.giraph.time.Time;
 import org.apache.giraph.time.Times;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.log4j.Logger;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
@@ -33,6 +34,9 @@ import org.jboss.netty.channel.ExceptionEvent;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
 
+import static org.apache.giraph.conf.GiraphConstants.CREDIT_FLOW_CONTROL;
+import static org.apache.giraph.conf.GiraphConstants.CREDIT_MEMORY_FRACTION;
+import static org.apache.giraph.conf.GiraphConstants.MAX_CREDIT_BYTES;
 import static org.apache.giraph.conf.GiraphConstants.NETTY_SIMULATE_FIRST_REQUEST_CLOSED;
 
 /**
@@ -44,6 +48,8 @@ public abstract class RequestServerHandler<R> extends
     SimpleChannelUpstreamHandler {
   /** Number of bytes in the encoded response */
   public static final int RESPONSE_BYTES = 13;
+  /** Number of bytes in the encoded response granting credits */
+  public static final int CREDIT_RESPONSE_BYTES = RESPONSE_BYTES + 8;
   /** Time class to use */
   private static Time TIME = SystemTime.get();
   /** Class logger */
@@ -57,6 +63,14 @@ public abstract class RequestServerHandler<R> extends
   private final WorkerRequestReservedMap workerRequestReservedMap;
   /** My task info */
   private final TaskInfo myTaskInfo;
+  /** Grant credits to the clients? */
+  private final boolean creditFlowControl;
+  /** Number of bytes in the encoded response */
+  private final int responseBytes;
+  /** Maximum credits granted to a client */
+  private final long maxCreditBytes;
+  /** Fraction of the memory headroom granted to a client */
+  private final float creditMemoryFraction;
   /** Start nanoseconds for the processing time */
   private long startProcessingNanoseconds = -1;
 
@@ -74,6 +88,22 @@ public abstract class RequestServerHandler<R> extends
     this.workerRequestReservedMap = workerRequestReservedMap;
     closeFirstRequest = NETTY_SIMULATE_FIRST_REQUEST_CLOSED.get(conf);
     this.myTaskInfo = myTaskInfo;
+    creditFlowControl = CREDIT_FLOW_CONTROL.get(conf);
+    responseBytes = getResponseBytes(conf);
+    maxCreditBytes = MAX_CREDIT_BYTES.get(conf);
+    creditMemoryFraction = CREDIT_MEMORY_FRACTION.get(conf);
+  }
+
+  /**
+   * Get the number of bytes in the encoded response, which only carries the
+   * credits granted when credit flow control is on.
+   *
+   * @param conf Configuration
+   * @return Number of bytes in the encoded response
+   */
+  public static int getResponseBytes(Configuration conf) {
+    return CREDIT_FLOW_CONTROL.get(conf) ?
+        CREDIT_RESPONSE_BYTES : RESPONSE_BYTES;
   }
 
   @Override
@@ -120,14 +150,30 @@ public abstract class RequestServerHandler<R> extends
           "not processing again.");
     }
 
-    // Send the response with the request id
-    ChannelBuffer buffer = ChannelBuffers.directBuffer(RESPONSE_BYTES);
+    // Send the response with the request id (and the credits granted)
+    ChannelBuffer buffer = ChannelBuffers.directBuffer(responseBytes);
     buffer.writeInt(myTaskInfo.getTaskId());
     buffer.writeLong(writableRequest.getRequestId());
     buffer.writeByte(alreadyDone);
+    if (creditFlowControl) {
+      buffer.writeLong(getCreditBytes());
+    }
     e.getChannel().write(buffer);
   }
 
+  /**
+   * Get the credits to grant to a client: a fraction of the memory
+   * headroom, which shrinks as received data fills the message stores.
+   *
+   * @return Credits in bytes
+   */
+  private long getCreditBytes() {
+    Runtime runtime = Runtime.getRuntime();
+    long headroom =
+        runtime.maxMemory() - runtime.totalMemory() + runtime.freeMemory();
+    return Math.min(maxCreditBytes, (long) (headroom * creditMemoryFraction));
+  }
+
   /**
    * Set the flag indicating already closed first request
    */
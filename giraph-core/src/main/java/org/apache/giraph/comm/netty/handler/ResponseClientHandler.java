@@ -18,6 +18,7 @@
 
 package org.apache.giraph.comm.netty.handler;
 
+import org.apache.giraph.comm.netty.CreditFlowControl;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.log4j.Logger;
 import org.jboss.netty.buffer.ChannelBuffer;
@@ -30,6 +31,7 @@ import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
 
 import java.io.IOException;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.apache.giraph.conf.GiraphConstants.NETTY_SIMULATE_FIRST_RESPONSE_FAILED;
 
@@ -47,19 +49,33 @@ public class ResponseClientHandler extends SimpleChannelUpstreamHandler {
   /** Outstanding worker request map */
   private final ConcurrentMap<ClientRequestId, RequestInfo>
   workerIdOutstandingRequestMap;
+  /** Bytes of outstanding requests (null if they are not counted) */
+  private final AtomicLong outstandingRequestBytes;
+  /** Credits per destination (null if there is no flow control) */
+  private final CreditFlowControl creditFlowControl;
 
   /**
    * Constructor.
    *
    * @param workerIdOutstandingRequestMap Map of worker ids to outstanding
    *                                      requests
+   * @param outstandingRequestBytes Bytes of outstanding requests, decreased
+   *                                when they complete (null if they are not
+   *                                counted)
+   * @param creditFlowControl Credits per destination, updated when
+   *                          requests complete (null if there is no flow
+   *                          control, so responses carry no credits)
    * @param conf Configuration
    */
   public ResponseClientHandler(
       ConcurrentMap<ClientRequestId, RequestInfo>
           workerIdOutstandingRequestMap,
+      AtomicLong outstandingRequestBytes,
+      CreditFlowControl creditFlowControl,
       Configuration conf) {
     this.workerIdOutstandingRequestMap = workerIdOutstandingRequestMap;
+    this.outstandingRequestBytes = outstandingRequestBytes;
+    this.creditFlowControl = creditFlowControl;
     dropFirstResponse = NETTY_SIMULATE_FIRST_RESPONSE_FAILED.get(conf);
   }
 
@@ -76,10 +92,14 @@ public class ResponseClientHandler extends SimpleChannelUpstreamHandler {
     int senderId = -1;
     long requestId = -1;
     int response = -1;
+    long grantedBytes = -1;
     try {
       senderId = inputStream.readInt();
       requestId = inputStream.readLong();
       response = inputStream.readByte();
+      if (creditFlowControl != null) {
+        grantedBytes = inputStream.readLong();
+      }
       inputStream.close();
     } catch (IOException e) {
       throw new IllegalStateException(
@@ -110,6 +130,14 @@ public class ResponseClientHandler extends SimpleChannelUpstreamHandler {
       LOG.info("messageReceived: Already received response for request id = " +
           requestId);
     } else {
+      if (outstandingRequestBytes != null) {
+        outstandingRequestBytes.addAndGet(
+            -requestInfo.getRequest().getSerializedSize());
+      }
+      if (creditFlowControl != null) {
+        creditFlowControl.requestCompleted(senderId,
+            requestInfo.getRequest().getSerializedSize(), grantedBytes);
+      }
       if (LOG.isDebugEnabled()) {
         LOG.debug("messageReceived: Completed " + requestInfo +
             ".  Waiting on " + workerIdOutstandingRequestMap.size() +
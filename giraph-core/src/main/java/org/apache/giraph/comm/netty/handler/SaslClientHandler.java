@@ -94,7 +94,8 @@ public class SaslClientHandler extends OneToOneDecoder {
       ctx.getPipeline().remove(this);
       ctx.getPipeline().replace("length-field-based-frame-decoder",
           "fixed-length-frame-decoder",
-          new FixedLengthFrameDecoder(RequestServerHandler.RESPONSE_BYTES));
+          new FixedLengthFrameDecoder(
+              RequestServerHandler.getResponseBytes(conf)));
       return;
     }
     SaslTokenMessageRequest serverToken =
@@ -37,7 +37,7 @@ import java.io.IOException;
  */
 public abstract class SendWorkerDataRequest<I extends WritableComparable, T,
     B extends ByteArrayVertexIdData<I, T>>
-    extends WritableRequest implements WorkerRequest {
+    extends WritableRequest implements WorkerRequest, GatheringRequest {
   /** Class logger */
   private static final Logger LOG =
       Logger.getLogger(SendWorkerDataRequest.class);
@@ -54,7 +54,9 @@ public abstract class SendWorkerDataRequest<I extends WritableComparable, T,
   public SendWorkerDataRequest() { }
 
   /**
-   * Constructor used to send request.
+   * Constructor used to send request. Delta encodes the ids of the data
+   * (see {@link ByteArrayVertexIdData#encodeIds()}), which must not be
+   * modified afterwards.
    *
    * @param partVertData Map of remote partitions =>
    *                     ByteArrayVertexIdData
@@ -62,6 +64,11 @@ public abstract class SendWorkerDataRequest<I extends WritableComparable, T,
   public SendWorkerDataRequest(
       PairList<Integer, B> partVertData) {
     this.partitionVertexData = partVertData;
+    PairList<Integer, B>.Iterator iterator = partVertData.getIterator();
+    while (iterator.hasNext()) {
+      iterator.next();
+      iterator.getCurrentSecond().encodeIds();
+    }
   }
 
   /**
@@ -44,7 +44,7 @@ import org.apache.hadoop.io.WritableComparable;
 @SuppressWarnings("unchecked")
 public class SendWorkerOneToAllMessagesRequest<I extends WritableComparable,
     M extends Writable> extends WritableRequest<I, Writable, Writable>
-    implements WorkerRequest<I, Writable, Writable> {
+    implements WorkerRequest<I, Writable, Writable>, GatheringRequest {
   /** The byte array of one-to-all messages */
   private ByteArrayOneToAllMessages<I, M> oneToAllMsgs;
 
@@ -20,6 +20,7 @@ package org.apache.giraph.conf;
 
 import org.apache.giraph.aggregators.AggregatorWriter;
 import org.apache.giraph.combiner.Combiner;
+import org.apache.giraph.comm.requests.RequestType;
 import org.apache.giraph.edge.OutEdges;
 import org.apache.giraph.edge.ReuseObjectsOutEdges;
 import org.apache.giraph.factories.ComputationFactory;
@@ -1109,4 +1110,173 @@ public class GiraphConfiguration extends Configuration
   public boolean isOneToAllMsgSendingEnabled() {
     return ONE_TO_ALL_MSG_SENDING.isTrue(this);
   }
+
+  /**
+   * Enable combining messages before sending them.
+   */
+  public void enableCombineMsgsOnSend() {
+    COMBINE_MSGS_ON_SEND.set(this, true);
+  }
+
+  /**
+   * Return if messages are combined before being sent.
+   *
+   * @return True if this option is enabled.
+   */
+  public boolean isCombineMsgsOnSendEnabled() {
+    return COMBINE_MSGS_ON_SEND.isTrue(this);
+  }
+
+  /**
+   * Enable computing only the frontier of active vertices and vertices with
+   * messages.
+   */
+  public void enableActiveVertexFrontier() {
+    ACTIVE_VERTEX_FRONTIER.set(this, true);
+  }
+
+  /**
+   * Return if only the active vertex frontier is computed. Out-of-core
+   * messages must be read in the order of the vertex ids, which the
+   * frontier does not follow, so the frontier is never computed with them.
+   *
+   * @return True if this option is enabled and messages are not out of
+   *         core.
+   */
+  public boolean isActiveVertexFrontierEnabled() {
+    return ACTIVE_VERTEX_FRONTIER.isTrue(this) &&
+        !USE_OUT_OF_CORE_MESSAGES.get(this);
+  }
+
+  /**
+   * Set whether messages to vertices of this worker are added to the
+   * message store without being serialized
+   *
+   * @param directLocalMessages If true, add local messages directly
+   */
+  public void useDirectLocalMessages(boolean directLocalMessages) {
+    DIRECT_LOCAL_MESSAGES.set(this, directLocalMessages);
+  }
+
+  /**
+   * Return if messages to vertices of this worker are added to the message
+   * store without being serialized.
+   *
+   * @return True if this option is enabled.
+   */
+  public boolean isDirectLocalMessagesEnabled() {
+    return DIRECT_LOCAL_MESSAGES.isTrue(this);
+  }
+
+  /**
+   * Enable flushing the outgoing messages of a compute thread after each
+   * partition it computes.
+   */
+  public void enableFlushAfterEachPartition() {
+    FLUSH_AFTER_EACH_PARTITION.set(this, true);
+  }
+
+  /**
+   * Return if compute threads flush their messages after each partition.
+   *
+   * @return True if this option is enabled.
+   */
+  public boolean isFlushAfterEachPartitionEnabled() {
+    return FLUSH_AFTER_EACH_PARTITION.isTrue(this);
+  }
+
+  /**
+   * Enable the asynchronous mode, where vertices also get the messages
+   * sent to them in the current superstep which already arrived.
+   */
+  public void enableAsyncMessages() {
+    ASYNC_MESSAGES.set(this, true);
+  }
+
+  /**
+   * Return if the asynchronous mode is enabled.
+   *
+   * @return True if this option is enabled.
+   */
+  public boolean isAsyncMessagesEnabled() {
+    return ASYNC_MESSAGES.isTrue(this);
+  }
+
+  /**
+   * Split the partitions with more vertices than the given number into
+   * chunks which idle compute threads can steal.
+   *
+   * @param splitPartitionVertices Number of vertices per chunk (0 to never
+   *                               split partitions)
+   */
+  public void setSplitPartitionVertices(int splitPartitionVertices) {
+    SPLIT_PARTITION_VERTICES.set(this, splitPartitionVertices);
+  }
+
+  /**
+   * Get the number of vertices per chunk of split partitions.
+   *
+   * @return Number of vertices per chunk (0 if partitions are never split)
+   */
+  public int getSplitPartitionVertices() {
+    return SPLIT_PARTITION_VERTICES.get(this);
+  }
+
+  /**
+   * Let vertices with at least the given number of edges send messages to
+   * all their edges in parallel.
+   *
+   * @param hubVertexEdges Minimum number of edges of a hub vertex (0 to
+   *                       disable)
+   */
+  public void setHubVertexEdges(int hubVertexEdges) {
+    HUB_VERTEX_EDGES.set(this, hubVertexEdges);
+  }
+
+  /**
+   * Get the minimum number of edges of a vertex sending messages to all its
+   * edges in parallel.
+   *
+   * @return Minimum number of edges of a hub vertex (0 if disabled)
+   */
+  public int getHubVertexEdges() {
+    return HUB_VERTEX_EDGES.get(this);
+  }
+
+  /**
+   * Enable caching the targets of messages sent to all edges, grouped by
+   * destination worker. Only used if the graph is static and one-to-all
+   * message sending is enabled.
+   */
+  public void enableCacheBroadcastTargets() {
+    CACHE_BROADCAST_TARGETS.set(this, true);
+  }
+
+  /**
+   * Return if the targets of messages sent to all edges are cached.
+   *
+   * @return True if this option is enabled, the graph is static and
+   *         one-to-all message sending is enabled.
+   */
+  public boolean isCacheBroadcastTargetsEnabled() {
+    return CACHE_BROADCAST_TARGETS.isTrue(this) && isStaticGraph() &&
+        isOneToAllMsgSendingEnabled();
+  }
+
+  /**
+   * Compress the given request types on the wire, with the codec set in
+   * {@link GiraphConstants#NETTY_COMPRESSION_CODEC}.
+   *
+   * @param types Request types to compress
+   */
+  public void setNettyCompressedRequestTypes(RequestType... types) {
+    StringBuilder typeNames = new StringBuilder();
+    for (RequestType type : types) {
+      if (typeNames.length() > 0) {
+        typeNames.append(',');
+      }
+      typeNames.append(type.name());
+    }
+    NETTY_COMPRESSED_REQUEST_TYPES.set(this, typeNames.toString());
+  }
 }
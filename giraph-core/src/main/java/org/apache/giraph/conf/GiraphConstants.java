@@ -59,6 +59,8 @@ import org.apache.giraph.worker.WorkerContext;
 import org.apache.giraph.worker.WorkerObserver;
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.DefaultCodec;
 
 import static java.util.concurrent.TimeUnit.MINUTES;
 import static java.util.concurrent.TimeUnit.SECONDS;
@@ -923,5 +925,199 @@ public interface GiraphConstants {
   BooleanConfOption ONE_TO_ALL_MSG_SENDING =
     new BooleanConfOption("giraph.oneToAllMsgSending", false, "Enable " +
         "one-to-all message sending strategy");
+
+  /**
+   * This option will combine the messages to the same vertex with the
+   * combiner before sending them. Only used if a combiner is set and
+   * one-to-all message sending is disabled.
+   */
+  BooleanConfOption COMBINE_MSGS_ON_SEND =
+    new BooleanConfOption("giraph.combineMsgsOnSend", false, "Combine " +
+        "messages to the same vertex before sending them, if there is a " +
+        "combiner");
+
+  /** Maximum number of combined messages cached by a compute thread */
+  IntConfOption MAX_COMBINED_MSGS_PER_THREAD =
+    new IntConfOption("giraph.maxCombinedMsgsPerThread", 1000000,
+        "Maximum number of combined messages cached by a compute thread " +
+        "before they are serialized, split evenly among workers");
+
+  /**
+   * Whether to keep track of the vertices which are not halted, so that
+   * computation only visits them and the vertices with messages instead of
+   * whole partitions. Ignored with {@link #USE_OUT_OF_CORE_MESSAGES}.
+   */
+  BooleanConfOption ACTIVE_VERTEX_FRONTIER =
+    new BooleanConfOption("giraph.activeVertexFrontier", false, "Only " +
+        "visit active vertices and vertices with messages in compute, " +
+        "instead of all vertices of a partition");
+
+  /**
+   * Number of stripes the messages of each partition are split into by
+   * primitive combining message stores. Each stripe has its own lock, so
+   * more stripes let more Netty server threads add messages for the same
+   * partition at once.
+   */
+  IntConfOption MESSAGE_STORE_STRIPES =
+      new IntConfOption("giraph.messageStoreStripes", 1,
+          "Number of stripes (rounded up to a power of two) per partition " +
+          "in primitive combining message stores");
+
+  /**
+   * Whether messages to vertices of this worker are added straight to the
+   * incoming message store, instead of being serialized and deserialized
+   * again. Only used if the message store supports it.
+   */
+  BooleanConfOption DIRECT_LOCAL_MESSAGES =
+      new BooleanConfOption("giraph.directLocalMessages", true,
+          "Add messages to vertices of this worker to the message store " +
+          "without serializing them");
+
+  /**
+   * Whether each compute thread flushes its outgoing messages after every
+   * partition, instead of only when its caches are full and at the end of
+   * the superstep. Requests are sent asynchronously, so the transfer
+   * overlaps with computing the next partitions.
+   */
+  BooleanConfOption FLUSH_AFTER_EACH_PARTITION =
+      new BooleanConfOption("giraph.flushAfterEachPartition", false,
+          "Flush the outgoing messages of a compute thread after computing " +
+          "each partition");
+
+  /**
+   * Maximum number of bytes of requests sent by a worker and not yet
+   * confirmed by their destination, 0 for no limit. Senders wait when it
+   * is exceeded, which bounds the memory used by requests in flight.
+   */
+  LongConfOption MAX_OPEN_REQUEST_BYTES =
+      new LongConfOption("giraph.maxOpenRequestBytes", 0,
+          "Maximum bytes of requests sent and not yet confirmed by their " +
+          "destination (0 for no limit)");
+
+  /**
+   * Asynchronous mode: vertices also get the messages sent to them in the
+   * current superstep which already reached their worker, instead of only
+   * the messages of the previous superstep. Convergent algorithms can
+   * finish in fewer supersteps, but must not depend on each message being
+   * delivered in a particular superstep. Only used if the message store
+   * supports it, and the incoming and outgoing message types are the same.
+   */
+  BooleanConfOption ASYNC_MESSAGES =
+      new BooleanConfOption("giraph.asyncMessages", false,
+          "Let vertices consume messages sent in the same superstep, " +
+          "if they already arrived");
+
+  /**
+   * If positive, compute threads split the partitions with more vertices
+   * than this into chunks of this many vertices. Threads which run out of
+   * partitions steal the chunks of partitions still being computed, so a
+   * skewed partition does not keep the other threads idle until the end of
+   * the superstep. Computations are then initialized, and pre/post
+   * superstep called, once per chunk. Partitions which reuse vertex
+   * objects, or whose active vertex frontier is known, are never split;
+   * neither are partitions with out-of-core messages, which must be read
+   * in order.
+   */
+  IntConfOption SPLIT_PARTITION_VERTICES =
+      new IntConfOption("giraph.splitPartitionVertices", 0,
+          "Split partitions with more vertices into chunks of this many " +
+          "vertices, which idle compute threads steal (0 to disable)");
+
+  /**
+   * If positive, a vertex with at least this many edges sends a message to
+   * all its edges in parallel: its edges are split into chunks, which are
+   * grouped by destination and sent by the broadcast threads of the
+   * worker, so hub vertices do not serialize the superstep on one compute
+   * thread.
+   */
+  IntConfOption HUB_VERTEX_EDGES =
+      new IntConfOption("giraph.hubVertexEdges", 0,
+          "Vertices with at least this many edges send messages to all " +
+          "their edges in parallel (0 to disable)");
+
+  /** Number of threads per worker sending the messages of hub vertices */
+  IntConfOption HUB_BROADCAST_THREADS =
+      new IntConfOption("giraph.hubBroadcastThreads", 4,
+          "Number of threads per worker sending the messages of hub " +
+          "vertices");
+
+  /**
+   * Whether workers cache the targets of the vertices sending messages to
+   * all their edges, grouped by destination worker, so later supersteps
+   * skip the partition owner lookup of every edge. Costs about the memory
+   * of the serialized edge targets, and is only used for static graphs
+   * with one-to-all message sending.
+   */
+  BooleanConfOption CACHE_BROADCAST_TARGETS =
+      new BooleanConfOption("giraph.cacheBroadcastTargets", false,
+          "Cache the targets of messages sent to all edges, grouped by " +
+          "worker (static graphs with one-to-all message sending only)");
+
+  /**
+   * Whether message and edge requests are encoded by wrapping their byte
+   * arrays in a composite buffer instead of copying them, saving a copy of
+   * every request on the sending side.
+   */
+  BooleanConfOption NETTY_REQUEST_ENCODER_ZERO_COPY =
+      new BooleanConfOption("giraph.nettyRequestEncoderZeroCopy", false,
+          "Encode message and edge requests without copying their byte " +
+          "arrays");
+
+  /**
+   * Request types compressed on the wire, comma separated (e.g.
+   * SEND_WORKER_MESSAGES_REQUEST). A type can be followed by ':' and the
+   * class of its codec, otherwise it uses {@link #NETTY_COMPRESSION_CODEC}.
+   * Empty to disable compression.
+   */
+  StrConfOption NETTY_COMPRESSED_REQUEST_TYPES =
+      new StrConfOption("giraph.nettyCompressedRequestTypes", "",
+          "Request types compressed on the wire, comma separated, each " +
+          "optionally followed by ':' and its codec class");
+
+  /** Codec of the compressed request types without their own codec */
+  ClassConfOption<CompressionCodec> NETTY_COMPRESSION_CODEC =
+      ClassConfOption.create("giraph.nettyCompressionCodec",
+          DefaultCodec.class, CompressionCodec.class,
+          "Codec of the compressed request types without their own codec");
+
+  /** Encoded requests smaller than this many bytes are not compressed */
+  IntConfOption NETTY_COMPRESSION_THRESHOLD =
+      new IntConfOption("giraph.nettyCompressionThreshold", 4096,
+          "Encoded requests smaller than this many bytes are not " +
+          "compressed");
+
+  /**
+   * Sort the pairs of each partition in message and edge requests by vertex
+   * id, and write the ids as zig-zag varint deltas. Only applies to
+   * IntWritable and LongWritable vertex ids.
+   */
+  BooleanConfOption VERTEX_ID_DELTA_ENCODING =
+      new BooleanConfOption("giraph.vertexIdDeltaEncoding", false,
+          "Sort message and edge requests by vertex id and write int/long " +
+          "ids as zig-zag varint deltas");
+
+  /**
+   * Credit-based flow control: each server grants each client credits, in
+   * bytes of open requests, based on its memory headroom, and clients only
+   * wait when sending to a destination with no credits left. Responses only
+   * carry the credits when it is on.
+   */
+  BooleanConfOption CREDIT_FLOW_CONTROL =
+      new BooleanConfOption("giraph.creditFlowControl", false,
+          "Limit the bytes of open requests to each destination by the " +
+          "credits it grants from its memory headroom");
+
+  /** Maximum credits, in bytes, a server grants to each client */
+  LongConfOption MAX_CREDIT_BYTES =
+      new LongConfOption("giraph.maxCreditBytes", 64L * ONE_KB * ONE_KB,
+          "Maximum credits, in bytes, a server grants to each client");
+
+  /**
+   * Fraction of its memory headroom (free heap, including the part not
+   * allocated yet) a server grants to each client as credits
+   */
+  FloatConfOption CREDIT_MEMORY_FRACTION =
+      new FloatConfOption("giraph.creditMemoryFraction", 0.05f,
+          "Fraction of its memory headroom a server grants to each client " +
+          "as credits");
 }
-// CHECKSTYLE: resume InterfaceIsTypeCheck
@@ -19,16 +19,21 @@ package org.apache.giraph.graph;
 
 import org.apache.giraph.bsp.CentralizedServiceWorker;
 import org.apache.giraph.comm.WorkerClientRequestProcessor;
+import org.apache.giraph.comm.messages.AsyncMessageStore;
 import org.apache.giraph.comm.messages.MessageStore;
 import org.apache.giraph.comm.netty.NettyWorkerClientRequestProcessor;
+import org.apache.giraph.conf.GiraphConstants;
 import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
 import org.apache.giraph.io.SimpleVertexWriter;
 import org.apache.giraph.metrics.GiraphMetrics;
 import org.apache.giraph.metrics.MetricNames;
 import org.apache.giraph.metrics.SuperstepMetricsRegistry;
 import org.apache.giraph.metrics.TimerDesc;
+import org.apache.giraph.partition.ActiveVertices;
+import org.apache.giraph.partition.ActiveVertices.VertexIdSet;
 import org.apache.giraph.partition.Partition;
 import org.apache.giraph.partition.PartitionStats;
+import org.apache.giraph.partition.ReusesObjectsPartition;
 import org.apache.giraph.time.SystemTime;
 import org.apache.giraph.time.Time;
 import org.apache.giraph.time.Times;
@@ -80,8 +85,15 @@ public class ComputeCallable<I extends WritableComparable, V extends Writable,
   private final GraphState graphState;
   /** Thread-safe queue of all partition ids */
   private final BlockingQueue<Integer> partitionIdQueue;
+  /** Partitions split into chunks, shared by all compute threads */
+  private final PartitionSplitQueue<I, V, E> partitionSplitQueue;
   /** Message store */
   private final MessageStore<I, M1> messageStore;
+  /**
+   * Store of the messages sent in this superstep, consumed along with the
+   * messages of the previous superstep (null unless in asynchronous mode)
+   */
+  private final AsyncMessageStore<I, M1> asyncMessageStore;
   /** Configuration */
   private final ImmutableClassesGiraphConfiguration<I, V, E> configuration;
   /** Worker (for NettyWorkerClientRequestProcessor) */
@@ -92,6 +104,10 @@ public class ComputeCallable<I extends WritableComparable, V extends Writable,
   private SimpleVertexWriter<I, V, E> vertexWriter;
   /** Get the start time in nanos */
   private final long startNanos = TIME.getNanoseconds();
+  /** Whether to flush the outgoing messages after each partition */
+  private final boolean flushAfterEachPartition;
+  /** Number of vertices per chunk of split partitions (0 to never split) */
+  private final int splitPartitionVertices;
 
   // Per-Superstep Metrics
   /** Messages sent */
@@ -107,22 +123,36 @@ public class ComputeCallable<I extends WritableComparable, V extends Writable,
    * @param context Context
    * @param graphState Current graph state (use to create own graph state)
    * @param messageStore Message store
+   * @param asyncMessageStore Store of messages sent in this superstep, to
+   *                          consume as well (null if they cannot be)
    * @param partitionIdQueue Queue of partition ids (thread-safe)
+   * @param partitionSplitQueue Partitions split into chunks, shared by all
+   *                            compute threads
    * @param configuration Configuration
    * @param serviceWorker Service worker
    */
   public ComputeCallable(
       Mapper<?, ?, ?, ?>.Context context, GraphState graphState,
       MessageStore<I, M1> messageStore,
+      AsyncMessageStore<I, M1> asyncMessageStore,
       BlockingQueue<Integer> partitionIdQueue,
+      PartitionSplitQueue<I, V, E> partitionSplitQueue,
       ImmutableClassesGiraphConfiguration<I, V, E> configuration,
       CentralizedServiceWorker<I, V, E> serviceWorker) {
     this.context = context;
     this.configuration = configuration;
     this.partitionIdQueue = partitionIdQueue;
+    this.partitionSplitQueue = partitionSplitQueue;
     this.messageStore = messageStore;
+    this.asyncMessageStore = asyncMessageStore;
     this.serviceWorker = serviceWorker;
     this.graphState = graphState;
+    flushAfterEachPartition =
+        configuration.isFlushAfterEachPartitionEnabled();
+    // Out-of-core messages must be read in the order of the vertices
+    splitPartitionVertices =
+        GiraphConstants.USE_OUT_OF_CORE_MESSAGES.get(configuration) ? 0 :
+            configuration.getSplitPartitionVertices();
 
     SuperstepMetricsRegistry metrics = GiraphMetrics.get().perSuperstep();
     // Normally we would use ResetSuperstepMetricsObserver but this class is
@@ -146,32 +176,49 @@ public class ComputeCallable<I extends WritableComparable, V extends Writable,
     vertexWriter = serviceWorker.getSuperstepOutput().getVertexWriter();
 
     List<PartitionStats> partitionStatsList = Lists.newArrayList();
-    while (!partitionIdQueue.isEmpty()) {
-      Integer partitionId = partitionIdQueue.poll();
+    while (true) {
+      Integer partitionId =
+          partitionSplitQueue.pollPartitionId(partitionIdQueue);
       if (partitionId == null) {
-        break;
+        // Help with the partitions split by other threads
+        PartitionSplit<I, V, E> split;
+        try {
+          split = partitionSplitQueue.waitForSplit();
+        } catch (InterruptedException e) {
+          throw new IllegalStateException("call: Caught unexpected " +
+              "InterruptedException, failing.", e);
+        }
+        if (split == null) {
+          break;
+        }
+        computeChunks(split, workerClientRequestProcessor, aggregatorUsage,
+            workerContext, partitionStatsList);
+        continue;
       }
 
-      Partition<I, V, E> partition =
-          serviceWorker.getPartitionStore().getPartition(partitionId);
+      Partition<I, V, E> partition = null;
+      PartitionSplit<I, V, E> split = null;
+      try {
+        partition =
+            serviceWorker.getPartitionStore().getPartition(partitionId);
+        split = splitPartition(partition);
+      } finally {
+        partitionSplitQueue.splitDecided(split);
+      }
+      if (split != null) {
+        computeChunks(split, workerClientRequestProcessor, aggregatorUsage,
+            workerContext, partitionStatsList);
+        continue;
+      }
 
-      Computation<I, V, E, M1, M2> computation =
-          (Computation<I, V, E, M1, M2>) configuration.createComputation();
-      computation.initialize(graphState, workerClientRequestProcessor,
-          serviceWorker.getGraphTaskManager(), aggregatorUsage, workerContext);
-      computation.preSuperstep();
+      Computation<I, V, E, M1, M2> computation = createComputation(
+          workerClientRequestProcessor, aggregatorUsage, workerContext);
 
       try {
         PartitionStats partitionStats =
             computePartition(computation, partition);
         partitionStatsList.add(partitionStats);
-        long partitionMsgs = workerClientRequestProcessor.resetMessageCount();
-        partitionStats.addMessagesSentCount(partitionMsgs);
-        messagesSentCounter.inc(partitionMsgs);
-        long partitionMsgBytes =
-          workerClientRequestProcessor.resetMessageBytesCount();
-        partitionStats.addMessageBytesSentCount(partitionMsgBytes);
-        messageBytesSentCounter.inc(partitionMsgBytes);
+        finishUnit(workerClientRequestProcessor, partitionStats);
         timedLogger.info("call: Completed " +
             partitionStatsList.size() + " partitions, " +
             partitionIdQueue.size() + " remaining " +
@@ -217,6 +264,155 @@ public class ComputeCallable<I extends WritableComparable, V extends Writable,
     return partitionStatsList;
   }
 
+  /**
+   * Create and initialize a computation for a partition or a chunk.
+   *
+   * @param workerClientRequestProcessor Request processor of this thread
+   * @param aggregatorUsage Aggregator usage of this thread
+   * @param workerContext Worker context
+   * @return Computation, ready to compute vertices
+   */
+  private Computation<I, V, E, M1, M2> createComputation(
+      WorkerClientRequestProcessor<I, V, E> workerClientRequestProcessor,
+      WorkerThreadAggregatorUsage aggregatorUsage,
+      WorkerContext workerContext) {
+    Computation<I, V, E, M1, M2> computation =
+        (Computation<I, V, E, M1, M2>) configuration.createComputation();
+    computation.initialize(graphState, workerClientRequestProcessor,
+        serviceWorker.getGraphTaskManager(), aggregatorUsage, workerContext);
+    computation.preSuperstep();
+    return computation;
+  }
+
+  /**
+   * Add the messages sent while computing a partition or a chunk to its
+   * stats, flushing them first if required.
+   *
+   * @param workerClientRequestProcessor Request processor of this thread
+   * @param partitionStats Stats of the computed partition or chunk
+   */
+  private void finishUnit(
+      WorkerClientRequestProcessor<I, V, E> workerClientRequestProcessor,
+      PartitionStats partitionStats) throws IOException {
+    if (flushAfterEachPartition) {
+      // Requests are sent asynchronously while the next partition is
+      // computed
+      workerClientRequestProcessor.flush();
+    }
+    long partitionMsgs = workerClientRequestProcessor.resetMessageCount();
+    partitionStats.addMessagesSentCount(partitionMsgs);
+    messagesSentCounter.inc(partitionMsgs);
+    long partitionMsgBytes =
+      workerClientRequestProcessor.resetMessageBytesCount();
+    partitionStats.addMessageBytesSentCount(partitionMsgBytes);
+    messageBytesSentCounter.inc(partitionMsgBytes);
+  }
+
+  /**
+   * Split a partition if it is large enough and can be computed by several
+   * threads at once.
+   *
+   * @param partition Partition to split
+   * @return Split partition, or null if it must be computed as a whole
+   */
+  private PartitionSplit<I, V, E> splitPartition(
+      Partition<I, V, E> partition) {
+    if (splitPartitionVertices <= 0 ||
+        partition.getVertexCount() <= splitPartitionVertices ||
+        partition instanceof ReusesObjectsPartition) {
+      return null;
+    }
+    ActiveVertices<I> activeVertices =
+        serviceWorker.getServerData().getActiveVertices();
+    VertexIdSet<I> nextActive = null;
+    if (activeVertices != null) {
+      if (activeVertices.hasPartition(partition.getId(),
+          graphState.getSuperstep())) {
+        // Computing the frontier is cheap, it is not worth splitting
+        return null;
+      }
+      nextActive = activeVertices.createSet(graphState.getSuperstep() + 1);
+    }
+    List<Vertex<I, V, E>> vertices =
+        Lists.newArrayListWithCapacity((int) partition.getVertexCount());
+    for (Vertex<I, V, E> vertex : partition) {
+      vertices.add(vertex);
+    }
+    return new PartitionSplit<I, V, E>(partition, vertices,
+        splitPartitionVertices, nextActive);
+  }
+
+  /**
+   * Compute chunks of a split partition until all of them are claimed.
+   * Finishes the partition if this thread computes its last chunk.
+   *
+   * @param split Split partition
+   * @param workerClientRequestProcessor Request processor of this thread
+   * @param aggregatorUsage Aggregator usage of this thread
+   * @param workerContext Worker context
+   * @param partitionStatsList Stats of the partitions finished by this
+   *                           thread
+   */
+  private void computeChunks(PartitionSplit<I, V, E> split,
+      WorkerClientRequestProcessor<I, V, E> workerClientRequestProcessor,
+      WorkerThreadAggregatorUsage aggregatorUsage,
+      WorkerContext workerContext,
+      List<PartitionStats> partitionStatsList) {
+    Partition<I, V, E> partition = split.getPartition();
+    List<Vertex<I, V, E>> chunk;
+    while ((chunk = split.claimChunk()) != null) {
+      Computation<I, V, E, M1, M2> computation = createComputation(
+          workerClientRequestProcessor, aggregatorUsage, workerContext);
+      PartitionStats chunkStats =
+          new PartitionStats(partition.getId(), 0, 0, 0, 0, 0);
+      try {
+        for (Vertex<I, V, E> vertex : chunk) {
+          // Messages are not cleared per vertex, since other threads read
+          // the messages of the same partition
+          computeVertex(computation, partition, vertex,
+              split.getNextActive());
+          if (vertex.isHalted()) {
+            chunkStats.incrFinishedVertexCount();
+          }
+          chunkStats.incrVertexCount();
+          chunkStats.addEdgeCount(vertex.getNumEdges());
+        }
+        finishUnit(workerClientRequestProcessor, chunkStats);
+      } catch (IOException e) {
+        throw new IllegalStateException("computeChunks: Caught unexpected " +
+            "IOException, failing.", e);
+      } catch (InterruptedException e) {
+        throw new IllegalStateException("computeChunks: Caught unexpected " +
+            "InterruptedException, failing.", e);
+      }
+      computation.postSuperstep();
+
+      if (split.finishChunk(chunkStats)) {
+        PartitionStats partitionStats = split.getPartitionStats();
+        ActiveVertices<I> activeVertices =
+            serviceWorker.getServerData().getActiveVertices();
+        if (activeVertices != null) {
+          split.getNextActive().addEdgeCount(partitionStats.getEdgeCount());
+          activeVertices.putPartition(partition.getId(),
+              split.getNextActive());
+        }
+        try {
+          messageStore.clearPartition(partition.getId());
+        } catch (IOException e) {
+          throw new IllegalStateException("computeChunks: Clearing the " +
+              "messages of partition " + partition.getId() + " failed", e);
+        }
+        serviceWorker.getPartitionStore().putPartition(partition);
+        partitionStatsList.add(partitionStats);
+        timedLogger.info("computeChunks: Completed " +
+            partitionStatsList.size() + " partitions, " +
+            partitionIdQueue.size() + " remaining " +
+            MemoryUtils.getRuntimeMemoryStats());
+      }
+    }
+    partitionSplitQueue.removeSplit(split);
+  }
+
   /**
    * Compute a single partition
    *
@@ -229,42 +425,132 @@ public class ComputeCallable<I extends WritableComparable, V extends Writable,
       Partition<I, V, E> partition) throws IOException, InterruptedException {
     PartitionStats partitionStats =
         new PartitionStats(partition.getId(), 0, 0, 0, 0, 0);
+    ActiveVertices<I> activeVertices =
+        serviceWorker.getServerData().getActiveVertices();
     // Make sure this is thread-safe across runs
     synchronized (partition) {
-      for (Vertex<I, V, E> vertex : partition) {
-        Iterable<M1> messages = messageStore.getVertexMessages(vertex.getId());
-        if (vertex.isHalted() && !Iterables.isEmpty(messages)) {
-          vertex.wakeUp();
-        }
-        if (!vertex.isHalted()) {
-          context.progress();
-          TimerContext computeOneTimerContext = computeOneTimer.time();
-          try {
-            computation.compute(vertex, messages);
-          } finally {
-            computeOneTimerContext.stop();
+      VertexIdSet<I> active = null;
+      VertexIdSet<I> nextActive = null;
+      if (activeVertices != null) {
+        active = activeVertices.removePartition(partition.getId(),
+            graphState.getSuperstep());
+        nextActive = activeVertices.createSet(graphState.getSuperstep() + 1);
+      }
+      if (active == null) {
+        for (Vertex<I, V, E> vertex : partition) {
+          computeVertex(computation, partition, vertex, nextActive);
+          if (vertex.isHalted()) {
+            partitionStats.incrFinishedVertexCount();
           }
-          // Need to unwrap the mutated edges (possibly)
-          vertex.unwrapMutableEdges();
-          // Write vertex to superstep output (no-op if it is not used)
-          vertexWriter.writeVertex(vertex);
-          // Need to save the vertex changes (possibly)
-          partition.saveVertex(vertex);
+          // Remove the messages now that the vertex has finished computation
+          messageStore.clearVertexMessages(vertex.getId());
+
+          // Add statistics for this vertex
+          partitionStats.incrVertexCount();
+          partitionStats.addEdgeCount(vertex.getNumEdges());
         }
-        if (vertex.isHalted()) {
-          partitionStats.incrFinishedVertexCount();
+        if (nextActive != null) {
+          nextActive.addEdgeCount(partitionStats.getEdgeCount());
         }
-        // Remove the messages now that the vertex has finished computation
-        messageStore.clearVertexMessages(vertex.getId());
-
-        // Add statistics for this vertex
-        partitionStats.incrVertexCount();
-        partitionStats.addEdgeCount(vertex.getNumEdges());
+      } else {
+        partitionStats = computeFrontier(
+            computation, partition, active, nextActive);
+      }
+      if (nextActive != null) {
+        activeVertices.putPartition(partition.getId(), nextActive);
       }
 
       messageStore.clearPartition(partition.getId());
     }
     return partitionStats;
   }
-}
 
+  /**
+   * Compute only the active vertices and the vertices with messages of a
+   * partition. Halted vertices without messages are not visited, so the
+   * cost is proportional to the frontier rather than to the partition.
+   *
+   * @param computation Computation to use
+   * @param partition Partition to compute
+   * @param active Vertices which were not halted after the last superstep
+   * @param nextActive Filled with the vertices which are not halted after
+   *                   this superstep
+   * @return Partition stats for this computed partition
+   */
+  private PartitionStats computeFrontier(
+      Computation<I, V, E, M1, M2> computation, Partition<I, V, E> partition,
+      VertexIdSet<I> active, VertexIdSet<I> nextActive)
+    throws IOException, InterruptedException {
+    long edgeCount = active.getEdgeCount();
+    for (I vertexId : active) {
+      Vertex<I, V, E> vertex = partition.getVertex(vertexId);
+      if (vertex != null) {
+        int edges = vertex.getNumEdges();
+        computeVertex(computation, partition, vertex, nextActive);
+        edgeCount += vertex.getNumEdges() - edges;
+        messageStore.clearVertexMessages(vertexId);
+      }
+    }
+    for (I vertexId :
+        messageStore.getPartitionDestinationVertices(partition.getId())) {
+      if (!active.contains(vertexId)) {
+        Vertex<I, V, E> vertex = partition.getVertex(vertexId);
+        if (vertex != null) {
+          int edges = vertex.getNumEdges();
+          computeVertex(computation, partition, vertex, nextActive);
+          edgeCount += vertex.getNumEdges() - edges;
+        }
+      }
+    }
+    nextActive.addEdgeCount(edgeCount);
+    long vertexCount = partition.getVertexCount();
+    return new PartitionStats(partition.getId(), vertexCount,
+        vertexCount - nextActive.size(), edgeCount, 0, 0);
+  }
+
+  /**
+   * Compute a single vertex, if it is not halted or has messages
+   *
+   * @param computation Computation to use
+   * @param partition Partition of the vertex
+   * @param vertex Vertex to compute
+   * @param nextActive If not null, the vertex is added to it if it is not
+   *                   halted after computing
+   */
+  private void computeVertex(Computation<I, V, E, M1, M2> computation,
+      Partition<I, V, E> partition, Vertex<I, V, E> vertex,
+      VertexIdSet<I> nextActive) throws IOException, InterruptedException {
+    Iterable<M1> messages = messageStore.getVertexMessages(vertex.getId());
+    if (asyncMessageStore != null) {
+      Iterable<M1> newMessages =
+          asyncMessageStore.removeVertexMessages(vertex.getId());
+      if (!Iterables.isEmpty(newMessages)) {
+        messages = Iterables.concat(messages, newMessages);
+      }
+    }
+    if (vertex.isHalted() && !Iterables.isEmpty(messages)) {
+      vertex.wakeUp();
+    }
+    if (!vertex.isHalted()) {
+      context.progress();
+      TimerContext computeOneTimerContext = computeOneTimer.time();
+      try {
+        computation.compute(vertex, messages);
+      } finally {
+        computeOneTimerContext.stop();
+      }
+      // Need to unwrap the mutated edges (possibly)
+      vertex.unwrapMutableEdges();
+      // Write vertex to superstep output (no-op if it is not used)
+      vertexWriter.writeVertex(vertex);
+      // Need to save the vertex changes (possibly)
+      partition.saveVertex(vertex);
+      if (nextActive != null && !vertex.isHalted()) {
+        // Shared by the threads computing a split partition
+        synchronized (nextActive) {
+          nextActive.add(vertex.getId());
+        }
+      }
+    }
+  }
+}
@@ -21,6 +21,7 @@ package org.apache.giraph.graph;
 import org.apache.giraph.bsp.BspService;
 import org.apache.giraph.bsp.CentralizedServiceMaster;
 import org.apache.giraph.bsp.CentralizedServiceWorker;
+import org.apache.giraph.comm.messages.AsyncMessageStore;
 import org.apache.giraph.comm.messages.MessageStore;
 import org.apache.giraph.conf.GiraphConstants;
 import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
@@ -273,8 +274,18 @@ public class GraphTaskManager<I extends WritableComparable, V extends Writable,
       context.progress();
       MessageStore<I, Writable> messageStore =
         serviceWorker.getServerData().getCurrentMessageStore();
+      AsyncMessageStore<I, Writable> asyncMessageStore =
+        serviceWorker.getServerData().getAsyncMessageStore();
+      if (asyncMessageStore == null && conf.isAsyncMessagesEnabled() &&
+          LOG.isInfoEnabled()) {
+        LOG.info("execute: Asynchronous messages are not supported by the " +
+          "message store or message types of superstep " + superstep +
+          ", only consuming messages of the previous superstep");
+      }
       int numPartitions = serviceWorker.getPartitionStore().getNumPartitions();
-      int numThreads = Math.min(numComputeThreads, numPartitions);
+      // Threads can share partitions if they are split
+      int numThreads = conf.getSplitPartitionVertices() > 0 ?
+          numComputeThreads : Math.min(numComputeThreads, numPartitions);
       if (LOG.isInfoEnabled()) {
         LOG.info("execute: " + numPartitions + " partitions to process with " +
           numThreads + " compute thread(s), originally " +
@@ -284,7 +295,7 @@ public class GraphTaskManager<I extends WritableComparable, V extends Writable,
       // execute the current superstep
       if (numPartitions > 0) {
         processGraphPartitions(context, partitionStatsList, graphState,
-          messageStore, numPartitions, numThreads);
+          messageStore, asyncMessageStore, numPartitions, numThreads);
       }
       finishedSuperstepStats = completeSuperstepAndCollectStats(
         partitionStatsList, superstepTimerContext);
@@ -703,6 +714,8 @@ public class GraphTaskManager<I extends WritableComparable, V extends Writable,
    * @param partitionStatsList to pick up this superstep's processing stats
    * @param graphState the BSP graph state
    * @param messageStore the messages to be processed in this superstep
+   * @param asyncMessageStore the messages sent in this superstep, which can
+   *                          also be processed (null if they cannot)
    * @param numPartitions the number of data partitions (vertices) to process
    * @param numThreads number of concurrent threads to do processing
    */
@@ -710,6 +723,7 @@ public class GraphTaskManager<I extends WritableComparable, V extends Writable,
       List<PartitionStats> partitionStatsList,
       final GraphState graphState,
       final MessageStore<I, Writable> messageStore,
+      final AsyncMessageStore<I, Writable> asyncMessageStore,
       int numPartitions,
       int numThreads) {
     final BlockingQueue<Integer> computePartitionIdQueue =
@@ -718,6 +732,8 @@ public class GraphTaskManager<I extends WritableComparable, V extends Writable,
       serviceWorker.getPartitionStore().getPartitionIds()) {
       computePartitionIdQueue.add(partitionId);
     }
+    final PartitionSplitQueue<I, V, E> partitionSplitQueue =
+        new PartitionSplitQueue<I, V, E>();
 
     GiraphTimerContext computeAllTimerContext = computeAll.time();
     timeToFirstMessageTimerContext = timeToFirstMessage.time();
@@ -731,7 +747,9 @@ public class GraphTaskManager<I extends WritableComparable, V extends Writable,
                 context,
                 graphState,
                 messageStore,
+                asyncMessageStore,
                 computePartitionIdQueue,
+                partitionSplitQueue,
                 conf,
                 serviceWorker);
           }
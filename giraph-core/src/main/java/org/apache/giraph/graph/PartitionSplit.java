@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.giraph.graph;
+
+import org.apache.giraph.partition.ActiveVertices.VertexIdSet;
+import org.apache.giraph.partition.Partition;
+import org.apache.giraph.partition.PartitionStats;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparable;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Partition split into chunks of vertices, which are claimed by any compute
+ * thread of the worker. The thread which finishes the last chunk finishes
+ * the partition (stats, active vertices, putting it back to the store).
+ *
+ * @param <I> Vertex id
+ * @param <V> Vertex value
+ * @param <E> Edge value
+ */
+@SuppressWarnings("rawtypes")
+public class PartitionSplit<I extends WritableComparable, V extends Writable,
+    E extends Writable> {
+  /** Split partition */
+  private final Partition<I, V, E> partition;
+  /** Vertices of the partition */
+  private final List<Vertex<I, V, E>> vertices;
+  /** Number of vertices per chunk */
+  private final int chunkVertices;
+  /** Number of chunks */
+  private final int numChunks;
+  /** Vertices not halted after this superstep (null if not tracked) */
+  private final VertexIdSet<I> nextActive;
+  /** Next chunk to claim */
+  private final AtomicInteger nextChunk = new AtomicInteger();
+  /** Number of chunks not finished yet */
+  private final AtomicInteger unfinishedChunks;
+  /** Number of computed vertices */
+  private long vertexCount;
+  /** Number of halted vertices */
+  private long finishedVertexCount;
+  /** Number of edges */
+  private long edgeCount;
+  /** Number of messages sent */
+  private long messagesSentCount;
+  /** Number of message bytes sent */
+  private long messageBytesSentCount;
+
+  /**
+   * Constructor
+   *
+   * @param partition Partition to split
+   * @param vertices Vertices of the partition
+   * @param chunkVertices Number of vertices per chunk
+   * @param nextActive Set of the vertices not halted after this superstep,
+   *                   or null if they are not tracked
+   */
+  public PartitionSplit(Partition<I, V, E> partition,
+      List<Vertex<I, V, E>> vertices, int chunkVertices,
+      VertexIdSet<I> nextActive) {
+    this.partition = partition;
+    this.vertices = vertices;
+    this.chunkVertices = chunkVertices;
+    this.nextActive = nextActive;
+    numChunks = (vertices.size() + chunkVertices - 1) / chunkVertices;
+    unfinishedChunks = new AtomicInteger(numChunks);
+  }
+
+  public Partition<I, V, E> getPartition() {
+    return partition;
+  }
+
+  public VertexIdSet<I> getNextActive() {
+    return nextActive;
+  }
+
+  /**
+   * Claim the next chunk of vertices to compute.
+   *
+   * @return Vertices of the chunk, or null if all chunks were claimed
+   */
+  public List<Vertex<I, V, E>> claimChunk() {
+    int chunk = nextChunk.getAndIncrement();
+    if (chunk >= numChunks) {
+      return null;
+    }
+    int start = chunk * chunkVertices;
+    return vertices.subList(start,
+        Math.min(start + chunkVertices, vertices.size()));
+  }
+
+  /**
+   * Add the stats of a computed chunk.
+   *
+   * @param chunkStats Stats of the chunk
+   * @return True iff this was the last unfinished chunk, so the partition
+   *         must be finished by the caller
+   */
+  public boolean finishChunk(PartitionStats chunkStats) {
+    synchronized (this) {
+      vertexCount += chunkStats.getVertexCount();
+      finishedVertexCount += chunkStats.getFinishedVertexCount();
+      edgeCount += chunkStats.getEdgeCount();
+      messagesSentCount += chunkStats.getMessagesSentCount();
+      messageBytesSentCount += chunkStats.getMessageBytesSentCount();
+    }
+    return unfinishedChunks.decrementAndGet() == 0;
+  }
+
+  /**
+   * Get the stats of the partition, once all chunks are finished.
+   *
+   * @return Partition stats
+   */
+  public synchronized PartitionStats getPartitionStats() {
+    return new PartitionStats(partition.getId(), vertexCount,
+        finishedVertexCount, edgeCount, messagesSentCount,
+        messageBytesSentCount);
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.giraph.graph;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparable;
+
+import com.google.common.collect.Lists;
+
+import java.util.LinkedList;
+import java.util.Queue;
+
+/**
+ * Partitions split into chunks, shared by the compute threads of a worker.
+ * A thread which runs out of partition ids waits here while other threads
+ * are still deciding whether to split the partitions they polled, so it
+ * does not stop before it can help with them.
+ *
+ * @param <I> Vertex id
+ * @param <V> Vertex value
+ * @param <E> Edge value
+ */
+@SuppressWarnings("rawtypes")
+public class PartitionSplitQueue<I extends WritableComparable,
+    V extends Writable, E extends Writable> {
+  /** Split partitions which may still have chunks to claim */
+  private final LinkedList<PartitionSplit<I, V, E>> splits =
+      Lists.newLinkedList();
+  /** Number of threads which polled a partition id and may split it */
+  private int splittingThreads;
+
+  /**
+   * Poll the next partition id. If one is returned, the caller must call
+   * {@link #splitDecided(PartitionSplit)} once it knows whether the
+   * partition is split.
+   *
+   * @param partitionIdQueue Queue of partition ids (thread-safe)
+   * @return Partition id, or null if the queue is empty
+   */
+  public Integer pollPartitionId(Queue<Integer> partitionIdQueue) {
+    synchronized (this) {
+      ++splittingThreads;
+    }
+    Integer partitionId = partitionIdQueue.poll();
+    if (partitionId == null) {
+      splitDecided(null);
+    }
+    return partitionId;
+  }
+
+  /**
+   * Tell whether the partition of the last polled id was split.
+   *
+   * @param split Split partition, or null if it is computed as a whole
+   */
+  public synchronized void splitDecided(PartitionSplit<I, V, E> split) {
+    if (split != null) {
+      splits.add(split);
+    }
+    --splittingThreads;
+    notifyAll();
+  }
+
+  /**
+   * Get a split partition to help with, waiting while other threads may
+   * still split partitions.
+   *
+   * @return Split partition, or null if no partition will be split anymore
+   * @throws InterruptedException
+   */
+  public synchronized PartitionSplit<I, V, E> waitForSplit()
+    throws InterruptedException {
+    while (splits.isEmpty() && splittingThreads > 0) {
+      wait();
+    }
+    return splits.peek();
+  }
+
+  /**
+   * Remove a split partition, once all of its chunks are claimed.
+   *
+   * @param split Split partition
+   */
+  public synchronized void removeSplit(PartitionSplit<I, V, E> split) {
+    splits.remove(split);
+  }
+}
@@ -71,6 +71,9 @@ public interface MetricNames {
   /** Counter of messages sent in superstep */
   String MESSAGE_BYTES_SENT = "message-bytes-sent";
 
+  /** Counter of messages combined into another one before being sent */
+  String MESSAGES_COMBINED_ON_SEND = "messages-combined-on-send";
+
   /** Histogram for vertices in mutations requests */
   String VERTICES_IN_MUTATION_REQUEST = "vertices-per-mutations-request";
 
@@ -0,0 +1,313 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.partition;
+
+import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.giraph.graph.Vertex;
+import org.apache.giraph.utils.WritableUtils;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.WritableComparable;
+
+import com.google.common.collect.Sets;
+
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Ids of the vertices which were not halted after computing each partition
+ * of this worker. Together with the vertices which received messages, they
+ * are the only vertices which need to be visited in the next superstep.
+ *
+ * A partition has no ids (and must be fully visited) if it was not computed
+ * by this worker in the previous superstep, e.g. after input, after being
+ * moved from another worker or after a restart.
+ *
+ * @param <I> Vertex id
+ */
+@SuppressWarnings("rawtypes")
+public class ActiveVertices<I extends WritableComparable> {
+  /** Configuration */
+  private final ImmutableClassesGiraphConfiguration<I, ?, ?> conf;
+  /** Whether vertex ids are longs, and can be kept unboxed */
+  private final boolean longIds;
+  /** Map of partition ids to their active vertices */
+  private final ConcurrentMap<Integer, VertexIdSet<I>> partitionVertices =
+      new ConcurrentHashMap<Integer, VertexIdSet<I>>();
+
+  /**
+   * Constructor
+   *
+   * @param conf Configuration
+   */
+  public ActiveVertices(ImmutableClassesGiraphConfiguration<I, ?, ?> conf) {
+    this.conf = conf;
+    longIds = LongWritable.class.equals(conf.getVertexIdClass());
+  }
+
+  /**
+   * Create an empty set of vertex ids, to be filled while computing a
+   * partition.
+   *
+   * @param superstep Superstep in which the set will be used
+   * @return Empty set
+   */
+  @SuppressWarnings("unchecked")
+  public VertexIdSet<I> createSet(long superstep) {
+    if (longIds) {
+      return (VertexIdSet<I>) new LongVertexIdSet(superstep);
+    } else {
+      return new ObjectVertexIdSet<I>(superstep, conf);
+    }
+  }
+
+  /**
+   * Remove and return the active vertices of a partition.
+   *
+   * @param partitionId Partition id
+   * @param superstep Current superstep
+   * @return Active vertices, or null if they are not known for this
+   *         superstep
+   */
+  public VertexIdSet<I> removePartition(int partitionId, long superstep) {
+    VertexIdSet<I> set = partitionVertices.remove(partitionId);
+    return (set == null || set.getSuperstep() != superstep) ? null : set;
+  }
+
+  /**
+   * Check whether the active vertices of a partition are known.
+   *
+   * @param partitionId Partition id
+   * @param superstep Current superstep
+   * @return True iff {@link #removePartition(int, long)} would return them
+   */
+  public boolean hasPartition(int partitionId, long superstep) {
+    VertexIdSet<I> set = partitionVertices.get(partitionId);
+    return set != null && set.getSuperstep() == superstep;
+  }
+
+  /**
+   * Set the active vertices of a partition.
+   *
+   * @param partitionId Partition id
+   * @param set Active vertices
+   */
+  public void putPartition(int partitionId, VertexIdSet<I> set) {
+    partitionVertices.put(partitionId, set);
+  }
+
+  /**
+   * Update the active vertices of a partition after a vertex was resolved
+   * (e.g. created, changed or removed by mutations). Does nothing if the
+   * active vertices of the partition are not known, since the whole
+   * partition will be visited then.
+   *
+   * @param partitionId Partition id of the vertex
+   * @param vertex Resolved vertex, or null if it was removed
+   * @param originalEdges Number of edges of the vertex before resolving
+   */
+  public void vertexResolved(int partitionId, Vertex<I, ?, ?> vertex,
+      int originalEdges) {
+    VertexIdSet<I> set = partitionVertices.get(partitionId);
+    if (set != null) {
+      synchronized (set) {
+        if (vertex == null) {
+          set.addEdgeCount(-originalEdges);
+        } else {
+          set.addEdgeCount(vertex.getNumEdges() - originalEdges);
+          if (!vertex.isHalted()) {
+            set.add(vertex.getId());
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Set of vertex ids of a partition, valid for one superstep. Also keeps
+   * the number of edges of the partition, so it does not have to be counted
+   * by visiting every vertex. Iteration may reuse the returned id object.
+   *
+   * @param <I> Vertex id
+   */
+  public abstract static class VertexIdSet<I extends WritableComparable>
+      implements Iterable<I> {
+    /** Superstep in which this set is used */
+    private final long superstep;
+    /** Number of edges of the partition */
+    private long edgeCount;
+
+    /**
+     * Constructor
+     *
+     * @param superstep Superstep in which this set is used
+     */
+    protected VertexIdSet(long superstep) {
+      this.superstep = superstep;
+    }
+
+    public long getSuperstep() {
+      return superstep;
+    }
+
+    public long getEdgeCount() {
+      return edgeCount;
+    }
+
+    /**
+     * Add to the number of edges of the partition.
+     *
+     * @param edges Number of edges to add (can be negative)
+     */
+    public void addEdgeCount(long edges) {
+      edgeCount += edges;
+    }
+
+    /**
+     * Add a vertex id. The id object can be reused by the caller.
+     *
+     * @param vertexId Vertex id
+     */
+    public abstract void add(I vertexId);
+
+    /**
+     * Check whether a vertex id is in this set.
+     *
+     * @param vertexId Vertex id
+     * @return True iff the vertex id is in this set
+     */
+    public abstract boolean contains(I vertexId);
+
+    /**
+     * Number of vertex ids in this set.
+     *
+     * @return Number of vertex ids
+     */
+    public abstract int size();
+  }
+
+  /**
+   * Set of long vertex ids
+   */
+  private static class LongVertexIdSet extends VertexIdSet<LongWritable> {
+    /** Vertex ids */
+    private final LongOpenHashSet ids = new LongOpenHashSet();
+
+    /**
+     * Constructor
+     *
+     * @param superstep Superstep in which this set is used
+     */
+    public LongVertexIdSet(long superstep) {
+      super(superstep);
+    }
+
+    @Override
+    public void add(LongWritable vertexId) {
+      ids.add(vertexId.get());
+    }
+
+    @Override
+    public boolean contains(LongWritable vertexId) {
+      return ids.contains(vertexId.get());
+    }
+
+    @Override
+    public int size() {
+      return ids.size();
+    }
+
+    @Override
+    public Iterator<LongWritable> iterator() {
+      final LongIterator iterator = ids.iterator();
+      final LongWritable vertexId = new LongWritable();
+      return new Iterator<LongWritable>() {
+        @Override
+        public boolean hasNext() {
+          return iterator.hasNext();
+        }
+
+        @Override
+        public LongWritable next() {
+          vertexId.set(iterator.nextLong());
+          return vertexId;
+        }
+
+        @Override
+        public void remove() {
+          throw new UnsupportedOperationException();
+        }
+      };
+    }
+  }
+
+  /**
+   * Set of vertex ids of any type, keeping copies of the added ids
+   *
+   * @param <I> Vertex id
+   */
+  private static class ObjectVertexIdSet<I extends WritableComparable>
+      extends VertexIdSet<I> {
+    /** Configuration */
+    private final ImmutableClassesGiraphConfiguration<I, ?, ?> conf;
+    /** Vertex ids */
+    private final Set<I> ids = Sets.newHashSet();
+
+    /**
+     * Constructor
+     *
+     * @param superstep Superstep in which this set is used
+     * @param conf Configuration
+     */
+    public ObjectVertexIdSet(long superstep,
+        ImmutableClassesGiraphConfiguration<I, ?, ?> conf) {
+      super(superstep);
+      this.conf = conf;
+    }
+
+    @Override
+    public void add(I vertexId) {
+      if (!ids.contains(vertexId)) {
+        I idCopy = conf.createVertexId();
+        WritableUtils.readFieldsFromByteArray(
+            WritableUtils.writeToByteArray(vertexId), idCopy);
+        ids.add(idCopy);
+      }
+    }
+
+    @Override
+    public boolean contains(I vertexId) {
+      return ids.contains(vertexId);
+    }
+
+    @Override
+    public int size() {
+      return ids.size();
+    }
+
+    @Override
+    public Iterator<I> iterator() {
+      return ids.iterator();
+    }
+  }
+}
@@ -134,9 +134,7 @@ public class ByteArrayOneToAllMessages<
 
   @Override
   public void write(DataOutput dataOutput) throws IOException {
-    dataOutput.writeInt(extendedDataOutput.getPos());
-    dataOutput.write(extendedDataOutput.getByteArray(), 0,
-      extendedDataOutput.getPos());
+    WritableUtils.writeExtendedDataOutput(extendedDataOutput, dataOutput);
   }
 
   @Override
@@ -18,8 +18,17 @@
 
 package org.apache.giraph.utils;
 
+import it.unimi.dsi.fastutil.Arrays;
+import it.unimi.dsi.fastutil.Swapper;
+import it.unimi.dsi.fastutil.ints.AbstractIntComparator;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+
+import org.apache.giraph.conf.GiraphConstants;
 import org.apache.giraph.conf.ImmutableClassesGiraphConfigurable;
 import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.io.WritableComparable;
 
@@ -30,6 +39,10 @@ import java.io.IOException;
 /**
  * Stores pairs of vertex id and generic data in a single byte array
  *
+ * With {@link GiraphConstants#VERTEX_ID_DELTA_ENCODING}, {@link #encodeIds()}
+ * sorts the pairs by {@link IntWritable} or {@link LongWritable} vertex id
+ * and writes the ids as zig-zag varint deltas, which the iterators decode.
+ *
  * @param <I> Vertex id
  * @param <T> Data
  */
@@ -39,6 +52,8 @@ public abstract class ByteArrayVertexIdData<I extends WritableComparable, T>
   private ExtendedDataOutput extendedDataOutput;
   /** Configuration */
   private ImmutableClassesGiraphConfiguration<I, ?, ?> configuration;
+  /** Whether the pairs are sorted, with ids written as varint deltas */
+  private boolean deltaEncodedIds;
 
   /**
    * Create a new data object.
@@ -92,6 +107,7 @@ public abstract class ByteArrayVertexIdData<I extends WritableComparable, T>
    * @param data Data
    */
   public void add(I vertexId, T data) {
+    checkNotDeltaEncoded();
     try {
       vertexId.write(extendedDataOutput);
       writeData(extendedDataOutput, data);
@@ -108,6 +124,7 @@ public abstract class ByteArrayVertexIdData<I extends WritableComparable, T>
    * @param data Data
    */
   public void add(byte[] serializedId, int idPos, T data) {
+    checkNotDeltaEncoded();
     try {
       extendedDataOutput.write(serializedId, 0, idPos);
       writeData(extendedDataOutput, data);
@@ -131,7 +148,7 @@ public abstract class ByteArrayVertexIdData<I extends WritableComparable, T>
    * @return The size (in bytes) of the serialized object
    */
   public int getSerializedSize() {
-    return 1 + 4 + getSize();
+    return 1 + 1 + 4 + getSize();
   }
 
   /**
@@ -148,6 +165,141 @@ public abstract class ByteArrayVertexIdData<I extends WritableComparable, T>
    */
   public void clear() {
     extendedDataOutput.reset();
+    deltaEncodedIds = false;
+  }
+
+  /**
+   * Check whether the ids are sorted and written as varint deltas.
+   *
+   * @return True iff {@link #encodeIds()} encoded the ids
+   */
+  public boolean isDeltaEncodedIds() {
+    return deltaEncodedIds;
+  }
+
+  /**
+   * Sort the pairs by vertex id and write the ids as zig-zag varint deltas
+   * from the previous id, if {@link GiraphConstants#VERTEX_ID_DELTA_ENCODING}
+   * is set and the vertex ids are {@link IntWritable} or
+   * {@link LongWritable}. Otherwise does nothing. Pairs cannot be added
+   * afterwards, until {@link #clear()} is called.
+   */
+  public void encodeIds() {
+    if (deltaEncodedIds || isEmpty() ||
+        !GiraphConstants.VERTEX_ID_DELTA_ENCODING.get(configuration)) {
+      return;
+    }
+    Class<?> vertexIdClass = configuration.getVertexIdClass();
+    if (vertexIdClass != LongWritable.class &&
+        vertexIdClass != IntWritable.class) {
+      return;
+    }
+
+    // Find the id and the bytes of the data of each pair
+    final byte[] byteArray = getByteArray();
+    long[] ids = new long[16];
+    int[] dataStarts = new int[16];
+    int[] dataEnds = new int[16];
+    int numPairs = 0;
+    ExtendedDataInput input =
+        configuration.createExtendedDataInput(byteArray, 0, getSize());
+    I vertexId = configuration.createVertexId();
+    T data = createData();
+    try {
+      while (input.available() > 0) {
+        vertexId.readFields(input);
+        ids = LongArrays.grow(ids, numPairs + 1);
+        dataStarts = IntArrays.grow(dataStarts, numPairs + 1);
+        dataEnds = IntArrays.grow(dataEnds, numPairs + 1);
+        ids[numPairs] = getIdValue(vertexId);
+        dataStarts[numPairs] = input.getPos();
+        readData(input, data);
+        dataEnds[numPairs] = input.getPos();
+        ++numPairs;
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("encodeIds: IOException", e);
+    }
+
+    // Sort them by id, keeping the order of the data of each vertex
+    final long[] sortedIds = ids;
+    final int[] sortedStarts = dataStarts;
+    final int[] sortedEnds = dataEnds;
+    Arrays.mergeSort(0, numPairs, new AbstractIntComparator() {
+      @Override
+      public int compare(int a, int b) {
+        return sortedIds[a] < sortedIds[b] ? -1 :
+            (sortedIds[a] == sortedIds[b] ? 0 : 1);
+      }
+    }, new Swapper() {
+      @Override
+      public void swap(int a, int b) {
+        long id = sortedIds[a];
+        sortedIds[a] = sortedIds[b];
+        sortedIds[b] = id;
+        int start = sortedStarts[a];
+        sortedStarts[a] = sortedStarts[b];
+        sortedStarts[b] = start;
+        int end = sortedEnds[a];
+        sortedEnds[a] = sortedEnds[b];
+        sortedEnds[b] = end;
+      }
+    });
+
+    ExtendedDataOutput encoded =
+        configuration.createExtendedDataOutput(getSize());
+    long previousId = 0;
+    try {
+      for (int i = 0; i < numPairs; ++i) {
+        WritableUtils.writeZigZagVarLong(encoded, sortedIds[i] - previousId);
+        previousId = sortedIds[i];
+        encoded.write(byteArray, sortedStarts[i],
+            sortedEnds[i] - sortedStarts[i]);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("encodeIds: IOException", e);
+    }
+    extendedDataOutput = encoded;
+    deltaEncodedIds = true;
+  }
+
+  /**
+   * Get the value of an {@link IntWritable} or {@link LongWritable} id.
+   *
+   * @param vertexId Vertex id
+   * @return Value of the id
+   */
+  private static long getIdValue(WritableComparable vertexId) {
+    if (vertexId instanceof LongWritable) {
+      return ((LongWritable) vertexId).get();
+    } else {
+      return ((IntWritable) vertexId).get();
+    }
+  }
+
+  /**
+   * Set the value of an {@link IntWritable} or {@link LongWritable} id.
+   *
+   * @param vertexId Vertex id
+   * @param value Value of the id
+   */
+  private static void setIdValue(WritableComparable vertexId, long value) {
+    if (vertexId instanceof LongWritable) {
+      ((LongWritable) vertexId).set(value);
+    } else {
+      ((IntWritable) vertexId).set((int) value);
+    }
+  }
+
+  /**
+   * Pairs cannot be added once the ids are delta encoded, since they would
+   * break the order.
+   */
+  private void checkNotDeltaEncoded() {
+    if (deltaEncodedIds) {
+      throw new IllegalStateException(
+          "add: Cannot add pairs once the ids are delta encoded");
+    }
   }
 
   /**
@@ -171,11 +323,13 @@ public abstract class ByteArrayVertexIdData<I extends WritableComparable, T>
 
   @Override
   public void write(DataOutput dataOutput) throws IOException {
+    dataOutput.writeBoolean(deltaEncodedIds);
     WritableUtils.writeExtendedDataOutput(extendedDataOutput, dataOutput);
   }
 
   @Override
   public void readFields(DataInput dataInput) throws IOException {
+    deltaEncodedIds = dataInput.readBoolean();
     extendedDataOutput =
         WritableUtils.readExtendedDataOutput(dataInput, configuration);
   }
@@ -202,6 +356,8 @@ public abstract class ByteArrayVertexIdData<I extends WritableComparable, T>
   public class VertexIdDataIterator extends VertexIdIterator<I> {
     /** Current data. */
     private T data;
+    /** Previous id, when the ids are delta encoded */
+    private long previousId;
 
     /** Default constructor. */
     public VertexIdDataIterator() {
@@ -217,13 +373,28 @@ public abstract class ByteArrayVertexIdData<I extends WritableComparable, T>
         data = createData();
       }
       try {
-        vertexId.readFields(extendedDataInput);
+        readVertexId();
         readData(extendedDataInput, data);
       } catch (IOException e) {
         throw new IllegalStateException("next: IOException", e);
       }
     }
 
+    /**
+     * Read the id of the next pair into the current vertex id, which must
+     * not be null.
+     *
+     * @throws IOException
+     */
+    protected void readVertexId() throws IOException {
+      if (deltaEncodedIds) {
+        previousId += WritableUtils.readZigZagVarLong(extendedDataInput);
+        setIdValue(vertexId, previousId);
+      } else {
+        vertexId.readFields(extendedDataInput);
+      }
+    }
+
     /**
      * Get the current data.
      *
@@ -169,7 +169,7 @@ public class ByteArrayVertexIdMessages<I extends WritableComparable,
       }
 
       try {
-        vertexId.readFields(extendedDataInput);
+        readVertexId();
         messageBytes = extendedDataInput.readInt();
         messageOffset = extendedDataInput.getPos();
         if (extendedDataInput.skipBytes(messageBytes) != messageBytes) {
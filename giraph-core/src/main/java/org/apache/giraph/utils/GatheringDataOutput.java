@@ -0,0 +1,39 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.utils;
+
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Data output which can keep references to byte arrays instead of copying
+ * them, e.g. to send them with a gathering write.
+ */
+public interface GatheringDataOutput extends DataOutput {
+  /**
+   * Write a part of a byte array, possibly by keeping a reference to it.
+   * The array must not be modified after calling this method.
+   *
+   * @param b Byte array
+   * @param off Offset of the part to write
+   * @param len Length of the part to write
+   * @throws IOException
+   */
+  void writeWithoutCopy(byte[] b, int off, int len) throws IOException;
+}
@@ -351,7 +351,9 @@ public class WritableUtils {
   }
 
   /**
-   * Write ExtendedDataOutput to DataOutput
+   * Write ExtendedDataOutput to DataOutput. If the DataOutput is a
+   * {@link GatheringDataOutput}, the byte array may not be copied and must
+   * not be modified afterwards.
    *
    * @param extendedDataOutput ExtendedDataOutput to write
    * @param out DataOutput to write to
@@ -360,8 +362,50 @@ public class WritableUtils {
       ExtendedDataOutput extendedDataOutput, DataOutput out)
     throws IOException {
     out.writeInt(extendedDataOutput.getPos());
-    out.write(
-        extendedDataOutput.getByteArray(), 0, extendedDataOutput.getPos());
+    if (out instanceof GatheringDataOutput) {
+      ((GatheringDataOutput) out).writeWithoutCopy(
+          extendedDataOutput.getByteArray(), 0, extendedDataOutput.getPos());
+    } else {
+      out.write(
+          extendedDataOutput.getByteArray(), 0, extendedDataOutput.getPos());
+    }
+  }
+
+  /**
+   * Write a long as a zig-zag varint, so values close to zero (including
+   * negative ones) take few bytes.
+   *
+   * @param out DataOutput to write to
+   * @param value Value to write
+   * @throws IOException
+   */
+  public static void writeZigZagVarLong(DataOutput out, long value)
+    throws IOException {
+    long zigZag = (value << 1) ^ (value >> 63);
+    while ((zigZag & ~0x7FL) != 0) {
+      out.writeByte((int) ((zigZag & 0x7F) | 0x80));
+      zigZag >>>= 7;
+    }
+    out.writeByte((int) zigZag);
+  }
+
+  /**
+   * Read a long written by {@link #writeZigZagVarLong(DataOutput, long)}.
+   *
+   * @param in DataInput to read from
+   * @return Value read
+   * @throws IOException
+   */
+  public static long readZigZagVarLong(DataInput in) throws IOException {
+    long zigZag = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = in.readByte();
+      zigZag |= (long) (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return (zigZag >>> 1) ^ -(zigZag & 1);
   }
 
   /**
@@ -150,6 +150,14 @@ public class RequestFailureTest {
     checkSendingTwoRequests();
   }
 
+  @Test
+  public void limitOpenRequestBytes() throws IOException {
+    // Every request is over the limit, so each waits for the previous one
+    GiraphConstants.MAX_OPEN_REQUEST_BYTES.set(conf, 1);
+
+    checkSendingTwoRequests();
+  }
+
   private void checkSendingTwoRequests() throws IOException {
     // Start the service
     serverData = MockUtils.createNewServerData(conf, context);
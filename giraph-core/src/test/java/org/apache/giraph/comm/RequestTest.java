@@ -21,6 +21,7 @@ package org.apache.giraph.comm;
 import org.apache.giraph.comm.netty.NettyClient;
 import org.apache.giraph.comm.netty.NettyServer;
 import org.apache.giraph.comm.netty.handler.WorkerRequestServerHandler;
+import org.apache.giraph.comm.requests.RequestType;
 import org.apache.giraph.comm.requests.SendPartitionMutationsRequest;
 import org.apache.giraph.comm.requests.SendVertexRequest;
 import org.apache.giraph.comm.requests.SendWorkerMessagesRequest;
@@ -78,8 +79,16 @@ public class RequestTest {
 
   @Before
   public void setUp() throws IOException {
+    startService(new GiraphConfiguration());
+  }
+
+  /**
+   * Start the server and connect the client.
+   *
+   * @param tmpConf Configuration to use
+   */
+  private void startService(GiraphConfiguration tmpConf) throws IOException {
     // Setup the conf
-    GiraphConfiguration tmpConf = new GiraphConfiguration();
     GiraphConstants.COMPUTATION_CLASS.set(tmpConf, IntNoOpComputation.class);
     conf = new ImmutableClassesGiraphConfiguration(tmpConf);
 
@@ -191,6 +200,201 @@ public class RequestTest {
     assertEquals(35, messageSum);
   }
 
+  @Test
+  public void sendWorkerMessagesRequestZeroCopy() throws IOException {
+    client.stop();
+    server.stop();
+    GiraphConfiguration tmpConf = new GiraphConfiguration();
+    GiraphConstants.NETTY_REQUEST_ENCODER_ZERO_COPY.set(tmpConf, true);
+    startService(tmpConf);
+    sendLargeWorkerMessagesRequest();
+  }
+
+  @Test
+  public void sendWorkerMessagesRequestCompressed() throws IOException {
+    client.stop();
+    server.stop();
+    GiraphConfiguration tmpConf = new GiraphConfiguration();
+    tmpConf.setNettyCompressedRequestTypes(
+        RequestType.SEND_WORKER_MESSAGES_REQUEST);
+    startService(tmpConf);
+    sendLargeWorkerMessagesRequest();
+  }
+
+  @Test
+  public void sendWorkerMessagesRequestsWithCredits() throws IOException {
+    client.stop();
+    server.stop();
+    GiraphConfiguration tmpConf = new GiraphConfiguration();
+    GiraphConstants.CREDIT_FLOW_CONTROL.set(tmpConf, true);
+    // Credits smaller than a request: each request waits for the previous
+    GiraphConstants.MAX_CREDIT_BYTES.set(tmpConf, 1);
+    startService(tmpConf);
+
+    // Send one request per vertex
+    int numRequests = 5;
+    for (int i = 0; i < numRequests; ++i) {
+      PairList<Integer, ByteArrayVertexIdMessages<IntWritable, IntWritable>>
+          dataToSend = new PairList<Integer,
+          ByteArrayVertexIdMessages<IntWritable, IntWritable>>();
+      dataToSend.initialize();
+      ByteArrayVertexIdMessages<IntWritable, IntWritable> vertexIdMessages =
+          new ByteArrayVertexIdMessages<IntWritable, IntWritable>(
+              new TestMessageValueFactory<IntWritable>(IntWritable.class));
+      vertexIdMessages.setConf(conf);
+      vertexIdMessages.initialize();
+      dataToSend.add(0, vertexIdMessages);
+      vertexIdMessages.add(new IntWritable(i), new IntWritable(i));
+      client.sendWritableRequest(workerInfo.getTaskId(),
+          new SendWorkerMessagesRequest<IntWritable, IntWritable>(dataToSend));
+    }
+    client.waitAllRequests();
+
+    // Stop the service
+    client.stop();
+    server.stop();
+
+    // Check the output
+    Iterable<IntWritable> vertices =
+        serverData.getIncomingMessageStore().getPartitionDestinationVertices(0);
+    int keySum = 0;
+    int messageSum = 0;
+    for (IntWritable vertexId : vertices) {
+      keySum += vertexId.get();
+      Iterable<IntWritable> messages =
+          serverData.<IntWritable>getIncomingMessageStore().getVertexMessages(
+              vertexId);
+      synchronized (messages) {
+        for (IntWritable message : messages) {
+          messageSum += message.get();
+        }
+      }
+    }
+    assertEquals(10, keySum);
+    assertEquals(10, messageSum);
+  }
+
+  @Test
+  public void sendWorkerMessagesRequestDeltaEncodedIds() throws IOException {
+    client.stop();
+    server.stop();
+    GiraphConfiguration tmpConf = new GiraphConfiguration();
+    GiraphConstants.VERTEX_ID_DELTA_ENCODING.set(tmpConf, true);
+    startService(tmpConf);
+
+    // Data to send: unsorted ids, including negative ones
+    PairList<Integer, ByteArrayVertexIdMessages<IntWritable, IntWritable>>
+        dataToSend = new PairList<Integer,
+        ByteArrayVertexIdMessages<IntWritable, IntWritable>>();
+    dataToSend.initialize();
+    ByteArrayVertexIdMessages<IntWritable, IntWritable> vertexIdMessages =
+        new ByteArrayVertexIdMessages<IntWritable, IntWritable>(
+            new TestMessageValueFactory<IntWritable>(IntWritable.class));
+    vertexIdMessages.setConf(conf);
+    vertexIdMessages.initialize();
+    dataToSend.add(0, vertexIdMessages);
+    for (int j = 0; j < 5; ++j) {
+      for (int i = 10; i >= -10; --i) {
+        vertexIdMessages.add(new IntWritable(i * 1000), new IntWritable(j));
+      }
+    }
+    int unencodedSize = vertexIdMessages.getSize();
+
+    // Send the request
+    SendWorkerMessagesRequest<IntWritable, IntWritable> request =
+      new SendWorkerMessagesRequest<IntWritable, IntWritable>(dataToSend);
+    assertTrue(vertexIdMessages.isDeltaEncodedIds());
+    assertTrue(vertexIdMessages.getSize() < unencodedSize);
+    client.sendWritableRequest(workerInfo.getTaskId(), request);
+    client.waitAllRequests();
+
+    // Stop the service
+    client.stop();
+    server.stop();
+
+    // Check the output
+    Iterable<IntWritable> vertices =
+        serverData.getIncomingMessageStore().getPartitionDestinationVertices(0);
+    int numVertices = 0;
+    for (IntWritable vertexId : vertices) {
+      assertEquals(0, vertexId.get() % 1000);
+      ++numVertices;
+      int messageSum = 0;
+      Iterable<IntWritable> messages =
+          serverData.<IntWritable>getIncomingMessageStore().getVertexMessages(
+              vertexId);
+      synchronized (messages) {
+        for (IntWritable message : messages) {
+          messageSum += message.get();
+        }
+      }
+      assertEquals(10, messageSum);
+    }
+    assertEquals(21, numVertices);
+  }
+
+  /**
+   * Send a request with messages in two byte arrays, one large enough to
+   * be wrapped by the zero-copy encoder and compressed, and check they
+   * were all received.
+   */
+  private void sendLargeWorkerMessagesRequest() throws IOException {
+    // Data to send: a small array which is copied, and a large one which
+    // is wrapped
+    int[] numVertices = new int[] { 1, 40 };
+    int messagesPerVertex = 100;
+    PairList<Integer, ByteArrayVertexIdMessages<IntWritable, IntWritable>>
+        dataToSend = new PairList<Integer,
+        ByteArrayVertexIdMessages<IntWritable, IntWritable>>();
+    dataToSend.initialize();
+    int firstId = 0;
+    for (int vertices : numVertices) {
+      ByteArrayVertexIdMessages<IntWritable, IntWritable> vertexIdMessages =
+          new ByteArrayVertexIdMessages<IntWritable, IntWritable>(
+              new TestMessageValueFactory<IntWritable>(IntWritable.class));
+      vertexIdMessages.setConf(conf);
+      vertexIdMessages.initialize();
+      dataToSend.add(0, vertexIdMessages);
+      for (int i = firstId; i < firstId + vertices; ++i) {
+        IntWritable vertexId = new IntWritable(i);
+        for (int j = 0; j < messagesPerVertex; ++j) {
+          vertexIdMessages.add(vertexId, new IntWritable(j));
+        }
+      }
+      firstId += vertices;
+    }
+
+    // Send the request
+    SendWorkerMessagesRequest<IntWritable, IntWritable> request =
+      new SendWorkerMessagesRequest<IntWritable, IntWritable>(dataToSend);
+    client.sendWritableRequest(workerInfo.getTaskId(), request);
+    client.waitAllRequests();
+
+    // Stop the service
+    client.stop();
+    server.stop();
+
+    // Check the output
+    Iterable<IntWritable> vertices =
+        serverData.getIncomingMessageStore().getPartitionDestinationVertices(0);
+    int keySum = 0;
+    int messageSum = 0;
+    for (IntWritable vertexId : vertices) {
+      keySum += vertexId.get();
+      Iterable<IntWritable> messages =
+          serverData.<IntWritable>getIncomingMessageStore().getVertexMessages(
+              vertexId);
+      synchronized (messages) {
+        for (IntWritable message : messages) {
+          messageSum += message.get();
+        }
+      }
+    }
+    assertEquals(firstId * (firstId - 1) / 2, keySum);
+    assertEquals(firstId * messagesPerVertex * (messagesPerVertex - 1) / 2,
+        messageSum);
+  }
+
   @Test
   public void sendWorkerOneToAllMessagesRequest() throws IOException {
     // Data to send
@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.giraph.comm;
+
+import org.apache.giraph.combiner.Combiner;
+import org.apache.giraph.combiner.DoubleSumCombiner;
+import org.apache.giraph.combiner.FloatSumCombiner;
+import org.apache.giraph.conf.GiraphConfiguration;
+import org.apache.giraph.graph.BasicComputation;
+import org.apache.giraph.graph.Vertex;
+import org.apache.giraph.utils.InternalVertexRunner;
+import org.apache.giraph.utils.TestGraph;
+import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.FloatWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+/** Test combining messages before sending them */
+public class TestSendMessageCombiningCache {
+  /** Number of vertices in the test graphs */
+  private static final int NUM_VERTICES = 100;
+  /** Number of vertices receiving messages */
+  private static final int NUM_TARGETS = 7;
+
+  @Test
+  public void testLongIds() throws Exception {
+    GiraphConfiguration conf = new GiraphConfiguration();
+    conf.setComputationClass(LongSumComputation.class);
+    conf.setCombinerClass(DoubleSumCombiner.class);
+    conf.enableCombineMsgsOnSend();
+    // All vertices are local in this test, so they must be sent to be cached
+    conf.useDirectLocalMessages(false);
+    TestGraph<LongWritable, DoubleWritable, NullWritable> graph =
+        new TestGraph<LongWritable, DoubleWritable, NullWritable>(conf);
+    for (int i = 0; i < NUM_VERTICES; i++) {
+      graph.addVertex(new LongWritable(i), new DoubleWritable(i));
+    }
+    graph = InternalVertexRunner.run(conf, graph);
+
+    assertEquals(NUM_VERTICES, graph.getVertices().size());
+    for (int target = 0; target < NUM_VERTICES; target++) {
+      assertEquals(expectedSum(target),
+          graph.getVertex(new LongWritable(target)).getValue().get(), 0d);
+    }
+  }
+
+  @Test
+  public void testIntIds() throws Exception {
+    GiraphConfiguration conf = new GiraphConfiguration();
+    conf.setComputationClass(IntSumComputation.class);
+    conf.setCombinerClass(IntIdDoubleSumCombiner.class);
+    conf.enableCombineMsgsOnSend();
+    // All vertices are local in this test, so they must be sent to be cached
+    conf.useDirectLocalMessages(false);
+    TestGraph<IntWritable, DoubleWritable, NullWritable> graph =
+        new TestGraph<IntWritable, DoubleWritable, NullWritable>(conf);
+    for (int i = 0; i < NUM_VERTICES; i++) {
+      graph.addVertex(new IntWritable(i), new DoubleWritable(i));
+    }
+    graph = InternalVertexRunner.run(conf, graph);
+
+    assertEquals(NUM_VERTICES, graph.getVertices().size());
+    for (int target = 0; target < NUM_VERTICES; target++) {
+      assertEquals(expectedSum(target),
+          graph.getVertex(new IntWritable(target)).getValue().get(), 0d);
+    }
+  }
+
+  @Test
+  public void testIntIdsFloatMessages() throws Exception {
+    GiraphConfiguration conf = new GiraphConfiguration();
+    conf.setComputationClass(IntFloatSumComputation.class);
+    conf.setCombinerClass(FloatSumCombiner.class);
+    conf.enableCombineMsgsOnSend();
+    // All vertices are local in this test, so they must be sent to be cached
+    conf.useDirectLocalMessages(false);
+    TestGraph<IntWritable, FloatWritable, NullWritable> graph =
+        new TestGraph<IntWritable, FloatWritable, NullWritable>(conf);
+    for (int i = 0; i < NUM_VERTICES; i++) {
+      graph.addVertex(new IntWritable(i), new FloatWritable(i));
+    }
+    graph = InternalVertexRunner.run(conf, graph);
+
+    assertEquals(NUM_VERTICES, graph.getVertices().size());
+    for (int target = 0; target < NUM_VERTICES; target++) {
+      assertEquals(expectedSum(target),
+          graph.getVertex(new IntWritable(target)).getValue().get(), 0d);
+    }
+  }
+
+  /**
+   * Sum of the values of the vertices sending messages to a vertex. Every
+   * vertex sends its value twice to the vertex id % NUM_TARGETS.
+   *
+   * @param target Vertex id
+   * @return Expected vertex value after the computation
+   */
+  private static double expectedSum(int target) {
+    if (target >= NUM_TARGETS) {
+      return 0;
+    }
+    double sum = 0;
+    for (int i = target; i < NUM_VERTICES; i += NUM_TARGETS) {
+      sum += 2 * i;
+    }
+    return sum;
+  }
+
+  /**
+   * Sends the vertex value twice to the vertex id % NUM_TARGETS, and
+   * stores the sum of the messages received.
+   */
+  public static class LongSumComputation extends
+      BasicComputation<LongWritable, DoubleWritable, NullWritable,
+          DoubleWritable> {
+    @Override
+    public void compute(
+        Vertex<LongWritable, DoubleWritable, NullWritable> vertex,
+        Iterable<DoubleWritable> messages) throws IOException {
+      if (getSuperstep() == 0) {
+        LongWritable target =
+            new LongWritable(vertex.getId().get() % NUM_TARGETS);
+        DoubleWritable message = new DoubleWritable();
+        message.set(vertex.getValue().get());
+        sendMessage(target, message);
+        // The message object is reused by the sender
+        message.set(vertex.getValue().get());
+        sendMessage(target, message);
+      } else {
+        double sum = 0;
+        for (DoubleWritable message : messages) {
+          sum += message.get();
+        }
+        vertex.getValue().set(sum);
+        vertex.voteToHalt();
+      }
+    }
+  }
+
+  /**
+   * Same as {@link LongSumComputation} with int vertex ids.
+   */
+  public static class IntSumComputation extends
+      BasicComputation<IntWritable, DoubleWritable, NullWritable,
+          DoubleWritable> {
+    @Override
+    public void compute(
+        Vertex<IntWritable, DoubleWritable, NullWritable> vertex,
+        Iterable<DoubleWritable> messages) throws IOException {
+      if (getSuperstep() == 0) {
+        IntWritable target =
+            new IntWritable(vertex.getId().get() % NUM_TARGETS);
+        sendMessage(target, new DoubleWritable(vertex.getValue().get()));
+        // The id object is reused by the sender
+        target.set(vertex.getId().get() % NUM_TARGETS);
+        sendMessage(target, new DoubleWritable(vertex.getValue().get()));
+      } else {
+        double sum = 0;
+        for (DoubleWritable message : messages) {
+          sum += message.get();
+        }
+        vertex.getValue().set(sum);
+        vertex.voteToHalt();
+      }
+    }
+  }
+
+  /**
+   * Same as {@link IntSumComputation} with float values and messages.
+   */
+  public static class IntFloatSumComputation extends
+      BasicComputation<IntWritable, FloatWritable, NullWritable,
+          FloatWritable> {
+    @Override
+    public void compute(
+        Vertex<IntWritable, FloatWritable, NullWritable> vertex,
+        Iterable<FloatWritable> messages) throws IOException {
+      if (getSuperstep() == 0) {
+        IntWritable target =
+            new IntWritable(vertex.getId().get() % NUM_TARGETS);
+        FloatWritable message = new FloatWritable(vertex.getValue().get());
+        sendMessage(target, message);
+        // The message object is reused by the sender
+        message.set(vertex.getValue().get());
+        sendMessage(target, message);
+      } else {
+        float sum = 0;
+        for (FloatWritable message : messages) {
+          sum += message.get();
+        }
+        vertex.getValue().set(sum);
+        vertex.voteToHalt();
+      }
+    }
+  }
+
+  /** Sum combiner for int vertex ids */
+  public static class IntIdDoubleSumCombiner
+      extends Combiner<IntWritable, DoubleWritable> {
+    @Override
+    public void combine(IntWritable vertexIndex,
+        DoubleWritable originalMessage, DoubleWritable messageToCombine) {
+      originalMessage.set(originalMessage.get() + messageToCombine.get());
+    }
+
+    @Override
+    public DoubleWritable createInitialMessage() {
+      return new DoubleWritable(0);
+    }
+  }
+}
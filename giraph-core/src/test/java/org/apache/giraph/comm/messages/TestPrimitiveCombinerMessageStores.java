@@ -0,0 +1,306 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.comm.messages;
+
+import org.apache.giraph.bsp.CentralizedServiceWorker;
+import org.apache.giraph.combiner.Combiner;
+import org.apache.giraph.combiner.MinimumDoubleCombiner;
+import org.apache.giraph.combiner.SimpleSumCombiner;
+import org.apache.giraph.comm.messages.primitives.IntDoubleMessageStore;
+import org.apache.giraph.comm.messages.primitives.IntLongMessageStore;
+import org.apache.giraph.comm.messages.primitives.LongIntMessageStore;
+import org.apache.giraph.comm.messages.primitives.LongLongMessageStore;
+import org.apache.giraph.conf.GiraphConfiguration;
+import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.giraph.factories.TestMessageValueFactory;
+import org.apache.giraph.graph.BasicComputation;
+import org.apache.giraph.graph.Vertex;
+import org.apache.giraph.partition.Partition;
+import org.apache.giraph.partition.PartitionStore;
+import org.apache.giraph.utils.ByteArrayVertexIdMessages;
+import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparable;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+
+import junit.framework.Assert;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class TestPrimitiveCombinerMessageStores {
+  private static final int NUM_PARTITIONS = 2;
+  private static CentralizedServiceWorker service;
+
+  @Before
+  public void prepare() throws IOException {
+    service = Mockito.mock(CentralizedServiceWorker.class);
+    Mockito.when(
+        service.getPartitionId(Mockito.any(WritableComparable.class)))
+        .thenAnswer(new Answer<Integer>() {
+          @Override
+          public Integer answer(InvocationOnMock invocation) {
+            Object vertexId = invocation.getArguments()[0];
+            long id = (vertexId instanceof IntWritable) ?
+                ((IntWritable) vertexId).get() :
+                ((LongWritable) vertexId).get();
+            return (int) (id % NUM_PARTITIONS);
+          }
+        });
+    PartitionStore partitionStore = Mockito.mock(PartitionStore.class);
+    Mockito.when(service.getPartitionStore()).thenReturn(partitionStore);
+    Mockito.when(partitionStore.getPartitionIds()).thenReturn(
+        Lists.newArrayList(0, 1));
+    Partition partition = Mockito.mock(Partition.class);
+    Mockito.when(partition.getVertexCount()).thenReturn(Long.valueOf(1));
+    Mockito.when(partitionStore.getPartition(0)).thenReturn(partition);
+    Mockito.when(partitionStore.getPartition(1)).thenReturn(partition);
+  }
+
+  private static class NoOpComputation<I extends WritableComparable,
+      M extends Writable> extends BasicComputation<I, NullWritable,
+      NullWritable, M> {
+    @Override
+    public void compute(Vertex<I, NullWritable, NullWritable> vertex,
+        Iterable<M> messages) throws IOException {
+    }
+  }
+
+  private static class LongIntComputation
+      extends NoOpComputation<LongWritable, IntWritable> { }
+
+  private static class IntLongComputation
+      extends NoOpComputation<IntWritable, LongWritable> { }
+
+  private static class IntDoubleComputation
+      extends NoOpComputation<IntWritable, DoubleWritable> { }
+
+  private static class LongLongComputation
+      extends NoOpComputation<LongWritable, LongWritable> { }
+
+  /** Combiner without a primitive form, keeping the maximum */
+  public static class LongMaxCombiner<I extends WritableComparable>
+      extends Combiner<I, LongWritable> {
+    @Override
+    public void combine(I vertexIndex,
+        LongWritable originalMessage, LongWritable messageToCombine) {
+      if (originalMessage.get() < messageToCombine.get()) {
+        originalMessage.set(messageToCombine.get());
+      }
+    }
+
+    @Override
+    public LongWritable createInitialMessage() {
+      return new LongWritable(Long.MIN_VALUE);
+    }
+  }
+
+  private static <I extends WritableComparable, M extends Writable>
+  ByteArrayVertexIdMessages<I, M> createMessages(
+      Class<? extends NoOpComputation<I, M>> computationClass,
+      Class<M> messageClass) {
+    GiraphConfiguration initConf = new GiraphConfiguration();
+    initConf.setComputationClass(computationClass);
+    ByteArrayVertexIdMessages<I, M> messages =
+        new ByteArrayVertexIdMessages<I, M>(
+            new TestMessageValueFactory<M>(messageClass));
+    messages.setConf(new ImmutableClassesGiraphConfiguration(initConf));
+    messages.initialize();
+    return messages;
+  }
+
+  private static <M extends Writable> M getMessage(
+      MessageStore<?, M> messageStore, WritableComparable vertexId)
+      throws IOException {
+    Iterable<M> messages =
+        ((MessageStore<WritableComparable, M>) messageStore)
+            .getVertexMessages(vertexId);
+    Assert.assertEquals(1, Iterables.size(messages));
+    return messages.iterator().next();
+  }
+
+  @Test
+  public void testLongIntMessageStore() throws IOException {
+    LongIntMessageStore messageStore =
+        new LongIntMessageStore(service, new SimpleSumCombiner());
+    ByteArrayVertexIdMessages<LongWritable, IntWritable> messages =
+        createMessages(LongIntComputation.class, IntWritable.class);
+    messages.add(new LongWritable(0), new IntWritable(1));
+    messages.add(new LongWritable(2), new IntWritable(3));
+    messages.add(new LongWritable(0), new IntWritable(4));
+    messageStore.addPartitionMessages(0, messages);
+    messages = createMessages(LongIntComputation.class, IntWritable.class);
+    messages.add(new LongWritable(0), new IntWritable(5));
+    messageStore.addPartitionMessages(0, messages);
+
+    Assert.assertEquals(10,
+        getMessage(messageStore, new LongWritable(0)).get());
+    Assert.assertEquals(3, getMessage(messageStore, new LongWritable(2)).get());
+    Assert.assertTrue(Iterables.isEmpty(
+        messageStore.getVertexMessages(new LongWritable(1))));
+  }
+
+  @Test
+  public void testIntDoubleMessageStore() throws IOException {
+    // The combiner does not depend on the type of the vertex ids
+    Combiner combiner = new MinimumDoubleCombiner();
+    IntDoubleMessageStore messageStore =
+        new IntDoubleMessageStore(service, combiner);
+    ByteArrayVertexIdMessages<IntWritable, DoubleWritable> messages =
+        createMessages(IntDoubleComputation.class, DoubleWritable.class);
+    messages.add(new IntWritable(1), new DoubleWritable(4));
+    messages.add(new IntWritable(1), new DoubleWritable(-2));
+    messages.add(new IntWritable(3), new DoubleWritable(7));
+    messages.add(new IntWritable(1), new DoubleWritable(3));
+    messageStore.addPartitionMessages(1, messages);
+
+    Assert.assertEquals(-2.0,
+        getMessage(messageStore, new IntWritable(1)).get());
+    Assert.assertEquals(7.0,
+        getMessage(messageStore, new IntWritable(3)).get());
+  }
+
+  @Test
+  public void testIntLongMessageStoreWritableCombiner() throws IOException {
+    IntLongMessageStore messageStore =
+        new IntLongMessageStore(service, new LongMaxCombiner<IntWritable>());
+    ByteArrayVertexIdMessages<IntWritable, LongWritable> messages =
+        createMessages(IntLongComputation.class, LongWritable.class);
+    messages.add(new IntWritable(0), new LongWritable(4));
+    messages.add(new IntWritable(0), new LongWritable(9));
+    messages.add(new IntWritable(0), new LongWritable(2));
+    messageStore.addPartitionMessages(0, messages);
+
+    Assert.assertEquals(9, getMessage(messageStore, new IntWritable(0)).get());
+  }
+
+  @Test
+  public void testLocalMessages() throws IOException {
+    IntLongMessageStore messageStore =
+        new IntLongMessageStore(service, new LongMaxCombiner<IntWritable>());
+    ByteArrayVertexIdMessages<IntWritable, LongWritable> messages =
+        createMessages(IntLongComputation.class, LongWritable.class);
+    messages.add(new IntWritable(0), new LongWritable(4));
+    messageStore.addPartitionMessages(0, messages);
+    // Id and message objects are reused by the sender
+    IntWritable vertexId = new IntWritable(0);
+    LongWritable message = new LongWritable(7);
+    messageStore.addLocalMessage(0, vertexId, message);
+    vertexId.set(2);
+    message.set(-1);
+    messageStore.addLocalMessage(0, vertexId, message);
+    message.set(3);
+    messageStore.addLocalMessage(0, vertexId, message);
+
+    Assert.assertEquals(7, getMessage(messageStore, new IntWritable(0)).get());
+    Assert.assertEquals(3, getMessage(messageStore, new IntWritable(2)).get());
+  }
+
+  @Test
+  public void testLongLongMessageStoreSerialization() throws IOException {
+    LongLongMessageStore messageStore =
+        new LongLongMessageStore(service,
+            new LongMaxCombiner<LongWritable>());
+    ByteArrayVertexIdMessages<LongWritable, LongWritable> messages =
+        createMessages(LongLongComputation.class, LongWritable.class);
+    messages.add(new LongWritable(1), new LongWritable(Long.MAX_VALUE));
+    messages.add(new LongWritable(3), new LongWritable(-5));
+    messageStore.addPartitionMessages(1, messages);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    messageStore.writePartition(new DataOutputStream(bytes), 1);
+    LongLongMessageStore readStore =
+        new LongLongMessageStore(service,
+            new LongMaxCombiner<LongWritable>());
+    readStore.readFieldsForPartition(new DataInputStream(
+        new ByteArrayInputStream(bytes.toByteArray())), 1);
+
+    Assert.assertEquals(Long.MAX_VALUE,
+        getMessage(readStore, new LongWritable(1)).get());
+    Assert.assertEquals(-5, getMessage(readStore, new LongWritable(3)).get());
+    Assert.assertEquals(2,
+        Iterables.size(readStore.getPartitionDestinationVertices(1)));
+  }
+
+  @Test
+  public void testStripedLongIntMessageStore() throws Exception {
+    final LongIntMessageStore messageStore =
+        new LongIntMessageStore(service, new SimpleSumCombiner(), 5);
+    int numThreads = 4;
+    final int numVertices = 1000;
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    List<Future<Void>> futures = Lists.newArrayList();
+    for (int t = 0; t < numThreads; t++) {
+      futures.add(executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          for (int round = 0; round < 10; round++) {
+            ByteArrayVertexIdMessages<LongWritable, IntWritable> messages =
+                createMessages(LongIntComputation.class, IntWritable.class);
+            for (int i = 0; i < numVertices; i++) {
+              messages.add(new LongWritable(i * NUM_PARTITIONS),
+                  new IntWritable(1));
+            }
+            messageStore.addPartitionMessages(0, messages);
+          }
+          return null;
+        }
+      }));
+    }
+    for (Future<Void> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+
+    Assert.assertEquals(numVertices,
+        Iterables.size(messageStore.getPartitionDestinationVertices(0)));
+    for (int i = 0; i < numVertices; i++) {
+      Assert.assertEquals(numThreads * 10, getMessage(messageStore,
+          new LongWritable(i * NUM_PARTITIONS)).get());
+    }
+
+    // Stripes do not change the serialized form
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    messageStore.writePartition(new DataOutputStream(bytes), 0);
+    LongIntMessageStore readStore =
+        new LongIntMessageStore(service, new SimpleSumCombiner());
+    readStore.readFieldsForPartition(new DataInputStream(
+        new ByteArrayInputStream(bytes.toByteArray())), 0);
+    Assert.assertEquals(numThreads * 10,
+        getMessage(readStore, new LongWritable(2)).get());
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.comm.netty;
+
+import org.apache.giraph.conf.GiraphConfiguration;
+import org.apache.giraph.conf.GiraphConstants;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** Test the client side of the credit-based flow control */
+public class TestCreditFlowControl {
+  /** Destination task id */
+  private static final int TASK_ID = 2;
+  /** Credits granted before the first response */
+  private static final long CREDIT_BYTES = 100;
+
+  /**
+   * Create the flow control.
+   *
+   * @return Flow control
+   */
+  private static CreditFlowControl createFlowControl() {
+    GiraphConfiguration conf = new GiraphConfiguration();
+    GiraphConstants.MAX_CREDIT_BYTES.set(conf, CREDIT_BYTES);
+    return new CreditFlowControl(conf);
+  }
+
+  @Test
+  public void testReserveCredits() {
+    CreditFlowControl flowControl = createFlowControl();
+    // A request larger than the credits is sent if nothing is open
+    assertTrue(flowControl.tryReserveCredits(TASK_ID, 150));
+    assertFalse(flowControl.tryReserveCredits(TASK_ID, 1));
+    assertEquals(150, flowControl.getOpenRequestBytes(TASK_ID));
+
+    flowControl.requestCompleted(TASK_ID, 150, 50);
+    assertEquals(0, flowControl.getOpenRequestBytes(TASK_ID));
+    assertEquals(50, flowControl.getCreditBytes(TASK_ID));
+    assertTrue(flowControl.tryReserveCredits(TASK_ID, 30));
+    assertTrue(flowControl.tryReserveCredits(TASK_ID, 20));
+    assertFalse(flowControl.tryReserveCredits(TASK_ID, 1));
+    // Other destinations have credits of their own
+    assertTrue(flowControl.tryReserveCredits(TASK_ID + 1, 80));
+  }
+
+  @Test
+  public void testConcurrentReservations() throws Exception {
+    final CreditFlowControl flowControl = createFlowControl();
+    int numThreads = 8;
+    final CountDownLatch start = new CountDownLatch(1);
+    final AtomicInteger reserved = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    List<Future<Void>> results = Lists.newArrayList();
+    for (int i = 0; i < numThreads; i++) {
+      results.add(executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws InterruptedException {
+          start.await();
+          for (int j = 0; j < 1000; j++) {
+            if (flowControl.tryReserveCredits(TASK_ID, 30)) {
+              reserved.incrementAndGet();
+            }
+          }
+          return null;
+        }
+      }));
+    }
+    start.countDown();
+    for (Future<Void> result : results) {
+      result.get();
+    }
+    executor.shutdown();
+
+    // Only three requests of 30 bytes fit in 100 bytes of credits
+    assertEquals(3, reserved.get());
+    assertEquals(90, flowControl.getOpenRequestBytes(TASK_ID));
+  }
+}
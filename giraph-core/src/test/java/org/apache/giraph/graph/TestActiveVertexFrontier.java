@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.graph;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.giraph.conf.GiraphConfiguration;
+import org.apache.giraph.conf.GiraphConstants;
+import org.apache.giraph.utils.InternalVertexRunner;
+import org.apache.giraph.utils.TestGraph;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.junit.Test;
+
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+/** Test computing only the frontier of active vertices */
+public class TestActiveVertexFrontier {
+  /** Number of vertices in the chain */
+  private static final int CHAIN_LENGTH = 20;
+  /** Vertex outside the chain, which stays active for some supersteps */
+  private static final int COUNTER_ID = CHAIN_LENGTH;
+  /** Halted vertex which gets a message from the added vertex */
+  private static final int RECEIVER_ID = CHAIN_LENGTH + 1;
+  /** Vertex added by the counter vertex (not in the returned graph) */
+  private static final int ADDED_ID = CHAIN_LENGTH + 2;
+  /** Last superstep in which the counter vertex is active */
+  private static final int COUNTER_SUPERSTEPS = 5;
+  /** Superstep in which the counter vertex adds a vertex */
+  private static final int ADD_SUPERSTEP = 2;
+
+  @Test
+  public void testLongIdsFrontier() throws Exception {
+    checkLongIds(newLongConf(true));
+  }
+
+  @Test
+  public void testLongIdsAllVertices() throws Exception {
+    checkLongIds(newLongConf(false));
+  }
+
+  @Test
+  public void testLongIdsFrontierOutOfCoreMessages() throws Exception {
+    // Out-of-core messages are read in vertex id order, so all vertices
+    // are computed even though the frontier is enabled
+    GiraphConfiguration conf = newLongConf(true);
+    File directory = Files.createTempDir();
+    try {
+      GiraphConstants.USE_OUT_OF_CORE_MESSAGES.set(conf, true);
+      GiraphConstants.MAX_MESSAGES_IN_MEMORY.set(conf, 1);
+      GiraphConstants.MESSAGES_DIRECTORY.set(
+          conf, new File(directory, "giraph_messages").toString());
+      checkLongIds(conf);
+    } finally {
+      FileUtils.deleteDirectory(directory);
+    }
+  }
+
+  @Test
+  public void testIntIdsFrontier() throws Exception {
+    GiraphConfiguration conf = new GiraphConfiguration();
+    conf.setComputationClass(IntChainComputation.class);
+    conf.enableActiveVertexFrontier();
+    TestGraph<IntWritable, LongWritable, NullWritable> graph =
+        new TestGraph<IntWritable, LongWritable, NullWritable>(conf);
+    for (int i = 0; i < CHAIN_LENGTH - 1; i++) {
+      graph.addEdge(new IntWritable(i), new IntWritable(i + 1),
+          NullWritable.get());
+    }
+    graph.addVertex(new IntWritable(CHAIN_LENGTH - 1), new LongWritable());
+    graph.addVertex(new IntWritable(COUNTER_ID), new LongWritable());
+    graph.addVertex(new IntWritable(RECEIVER_ID), new LongWritable());
+    graph = InternalVertexRunner.run(conf, graph);
+
+    assertEquals(ADDED_ID, graph.getVertices().size());
+    for (int i = 0; i < ADDED_ID; i++) {
+      assertEquals(expectedValue(i),
+          graph.getVertex(new IntWritable(i)).getValue().get());
+    }
+  }
+
+  /**
+   * Create the configuration of the chain computation with long ids.
+   *
+   * @param frontier Whether to compute only the frontier
+   * @return Configuration
+   */
+  private GiraphConfiguration newLongConf(boolean frontier) {
+    GiraphConfiguration conf = new GiraphConfiguration();
+    conf.setComputationClass(LongChainComputation.class);
+    if (frontier) {
+      conf.enableActiveVertexFrontier();
+    }
+    return conf;
+  }
+
+  /**
+   * Run the chain computation with long ids and check the vertex values.
+   *
+   * @param conf Configuration
+   */
+  private void checkLongIds(GiraphConfiguration conf) throws Exception {
+    TestGraph<LongWritable, LongWritable, NullWritable> graph =
+        new TestGraph<LongWritable, LongWritable, NullWritable>(conf);
+    for (int i = 0; i < CHAIN_LENGTH - 1; i++) {
+      graph.addEdge(new LongWritable(i), new LongWritable(i + 1),
+          NullWritable.get());
+    }
+    graph.addVertex(new LongWritable(CHAIN_LENGTH - 1), new LongWritable());
+    graph.addVertex(new LongWritable(COUNTER_ID), new LongWritable());
+    graph.addVertex(new LongWritable(RECEIVER_ID), new LongWritable());
+    graph = InternalVertexRunner.run(conf, graph);
+
+    assertEquals(ADDED_ID, graph.getVertices().size());
+    for (int i = 0; i < ADDED_ID; i++) {
+      assertEquals(expectedValue(i),
+          graph.getVertex(new LongWritable(i)).getValue().get());
+    }
+  }
+
+  /**
+   * Value of a vertex after the computation: the superstep in which a
+   * chain vertex received its message, the number of supersteps the counter
+   * vertex was active, and the superstep in which the receiver got the
+   * message of the added vertex.
+   *
+   * @param id Vertex id
+   * @return Expected vertex value
+   */
+  private static long expectedValue(int id) {
+    if (id == COUNTER_ID) {
+      return COUNTER_SUPERSTEPS + 1;
+    } else if (id == RECEIVER_ID) {
+      return ADD_SUPERSTEP + 2;
+    } else {
+      return id;
+    }
+  }
+
+  /**
+   * Vertex 0 starts a message along the chain, every chain vertex stores
+   * the superstep it got the message in and forwards it, then halts. The
+   * counter vertex counts its supersteps without halting, and adds a
+   * vertex which sends a message to the receiver once it is computed.
+   */
+  public static class LongChainComputation extends
+      BasicComputation<LongWritable, LongWritable, NullWritable,
+          LongWritable> {
+    @Override
+    public void compute(
+        Vertex<LongWritable, LongWritable, NullWritable> vertex,
+        Iterable<LongWritable> messages) throws IOException {
+      long id = vertex.getId().get();
+      if (id == COUNTER_ID) {
+        vertex.getValue().set(vertex.getValue().get() + 1);
+        if (getSuperstep() == ADD_SUPERSTEP) {
+          addVertexRequest(new LongWritable(ADDED_ID), new LongWritable());
+        }
+        if (getSuperstep() == COUNTER_SUPERSTEPS) {
+          vertex.voteToHalt();
+        }
+        return;
+      }
+      if (id == ADDED_ID) {
+        sendMessage(new LongWritable(RECEIVER_ID), new LongWritable());
+      } else if (id == RECEIVER_ID) {
+        if (messages.iterator().hasNext()) {
+          vertex.getValue().set(getSuperstep());
+        }
+      } else if (id == 0 || messages.iterator().hasNext()) {
+        vertex.getValue().set(getSuperstep());
+        sendMessageToAllEdges(vertex, new LongWritable(getSuperstep()));
+      }
+      vertex.voteToHalt();
+    }
+  }
+
+  /**
+   * Same as {@link LongChainComputation} with int vertex ids.
+   */
+  public static class IntChainComputation extends
+      BasicComputation<IntWritable, LongWritable, NullWritable,
+          LongWritable> {
+    @Override
+    public void compute(
+        Vertex<IntWritable, LongWritable, NullWritable> vertex,
+        Iterable<LongWritable> messages) throws IOException {
+      int id = vertex.getId().get();
+      if (id == COUNTER_ID) {
+        vertex.getValue().set(vertex.getValue().get() + 1);
+        if (getSuperstep() == ADD_SUPERSTEP) {
+          addVertexRequest(new IntWritable(ADDED_ID), new LongWritable());
+        }
+        if (getSuperstep() == COUNTER_SUPERSTEPS) {
+          vertex.voteToHalt();
+        }
+        return;
+      }
+      if (id == ADDED_ID) {
+        sendMessage(new IntWritable(RECEIVER_ID), new LongWritable());
+      } else if (id == RECEIVER_ID) {
+        if (messages.iterator().hasNext()) {
+          vertex.getValue().set(getSuperstep());
+        }
+      } else if (id == 0 || messages.iterator().hasNext()) {
+        vertex.getValue().set(getSuperstep());
+        sendMessageToAllEdges(vertex, new LongWritable(getSuperstep()));
+      }
+      vertex.voteToHalt();
+    }
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.graph;
+
+import org.apache.giraph.benchmark.DeltaPageRankComputation;
+import org.apache.giraph.combiner.FloatSumCombiner;
+import org.apache.giraph.combiner.MinimumIntCombiner;
+import org.apache.giraph.conf.GiraphConfiguration;
+import org.apache.giraph.utils.InternalVertexRunner;
+import org.apache.giraph.utils.TestGraph;
+import org.apache.hadoop.io.FloatWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** Test the asynchronous mode, consuming messages of the same superstep */
+public class TestAsyncMessages {
+  /** Number of vertices in the test graphs */
+  private static final int NUM_VERTICES = 30;
+  /** Last superstep of the current run of {@link MinLabelComputation} */
+  private static final AtomicLong LAST_SUPERSTEP = new AtomicLong();
+
+  @Test
+  public void testDeltaPageRankWithCombiner() throws Exception {
+    checkDeltaPageRank(true);
+  }
+
+  @Test
+  public void testDeltaPageRankWithoutCombiner() throws Exception {
+    checkDeltaPageRank(false);
+  }
+
+  @Test
+  public void testMinLabel() throws Exception {
+    TestGraph<IntWritable, IntWritable, NullWritable> bspGraph =
+        runMinLabel(false);
+    long bspSupersteps = LAST_SUPERSTEP.get();
+    TestGraph<IntWritable, IntWritable, NullWritable> asyncGraph =
+        runMinLabel(true);
+    long asyncSupersteps = LAST_SUPERSTEP.get();
+
+    for (int i = 0; i < NUM_VERTICES; i++) {
+      assertEquals(0, bspGraph.getVertex(new IntWritable(i)).getValue().get());
+      assertEquals(0,
+          asyncGraph.getVertex(new IntWritable(i)).getValue().get());
+    }
+    assertEquals(NUM_VERTICES - 1, bspSupersteps);
+    assertTrue(asyncSupersteps <= bspSupersteps);
+  }
+
+  /**
+   * Run delta PageRank with and without the asynchronous mode, and check
+   * that they give the same page ranks.
+   *
+   * @param useCombiner Whether to use a combiner
+   */
+  private void checkDeltaPageRank(boolean useCombiner) throws Exception {
+    TestGraph<IntWritable, FloatWritable, NullWritable> bspGraph =
+        runDeltaPageRank(false, useCombiner);
+    TestGraph<IntWritable, FloatWritable, NullWritable> asyncGraph =
+        runDeltaPageRank(true, useCombiner);
+
+    float sum = 0;
+    for (int i = 0; i < NUM_VERTICES; i++) {
+      float rank = bspGraph.getVertex(new IntWritable(i)).getValue().get();
+      sum += rank;
+      assertEquals(rank,
+          asyncGraph.getVertex(new IntWritable(i)).getValue().get(), 1e-5);
+    }
+    assertEquals(1, sum, 1e-3);
+  }
+
+  /**
+   * Run delta PageRank on a graph where every vertex has two out-edges.
+   *
+   * @param async Whether to use the asynchronous mode
+   * @param useCombiner Whether to use a combiner
+   * @return Graph with the page ranks
+   */
+  private TestGraph<IntWritable, FloatWritable, NullWritable>
+  runDeltaPageRank(boolean async, boolean useCombiner) throws Exception {
+    GiraphConfiguration conf = new GiraphConfiguration();
+    conf.setComputationClass(DeltaPageRankComputation.class);
+    conf.setInt(DeltaPageRankComputation.SUPERSTEP_COUNT, 1000);
+    conf.setFloat(DeltaPageRankComputation.TOLERANCE, 1e-6f);
+    if (useCombiner) {
+      conf.setCombinerClass(FloatSumCombiner.class);
+    }
+    if (async) {
+      conf.enableAsyncMessages();
+    }
+    TestGraph<IntWritable, FloatWritable, NullWritable> graph =
+        new TestGraph<IntWritable, FloatWritable, NullWritable>(conf);
+    for (int i = 0; i < NUM_VERTICES; i++) {
+      graph.addEdge(new IntWritable(i),
+          new IntWritable((i + 1) % NUM_VERTICES), NullWritable.get());
+      graph.addEdge(new IntWritable(i),
+          new IntWritable((i * 7 + 3) % NUM_VERTICES), NullWritable.get());
+    }
+    return InternalVertexRunner.run(conf, graph);
+  }
+
+  /**
+   * Propagate the minimum vertex id along a chain.
+   *
+   * @param async Whether to use the asynchronous mode
+   * @return Graph with the labels
+   */
+  private TestGraph<IntWritable, IntWritable, NullWritable>
+  runMinLabel(boolean async) throws Exception {
+    GiraphConfiguration conf = new GiraphConfiguration();
+    conf.setComputationClass(MinLabelComputation.class);
+    conf.setCombinerClass(MinimumIntCombiner.class);
+    if (async) {
+      conf.enableAsyncMessages();
+    }
+    TestGraph<IntWritable, IntWritable, NullWritable> graph =
+        new TestGraph<IntWritable, IntWritable, NullWritable>(conf);
+    for (int i = 0; i < NUM_VERTICES - 1; i++) {
+      graph.addEdge(new IntWritable(i), new IntWritable(i + 1),
+          NullWritable.get());
+    }
+    graph.addVertex(new IntWritable(NUM_VERTICES - 1), new IntWritable());
+    LAST_SUPERSTEP.set(0);
+    return InternalVertexRunner.run(conf, graph);
+  }
+
+  /**
+   * Every vertex takes the minimum of its id and the labels it receives,
+   * and sends its label along its edges when it changes.
+   */
+  public static class MinLabelComputation extends
+      BasicComputation<IntWritable, IntWritable, NullWritable, IntWritable> {
+    @Override
+    public void compute(
+        Vertex<IntWritable, IntWritable, NullWritable> vertex,
+        Iterable<IntWritable> messages) throws IOException {
+      boolean changed = false;
+      if (getSuperstep() == 0) {
+        vertex.getValue().set(vertex.getId().get());
+        changed = true;
+      }
+      for (IntWritable message : messages) {
+        if (message.get() < vertex.getValue().get()) {
+          vertex.getValue().set(message.get());
+          changed = true;
+        }
+      }
+      if (changed) {
+        sendMessageToAllEdges(vertex, vertex.getValue());
+        synchronized (LAST_SUPERSTEP) {
+          LAST_SUPERSTEP.set(Math.max(LAST_SUPERSTEP.get(), getSuperstep()));
+        }
+      }
+      vertex.voteToHalt();
+    }
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.graph;
+
+import org.apache.giraph.conf.GiraphConfiguration;
+import org.apache.giraph.conf.GiraphConstants;
+import org.apache.giraph.edge.ByteArrayEdges;
+import org.apache.giraph.edge.Edge;
+import org.apache.giraph.utils.InternalVertexRunner;
+import org.apache.giraph.utils.TestGraph;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/** Test caching the grouped targets of messages sent to all edges */
+public class TestBroadcastTargetCache {
+  /** Number of vertices in the graph */
+  private static final int NUM_VERTICES = 50;
+  /** Offsets of the targets of each vertex */
+  private static final int[] OFFSETS = {1, 2, 7};
+  /** Last superstep in which vertices send messages */
+  private static final int LAST_SUPERSTEP = 3;
+  /** Whether edges were read to send messages after the first superstep */
+  private static final AtomicBoolean EDGES_READ_AFTER_FIRST_SUPERSTEP =
+      new AtomicBoolean();
+
+  @Test
+  public void testCachedTargets() throws Exception {
+    checkSums(true);
+  }
+
+  @Test
+  public void testCachedTargetsWithoutDirectLocalMessages()
+    throws Exception {
+    checkSums(false);
+  }
+
+  /**
+   * Run the sum computation on a static graph with cached targets and check
+   * the vertex values, and that the edges were only read to group the
+   * targets in the first superstep.
+   *
+   * @param directLocalMessages Whether local messages are added straight
+   *                            to the message store
+   */
+  private void checkSums(boolean directLocalMessages) throws Exception {
+    GiraphConfiguration conf = new GiraphConfiguration();
+    conf.setComputationClass(SumComputation.class);
+    conf.setOutEdgesClass(CountingEdges.class);
+    GiraphConstants.USER_PARTITION_COUNT.set(conf, 4);
+    GiraphConstants.STATIC_GRAPH.set(conf, true);
+    GiraphConstants.ONE_TO_ALL_MSG_SENDING.set(conf, true);
+    conf.enableCacheBroadcastTargets();
+    conf.useDirectLocalMessages(directLocalMessages);
+    TestGraph<LongWritable, LongWritable, NullWritable> graph =
+        new TestGraph<LongWritable, LongWritable, NullWritable>(conf);
+    for (int i = 0; i < NUM_VERTICES; i++) {
+      for (int offset : OFFSETS) {
+        graph.addEdge(new LongWritable(i),
+            new LongWritable((i + offset) % NUM_VERTICES),
+            NullWritable.get());
+      }
+    }
+    EDGES_READ_AFTER_FIRST_SUPERSTEP.set(false);
+    graph = InternalVertexRunner.run(conf, graph);
+
+    assertFalse("Targets were not taken from the cache",
+        EDGES_READ_AFTER_FIRST_SUPERSTEP.get());
+    assertEquals(NUM_VERTICES, graph.getVertices().size());
+    for (int i = 0; i < NUM_VERTICES; i++) {
+      long expected = 0;
+      for (int offset : OFFSETS) {
+        expected += (i - offset + NUM_VERTICES) % NUM_VERTICES;
+      }
+      assertEquals(LAST_SUPERSTEP * expected,
+          graph.getVertex(new LongWritable(i)).getValue().get());
+    }
+  }
+
+  /**
+   * Edges counting the times they are iterated.
+   */
+  public static class CountingEdges
+      extends ByteArrayEdges<LongWritable, NullWritable> {
+    /** Number of edge iterators created */
+    private static final AtomicInteger ITERATORS = new AtomicInteger();
+
+    @Override
+    public Iterator<Edge<LongWritable, NullWritable>> iterator() {
+      ITERATORS.incrementAndGet();
+      return super.iterator();
+    }
+  }
+
+  /**
+   * Every vertex adds up the messages it receives, and sends its id along
+   * its edges until the last superstep. Records if the edges were read to
+   * send the messages after the first superstep (there is a single compute
+   * thread, so no other vertex reads edges meanwhile).
+   */
+  public static class SumComputation extends
+      BasicComputation<LongWritable, LongWritable, NullWritable,
+          LongWritable> {
+    @Override
+    public void compute(
+        Vertex<LongWritable, LongWritable, NullWritable> vertex,
+        Iterable<LongWritable> messages) throws IOException {
+      for (LongWritable message : messages) {
+        vertex.getValue().set(vertex.getValue().get() + message.get());
+      }
+      if (getSuperstep() < LAST_SUPERSTEP) {
+        int iterators = CountingEdges.ITERATORS.get();
+        sendMessageToAllEdges(vertex, vertex.getId());
+        if (getSuperstep() > 0 &&
+            CountingEdges.ITERATORS.get() != iterators) {
+          EDGES_READ_AFTER_FIRST_SUPERSTEP.set(true);
+        }
+      } else {
+        vertex.voteToHalt();
+      }
+    }
+  }
+}
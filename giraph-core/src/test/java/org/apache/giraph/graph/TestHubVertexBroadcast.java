@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.graph;
+
+import org.apache.giraph.combiner.Combiner;
+import org.apache.giraph.conf.GiraphConfiguration;
+import org.apache.giraph.conf.GiraphConstants;
+import org.apache.giraph.utils.InternalVertexRunner;
+import org.apache.giraph.utils.TestGraph;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.junit.Test;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** Test sending the messages of hub vertices in parallel */
+public class TestHubVertexBroadcast {
+  /** Number of leaves of the hub */
+  private static final int NUM_LEAVES = 1000;
+  /** Minimum number of edges of a hub vertex */
+  private static final int HUB_VERTEX_EDGES = 100;
+
+  /** Whether messages were sent by the broadcast threads */
+  private static final AtomicBoolean SENT_BY_BROADCAST_THREADS =
+      new AtomicBoolean();
+
+  @Test
+  public void testHubBroadcast() throws Exception {
+    checkSums(newConf(1, 1));
+  }
+
+  @Test
+  public void testHubBroadcastManyPartitions() throws Exception {
+    checkSums(newConf(4, 2));
+  }
+
+  @Test
+  public void testHubBroadcastCombineOnSend() throws Exception {
+    GiraphConfiguration conf = newConf(4, 2);
+    conf.setCombinerClass(SumCombiner.class);
+    conf.enableCombineMsgsOnSend();
+    conf.useDirectLocalMessages(false);
+    checkSums(conf);
+  }
+
+  @Test
+  public void testHubBroadcastOneToAll() throws Exception {
+    GiraphConfiguration conf = newConf(4, 2);
+    conf.enableOneToAllMsgSending();
+    conf.useDirectLocalMessages(false);
+    checkSums(conf);
+  }
+
+  /**
+   * Create the configuration of the sum computation, with hub vertices sent
+   * by three broadcast threads.
+   *
+   * @param numPartitions Number of partitions
+   * @param numThreads Number of compute threads
+   * @return Configuration
+   */
+  private GiraphConfiguration newConf(int numPartitions, int numThreads) {
+    GiraphConfiguration conf = new GiraphConfiguration();
+    conf.setComputationClass(SumComputation.class);
+    conf.setNumComputeThreads(numThreads);
+    GiraphConstants.USER_PARTITION_COUNT.set(conf, numPartitions);
+    conf.setHubVertexEdges(HUB_VERTEX_EDGES);
+    GiraphConstants.HUB_BROADCAST_THREADS.set(conf, 3);
+    return conf;
+  }
+
+  /**
+   * Run the sum computation on a star graph, whose center is vertex 0 and
+   * whose leaves form a ring, and check the vertex values and that the
+   * messages of the center were sent by the broadcast threads.
+   *
+   * @param conf Configuration
+   */
+  private void checkSums(GiraphConfiguration conf) throws Exception {
+    TestGraph<LongWritable, LongWritable, NullWritable> graph =
+        new TestGraph<LongWritable, LongWritable, NullWritable>(conf);
+    for (int i = 1; i <= NUM_LEAVES; i++) {
+      graph.addEdge(new LongWritable(0), new LongWritable(i),
+          NullWritable.get());
+      graph.addEdge(new LongWritable(i), new LongWritable(0),
+          NullWritable.get());
+      graph.addEdge(new LongWritable(i),
+          new LongWritable(i % NUM_LEAVES + 1), NullWritable.get());
+    }
+    SENT_BY_BROADCAST_THREADS.set(false);
+    graph = InternalVertexRunner.run(conf, graph);
+
+    assertTrue("Hub messages not sent by the broadcast threads",
+        SENT_BY_BROADCAST_THREADS.get());
+    assertEquals(NUM_LEAVES + 1, graph.getVertices().size());
+    assertEquals(NUM_LEAVES * (NUM_LEAVES + 1) / 2 + NUM_LEAVES,
+        graph.getVertex(new LongWritable(0)).getValue().get());
+    for (int i = 1; i <= NUM_LEAVES; i++) {
+      long previous = i == 1 ? NUM_LEAVES : i - 1;
+      assertEquals(1 + previous + 1,
+          graph.getVertex(new LongWritable(i)).getValue().get());
+    }
+  }
+
+  /**
+   * Record if the current thread is a broadcast thread.
+   */
+  private static void recordThread() {
+    if (Thread.currentThread().getName().startsWith("hub-broadcast-")) {
+      SENT_BY_BROADCAST_THREADS.set(true);
+    }
+  }
+
+  /**
+   * Message recording the threads serializing it.
+   */
+  public static class HubMessage extends LongWritable {
+    /** Default constructor for reflection */
+    public HubMessage() {
+    }
+
+    /**
+     * Constructor
+     *
+     * @param value Value
+     */
+    public HubMessage(long value) {
+      super(value);
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+      recordThread();
+      super.write(out);
+    }
+  }
+
+  /**
+   * Combiner summing messages, recording the threads combining them.
+   */
+  public static class SumCombiner
+      extends Combiner<LongWritable, HubMessage> {
+    @Override
+    public void combine(LongWritable vertexIndex, HubMessage originalMessage,
+        HubMessage messageToCombine) {
+      recordThread();
+      originalMessage.set(originalMessage.get() + messageToCombine.get());
+    }
+
+    @Override
+    public HubMessage createInitialMessage() {
+      return new HubMessage(0);
+    }
+  }
+
+  /**
+   * Every vertex sends its id plus one along its edges, and then adds up the
+   * messages it receives.
+   */
+  public static class SumComputation extends
+      BasicComputation<LongWritable, LongWritable, NullWritable,
+          HubMessage> {
+    @Override
+    public void compute(
+        Vertex<LongWritable, LongWritable, NullWritable> vertex,
+        Iterable<HubMessage> messages) throws IOException {
+      if (getSuperstep() == 0) {
+        sendMessageToAllEdges(vertex,
+            new HubMessage(vertex.getId().get() + 1));
+      } else {
+        for (HubMessage message : messages) {
+          vertex.getValue().set(vertex.getValue().get() + message.get());
+        }
+        vertex.voteToHalt();
+      }
+    }
+  }
+}
@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.graph;
+
+import org.apache.giraph.partition.Partition;
+import org.apache.giraph.partition.PartitionStats;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/** Test splitting partitions into chunks shared by the compute threads */
+public class TestPartitionSplit {
+  /** Number of vertices of the partition */
+  private static final int NUM_VERTICES = 100;
+  /** Number of vertices per chunk */
+  private static final int CHUNK_VERTICES = 7;
+  /** Number of threads computing chunks */
+  private static final int NUM_THREADS = 4;
+  /** Id of the split partition */
+  private static final int PARTITION_ID = 3;
+
+  /**
+   * Create a split partition of mock vertices.
+   *
+   * @return Split partition
+   */
+  private static PartitionSplit<LongWritable, LongWritable, NullWritable>
+  createSplit() {
+    Partition<LongWritable, LongWritable, NullWritable> partition =
+        mock(Partition.class);
+    when(partition.getId()).thenReturn(PARTITION_ID);
+    List<Vertex<LongWritable, LongWritable, NullWritable>> vertices =
+        Lists.newArrayList();
+    for (int i = 0; i < NUM_VERTICES; i++) {
+      vertices.add(mock(Vertex.class));
+    }
+    return new PartitionSplit<LongWritable, LongWritable, NullWritable>(
+        partition, vertices, CHUNK_VERTICES, null);
+  }
+
+  @Test
+  public void testChunksComputedOnce() throws Exception {
+    final PartitionSplit<LongWritable, LongWritable, NullWritable> split =
+        createSplit();
+    // Vertices are mocks, which compare by identity
+    final Set<Vertex> computed = Collections.synchronizedSet(
+        Sets.<Vertex>newIdentityHashSet());
+    final AtomicInteger finishedPartitions = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+    List<Future<Void>> results = Lists.newArrayList();
+    for (int i = 0; i < NUM_THREADS; i++) {
+      results.add(executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() {
+          List<Vertex<LongWritable, LongWritable, NullWritable>> chunk;
+          while ((chunk = split.claimChunk()) != null) {
+            for (Vertex vertex : chunk) {
+              if (!computed.add(vertex)) {
+                fail("Vertex computed twice");
+              }
+            }
+            // Each vertex has two edges and sends three messages
+            PartitionStats chunkStats = new PartitionStats(PARTITION_ID,
+                chunk.size(), 1, 2 * chunk.size(), 3 * chunk.size(), 0);
+            if (split.finishChunk(chunkStats)) {
+              finishedPartitions.incrementAndGet();
+            }
+          }
+          return null;
+        }
+      }));
+    }
+    for (Future<Void> result : results) {
+      result.get();
+    }
+    executor.shutdown();
+
+    assertEquals(NUM_VERTICES, computed.size());
+    // Only the thread finishing the last chunk finishes the partition
+    assertEquals(1, finishedPartitions.get());
+    PartitionStats stats = split.getPartitionStats();
+    int numChunks = (NUM_VERTICES + CHUNK_VERTICES - 1) / CHUNK_VERTICES;
+    assertEquals(PARTITION_ID, stats.getPartitionId());
+    assertEquals(NUM_VERTICES, stats.getVertexCount());
+    assertEquals(numChunks, stats.getFinishedVertexCount());
+    assertEquals(2 * NUM_VERTICES, stats.getEdgeCount());
+    assertEquals(3 * NUM_VERTICES, stats.getMessagesSentCount());
+  }
+
+  @Test
+  public void testWaitForSplit() throws Exception {
+    final PartitionSplitQueue<LongWritable, LongWritable, NullWritable>
+        splitQueue =
+        new PartitionSplitQueue<LongWritable, LongWritable, NullWritable>();
+    final Queue<Integer> partitionIdQueue =
+        new ConcurrentLinkedQueue<Integer>();
+    partitionIdQueue.add(PARTITION_ID);
+    assertEquals(Integer.valueOf(PARTITION_ID),
+        splitQueue.pollPartitionId(partitionIdQueue));
+
+    // Another thread runs out of partitions while the split is undecided
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    Future<PartitionSplit<LongWritable, LongWritable, NullWritable>>
+        helped = executor.submit(new Callable<
+            PartitionSplit<LongWritable, LongWritable, NullWritable>>() {
+          @Override
+          public PartitionSplit<LongWritable, LongWritable, NullWritable>
+          call() throws InterruptedException {
+            assertNull(splitQueue.pollPartitionId(partitionIdQueue));
+            return splitQueue.waitForSplit();
+          }
+        });
+    try {
+      helped.get(100, TimeUnit.MILLISECONDS);
+      fail("Did not wait for the split to be decided");
+    } catch (TimeoutException e) {
+      // Expected
+    }
+
+    PartitionSplit<LongWritable, LongWritable, NullWritable> split =
+        createSplit();
+    splitQueue.splitDecided(split);
+    assertSame(split, helped.get());
+    executor.shutdown();
+
+    // Once its chunks are claimed, nothing is left to help with
+    splitQueue.removeSplit(split);
+    assertNull(splitQueue.waitForSplit());
+  }
+
+  @Test
+  public void testWaitForUnsplitPartition() throws Exception {
+    final PartitionSplitQueue<LongWritable, LongWritable, NullWritable>
+        splitQueue =
+        new PartitionSplitQueue<LongWritable, LongWritable, NullWritable>();
+    final Queue<Integer> partitionIdQueue =
+        new ConcurrentLinkedQueue<Integer>();
+    partitionIdQueue.add(PARTITION_ID);
+    assertEquals(Integer.valueOf(PARTITION_ID),
+        splitQueue.pollPartitionId(partitionIdQueue));
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    Future<PartitionSplit<LongWritable, LongWritable, NullWritable>>
+        helped = executor.submit(new Callable<
+            PartitionSplit<LongWritable, LongWritable, NullWritable>>() {
+          @Override
+          public PartitionSplit<LongWritable, LongWritable, NullWritable>
+          call() throws InterruptedException {
+            assertNull(splitQueue.pollPartitionId(partitionIdQueue));
+            return splitQueue.waitForSplit();
+          }
+        });
+    // The partition is computed as a whole, so the waiting thread stops
+    splitQueue.splitDecided(null);
+    assertNull(helped.get());
+    executor.shutdown();
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.graph;
+
+import org.apache.giraph.conf.GiraphConfiguration;
+import org.apache.giraph.conf.GiraphConstants;
+import org.apache.giraph.utils.InternalVertexRunner;
+import org.apache.giraph.utils.TestGraph;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** Test computing partitions split into chunks by several threads */
+public class TestSplitPartitions {
+  /** Number of vertices in the graph */
+  private static final int NUM_VERTICES = 100;
+  /** Number of vertices per chunk */
+  private static final int CHUNK_VERTICES = 7;
+  /** Last superstep in which vertices send messages */
+  private static final int LAST_SUPERSTEP = 3;
+  /** Names of the threads which computed vertices, by superstep */
+  private static final ConcurrentMap<Long, Set<String>> COMPUTE_THREADS =
+      Maps.newConcurrentMap();
+
+  @Test
+  public void testSplit() throws Exception {
+    checkSums(false);
+  }
+
+  @Test
+  public void testSplitWithFrontier() throws Exception {
+    checkSums(true);
+  }
+
+  /**
+   * Run the sum computation on a single split partition and check the
+   * vertex values, and that the partition was computed by several threads.
+   * With the frontier, the partition is only split in the first superstep,
+   * since the frontier of the next ones is computed as a whole.
+   *
+   * @param frontier Whether to compute only the frontier
+   */
+  private void checkSums(boolean frontier) throws Exception {
+    GiraphConfiguration conf = new GiraphConfiguration();
+    conf.setComputationClass(SumComputation.class);
+    conf.setNumComputeThreads(4);
+    GiraphConstants.USER_PARTITION_COUNT.set(conf, 1);
+    conf.setSplitPartitionVertices(CHUNK_VERTICES);
+    if (frontier) {
+      conf.enableActiveVertexFrontier();
+    }
+    TestGraph<LongWritable, LongWritable, NullWritable> graph =
+        new TestGraph<LongWritable, LongWritable, NullWritable>(conf);
+    for (int i = 0; i < NUM_VERTICES; i++) {
+      graph.addEdge(new LongWritable(i),
+          new LongWritable((i + 1) % NUM_VERTICES), NullWritable.get());
+      graph.addEdge(new LongWritable(i),
+          new LongWritable((i + 2) % NUM_VERTICES), NullWritable.get());
+    }
+    COMPUTE_THREADS.clear();
+    graph = InternalVertexRunner.run(conf, graph);
+
+    int splitSupersteps = frontier ? 1 : LAST_SUPERSTEP + 1;
+    for (long superstep = 0; superstep < splitSupersteps; superstep++) {
+      Set<String> threads = COMPUTE_THREADS.get(superstep);
+      assertTrue("Superstep " + superstep + " computed by " + threads,
+          threads.size() > 1);
+    }
+    assertEquals(NUM_VERTICES, graph.getVertices().size());
+    for (int i = 0; i < NUM_VERTICES; i++) {
+      long expected = LAST_SUPERSTEP *
+          ((i - 1 + NUM_VERTICES) % NUM_VERTICES +
+              (i - 2 + NUM_VERTICES) % NUM_VERTICES);
+      assertEquals(expected,
+          graph.getVertex(new LongWritable(i)).getValue().get());
+    }
+  }
+
+  /**
+   * Every vertex adds up the messages it receives, and sends its id along
+   * its edges until the last superstep. Records the threads computing
+   * vertices, and takes a little time per vertex so that all the threads
+   * get chunks to compute.
+   */
+  public static class SumComputation extends
+      BasicComputation<LongWritable, LongWritable, NullWritable,
+          LongWritable> {
+    @Override
+    public void compute(
+        Vertex<LongWritable, LongWritable, NullWritable> vertex,
+        Iterable<LongWritable> messages) throws IOException {
+      Set<String> threads = COMPUTE_THREADS.get(getSuperstep());
+      if (threads == null) {
+        COMPUTE_THREADS.putIfAbsent(getSuperstep(),
+            Collections.newSetFromMap(
+                Maps.<String, Boolean>newConcurrentMap()));
+        threads = COMPUTE_THREADS.get(getSuperstep());
+      }
+      threads.add(Thread.currentThread().getName());
+      try {
+        Thread.sleep(1);
+      } catch (InterruptedException e) {
+        throw new IllegalStateException("compute: Interrupted", e);
+      }
+      for (LongWritable message : messages) {
+        vertex.getValue().set(vertex.getValue().get() + message.get());
+      }
+      if (getSuperstep() < LAST_SUPERSTEP) {
+        sendMessageToAllEdges(vertex, vertex.getId());
+      } else {
+        vertex.voteToHalt();
+      }
+    }
+  }
+}
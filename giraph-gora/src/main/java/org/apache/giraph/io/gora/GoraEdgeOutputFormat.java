@@ -17,9 +17,12 @@
  */
 package org.apache.giraph.io.gora;
 
+import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_OUTPUT_BATCH_SIZE;
 import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_OUTPUT_DATASTORE_CLASS;
+import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_OUTPUT_FLUSH_INTERVAL_MSECS;
 import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_OUTPUT_KEY_CLASS;
 import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_OUTPUT_PERSISTENT_CLASS;
+import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_OUTPUT_QUEUE_SIZE;
 
 import java.io.IOException;
 
@@ -27,6 +30,7 @@ import org.apache.giraph.edge.Edge;
 import org.apache.giraph.io.EdgeOutputFormat;
 import org.apache.giraph.io.EdgeWriter;
 import org.apache.giraph.io.gora.utils.GoraUtils;
+import org.apache.giraph.io.gora.utils.GoraWriteBehindBuffer;
 import org.apache.gora.persistency.Persistent;
 import org.apache.gora.store.DataStore;
 import org.apache.gora.util.GoraException;
@@ -58,16 +62,13 @@ public abstract class GoraEdgeOutputFormat<I extends WritableComparable,
           Logger.getLogger(GoraEdgeOutputFormat.class);
 
   /** KeyClass used for getting data. */
-  private static Class<?> KEY_CLASS;
+  private Class<?> keyClass;
 
   /** The vertex itself will be used as a value inside Gora. */
-  private static Class<? extends Persistent> PERSISTENT_CLASS;
+  private Class<? extends Persistent> persistentClass;
 
   /** Data store class to be used as backend. */
-  private static Class<? extends DataStore> DATASTORE_CLASS;
-
-  /** Data store used for querying data. */
-  private static DataStore DATA_STORE;
+  private Class<? extends DataStore> datastoreClass;
 
   /**
    * checkOutputSpecs
@@ -82,14 +83,44 @@ public abstract class GoraEdgeOutputFormat<I extends WritableComparable,
   }
 
   /**
-   * Gets the data store object initialized.
+   * Reads the Gora classes from the configuration. They are read once per
+   * output format instance, which may be shared by several writers.
+   */
+  protected synchronized void readGoraParameters() {
+    if (getKeyClass() != null) {
+      return;
+    }
+    String sDataStoreType =
+      GIRAPH_GORA_OUTPUT_DATASTORE_CLASS.get(getConf());
+    String sKeyType =
+      GIRAPH_GORA_OUTPUT_KEY_CLASS.get(getConf());
+    String sPersistentType =
+      GIRAPH_GORA_OUTPUT_PERSISTENT_CLASS.get(getConf());
+    try {
+      Class<?> keyClassUsed = Class.forName(sKeyType);
+      Class<?> persistentClassUsed = Class.forName(sPersistentType);
+      Class<?> dataStoreClassUsed = Class.forName(sDataStoreType);
+      setPersistentClass((Class<? extends Persistent>) persistentClassUsed);
+      setDatastoreClass((Class<? extends DataStore>) dataStoreClassUsed);
+      setKeyClass(keyClassUsed);
+    } catch (ClassNotFoundException e) {
+      getLogger().error("Error while reading Gora Output parameters");
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Gets the data store object initialized, used by one reader or writer
+   * at a time and reused by the others of this JVM. It has to be released
+   * with
+   * {@link GoraUtils#releaseDataStore(DataStore)}.
    * @return DataStore created
    */
   public DataStore createDataStore() {
     DataStore dsCreated = null;
     try {
-      dsCreated = GoraUtils.createSpecificDataStore(getDatastoreClass(),
-          getKeyClass(), getPersistentClass());
+      dsCreated = GoraUtils.acquireDataStore(getDatastoreClass(),
+          getKeyClass(), getPersistentClass(), getConf());
     } catch (GoraException e) {
       getLogger().error("Error creating data store.");
       e.printStackTrace();
@@ -143,37 +174,36 @@ public abstract class GoraEdgeOutputFormat<I extends WritableComparable,
    * vertex/edges output.
    */
   protected abstract class GoraEdgeWriter extends EdgeWriter<I, V, E> {
+    /** Data store used by this writer. */
+    private DataStore dataStore;
+    /** Write-behind buffer, null when writing synchronously. */
+    private GoraWriteBehindBuffer writeBehindBuffer;
+
     @Override
     public void initialize(TaskAttemptContext context) throws IOException,
       InterruptedException {
-      String sDataStoreType =
-          GIRAPH_GORA_OUTPUT_DATASTORE_CLASS.get(getConf());
-      String sKeyType =
-          GIRAPH_GORA_OUTPUT_KEY_CLASS.get(getConf());
-      String sPersistentType =
-          GIRAPH_GORA_OUTPUT_PERSISTENT_CLASS.get(getConf());
-      try {
-        Class<?> keyClass = Class.forName(sKeyType);
-        Class<?> persistentClass = Class.forName(sPersistentType);
-        Class<?> dataStoreClass = Class.forName(sDataStoreType);
-        setKeyClass(keyClass);
-        setPersistentClass((Class<? extends Persistent>) persistentClass);
-        setDatastoreClass((Class<? extends DataStore>) dataStoreClass);
-        setDataStore(createDataStore());
-        if (getDataStore() != null) {
-          getLogger().debug("The data store has been created.");
-        }
-      } catch (ClassNotFoundException e) {
-        getLogger().error("Error while reading Gora Output parameters");
-        e.printStackTrace();
+      readGoraParameters();
+      setDataStore(createDataStore());
+      if (getDataStore() != null) {
+        getLogger().debug("The data store has been created.");
+      }
+      int batchSize = GIRAPH_GORA_OUTPUT_BATCH_SIZE.get(getConf());
+      if (batchSize > 0) {
+        // The flusher writes through a data store of its own
+        writeBehindBuffer = new GoraWriteBehindBuffer(createDataStore(),
+            batchSize, GIRAPH_GORA_OUTPUT_QUEUE_SIZE.get(getConf()),
+            GIRAPH_GORA_OUTPUT_FLUSH_INTERVAL_MSECS.get(getConf()));
       }
     }
 
     @Override
     public void close(TaskAttemptContext context)
       throws IOException, InterruptedException {
+      if (writeBehindBuffer != null) {
+        writeBehindBuffer.close(context);
+      }
       getDataStore().flush();
-      getDataStore().close();
+      GoraUtils.releaseDataStore(getDataStore());
     }
 
     @Override
@@ -182,7 +212,39 @@ public abstract class GoraEdgeOutputFormat<I extends WritableComparable,
       Persistent goraEdge = null;
       Object goraKey = getGoraKey(srcId, srcValue, edge);
       goraEdge = getGoraEdge(srcId, srcValue, edge);
-      getDataStore().put(goraKey, goraEdge);
+      put(goraKey, goraEdge);
+    }
+
+    /**
+     * Puts a record into the data store, through the write-behind buffer
+     * if there is one.
+     * @param goraKey key of the record.
+     * @param goraObject persistent object of the record.
+     * @throws InterruptedException
+     */
+    protected void put(Object goraKey, Persistent goraObject)
+      throws InterruptedException {
+      if (writeBehindBuffer != null) {
+        writeBehindBuffer.put(goraKey, goraObject);
+      } else {
+        getDataStore().put(goraKey, goraObject);
+      }
+    }
+
+    /**
+     * Gets the data store used by this writer.
+     * @return DataStore
+     */
+    protected DataStore getDataStore() {
+      return dataStore;
+    }
+
+    /**
+     * Sets the data store used by this writer.
+     * @param dStore the data store to set
+     */
+    protected void setDataStore(DataStore dStore) {
+      this.dataStore = dStore;
     }
 
     /**
@@ -207,68 +269,52 @@ public abstract class GoraEdgeOutputFormat<I extends WritableComparable,
     protected abstract Object getGoraKey(I srcId, V srcValue, Edge<I, E> edge);
   }
 
-  /**
-   * Gets the data store.
-   * @return DataStore
-   */
-  public static DataStore getDataStore() {
-    return DATA_STORE;
-  }
-
-  /**
-   * Sets the data store
-   * @param dStore the dATA_STORE to set
-   */
-  public static void setDataStore(DataStore dStore) {
-    DATA_STORE = dStore;
-  }
-
   /**
    * Gets the persistent Class
    * @return persistentClass used
    */
-  static Class<? extends Persistent> getPersistentClass() {
-    return PERSISTENT_CLASS;
+  Class<? extends Persistent> getPersistentClass() {
+    return persistentClass;
   }
 
   /**
    * Sets the persistent Class
    * @param persistentClassUsed to be set
    */
-  static void setPersistentClass
+  void setPersistentClass
   (Class<? extends Persistent> persistentClassUsed) {
-    PERSISTENT_CLASS = persistentClassUsed;
+    persistentClass = persistentClassUsed;
   }
 
   /**
    * Gets the key class used.
    * @return the key class used.
    */
-  static Class<?> getKeyClass() {
-    return KEY_CLASS;
+  Class<?> getKeyClass() {
+    return keyClass;
   }
 
   /**
    * Sets the key class used.
    * @param keyClassUsed key class used.
    */
-  static void setKeyClass(Class<?> keyClassUsed) {
-    KEY_CLASS = keyClassUsed;
+  void setKeyClass(Class<?> keyClassUsed) {
+    keyClass = keyClassUsed;
   }
 
   /**
-   * @return Class the DATASTORE_CLASS
+   * @return Class the datastoreClass
    */
-  public static Class<? extends DataStore> getDatastoreClass() {
-    return DATASTORE_CLASS;
+  public Class<? extends DataStore> getDatastoreClass() {
+    return datastoreClass;
   }
 
   /**
    * @param dataStoreClass the dataStore class to set
    */
-  public static void setDatastoreClass(
+  public void setDatastoreClass(
       Class<? extends DataStore> dataStoreClass) {
-    DATASTORE_CLASS = dataStoreClass;
+    datastoreClass = dataStoreClass;
   }
 
   /**
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.giraph.io.gora;
+
+import java.io.IOException;
+
+import org.apache.giraph.edge.Edge;
+import org.apache.giraph.edge.OutEdges;
+import org.apache.giraph.edge.ReusableEdge;
+import org.apache.giraph.graph.Vertex;
+import org.apache.giraph.io.gora.generated.GPackedVertex;
+import org.apache.giraph.io.gora.utils.PackedEdges;
+import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.FloatWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+/**
+ * Example implementation of a specific reader for a generated data bean
+ * with packed edges. Edges are decoded straight into the configured
+ * OutEdges, reusing a single edge object when the OutEdges class allows it
+ * (e.g. primitive array backed ones).
+ */
+public class GoraGPackedVertexVertexInputFormat
+  extends GoraVertexInputFormat<LongWritable, DoubleWritable,
+          FloatWritable> {
+
+  /**
+   * Default constructor
+   */
+  public GoraGPackedVertexVertexInputFormat() {
+  }
+
+  /**
+   * Creates specific vertex reader to be used inside Hadoop.
+   * @param split split to be read.
+   * @param context JobContext to be used.
+   * @return GoraVertexReader Vertex reader to be used by Hadoop.
+   */
+  @Override
+  public GoraVertexReader createVertexReader(
+      InputSplit split, TaskAttemptContext context) throws IOException {
+    return new GoraGPackedVertexVertexReader();
+  }
+
+  /**
+   * Gora packed vertex reader
+   */
+  protected class GoraGPackedVertexVertexReader extends GoraVertexReader {
+    /** Edge object reused when the OutEdges class copies added edges */
+    private ReusableEdge<LongWritable, FloatWritable> reusableEdge;
+
+    @Override
+    public void initialize(InputSplit inputSplit, TaskAttemptContext context)
+      throws IOException, InterruptedException {
+      super.initialize(inputSplit, context);
+      if (getConf().reuseEdgeObjects()) {
+        reusableEdge = getConf().createReusableEdge();
+      }
+    }
+
+    /**
+     * Transforms a GoraObject into a Vertex object.
+     * @param goraObject Object from Gora to be translated.
+     * @return Vertex Result from transforming the gora object.
+     */
+    @Override
+    protected Vertex<LongWritable, DoubleWritable, FloatWritable>
+    transformVertex(Object goraObject) {
+      GPackedVertex packedVertex = (GPackedVertex) goraObject;
+      Vertex<LongWritable, DoubleWritable, FloatWritable> vertex =
+          getConf().createVertex();
+      int edgeCount = packedVertex.getEdgeCount();
+      OutEdges<LongWritable, FloatWritable> edges =
+          getConf().createOutEdges();
+      edges.initialize(edgeCount);
+      if (edgeCount > 0) {
+        PackedEdges.IdReader ids =
+            new PackedEdges.IdReader(packedVertex.getEdgeIds());
+        PackedEdges.WeightReader weights =
+            new PackedEdges.WeightReader(packedVertex.getEdgeWeights());
+        for (int i = 0; i < edgeCount; ++i) {
+          Edge<LongWritable, FloatWritable> edge =
+              (reusableEdge == null) ? getConf().createEdge() : reusableEdge;
+          edge.getTargetVertexId().set(ids.next());
+          edge.getValue().set(weights.next());
+          edges.add(edge);
+        }
+      }
+      vertex.initialize(new LongWritable(packedVertex.getVertexId()),
+          new DoubleWritable(packedVertex.getValue()), edges);
+      return vertex;
+    }
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.giraph.io.gora;
+
+import java.io.IOException;
+
+import it.unimi.dsi.fastutil.Arrays;
+import it.unimi.dsi.fastutil.Swapper;
+import it.unimi.dsi.fastutil.ints.AbstractIntComparator;
+
+import org.apache.giraph.edge.Edge;
+import org.apache.giraph.graph.Vertex;
+import org.apache.giraph.io.VertexWriter;
+import org.apache.giraph.io.gora.generated.GPackedVertex;
+import org.apache.giraph.io.gora.utils.PackedEdges;
+import org.apache.gora.persistency.Persistent;
+import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.FloatWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+/**
+ * Implementation of a specific writer for a generated data bean with
+ * packed edges. Edges are sorted by target id before being packed, so the
+ * id deltas stay small.
+ */
+public class GoraGPackedVertexVertexOutputFormat
+  extends GoraVertexOutputFormat<LongWritable, DoubleWritable,
+  FloatWritable> {
+
+  /**
+   * Default constructor
+   */
+  public GoraGPackedVertexVertexOutputFormat() {
+  }
+
+  @Override
+  public VertexWriter<LongWritable, DoubleWritable, FloatWritable>
+  createVertexWriter(TaskAttemptContext context)
+    throws IOException, InterruptedException {
+    return new GoraGPackedVertexVertexWriter();
+  }
+
+  /**
+   * Gora packed vertex writer.
+   */
+  protected class GoraGPackedVertexVertexWriter extends GoraVertexWriter {
+    /** Target ids of the vertex being written */
+    private long[] ids = new long[0];
+    /** Edge weights of the vertex being written */
+    private float[] weights = new float[0];
+
+    @Override
+    protected Persistent getGoraVertex(
+        Vertex<LongWritable, DoubleWritable, FloatWritable> vertex) {
+      int edgeCount = vertex.getNumEdges();
+      if (ids.length < edgeCount) {
+        ids = new long[edgeCount];
+        weights = new float[edgeCount];
+      }
+      int i = 0;
+      for (Edge<LongWritable, FloatWritable> edge : vertex.getEdges()) {
+        ids[i] = edge.getTargetVertexId().get();
+        weights[i] = edge.getValue().get();
+        ++i;
+      }
+      Arrays.quickSort(0, edgeCount, new AbstractIntComparator() {
+        @Override
+        public int compare(int a, int b) {
+          return ids[a] < ids[b] ? -1 : (ids[a] == ids[b] ? 0 : 1);
+        }
+      }, new Swapper() {
+        @Override
+        public void swap(int a, int b) {
+          long id = ids[a];
+          ids[a] = ids[b];
+          ids[b] = id;
+          float weight = weights[a];
+          weights[a] = weights[b];
+          weights[b] = weight;
+        }
+      });
+      GPackedVertex packedVertex = new GPackedVertex();
+      packedVertex.setVertexId(vertex.getId().get());
+      packedVertex.setValue(vertex.getValue().get());
+      packedVertex.setEdgeCount(edgeCount);
+      packedVertex.setEdgeIds(PackedEdges.packIds(ids, edgeCount));
+      packedVertex.setEdgeWeights(PackedEdges.packWeights(weights, edgeCount));
+      return packedVertex;
+    }
+
+    @Override
+    protected Object getGoraKey(
+        Vertex<LongWritable, DoubleWritable, FloatWritable> vertex) {
+      String goraKey = String.valueOf(vertex.getId());
+      return goraKey;
+    }
+  }
+}
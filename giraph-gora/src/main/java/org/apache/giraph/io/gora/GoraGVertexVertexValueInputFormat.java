@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.giraph.io.gora;
+
+import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_INPUT_FIELDS;
+
+import java.io.IOException;
+
+import org.apache.giraph.io.gora.generated.GVertex;
+import org.apache.giraph.io.gora.utils.GoraUtils;
+import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+/**
+ * Example implementation of a specific vertex value reader for a generated
+ * data bean. Only the vertex id and value fields are read, unless other
+ * fields are configured.
+ */
+public class GoraGVertexVertexValueInputFormat
+  extends GoraVertexValueInputFormat<LongWritable, DoubleWritable> {
+
+  /** Fields holding the vertex id and value. */
+  private static final String[] VALUE_FIELDS =
+      new String[] {"vertexId", "value"};
+
+  /**
+   * Default constructor
+   */
+  public GoraGVertexVertexValueInputFormat() {
+  }
+
+  /**
+   * Reads only the vertex id and value, unless fields were configured.
+   * @return fields to be read.
+   */
+  @Override
+  protected String[] getQueryFields() {
+    String[] fields =
+        GoraUtils.parseFields(GIRAPH_GORA_INPUT_FIELDS.get(getConf()));
+    return fields == null ? VALUE_FIELDS.clone() : fields;
+  }
+
+  /**
+   * Creates specific vertex value reader to be used inside Hadoop.
+   * @param split split to be read.
+   * @param context JobContext to be used.
+   * @return GoraVertexValueReader Vertex value reader to be used by Hadoop.
+   */
+  @Override
+  public GoraVertexValueReader createVertexValueReader(
+      InputSplit split, TaskAttemptContext context) throws IOException {
+    return new GoraGVertexVertexValueReader();
+  }
+
+  /**
+   * Gora vertex value reader
+   */
+  protected class GoraGVertexVertexValueReader extends GoraVertexValueReader {
+
+    @Override
+    protected LongWritable transformVertexId(Object goraObject) {
+      GVertex tmpGVertex = (GVertex) goraObject;
+      return new LongWritable(
+          Long.parseLong(tmpGVertex.getVertexId().toString()));
+    }
+
+    @Override
+    protected DoubleWritable transformVertexValue(Object goraObject) {
+      GVertex tmpGVertex = (GVertex) goraObject;
+      return new DoubleWritable(tmpGVertex.getValue());
+    }
+  }
+}
@@ -17,12 +17,8 @@
  */
 package org.apache.giraph.io.gora;
 
-import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_DATASTORE_CLASS;
-import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_END_KEY;
-import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_KEYS_FACTORY_CLASS;
-import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_KEY_CLASS;
-import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_PERSISTENT_CLASS;
-import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_START_KEY;
+import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_INPUT_FIELDS;
+import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_INPUT_RANGE_SPLITS;
 
 import java.io.IOException;
 import java.util.List;
@@ -30,14 +26,9 @@ import java.util.List;
 import org.apache.giraph.graph.Vertex;
 import org.apache.giraph.io.VertexInputFormat;
 import org.apache.giraph.io.VertexReader;
-import org.apache.giraph.io.gora.utils.KeyFactory;
-import org.apache.giraph.io.gora.utils.ExtraGoraInputFormat;
+import org.apache.giraph.io.gora.utils.GoraInputHelper;
 import org.apache.giraph.io.gora.utils.GoraUtils;
-import org.apache.gora.persistency.Persistent;
-import org.apache.gora.query.Query;
-import org.apache.gora.query.Result;
 import org.apache.gora.store.DataStore;
-import org.apache.gora.util.GoraException;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.io.WritableComparable;
@@ -64,63 +55,29 @@ public abstract class GoraVertexInputFormat<
         E extends Writable>
         extends VertexInputFormat<I, V, E> {
 
-  /** Start key for querying Gora data store. */
-  private static Object START_KEY;
-
-  /** End key for querying Gora data store. */
-  private static Object END_KEY;
-
   /** Logger for Gora's vertex input format. */
   private static final Logger LOG =
           Logger.getLogger(GoraVertexInputFormat.class);
 
-  /** KeyClass used for getting data. */
-  private static Class<?> KEY_CLASS;
-
-  /** The vertex itself will be used as a value inside Gora. */
-  private static Class<? extends Persistent> PERSISTENT_CLASS;
-
-  /** Data store class to be used as backend. */
-  private static Class<? extends DataStore> DATASTORE_CLASS;
-
-  /** Class used to transform strings into Keys */
-  private static Class<?> KEY_FACTORY_CLASS;
-
-  /** Data store used for querying data. */
-  private static DataStore DATA_STORE;
-
-  /** counter for iinput records */
-  private static int RECORD_COUNTER = 0;
-
-  /** Delegate Gora input format */
-  private static ExtraGoraInputFormat GORA_INPUT_FORMAT =
-         new ExtraGoraInputFormat();
+  /** Gora input parameters, read once the configuration is set. */
+  private GoraInputHelper goraInput;
 
   /** @param conf configuration parameters */
   public void checkInputSpecs(Configuration conf) {
-    String sDataStoreType =
-        GIRAPH_GORA_DATASTORE_CLASS.get(getConf());
-    String sKeyType =
-        GIRAPH_GORA_KEY_CLASS.get(getConf());
-    String sPersistentType =
-        GIRAPH_GORA_PERSISTENT_CLASS.get(getConf());
-    String sKeyFactoryClass =
-        GIRAPH_GORA_KEYS_FACTORY_CLASS.get(getConf());
-    try {
-      Class<?> keyClass = Class.forName(sKeyType);
-      Class<?> persistentClass = Class.forName(sPersistentType);
-      Class<?> dataStoreClass = Class.forName(sDataStoreType);
-      Class<?> keyFactoryClass = Class.forName(sKeyFactoryClass);
-      setKeyClass(keyClass);
-      setPersistentClass((Class<? extends Persistent>) persistentClass);
-      setDatastoreClass((Class<? extends DataStore>) dataStoreClass);
-      setKeyFactoryClass(keyFactoryClass);
-      setDataStore(createDataStore());
-      GORA_INPUT_FORMAT.setDataStore(getDataStore());
-    } catch (ClassNotFoundException e) {
-      LOG.error("Error while reading Gora Input parameters");
-      e.printStackTrace();
+    getGoraInput();
+  }
+
+  /**
+   * Gets the Gora input parameters. Every instance of the input format
+   * reads them by itself, as the framework uses different instances for
+   * checking the input, computing splits and reading them.
+   * @return the Gora input parameters.
+   */
+  protected synchronized GoraInputHelper getGoraInput() {
+    if (goraInput == null) {
+      goraInput = new GoraInputHelper(getConf());
     }
+    return goraInput;
   }
 
   /**
@@ -146,51 +103,29 @@ public abstract class GoraVertexInputFormat<
   @Override
   public List<InputSplit> getSplits(JobContext context, int minSplitCountHint)
     throws IOException, InterruptedException {
-    KeyFactory kFact = null;
-    try {
-      kFact = (KeyFactory) getKeyFactoryClass().newInstance();
-      kFact.setDataStore(getDataStore());
-    } catch (InstantiationException e) {
-      LOG.error("Key factory was not instantiated. Please verify.");
-      LOG.error(e.getMessage());
-      e.printStackTrace();
-    } catch (IllegalAccessException e) {
-      LOG.error("Key factory was not instantiated. Please verify.");
-      LOG.error(e.getMessage());
-      e.printStackTrace();
-    }
-    String sKey = GIRAPH_GORA_START_KEY.get(getConf());
-    String eKey = GIRAPH_GORA_END_KEY.get(getConf());
-    if (sKey == null || sKey.isEmpty()) {
-      LOG.warn("No start key has been defined.");
-      LOG.warn("Querying all the data store.");
-      sKey = null;
-      eKey = null;
-    } else {
-      setStartKey(kFact.buildKey(sKey));
-      setEndKey(kFact.buildKey(eKey));
-    }
-    Query tmpQuery = GoraUtils.getQuery(
-        getDataStore(), getStartKey(), getEndKey());
-    GORA_INPUT_FORMAT.setQuery(tmpQuery);
-    List<InputSplit> splits = GORA_INPUT_FORMAT.getSplits(context);
-    return splits;
+    return getGoraInput().getSplits(context, getQueryFields(),
+        GIRAPH_GORA_INPUT_RANGE_SPLITS.get(getConf()));
+  }
+
+  /**
+   * Gets the persistent fields to be read from the data store. Subclasses
+   * needing only some fields can override it to avoid reading the rest.
+   * @return fields to be read, null to read all the fields.
+   */
+  protected String[] getQueryFields() {
+    return GoraUtils.parseFields(GIRAPH_GORA_INPUT_FIELDS.get(getConf()));
   }
 
   /**
-   * Gets the data store object initialized.
+   * Gets the data store object initialized, used by one reader or writer
+   * at a time and reused by the others of this JVM. It has to be released
+   * with
+   * {@link GoraUtils#releaseDataStore(DataStore)}.
    * @return DataStore created
+   * @throws IOException if the data store cannot be created.
    */
-  public DataStore createDataStore() {
-    DataStore dsCreated = null;
-    try {
-      dsCreated = GoraUtils.createSpecificDataStore(getDatastoreClass(),
-          getKeyClass(), getPersistentClass());
-    } catch (GoraException e) {
-      LOG.error("Error creating data store.");
-      e.printStackTrace();
-    }
-    return dsCreated;
+  public DataStore createDataStore() throws IOException {
+    return getGoraInput().createDataStore();
   }
 
   /**
@@ -201,14 +136,17 @@ public abstract class GoraVertexInputFormat<
   protected abstract class GoraVertexReader extends VertexReader<I, V, E> {
     /** Current vertex */
     private Vertex<I, V, E> vertex;
-    /** Results gotten from Gora data store. */
-    private Result readResults;
+    /** Reader of the split. */
+    private GoraInputHelper.Reader goraReader;
+    /** Counter for input records */
+    private int recordCounter = 0;
 
     @Override
     public void initialize(InputSplit inputSplit, TaskAttemptContext context)
       throws IOException, InterruptedException {
+      goraReader = getGoraInput().createReader(inputSplit);
       getResults();
-      RECORD_COUNTER = 0;
+      recordCounter = 0;
     }
 
     /**
@@ -220,17 +158,21 @@ public abstract class GoraVertexInputFormat<
     @Override
     // CHECKSTYLE: stop IllegalCatch
     public boolean nextVertex() throws IOException, InterruptedException {
-      boolean flg = false;
-      try {
-        flg = this.getReadResults().next();
-        this.vertex = transformVertex(this.getReadResults().get());
-        RECORD_COUNTER++;
-      } catch (Exception e) {
-        LOG.error("Error transforming vertices.");
-        LOG.error(e.getMessage());
-        flg = false;
+      // Failures reading the data store are thrown, not taken as the end
+      boolean flg = goraReader.next();
+      if (flg) {
+        try {
+          this.vertex = transformVertex(goraReader.get());
+          recordCounter++;
+        } catch (Exception e) {
+          LOG.error("Error transforming vertices.");
+          LOG.error(e.getMessage());
+          flg = false;
+        }
+      }
+      if (LOG.isDebugEnabled()) {
+        LOG.debug(recordCounter + " were transformed.");
       }
-      LOG.debug(RECORD_COUNTER + " were transformed.");
       return flg;
     }
     // CHECKSTYLE: resume IllegalCatch
@@ -241,11 +183,7 @@ public abstract class GoraVertexInputFormat<
      */
     @Override
     public float getProgress() throws IOException, InterruptedException {
-      float progress = 0.0f;
-      if (getReadResults() != null) {
-        progress = getReadResults().getProgress();
-      }
-      return progress;
+      return goraReader.getProgress();
     }
 
     /**
@@ -268,11 +206,11 @@ public abstract class GoraVertexInputFormat<
     protected abstract Vertex<I, V, E> transformVertex(Object goraObject);
 
     /**
-     * Performs a range query to a Gora data store.
+     * Performs the query of the split being read to a Gora data store, or
+     * to the snapshot if there is one.
      */
     protected void getResults() {
-      setReadResults(GoraUtils.getRequest(getDataStore(),
-          getStartKey(), getEndKey()));
+      goraReader.readResults(getQueryFields());
     }
 
     /**
@@ -281,134 +219,15 @@ public abstract class GoraVertexInputFormat<
      */
     @Override
     public void close() throws IOException {
+      goraReader.close();
     }
 
     /**
-     * Gets the results read.
-     * @return results read.
+     * Gets the data store used by this reader, the snapshot if there is one.
+     * @return DataStore
      */
-    Result getReadResults() {
-      return readResults;
+    protected DataStore getDataStore() {
+      return goraReader.getDataStore();
     }
-
-    /**
-     * Sets the results read.
-     * @param readResults results read.
-     */
-    void setReadResults(Result readResults) {
-      this.readResults = readResults;
-    }
-  }
-
-  /**
-   * Gets the persistent Class
-   * @return persistentClass used
-   */
-  static Class<? extends Persistent> getPersistentClass() {
-    return PERSISTENT_CLASS;
-  }
-
-  /**
-   * Sets the persistent Class
-   * @param persistentClassUsed to be set
-   */
-  static void setPersistentClass
-  (Class<? extends Persistent> persistentClassUsed) {
-    PERSISTENT_CLASS = persistentClassUsed;
-  }
-
-  /**
-   * Gets the key class used.
-   * @return the key class used.
-   */
-  static Class<?> getKeyClass() {
-    return KEY_CLASS;
-  }
-
-  /**
-   * Sets the key class used.
-   * @param keyClassUsed key class used.
-   */
-  static void setKeyClass(Class<?> keyClassUsed) {
-    KEY_CLASS = keyClassUsed;
-  }
-
-  /**
-   * @return Class the DATASTORE_CLASS
-   */
-  public static Class<? extends DataStore> getDatastoreClass() {
-    return DATASTORE_CLASS;
-  }
-
-  /**
-   * @param dataStoreClass the dataStore class to set
-   */
-  public static void setDatastoreClass(
-      Class<? extends DataStore> dataStoreClass) {
-    DATASTORE_CLASS = dataStoreClass;
-  }
-
-  /**
-   * Gets the start key for querying.
-   * @return the start key.
-   */
-  public Object getStartKey() {
-    return START_KEY;
-  }
-
-  /**
-   * Gets the start key for querying.
-   * @param startKey start key.
-   */
-  public static void setStartKey(Object startKey) {
-    START_KEY = startKey;
-  }
-
-  /**
-   * Gets the end key for querying.
-   * @return the end key.
-   */
-  static Object getEndKey() {
-    return END_KEY;
-  }
-
-  /**
-   * Sets the end key for querying.
-   * @param pEndKey start key.
-   */
-  static void setEndKey(Object pEndKey) {
-    END_KEY = pEndKey;
-  }
-
-  /**
-   * Gets the key factory class.
-   * @return the kEY_FACTORY_CLASS
-   */
-  static Class<?> getKeyFactoryClass() {
-    return KEY_FACTORY_CLASS;
-  }
-
-  /**
-   * Sets the key factory class.
-   * @param keyFactoryClass the keyFactoryClass to set.
-   */
-  static void setKeyFactoryClass(Class<?> keyFactoryClass) {
-    KEY_FACTORY_CLASS = keyFactoryClass;
-  }
-
-  /**
-   * Gets the data store.
-   * @return DataStore
-   */
-  public static DataStore getDataStore() {
-    return DATA_STORE;
-  }
-
-  /**
-   * Sets the data store
-   * @param dStore the dATA_STORE to set
-   */
-  public static void setDataStore(DataStore dStore) {
-    DATA_STORE = dStore;
   }
 }
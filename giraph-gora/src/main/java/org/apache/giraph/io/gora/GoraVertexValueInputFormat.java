@@ -0,0 +1,245 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.giraph.io.gora;
+
+import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_INPUT_FIELDS;
+import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_INPUT_RANGE_SPLITS;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.giraph.io.VertexReader;
+import org.apache.giraph.io.VertexValueInputFormat;
+import org.apache.giraph.io.VertexValueReader;
+import org.apache.giraph.io.gora.utils.GoraInputHelper;
+import org.apache.giraph.io.gora.utils.GoraUtils;
+import org.apache.gora.store.DataStore;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.log4j.Logger;
+
+/**
+ *  Class which wraps the GoraInputFormat. It's designed
+ *  as an extension point to VertexValueInputFormat subclasses who wish
+ *  to read vertex ids and values from Gora data sources, while the edges
+ *  are read by an edge input format such as {@link GoraEdgeInputFormat}.
+ *
+ *  Only the fields returned by {@link #getQueryFields()} are read from the
+ *  data store, so subclasses should override it to name the fields holding
+ *  the vertex id and value.
+ *
+ * @param <I> vertex id type
+ * @param <V>  vertex value type
+ */
+public abstract class GoraVertexValueInputFormat<
+        I extends WritableComparable,
+        V extends Writable>
+        extends VertexValueInputFormat<I, V> {
+
+  /** Logger for Gora's vertex value input format. */
+  private static final Logger LOG =
+          Logger.getLogger(GoraVertexValueInputFormat.class);
+
+  /** Gora input parameters, read once the configuration is set. */
+  private GoraInputHelper goraInput;
+
+  /** @param conf configuration parameters */
+  public void checkInputSpecs(Configuration conf) {
+    getGoraInput();
+  }
+
+  /**
+   * Gets the Gora input parameters. Every instance of the input format
+   * reads them by itself, as the framework uses different instances for
+   * checking the input, computing splits and reading them.
+   * @return the Gora input parameters.
+   */
+  protected synchronized GoraInputHelper getGoraInput() {
+    if (goraInput == null) {
+      goraInput = new GoraInputHelper(getConf());
+    }
+    return goraInput;
+  }
+
+  /**
+   * Create a vertex value reader for a given split. Guaranteed to have been
+   * configured with setConf() prior to use. The framework will also call
+   * {@link VertexReader#initialize(InputSplit, TaskAttemptContext)} before
+   * the split is used.
+   *
+   * @param split the split to be read
+   * @param context the information about the task
+   * @return a new record reader
+   * @throws IOException
+   */
+  public abstract GoraVertexValueReader createVertexValueReader(
+    InputSplit split, TaskAttemptContext context) throws IOException;
+
+  /**
+   * Gets the splits for a data store.
+   * @param context JobContext
+   * @param minSplitCountHint Hint for a minimum split count
+   * @return List<InputSplit> A list of splits
+   */
+  @Override
+  public List<InputSplit> getSplits(JobContext context, int minSplitCountHint)
+    throws IOException, InterruptedException {
+    return getGoraInput().getSplits(context, getQueryFields(),
+        GIRAPH_GORA_INPUT_RANGE_SPLITS.get(getConf()));
+  }
+
+  /**
+   * Gets the persistent fields to be read from the data store. Subclasses
+   * needing only some fields can override it to avoid reading the rest.
+   * @return fields to be read, null to read all the fields.
+   */
+  protected String[] getQueryFields() {
+    return GoraUtils.parseFields(GIRAPH_GORA_INPUT_FIELDS.get(getConf()));
+  }
+
+  /**
+   * Gets the data store object initialized, used by one reader or writer
+   * at a time and reused by the others of this JVM. It has to be released
+   * with
+   * {@link GoraUtils#releaseDataStore(DataStore)}.
+   * @return DataStore created
+   * @throws IOException if the data store cannot be created.
+   */
+  public DataStore createDataStore() throws IOException {
+    return getGoraInput().createDataStore();
+  }
+
+  /**
+   * Abstract class to be implemented by the user based on their specific
+   * vertex value input.
+   */
+  protected abstract class GoraVertexValueReader
+      extends VertexValueReader<I, V> {
+    /** Current vertex id */
+    private I vertexId;
+    /** Current vertex value */
+    private V vertexValue;
+    /** Reader of the split. */
+    private GoraInputHelper.Reader goraReader;
+    /** Counter for input records */
+    private int recordCounter = 0;
+
+    @Override
+    public void initialize(InputSplit inputSplit, TaskAttemptContext context)
+      throws IOException, InterruptedException {
+      goraReader = getGoraInput().createReader(inputSplit);
+      getResults();
+      recordCounter = 0;
+    }
+
+    /**
+     * Gets the next vertex id and value from Gora data store.
+     * @return true/false depending on the existence of vertices.
+     * @throws IOException exceptions passed along.
+     * @throws InterruptedException exceptions passed along.
+     */
+    @Override
+    // CHECKSTYLE: stop IllegalCatch
+    public boolean nextVertex() throws IOException, InterruptedException {
+      // Failures reading the data store are thrown, not taken as the end
+      boolean flg = goraReader.next();
+      if (flg) {
+        try {
+          Object goraObject = goraReader.get();
+          this.vertexId = transformVertexId(goraObject);
+          this.vertexValue = transformVertexValue(goraObject);
+          recordCounter++;
+        } catch (Exception e) {
+          LOG.error("Error transforming vertex values.");
+          LOG.error(e.getMessage());
+          flg = false;
+        }
+      }
+      if (LOG.isDebugEnabled()) {
+        LOG.debug(recordCounter + " were transformed.");
+      }
+      return flg;
+    }
+    // CHECKSTYLE: resume IllegalCatch
+
+    /**
+     * Gets the progress of reading results from Gora.
+     * @return the progress of reading results from Gora.
+     */
+    @Override
+    public float getProgress() throws IOException, InterruptedException {
+      return goraReader.getProgress();
+    }
+
+    @Override
+    public I getCurrentVertexId() throws IOException, InterruptedException {
+      return this.vertexId;
+    }
+
+    @Override
+    public V getCurrentVertexValue()
+      throws IOException, InterruptedException {
+      return this.vertexValue;
+    }
+
+    /**
+     * Gets the vertex id out of a single Gora object
+     *
+     * @param   goraObject vertex represented as a GoraObject
+     * @return  The vertex id represented by a Gora object
+     */
+    protected abstract I transformVertexId(Object goraObject);
+
+    /**
+     * Gets the vertex value out of a single Gora object
+     *
+     * @param   goraObject vertex represented as a GoraObject
+     * @return  The vertex value represented by a Gora object
+     */
+    protected abstract V transformVertexValue(Object goraObject);
+
+    /**
+     * Performs the query of the split being read to a Gora data store, or
+     * to the snapshot if there is one.
+     */
+    protected void getResults() {
+      goraReader.readResults(getQueryFields());
+    }
+
+    /**
+     * Finishes the reading process.
+     * @throws IOException.
+     */
+    @Override
+    public void close() throws IOException {
+      goraReader.close();
+    }
+
+    /**
+     * Gets the data store used by this reader, the snapshot if there is one.
+     * @return DataStore
+     */
+    protected DataStore getDataStore() {
+      return goraReader.getDataStore();
+    }
+  }
+}
@@ -17,6 +17,9 @@
  */
 package org.apache.giraph.io.gora.constants;
 
+import org.apache.giraph.conf.BooleanConfOption;
+import org.apache.giraph.conf.IntConfOption;
+import org.apache.giraph.conf.LongConfOption;
 import org.apache.giraph.conf.StrConfOption;
 
 /**
@@ -52,6 +55,73 @@ public interface GiraphGoraConstants {
     new StrConfOption("giraph.gora.end.key", null,
                       "Gora end key to query the datastore. ");
 
+  /** Gora persistent fields to read from the datastore. */
+  StrConfOption GIRAPH_GORA_INPUT_FIELDS =
+    new StrConfOption("giraph.gora.input.fields", null,
+                      "Comma separated list of Gora persistent fields to " +
+                      "read from the datastore. All fields are read if " +
+                      "not set.");
+
+  /** Gora start time of the rows to read from the datastore. */
+  LongConfOption GIRAPH_GORA_INPUT_START_TIME =
+    new LongConfOption("giraph.gora.input.start.time", -1,
+                       "Only rows changed at or after this time (msecs) " +
+                       "are read from the datastore. -1 reads rows " +
+                       "changed since the time held by " +
+                       "giraph.gora.input.checkpoint.file, or rows of " +
+                       "any time if there is none.");
+
+  /** Gora end time of the rows to read from the datastore. */
+  LongConfOption GIRAPH_GORA_INPUT_END_TIME =
+    new LongConfOption("giraph.gora.input.end.time", -1,
+                       "Only rows changed before this time (msecs) " +
+                       "are read from the datastore. -1 reads rows of any " +
+                       "time.");
+
+  /** Gora data store class holding the snapshot of the graph. */
+  StrConfOption GIRAPH_GORA_INPUT_SNAPSHOT_DATASTORE_CLASS =
+    new StrConfOption("giraph.gora.input.snapshot.datastore.class", null,
+                      "Gora DataStore class holding a snapshot of the " +
+                      "input (e.g. a file based store on HDFS). If set, " +
+                      "the rows of the datastore changed in the time " +
+                      "range are merged into the snapshot once, when " +
+                      "the splits are computed, and the splits are read " +
+                      "from the snapshot instead.");
+
+  /** File holding the time the snapshot was last merged up to. */
+  StrConfOption GIRAPH_GORA_INPUT_CHECKPOINT_FILE =
+    new StrConfOption("giraph.gora.input.checkpoint.file", null,
+                      "File (e.g. on HDFS) holding the time the changed " +
+                      "rows were last merged into the snapshot up to. " +
+                      "It is the default start time, and it is updated " +
+                      "by every merge.");
+
+  /** Whether to cut Gora splits on the ranges of Giraph partitions. */
+  BooleanConfOption GIRAPH_GORA_INPUT_RANGE_SPLITS =
+    new BooleanConfOption("giraph.gora.input.range.splits", false,
+                          "Cut the Gora vertex splits on the id ranges of " +
+                          "the partitions of range partitioners (e.g. " +
+                          "SimpleLongRangePartitionerFactory), so every " +
+                          "split is sent to a single partition. Requires " +
+                          "giraph.userPartitionCount and " +
+                          "giraph.vertexKeySpaceSize, and numeric keys or " +
+                          "string keys holding the vertex ids zero-padded " +
+                          "to the digits of giraph.vertexKeySpaceSize - 1.");
+
+  /** Number of records read ahead from the datastore. */
+  IntConfOption GIRAPH_GORA_INPUT_PREFETCH_SIZE =
+    new IntConfOption("giraph.gora.input.prefetch.size", 0,
+                      "Number of records read ahead from the Gora input " +
+                      "data store by a background thread of every " +
+                      "reader. 0 reads records synchronously.");
+
+  /** Number of rows fetched by every scanner call to HBase. */
+  IntConfOption GIRAPH_GORA_INPUT_SCANNER_CACHING =
+    new IntConfOption("giraph.gora.input.scanner.caching", 0,
+                      "Number of rows fetched by every scanner call of " +
+                      "HBase backed Gora input data stores. 0 keeps the " +
+                      "HBase default.");
+
   /** Gora data store class which provides data access. */
   StrConfOption GIRAPH_GORA_KEYS_FACTORY_CLASS =
     new StrConfOption("giraph.gora.keys.factory.class", null,
@@ -76,5 +146,26 @@ public interface GiraphGoraConstants {
     new StrConfOption("giraph.gora.output.persistent.class", null,
                       "Gora Persistent class to write to Gora. " +
                       "- required");
+
+  /** Number of records written between flushes of the output data store. */
+  IntConfOption GIRAPH_GORA_OUTPUT_BATCH_SIZE =
+    new IntConfOption("giraph.gora.output.batch.size", 0,
+                      "Number of records written between flushes of the " +
+                      "Gora output data store. If greater than 0, records " +
+                      "are written asynchronously by a background thread; " +
+                      "0 writes every record synchronously.");
+
+  /** Maximum number of records waiting to be written to the data store. */
+  IntConfOption GIRAPH_GORA_OUTPUT_QUEUE_SIZE =
+    new IntConfOption("giraph.gora.output.queue.size", 10000,
+                      "Maximum number of records waiting to be written to " +
+                      "the Gora output data store. Writers block when the " +
+                      "queue is full.");
+
+  /** Maximum msecs between flushes of the output data store. */
+  IntConfOption GIRAPH_GORA_OUTPUT_FLUSH_INTERVAL_MSECS =
+    new IntConfOption("giraph.gora.output.flush.interval.msecs", 1000,
+                      "Maximum msecs between flushes of the Gora output " +
+                      "data store when writing asynchronously.");
 }
 // CHECKSTYLE: resume InterfaceIsTypeCheck
@@ -0,0 +1,318 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.io.gora.generated;
+
+import java.nio.ByteBuffer;
+
+import org.apache.avro.Schema;
+import org.apache.avro.AvroRuntimeException;
+import org.apache.gora.persistency.StateManager;
+import org.apache.gora.persistency.impl.PersistentBase;
+import org.apache.gora.persistency.impl.StateManagerImpl;
+
+/**
+ * Example class for defining a Giraph-Vertex whose out-edges are packed
+ * into byte arrays: target ids as zig-zag varint deltas and edge weights as
+ * 4-byte floats.
+ */
+@SuppressWarnings("all")
+public class GPackedVertex extends PersistentBase {
+  /**
+   * Schema used for the class.
+   */
+  public static final Schema OBJ_SCHEMA = Schema.parse(
+      "{\"type\":\"record\",\"name\":\"GPackedVertex\"," +
+      "\"namespace\":\"org.apache.giraph.gora.generated\"," +
+      "\"fields\":[{\"name\":\"vertexId\",\"type\":\"long\"}," +
+      "{\"name\":\"value\",\"type\":\"double\"}," +
+      "{\"name\":\"edgeCount\",\"type\":\"int\"}," +
+      "{\"name\":\"edgeIds\",\"type\":\"bytes\"}," +
+      "{\"name\":\"edgeWeights\",\"type\":\"bytes\"}]}");
+
+  /**
+   * Field enum
+   */
+  public static enum Field {
+    /**
+     * VertexId
+     */
+    VERTEX_ID(0, "vertexId"),
+
+    /**
+     * Field value
+     */
+    VALUE(1, "value"),
+
+    /**
+     * Number of edges
+     */
+    EDGE_COUNT(2, "edgeCount"),
+
+    /**
+     * Packed edge target ids
+     */
+    EDGE_IDS(3, "edgeIds"),
+
+    /**
+     * Packed edge weights
+     */
+    EDGE_WEIGHTS(4, "edgeWeights");
+
+    /**
+     * Field index
+     */
+    private int index;
+
+    /**
+     * Field name
+     */
+    private String name;
+
+    /**
+     * Field constructor
+     * @param index of attribute
+     * @param name of attribute
+     */
+    Field(int index, String name) {
+      this.index = index;
+      this.name = name;
+    }
+
+    /**
+     * Gets index
+     * @return int of attribute.
+     */
+    public int getIndex() {
+      return index;
+    }
+
+    /**
+     * Gets name
+     * @return String of name.
+     */
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * Gets name
+     * @return String of name.
+     */
+    public String toString() {
+      return name;
+    }
+  };
+
+  /**
+   * Array containing all fields/
+   */
+  private static final String[] ALL_FIELDS = {
+    "vertexId", "value", "edgeCount", "edgeIds", "edgeWeights"
+  };
+
+  static {
+    PersistentBase.registerFields(GPackedVertex.class, ALL_FIELDS);
+  }
+
+  /**
+   * Vertex Id
+   */
+  private long vertexId;
+
+  /**
+   * Value
+   */
+  private double value;
+
+  /**
+   * Number of edges
+   */
+  private int edgeCount;
+
+  /**
+   * Packed edge target ids
+   */
+  private ByteBuffer edgeIds;
+
+  /**
+   * Packed edge weights
+   */
+  private ByteBuffer edgeWeights;
+
+  /**
+   * Default constructor
+   */
+  public GPackedVertex() {
+    this(new StateManagerImpl());
+  }
+
+  /**
+   * Constructor
+   * @param stateManager from which the object will be created.
+   */
+  public GPackedVertex(StateManager stateManager) {
+    super(stateManager);
+  }
+
+  /**
+   * Creates a new instance
+   * @param stateManager from which the object will be created.
+   * @return GPackedVertex created
+   */
+  public GPackedVertex newInstance(StateManager stateManager) {
+    return new GPackedVertex(stateManager);
+  }
+
+  /**
+   * Gets the object schema
+   * @return Schema of the object.
+   */
+  public Schema getSchema() {
+    return OBJ_SCHEMA;
+  }
+
+  /**
+   * Gets field
+   * @param fieldIndex index of field to be used.
+   * @return Object from an index.
+   */
+  public Object get(int fieldIndex) {
+    switch (fieldIndex) {
+    case 0:
+      return vertexId;
+    case 1:
+      return value;
+    case 2:
+      return edgeCount;
+    case 3:
+      return edgeIds;
+    case 4:
+      return edgeWeights;
+    default:
+      throw new AvroRuntimeException("Bad index");
+    }
+  }
+
+  /**
+   * Puts a value into a field.
+   * @param fieldIndex index of field used.
+   * @param fieldValue value of field used.
+   */
+  @SuppressWarnings(value = "unchecked")
+  public void put(int fieldIndex, Object fieldValue) {
+    if (isFieldEqual(fieldIndex, fieldValue)) {
+      return;
+    }
+    getStateManager().setDirty(this, fieldIndex);
+    switch (fieldIndex) {
+    case 0:
+      vertexId = (Long) fieldValue; break;
+    case 1:
+      value = (Double) fieldValue; break;
+    case 2:
+      edgeCount = (Integer) fieldValue; break;
+    case 3:
+      edgeIds = (ByteBuffer) fieldValue; break;
+    case 4:
+      edgeWeights = (ByteBuffer) fieldValue; break;
+    default:
+      throw new AvroRuntimeException("Bad index");
+    }
+  }
+
+  /**
+   * Gets vertexId
+   * @return long vertexId
+   */
+  public long getVertexId() {
+    return (Long) get(0);
+  }
+
+  /**
+   * Sets vertexId
+   * @param value vertexId
+   */
+  public void setVertexId(long value) {
+    put(0, value);
+  }
+
+  /**
+   * Gets value
+   * @return double value.
+   */
+  public double getValue() {
+    return (Double) get(1);
+  }
+
+  /**
+   * Sets value
+   * @param value .
+   */
+  public void setValue(double value) {
+    put(1, value);
+  }
+
+  /**
+   * Gets the number of edges
+   * @return int number of edges.
+   */
+  public int getEdgeCount() {
+    return (Integer) get(2);
+  }
+
+  /**
+   * Sets the number of edges
+   * @param value number of edges.
+   */
+  public void setEdgeCount(int value) {
+    put(2, value);
+  }
+
+  /**
+   * Gets the packed edge target ids
+   * @return ByteBuffer of packed ids.
+   */
+  public ByteBuffer getEdgeIds() {
+    return (ByteBuffer) get(3);
+  }
+
+  /**
+   * Sets the packed edge target ids
+   * @param value packed ids.
+   */
+  public void setEdgeIds(ByteBuffer value) {
+    put(3, value);
+  }
+
+  /**
+   * Gets the packed edge weights
+   * @return ByteBuffer of packed weights.
+   */
+  public ByteBuffer getEdgeWeights() {
+    return (ByteBuffer) get(4);
+  }
+
+  /**
+   * Sets the packed edge weights
+   * @param value packed weights.
+   */
+  public void setEdgeWeights(ByteBuffer value) {
+    put(4, value);
+  }
+}
@@ -28,6 +28,7 @@ import org.apache.gora.persistency.Persistent;
 import org.apache.gora.persistency.impl.PersistentBase;
 import org.apache.gora.query.PartitionQuery;
 import org.apache.gora.query.Query;
+import org.apache.gora.query.impl.PartitionQueryImpl;
 import org.apache.gora.store.DataStore;
 import org.apache.gora.util.IOUtils;
 import org.apache.hadoop.conf.Configuration;
@@ -66,6 +67,17 @@ public class ExtraGoraInputFormat<K, T extends PersistentBase>
    */
   private Query<K, T> query;
 
+  /**
+   * First keys of the key ranges splits are cut on, null to keep the
+   * partitions of the data store.
+   */
+  private List<K> rangeStartKeys;
+
+  /**
+   * Last keys of the key ranges splits are cut on.
+   */
+  private List<K> rangeEndKeys;
+
   /**
    * @param split InputSplit to be used.
    * @param context JobContext to be used.
@@ -91,12 +103,58 @@ public class ExtraGoraInputFormat<K, T extends PersistentBase>
     List<InputSplit> splits = new ArrayList<InputSplit>(queries.size());
 
     for (PartitionQuery<K, T> partQuery : queries) {
-      splits.add(new GoraInputSplit(context.getConfiguration(), partQuery));
+      if (rangeStartKeys == null) {
+        splits.add(new GoraInputSplit(context.getConfiguration(), partQuery));
+      } else {
+        for (PartitionQuery<K, T> rangeQuery : cutOnKeyRanges(partQuery)) {
+          splits.add(new GoraInputSplit(context.getConfiguration(),
+              rangeQuery));
+        }
+      }
     }
 
     return splits;
   }
 
+  /**
+   * Cuts a partition query of the data store on the key ranges set, so no
+   * query spans two ranges. The queries keep the locations of the
+   * partition query.
+   * @param partQuery partition query of the data store.
+   * @return partition queries, each one within a single key range.
+   */
+  @SuppressWarnings("unchecked")
+  List<PartitionQuery<K, T>> cutOnKeyRanges(
+      PartitionQuery<K, T> partQuery) {
+    List<PartitionQuery<K, T>> rangeQueries =
+        new ArrayList<PartitionQuery<K, T>>();
+    K startKey = partQuery.getStartKey();
+    K endKey = partQuery.getEndKey();
+    // The first range starts at the lowest key, so it is never cut on
+    for (int i = 1; i < rangeStartKeys.size(); ++i) {
+      Comparable<K> rangeStartKey = (Comparable<K>) rangeStartKeys.get(i);
+      if ((startKey == null || rangeStartKey.compareTo(startKey) > 0) &&
+          (endKey == null || rangeStartKey.compareTo(endKey) <= 0)) {
+        rangeQueries.add(new PartitionQueryImpl<K, T>(getQuery(), startKey,
+            rangeEndKeys.get(i - 1), partQuery.getLocations()));
+        startKey = rangeStartKeys.get(i);
+      }
+    }
+    rangeQueries.add(new PartitionQueryImpl<K, T>(getQuery(), startKey,
+        endKey, partQuery.getLocations()));
+    return rangeQueries;
+  }
+
+  /**
+   * Sets the key ranges splits are cut on. Keys have to be comparable.
+   * @param startKeys first key of every range, in order.
+   * @param endKeys last key of every range, in order.
+   */
+  public void setKeyRanges(List<K> startKeys, List<K> endKeys) {
+    this.rangeStartKeys = startKeys;
+    this.rangeEndKeys = endKeys;
+  }
+
   /**
    * @return the dataStore
    */
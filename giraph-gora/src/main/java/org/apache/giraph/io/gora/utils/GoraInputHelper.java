@@ -0,0 +1,614 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.giraph.io.gora.utils;
+
+import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_DATASTORE_CLASS;
+import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_INPUT_CHECKPOINT_FILE;
+import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_END_KEY;
+import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_INPUT_END_TIME;
+import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_INPUT_PREFETCH_SIZE;
+import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_INPUT_SCANNER_CACHING;
+import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_INPUT_SNAPSHOT_DATASTORE_CLASS;
+import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_INPUT_START_TIME;
+import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_KEYS_FACTORY_CLASS;
+import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_KEY_CLASS;
+import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_PERSISTENT_CLASS;
+import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_START_KEY;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.giraph.conf.GiraphConstants;
+import org.apache.gora.mapreduce.GoraInputSplit;
+import org.apache.gora.persistency.Persistent;
+import org.apache.gora.query.PartitionQuery;
+import org.apache.gora.query.Query;
+import org.apache.gora.query.Result;
+import org.apache.gora.store.DataStore;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.log4j.Logger;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Reads the Gora input parameters, computes the input splits and reads
+ * them for the Gora vertex, vertex value and edge input formats, which
+ * cannot share a superclass as they extend different Giraph formats.
+ *
+ * Only the rows changed in the configured time range are read. If there is
+ * a snapshot data store, they are merged into it when the splits are
+ * computed, so the snapshot has a single writer, and the splits are read
+ * from the snapshot.
+ */
+public class GoraInputHelper {
+  /** Logger */
+  private static final Logger LOG = Logger.getLogger(GoraInputHelper.class);
+
+  /** Configuration the parameters are read from. */
+  private final Configuration conf;
+
+  /**
+   * Configuration the data stores are created with, a copy of the job one
+   * if scanner caching is set on it.
+   */
+  private final Configuration storeConf;
+
+  /** KeyClass used for getting data. */
+  private Class<?> keyClass;
+
+  /** The vertex itself will be used as a value inside Gora. */
+  private Class<? extends Persistent> persistentClass;
+
+  /** Data store class to be used as backend. */
+  private Class<? extends DataStore> datastoreClass;
+
+  /** Class used to transform strings into Keys */
+  private Class<?> keyFactoryClass;
+
+  /** Data store class holding the snapshot, null if there is none. */
+  private Class<? extends DataStore> snapshotDatastoreClass;
+
+  /**
+   * Constructor, reading the Gora classes from the configuration.
+   * @param conf configuration.
+   */
+  @SuppressWarnings("unchecked")
+  public GoraInputHelper(Configuration conf) {
+    this.conf = conf;
+    int scannerCaching = GIRAPH_GORA_INPUT_SCANNER_CACHING.get(conf);
+    if (scannerCaching > 0) {
+      // The job configuration is shared, so it is left untouched
+      storeConf = new Configuration(conf);
+      storeConf.setInt(GoraUtils.HBASE_SCANNER_CACHING, scannerCaching);
+    } else {
+      storeConf = conf;
+    }
+    String sSnapshotDataStoreType =
+        GIRAPH_GORA_INPUT_SNAPSHOT_DATASTORE_CLASS.get(conf);
+    try {
+      if (sSnapshotDataStoreType != null) {
+        snapshotDatastoreClass = (Class<? extends DataStore>)
+            Class.forName(sSnapshotDataStoreType);
+      }
+      keyClass = Class.forName(GIRAPH_GORA_KEY_CLASS.get(conf));
+      persistentClass = (Class<? extends Persistent>)
+          Class.forName(GIRAPH_GORA_PERSISTENT_CLASS.get(conf));
+      datastoreClass = (Class<? extends DataStore>)
+          Class.forName(GIRAPH_GORA_DATASTORE_CLASS.get(conf));
+      keyFactoryClass =
+          Class.forName(GIRAPH_GORA_KEYS_FACTORY_CLASS.get(conf));
+    } catch (ClassNotFoundException e) {
+      throw new IllegalArgumentException(
+          "GoraInputHelper: Gora input class not found", e);
+    }
+  }
+
+  /**
+   * Gets the splits of the configured key range of the data store. If
+   * there is a snapshot, the changed rows are merged into it first and the
+   * splits of the snapshot are returned.
+   * @param context job context.
+   * @param fields fields to be read, null to read all the fields.
+   * @param cutOnPartitionRanges whether splits are cut on the key ranges
+   *                             of range partitioners.
+   * @return the splits.
+   * @throws IOException
+   * @throws InterruptedException
+   */
+  @SuppressWarnings("unchecked")
+  public List<InputSplit> getSplits(JobContext context, String[] fields,
+      boolean cutOnPartitionRanges) throws IOException, InterruptedException {
+    if (snapshotDatastoreClass != null) {
+      mergeIntoSnapshot();
+    }
+    DataStore dataStore = createReadDataStore();
+    try {
+      Query query = getRangeQuery(dataStore, fields);
+      if (snapshotDatastoreClass == null) {
+        setTimeRange(query, getStartTime());
+      }
+      ExtraGoraInputFormat goraInputFormat = new ExtraGoraInputFormat();
+      goraInputFormat.setDataStore(dataStore);
+      goraInputFormat.setQuery(query);
+      if (cutOnPartitionRanges) {
+        setKeyRanges(goraInputFormat, dataStore);
+      }
+      return goraInputFormat.getSplits(context);
+    } finally {
+      GoraUtils.releaseDataStore(dataStore);
+    }
+  }
+
+  /**
+   * Merges the rows of the configured key range changed in the time range
+   * into the snapshot, and records the end of the time range in the
+   * checkpoint file, if there is one, as the start time of the next merge.
+   * @throws IOException if reading or writing the rows fails.
+   */
+  void mergeIntoSnapshot() throws IOException {
+    DataStore dataStore = createDataStore(datastoreClass);
+    DataStore snapshotDataStore = null;
+    try {
+      snapshotDataStore = createDataStore(snapshotDatastoreClass);
+      mergeIntoSnapshot(dataStore, snapshotDataStore);
+    } finally {
+      GoraUtils.releaseDataStore(dataStore);
+      GoraUtils.releaseDataStore(snapshotDataStore);
+    }
+  }
+
+  /**
+   * Merges the rows of the configured key range changed in the time range
+   * from an input data store into a snapshot data store, and records the
+   * end of the time range in the checkpoint file, if there is one.
+   * @param dataStore input data store.
+   * @param snapshotDataStore snapshot data store.
+   * @throws IOException if reading or writing the rows fails.
+   */
+  // CHECKSTYLE: stop IllegalCatch
+  @SuppressWarnings("unchecked")
+  void mergeIntoSnapshot(DataStore dataStore, DataStore snapshotDataStore)
+    throws IOException {
+    Result changes = null;
+    try {
+      long endTime = GIRAPH_GORA_INPUT_END_TIME.get(conf);
+      long checkpointTime = endTime >= 0 ? endTime :
+          System.currentTimeMillis();
+      Query query = getRangeQuery(dataStore, null);
+      setTimeRange(query, getStartTime());
+      changes = dataStore.execute(query);
+      long changedRows = GoraUtils.putResults(changes, snapshotDataStore);
+      if (LOG.isInfoEnabled()) {
+        LOG.info("mergeIntoSnapshot: Merged " + changedRows +
+            " changed rows into the snapshot");
+      }
+      writeCheckpoint(checkpointTime);
+    } catch (IOException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IOException(
+          "mergeIntoSnapshot: Merging changed rows failed", e);
+    } finally {
+      if (changes != null) {
+        changes.close();
+      }
+    }
+  }
+  // CHECKSTYLE: resume IllegalCatch
+
+  /**
+   * Gets the start time of the rows to read, which is the configured one or
+   * else the time held by the checkpoint file.
+   * @return start time, -1 if unbounded.
+   * @throws IOException if reading the checkpoint file fails.
+   */
+  long getStartTime() throws IOException {
+    long startTime = GIRAPH_GORA_INPUT_START_TIME.get(conf);
+    String checkpointFile = GIRAPH_GORA_INPUT_CHECKPOINT_FILE.get(conf);
+    if (startTime < 0 && checkpointFile != null) {
+      Path path = new Path(checkpointFile);
+      FileSystem fs = path.getFileSystem(conf);
+      if (fs.exists(path)) {
+        FSDataInputStream input = fs.open(path);
+        try {
+          startTime = input.readLong();
+        } finally {
+          input.close();
+        }
+      }
+    }
+    return startTime;
+  }
+
+  /**
+   * Records the time the snapshot was merged up to in the checkpoint file,
+   * if there is one.
+   * @param checkpointTime time the snapshot was merged up to.
+   * @throws IOException if writing the checkpoint file fails.
+   */
+  private void writeCheckpoint(long checkpointTime) throws IOException {
+    String checkpointFile = GIRAPH_GORA_INPUT_CHECKPOINT_FILE.get(conf);
+    if (checkpointFile == null) {
+      return;
+    }
+    Path path = new Path(checkpointFile);
+    FSDataOutputStream output = path.getFileSystem(conf).create(path, true);
+    try {
+      output.writeLong(checkpointTime);
+    } finally {
+      output.close();
+    }
+    if (LOG.isInfoEnabled()) {
+      LOG.info("writeCheckpoint: Merged the snapshot up to " +
+          checkpointTime + " into " + path);
+    }
+  }
+
+  /**
+   * Restricts a query to the configured time range.
+   * @param query query to restrict.
+   * @param startTime start time of the range, -1 if unbounded.
+   */
+  private void setTimeRange(Query query, long startTime) {
+    GoraUtils.setTimeRange(query, startTime,
+        GIRAPH_GORA_INPUT_END_TIME.get(conf));
+  }
+
+  /**
+   * Gets a query of the configured key range.
+   * @param dataStore data store queried.
+   * @param fields fields to be read, null to read all the fields.
+   * @return the query.
+   */
+  @SuppressWarnings("unchecked")
+  private Query getRangeQuery(DataStore dataStore, String[] fields) {
+    Object startKey = buildKey(dataStore, GIRAPH_GORA_START_KEY.get(conf));
+    Object endKey = null;
+    if (startKey == null) {
+      LOG.warn("getRangeQuery: No start key has been defined, querying " +
+          "all the data store.");
+    } else {
+      endKey = buildKey(dataStore, GIRAPH_GORA_END_KEY.get(conf));
+    }
+    return GoraUtils.getQuery(dataStore, startKey, endKey, fields);
+  }
+
+  /**
+   * Sets the key ranges of the partitions of range partitioners, which
+   * assign equal-sized ranges of [0, vertexKeySpaceSize) to partitions, on
+   * the delegate input format. String keys sort lexicographically, so their
+   * ranges are only cut right if the vertex ids are stored zero-padded as
+   * {@link #padVertexId(long, long)} does. Splits are not cut for key
+   * classes which are neither strings nor numbers.
+   * @param goraInputFormat delegate input format.
+   * @param dataStore data store the keys are built for.
+   */
+  @SuppressWarnings("unchecked")
+  void setKeyRanges(ExtraGoraInputFormat goraInputFormat,
+      DataStore dataStore) {
+    int partitionCount = GiraphConstants.USER_PARTITION_COUNT.get(conf);
+    long keySpaceSize = conf.getLong(
+        GiraphConstants.PARTITION_VERTEX_KEY_SPACE_SIZE, -1);
+    if (partitionCount <= 0 || keySpaceSize <= 0) {
+      LOG.warn("setKeyRanges: Partition count and vertex key space size " +
+          "are needed to cut splits on partition ranges, ignoring.");
+      return;
+    }
+    boolean padKeys = String.class.equals(keyClass);
+    if (!padKeys && !Number.class.isAssignableFrom(keyClass)) {
+      LOG.warn("setKeyRanges: Keys of " + keyClass.getName() + " are not " +
+          "known to be ordered as the vertex ids, ignoring.");
+      return;
+    }
+    if (padKeys && LOG.isInfoEnabled()) {
+      LOG.info("setKeyRanges: Cutting string keys on partition ranges, " +
+          "vertex ids have to be stored with " +
+          padVertexId(0, keySpaceSize).length() + " digits.");
+    }
+    long rangeSize = keySpaceSize / partitionCount;
+    List<Object> startKeys = Lists.newArrayListWithCapacity(partitionCount);
+    List<Object> endKeys = Lists.newArrayListWithCapacity(partitionCount);
+    for (int i = 0; i < partitionCount; ++i) {
+      long firstId = i * rangeSize;
+      long lastId = (i == partitionCount - 1) ?
+          keySpaceSize - 1 : (i + 1) * rangeSize - 1;
+      startKeys.add(buildKey(dataStore, padKeys ?
+          padVertexId(firstId, keySpaceSize) : String.valueOf(firstId)));
+      endKeys.add(buildKey(dataStore, padKeys ?
+          padVertexId(lastId, keySpaceSize) : String.valueOf(lastId)));
+    }
+    goraInputFormat.setKeyRanges(startKeys, endKeys);
+  }
+
+  /**
+   * Zero-pads a vertex id to the digits of the largest id of the key space,
+   * so string keys sort as the ids.
+   * @param vertexId vertex id in [0, keySpaceSize).
+   * @param keySpaceSize vertex key space size.
+   * @return the padded vertex id.
+   */
+  public static String padVertexId(long vertexId, long keySpaceSize) {
+    String id = String.valueOf(vertexId);
+    int digits = String.valueOf(keySpaceSize - 1).length();
+    if (id.length() >= digits) {
+      return id;
+    }
+    StringBuilder padded = new StringBuilder(digits);
+    for (int i = id.length(); i < digits; ++i) {
+      padded.append('0');
+    }
+    return padded.append(id).toString();
+  }
+
+  /**
+   * Builds a Gora key out of its string representation.
+   * @param keyStore data store the key is built for.
+   * @param sKey key as a string.
+   * @return key built, null if no key was defined.
+   */
+  public Object buildKey(DataStore keyStore, String sKey) {
+    if (sKey == null || sKey.isEmpty()) {
+      return null;
+    }
+    KeyFactory kFact;
+    try {
+      kFact = (KeyFactory) keyFactoryClass.newInstance();
+    } catch (InstantiationException e) {
+      throw new IllegalStateException(
+          "buildKey: Key factory could not be instantiated", e);
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException(
+          "buildKey: Key factory could not be instantiated", e);
+    }
+    kFact.setDataStore(keyStore);
+    return kFact.buildKey(sKey);
+  }
+
+  /**
+   * Gets the data store the splits are read from, the snapshot if there is
+   * one, acquired from the data stores of this JVM. It has to be released
+   * with {@link GoraUtils#releaseDataStore(DataStore)}.
+   * @return DataStore acquired.
+   * @throws IOException if the data store cannot be created.
+   */
+  private DataStore createReadDataStore() throws IOException {
+    return createDataStore(snapshotDatastoreClass == null ?
+        datastoreClass : snapshotDatastoreClass);
+  }
+
+  /**
+   * Gets the input data store, acquired from the data stores of this JVM.
+   * It has to be released with
+   * {@link GoraUtils#releaseDataStore(DataStore)}.
+   * @return DataStore acquired.
+   * @throws IOException if the data store cannot be created.
+   */
+  public DataStore createDataStore() throws IOException {
+    return createDataStore(datastoreClass);
+  }
+
+  /**
+   * Gets a data store of the input key and persistent classes, acquired
+   * from the data stores of this JVM.
+   * @param dataStoreClass data store class.
+   * @return DataStore acquired.
+   * @throws IOException if the data store cannot be created.
+   */
+  private DataStore createDataStore(Class<? extends DataStore> dataStoreClass)
+    throws IOException {
+    return GoraUtils.acquireDataStore(dataStoreClass, keyClass,
+        persistentClass, storeConf);
+  }
+
+  /**
+   * Creates a reader of a split, acquiring its data store.
+   * @param inputSplit split to be read, the configured key range is read
+   *                   if it is not a Gora input split.
+   * @return reader, to be closed once the split is read.
+   * @throws IOException if the data store cannot be created or the
+   *                     checkpoint file cannot be read.
+   */
+  public Reader createReader(InputSplit inputSplit) throws IOException {
+    PartitionQuery partitionQuery = null;
+    if (inputSplit instanceof GoraInputSplit) {
+      partitionQuery = ((GoraInputSplit) inputSplit).getQuery();
+    }
+    return new Reader(partitionQuery);
+  }
+
+  /**
+   * @return the key class.
+   */
+  public Class<?> getKeyClass() {
+    return keyClass;
+  }
+
+  /**
+   * @return the persistent class.
+   */
+  public Class<? extends Persistent> getPersistentClass() {
+    return persistentClass;
+  }
+
+  /**
+   * @return the data store class.
+   */
+  public Class<? extends DataStore> getDatastoreClass() {
+    return datastoreClass;
+  }
+
+  /**
+   * @return the snapshot data store class, null if there is none.
+   */
+  public Class<? extends DataStore> getSnapshotDatastoreClass() {
+    return snapshotDatastoreClass;
+  }
+
+  /**
+   * Reads the records of a split, read ahead on a background thread if
+   * {@link org.apache.giraph.io.gora.constants.GiraphGoraConstants
+   * #GIRAPH_GORA_INPUT_PREFETCH_SIZE} is set.
+   */
+  public class Reader {
+    /** Partition query carried by the split, null if there is none. */
+    private final PartitionQuery partitionQuery;
+    /** Data store the split is read from, the snapshot if there is one. */
+    private final DataStore dataStore;
+    /** Start time of the rows read, -1 if unbounded or reading a snapshot */
+    private final long startTime;
+    /** Results gotten from Gora data store. */
+    private Result readResults;
+    /** Records read ahead, null when reading synchronously. */
+    private GoraPrefetchingResult prefetchingResult;
+
+    /**
+     * Constructor, acquiring the data store.
+     * @param partitionQuery partition query of the split, null if none.
+     * @throws IOException if the data store cannot be created or the
+     *                     checkpoint file cannot be read.
+     */
+    private Reader(PartitionQuery partitionQuery) throws IOException {
+      this.partitionQuery = partitionQuery;
+      startTime = snapshotDatastoreClass == null ? getStartTime() : -1;
+      dataStore = createReadDataStore();
+    }
+
+    /**
+     * Performs the query of the split, reading only the rows changed in the
+     * configured time range if there is no snapshot.
+     * @param fields fields to be read, null to read all the fields.
+     */
+    @SuppressWarnings("unchecked")
+    public void readResults(String[] fields) {
+      Query query = getQuery(fields);
+      readResults = dataStore.execute(query);
+      int prefetchSize = GIRAPH_GORA_INPUT_PREFETCH_SIZE.get(conf);
+      if (prefetchSize > 0) {
+        prefetchingResult = new GoraPrefetchingResult(readResults,
+            prefetchSize);
+      }
+    }
+
+    /**
+     * Gets the query of the split. Falls back to a range query over the
+     * configured keys if the reader was not created with a Gora input
+     * split, or if the split does not restrict the keys read (data stores
+     * with a single partition). Without a snapshot, the query is restricted
+     * to the configured time range.
+     * @param fields fields to be read, null to read all the fields.
+     * @return the query.
+     */
+    @SuppressWarnings("unchecked")
+    Query getQuery(String[] fields) {
+      Query query;
+      if (partitionQuery != null && (partitionQuery.getStartKey() != null ||
+          partitionQuery.getEndKey() != null)) {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("getQuery: Reading partition query with locations " +
+              Arrays.toString(partitionQuery.getLocations()));
+        }
+        query = partitionQuery;
+        if (fields != null) {
+          query.setFields(fields);
+        }
+      } else {
+        query = getRangeQuery(dataStore, fields);
+      }
+      setTimeRange(query, startTime);
+      return query;
+    }
+
+    /**
+     * Moves to the next record, through the read ahead buffer if there is
+     * one.
+     * @return true if there is a next record.
+     * @throws IOException if reading the record fails.
+     * @throws InterruptedException
+     */
+    // CHECKSTYLE: stop IllegalCatch
+    public boolean next() throws IOException, InterruptedException {
+      if (prefetchingResult != null) {
+        return prefetchingResult.next();
+      }
+      try {
+        return readResults.next();
+      } catch (IOException e) {
+        throw e;
+      } catch (InterruptedException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new IOException("next: Reading the result failed", e);
+      }
+    }
+    // CHECKSTYLE: resume IllegalCatch
+
+    /**
+     * Gets the current record.
+     * @return the current Gora object.
+     */
+    public Object get() {
+      return prefetchingResult == null ?
+          readResults.get() : prefetchingResult.get();
+    }
+
+    /**
+     * Gets the progress of reading the results.
+     * @return the progress, 0 if the query was not performed yet.
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public float getProgress() throws IOException, InterruptedException {
+      return readResults == null ? 0.0f : readResults.getProgress();
+    }
+
+    /**
+     * Gets the data store the split is read from.
+     * @return DataStore
+     */
+    public DataStore getDataStore() {
+      return dataStore;
+    }
+
+    /**
+     * Stops reading and releases the data store.
+     * @throws IOException if closing the results fails.
+     */
+    public void close() throws IOException {
+      if (prefetchingResult != null) {
+        try {
+          // The fetcher has to stop before the results are closed
+          prefetchingResult.close();
+        } catch (InterruptedException e) {
+          throw new IllegalStateException(
+              "close: Interrupted waiting for the fetcher", e);
+        }
+      }
+      if (readResults != null) {
+        readResults.close();
+      }
+      GoraUtils.releaseDataStore(dataStore);
+    }
+  }
+}
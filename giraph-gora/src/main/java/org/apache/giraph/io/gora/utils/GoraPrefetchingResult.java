@@ -0,0 +1,235 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.giraph.io.gora.utils;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.giraph.utils.LogStacktraceCallable;
+import org.apache.gora.persistency.Persistent;
+import org.apache.gora.query.Result;
+import org.apache.log4j.Logger;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Reads the records of a Gora result ahead of time. A background thread
+ * moves records from the result into a bounded buffer, so the latency of
+ * the data store overlaps with the processing of the records already
+ * read.
+ *
+ * Records are cloned before being buffered, as results may reuse the
+ * persistent objects they return.
+ */
+public class GoraPrefetchingResult {
+  /** Class logger */
+  private static final Logger LOG =
+      Logger.getLogger(GoraPrefetchingResult.class);
+  /** Marker telling the reader that no more records will come */
+  private static final Record END_OF_RECORDS = new Record(null, null);
+  /** Msecs to wait on the buffer before checking the other side */
+  private static final int WAIT_MSECS = 1000;
+
+  /** Result being read ahead */
+  private final Result result;
+  /** Records read ahead */
+  private final BlockingQueue<Record> buffer;
+  /** Executor running the fetcher */
+  private final ExecutorService executor;
+  /** Result of the fetcher */
+  private final Future<Long> fetcherResult;
+  /** Whether the reader stopped reading */
+  private volatile boolean closed;
+  /** Current record */
+  private Record current;
+
+  /**
+   * Constructor, starts the background fetcher.
+   *
+   * @param result Result to read ahead
+   * @param bufferSize Maximum number of records read ahead
+   */
+  public GoraPrefetchingResult(Result result, int bufferSize) {
+    this.result = result;
+    buffer = new ArrayBlockingQueue<Record>(bufferSize);
+    executor = Executors.newSingleThreadExecutor(
+        new ThreadFactoryBuilder().setNameFormat("gora-prefetcher-%d")
+            .setDaemon(true).build());
+    fetcherResult = executor.submit(new LogStacktraceCallable<Long>(
+        new Fetcher()));
+    executor.shutdown();
+  }
+
+  /**
+   * Moves to the next record, blocking until it has been read.
+   *
+   * @return true if there is a next record, false at the end of the result
+   * @throws IOException if reading the result failed
+   * @throws InterruptedException
+   */
+  public boolean next() throws IOException, InterruptedException {
+    if (current == END_OF_RECORDS) {
+      return false;
+    }
+    Record record = buffer.poll(WAIT_MSECS, TimeUnit.MILLISECONDS);
+    while (record == null) {
+      if (fetcherResult.isDone()) {
+        // The fetcher may have queued its last records before finishing
+        record = buffer.poll();
+        if (record == null) {
+          checkFetcher();
+        }
+      } else {
+        record = buffer.poll(WAIT_MSECS, TimeUnit.MILLISECONDS);
+      }
+    }
+    current = record;
+    return current != END_OF_RECORDS;
+  }
+
+  /**
+   * Gets the key of the current record.
+   *
+   * @return Key of the current record
+   */
+  public Object getKey() {
+    return current.key;
+  }
+
+  /**
+   * Gets the persistent object of the current record.
+   *
+   * @return Persistent object of the current record
+   */
+  public Persistent get() {
+    return current.value;
+  }
+
+  /**
+   * Gets the progress of reading the result, including the records read
+   * ahead.
+   *
+   * @return Progress of the result
+   * @throws IOException
+   * @throws InterruptedException
+   */
+  public float getProgress() throws IOException, InterruptedException {
+    return result.getProgress();
+  }
+
+  /**
+   * Stops reading ahead. The fetcher is interrupted if it is still
+   * running, and waited for, so the result can be closed once this
+   * returns.
+   *
+   * @throws InterruptedException
+   */
+  public void close() throws InterruptedException {
+    closed = true;
+    executor.shutdownNow();
+    while (!executor.awaitTermination(WAIT_MSECS, TimeUnit.MILLISECONDS)) {
+      if (LOG.isInfoEnabled()) {
+        LOG.info("close: Waiting for the fetcher to stop");
+      }
+    }
+  }
+
+  /**
+   * Throws the failure of a fetcher which stopped before queueing the end
+   * of the records.
+   *
+   * @throws IOException if reading the result failed
+   * @throws InterruptedException
+   */
+  private void checkFetcher() throws IOException, InterruptedException {
+    try {
+      fetcherResult.get();
+    } catch (ExecutionException e) {
+      throw new IOException("checkFetcher: Reading the result failed",
+          e.getCause());
+    }
+    throw new IllegalStateException(
+        "checkFetcher: Fetcher stopped before the end of the result");
+  }
+
+  /**
+   * Key and value read from the result.
+   */
+  private static class Record {
+    /** Key */
+    private final Object key;
+    /** Value */
+    private final Persistent value;
+
+    /**
+     * Constructor
+     *
+     * @param key Key
+     * @param value Value
+     */
+    public Record(Object key, Persistent value) {
+      this.key = key;
+      this.value = value;
+    }
+  }
+
+  /**
+   * Moves the records of the result into the buffer.
+   */
+  private class Fetcher implements Callable<Long> {
+    @Override
+    public Long call() throws Exception {
+      long records = 0;
+      while (!closed && result.next()) {
+        Record record = new Record(result.getKey(), result.get().clone());
+        if (!offer(record)) {
+          return records;
+        }
+        ++records;
+      }
+      offer(END_OF_RECORDS);
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("call: Read ahead " + records + " records");
+      }
+      return records;
+    }
+
+    /**
+     * Adds a record to the buffer, waiting while it is full.
+     *
+     * @param record Record to add
+     * @return false if the reader stopped reading before there was space
+     * @throws InterruptedException
+     */
+    private boolean offer(Record record) throws InterruptedException {
+      while (!buffer.offer(record, WAIT_MSECS, TimeUnit.MILLISECONDS)) {
+        if (closed) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -17,6 +17,10 @@
  */
 package org.apache.giraph.io.gora.utils;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+
 import org.apache.gora.persistency.Persistent;
 import org.apache.gora.query.Query;
 import org.apache.gora.query.Result;
@@ -24,21 +28,33 @@ import org.apache.gora.store.DataStore;
 import org.apache.gora.store.DataStoreFactory;
 import org.apache.gora.util.GoraException;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.log4j.Logger;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Maps;
 
 /**
  * Class used to handle the creation and querying of data stores through Gora.
  */
 public class GoraUtils {
+  /** HBase property holding the rows fetched by every scanner call. */
+  public static final String HBASE_SCANNER_CACHING =
+      "hbase.client.scanner.caching";
+
+  /** Class logger */
+  private static final Logger LOG = Logger.getLogger(GoraUtils.class);
 
   /**
-   * Attribute handling the specific class to be created.
+   * Pools of data stores shared by the readers and writers of this JVM.
    */
-  private static Class<? extends DataStore> DATASTORECLASS;
+  private static final Map<DataStoreKey, DataStorePool> POOLS =
+      Maps.newHashMap();
 
   /**
-   * Attribute handling configuration for data stores.
+   * Pool of each data store currently acquired.
    */
-  private static Configuration CONF = new Configuration();
+  private static final Map<DataStore, DataStorePool> ACQUIRED =
+      Maps.newIdentityHashMap();
 
   /**
    * The default constructor is set to be private by default so that the
@@ -47,44 +63,97 @@ public class GoraUtils {
   private GoraUtils() { /* private constructor */ }
 
   /**
-   * Creates a generic data store using the data store class.
-   * set using the class property
+   * Creates a specific data store using the configuration passed.
    * @param <K> key class
    * @param <T> value class
-   * @param keyClass key class used
-   * @param persistentClass persistent class used
-   * @return created data store
-   * @throws GoraException exception threw
+   * @param dataStoreClass  Defines the type of data store used.
+   * @param keyClass  Handles the key class to be used.
+   * @param persistentClass Handles the persistent class to be used.
+   * @param conf configuration used to create the data store.
+   * @return DataStore created using parameters passed.
+   * @throws GoraException  if an error occurs.
    */
   @SuppressWarnings("unchecked")
   public static <K, T extends Persistent> DataStore<K, T>
-  createDataStore(Class<K> keyClass, Class<T> persistentClass)
+  createSpecificDataStore(Class<? extends DataStore> dataStoreClass,
+      Class<K> keyClass, Class<T> persistentClass, Configuration conf)
     throws GoraException {
-    DataStoreFactory.createProps();
-    DataStore<K, T> dataStore =
-        DataStoreFactory.createDataStore((Class<? extends DataStore<K, T>>)
-                                          DATASTORECLASS,
-                                          keyClass, persistentClass,
-                                          getConf());
-
-    return dataStore;
+    return DataStoreFactory.createDataStore(
+        (Class<? extends DataStore<K, T>>) dataStoreClass,
+        keyClass, persistentClass, conf);
   }
 
   /**
-   * Creates a specific data store specified by.
+   * Gets a data store for the given data store, key and persistent classes
+   * and configuration, reusing one released by another reader or writer of
+   * this JVM when there is one, and creating it otherwise. Gora data stores
+   * are not thread-safe, so a data store is only handed to one reader or
+   * writer at a time. Every data store acquired has to be released with
+   * {@link #releaseDataStore(DataStore)} instead of being closed.
    * @param <K> key class
    * @param <T> value class
    * @param dataStoreClass  Defines the type of data store used.
    * @param keyClass  Handles the key class to be used.
    * @param persistentClass Handles the persistent class to be used.
-   * @return DataStore created using parameters passed.
+   * @param conf configuration used to create the data store.
+   * @return DataStore acquired.
    * @throws GoraException  if an error occurs.
    */
-  public static <K, T extends Persistent> DataStore<K, T>
-  createSpecificDataStore(Class<? extends DataStore> dataStoreClass,
-      Class<K> keyClass, Class<T> persistentClass) throws GoraException {
-    DATASTORECLASS = dataStoreClass;
-    return createDataStore(keyClass, persistentClass);
+  @SuppressWarnings("unchecked")
+  public static synchronized <K, T extends Persistent> DataStore<K, T>
+  acquireDataStore(Class<? extends DataStore> dataStoreClass,
+      Class<K> keyClass, Class<T> persistentClass, Configuration conf)
+    throws GoraException {
+    DataStoreKey key =
+        new DataStoreKey(dataStoreClass, keyClass, persistentClass, conf);
+    DataStorePool pool = POOLS.get(key);
+    if (pool == null) {
+      pool = new DataStorePool(key);
+      POOLS.put(key, pool);
+    }
+    DataStore dataStore = pool.idle.poll();
+    if (dataStore == null) {
+      dataStore = createSpecificDataStore(
+          dataStoreClass, keyClass, persistentClass, conf);
+      if (LOG.isInfoEnabled()) {
+        LOG.info("acquireDataStore: Created " + dataStoreClass.getName() +
+            " for " + persistentClass.getName());
+      }
+    }
+    pool.references++;
+    ACQUIRED.put(dataStore, pool);
+    return (DataStore<K, T>) dataStore;
+  }
+
+  /**
+   * Releases a data store gotten from
+   * {@link #acquireDataStore(Class, Class, Class, Configuration)}, so
+   * another reader or writer can reuse it. Once no data store of its pool is
+   * acquired anymore, i.e. all the readers and writers using it are done,
+   * the data stores of the pool are closed. Data stores which were not
+   * acquired are closed right away.
+   * @param dataStore data store to release.
+   */
+  public static synchronized void releaseDataStore(DataStore dataStore) {
+    if (dataStore == null) {
+      return;
+    }
+    DataStorePool pool = ACQUIRED.remove(dataStore);
+    if (pool == null) {
+      dataStore.close();
+      return;
+    }
+    pool.idle.push(dataStore);
+    if (--pool.references == 0) {
+      for (DataStore idleDataStore : pool.idle) {
+        idleDataStore.close();
+      }
+      POOLS.remove(pool.key);
+      if (LOG.isInfoEnabled()) {
+        LOG.info("releaseDataStore: Closed " + pool.idle.size() + " " +
+            dataStore.getClass().getName());
+      }
+    }
   }
 
   /**
@@ -102,6 +171,23 @@ public class GoraUtils {
     return getRequest(pDataStore, query);
   }
 
+  /**
+   * Performs a range query to Gora datastores reading only some fields
+   * @param <K> key class
+   * @param <T> value class
+   * @param pDataStore  data store being used.
+   * @param pStartKey start key for the range query.
+   * @param pEndKey end key for the range query.
+   * @param pFields fields to be read, all fields if null.
+   * @return Result containing all results for the query.
+   */
+  public static <K, T extends Persistent> Result<K, T>
+  getRequest(DataStore<K, T> pDataStore, K pStartKey, K pEndKey,
+      String[] pFields) {
+    Query<K, T> query = getQuery(pDataStore, pStartKey, pEndKey, pFields);
+    return getRequest(pDataStore, query);
+  }
+
   /**
    * Performs a query to Gora datastores
    * @param pDataStore data store being used.
@@ -145,6 +231,81 @@ public class GoraUtils {
     return query;
   }
 
+  /**
+   * Gets a query object to be used as a range query reading only some
+   * fields.
+   * @param pDataStore data store used.
+   * @param pStartKey range start key.
+   * @param pEndKey range end key.
+   * @param pFields fields to be read, all fields if null.
+   * @param <K> key class
+   * @param <T> value class
+   * @return range query object.
+   */
+  public static <K, T extends Persistent> Query<K, T>
+  getQuery(DataStore<K, T> pDataStore, K pStartKey, K pEndKey,
+      String[] pFields) {
+    Query<K, T> query = getQuery(pDataStore, pStartKey, pEndKey);
+    if (pFields != null) {
+      query.setFields(pFields);
+    }
+    return query;
+  }
+
+  /**
+   * Parses a comma separated list of persistent fields.
+   * @param fields comma separated list of fields.
+   * @return fields parsed, null if no field was defined.
+   */
+  public static String[] parseFields(String fields) {
+    if (fields == null || fields.trim().isEmpty()) {
+      return null;
+    }
+    String[] parsedFields = fields.split(",");
+    for (int i = 0; i < parsedFields.length; i++) {
+      parsedFields[i] = parsedFields[i].trim();
+    }
+    return parsedFields;
+  }
+
+  /**
+   * Restricts a query to the rows changed in a time range.
+   * @param query query to restrict.
+   * @param startTime start time of the range, -1 if unbounded.
+   * @param endTime end time of the range, -1 if unbounded.
+   */
+  public static void setTimeRange(Query query, long startTime,
+      long endTime) {
+    if (startTime >= 0) {
+      query.setStartTime(startTime);
+    }
+    if (endTime >= 0) {
+      query.setEndTime(endTime);
+    }
+  }
+
+  /**
+   * Puts all the results of a query into another data store, replacing
+   * the objects with the same keys, and flushes it.
+   * @param results results to put.
+   * @param pDataStore data store receiving the results.
+   * @param <K> key class
+   * @param <T> value class
+   * @return number of objects put.
+   * @throws Exception if reading the results fails.
+   */
+  public static <K, T extends Persistent> long
+  putResults(Result<K, T> results, DataStore<K, T> pDataStore)
+    throws Exception {
+    long count = 0;
+    while (results.next()) {
+      pDataStore.put(results.getKey(), results.get());
+      count++;
+    }
+    pDataStore.flush();
+    return count;
+  }
+
   /**
    * Gets a query object to be used as a simple get.
    * @param pDataStore data store used.
@@ -177,18 +338,70 @@ public class GoraUtils {
   }
 
   /**
-   * Gets the configuration object.
-   * @return the configuration object.
+   * Identifies the data stores which can be reused. Configurations are
+   * compared by identity, as threads of a worker share its configuration.
    */
-  public static Configuration getConf() {
-    return CONF;
+  private static final class DataStoreKey {
+    /** Data store class */
+    private final Class<?> dataStoreClass;
+    /** Key class */
+    private final Class<?> keyClass;
+    /** Persistent class */
+    private final Class<?> persistentClass;
+    /** Configuration used to create the data store */
+    private final Configuration conf;
+
+    /**
+     * Constructor
+     * @param dataStoreClass data store class.
+     * @param keyClass key class.
+     * @param persistentClass persistent class.
+     * @param conf configuration.
+     */
+    DataStoreKey(Class<?> dataStoreClass, Class<?> keyClass,
+        Class<?> persistentClass, Configuration conf) {
+      this.dataStoreClass = dataStoreClass;
+      this.keyClass = keyClass;
+      this.persistentClass = persistentClass;
+      this.conf = conf;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof DataStoreKey)) {
+        return false;
+      }
+      DataStoreKey other = (DataStoreKey) obj;
+      return dataStoreClass == other.dataStoreClass &&
+          keyClass == other.keyClass &&
+          persistentClass == other.persistentClass &&
+          conf == other.conf;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(dataStoreClass, keyClass, persistentClass,
+          System.identityHashCode(conf));
+    }
   }
 
   /**
-   * Sets the configuration object.
-   * @param conf to be set as the configuration object.
+   * Data stores with the same key, with the number of them acquired.
    */
-  public static void setConf(Configuration conf) {
-    CONF = conf;
+  private static final class DataStorePool {
+    /** Key of the data stores */
+    private final DataStoreKey key;
+    /** Data stores released, ready to be acquired again */
+    private final Deque<DataStore> idle = new ArrayDeque<DataStore>();
+    /** Number of data stores acquired */
+    private int references;
+
+    /**
+     * Constructor
+     * @param key key of the data stores.
+     */
+    DataStorePool(DataStoreKey key) {
+      this.key = key;
+    }
   }
 }
@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.giraph.io.gora.utils;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.giraph.utils.LogStacktraceCallable;
+import org.apache.giraph.utils.ProgressableUtils;
+import org.apache.gora.persistency.Persistent;
+import org.apache.gora.store.DataStore;
+import org.apache.hadoop.util.Progressable;
+import org.apache.log4j.Logger;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Write-behind buffer for Gora data stores. Records are handed to a
+ * bounded queue and put into the data store by a background thread, which
+ * flushes the store every batch of records or after a time interval,
+ * whichever comes first. When the queue is full, writers block until the
+ * flusher catches up.
+ *
+ * The buffer takes over the data store it is given, which must not be used
+ * by anybody else since data stores are not thread-safe, and releases it
+ * with {@link GoraUtils#releaseDataStore(DataStore)} once the flusher is
+ * done. Keys and persistent objects must not be reused by the caller after
+ * being handed to the buffer.
+ */
+public class GoraWriteBehindBuffer {
+  /** Class logger */
+  private static final Logger LOG =
+      Logger.getLogger(GoraWriteBehindBuffer.class);
+  /** Marker telling the flusher that no more records will come */
+  private static final Record END_OF_RECORDS = new Record(null, null);
+  /** Msecs to wait for space in the queue before checking the flusher */
+  private static final int OFFER_WAIT_MSECS = 1000;
+
+  /** Data store written by the flusher */
+  private final DataStore dataStore;
+  /** Records waiting to be put into the data store */
+  private final BlockingQueue<Record> queue;
+  /** Executor running the flusher */
+  private final ExecutorService executor;
+  /** Result of the flusher */
+  private final Future<Long> flusherResult;
+
+  /**
+   * Constructor, starts the background flusher.
+   *
+   * @param dataStore Data store to write to, used only by the buffer
+   * @param batchSize Number of records put between flushes
+   * @param queueSize Maximum number of records waiting to be put
+   * @param flushIntervalMsecs Maximum msecs between flushes
+   */
+  public GoraWriteBehindBuffer(DataStore dataStore, int batchSize,
+      int queueSize, int flushIntervalMsecs) {
+    this.dataStore = dataStore;
+    queue = new ArrayBlockingQueue<Record>(queueSize);
+    executor = Executors.newSingleThreadExecutor(
+        new ThreadFactoryBuilder().setNameFormat("gora-flusher-%d")
+            .setDaemon(true).build());
+    flusherResult = executor.submit(new LogStacktraceCallable<Long>(
+        new Flusher(batchSize, flushIntervalMsecs)));
+    executor.shutdown();
+  }
+
+  /**
+   * Queues a record to be put into the data store, blocking while the
+   * queue is full.
+   *
+   * @param key Key of the record
+   * @param value Persistent object of the record
+   * @throws InterruptedException
+   */
+  public void put(Object key, Persistent value) throws InterruptedException {
+    Record record = new Record(key, value);
+    checkFlusher();
+    while (!queue.offer(record, OFFER_WAIT_MSECS, TimeUnit.MILLISECONDS)) {
+      checkFlusher();
+    }
+  }
+
+  /**
+   * Waits for all the queued records to be put and flushed into the data
+   * store, stops the flusher and releases the data store. Errors of the
+   * flusher are thrown as {@link IllegalStateException}.
+   *
+   * @param progressable Progressable for reporting progress while waiting
+   * @throws InterruptedException
+   */
+  public void close(Progressable progressable) throws InterruptedException {
+    try {
+      checkFlusher();
+      while (!queue.offer(END_OF_RECORDS, OFFER_WAIT_MSECS,
+          TimeUnit.MILLISECONDS)) {
+        checkFlusher();
+      }
+      long records = ProgressableUtils.getFutureResult(flusherResult,
+          progressable);
+      if (LOG.isInfoEnabled()) {
+        LOG.info("close: Wrote " + records + " records to the data store");
+      }
+    } finally {
+      // Never release the data store while the flusher may still use it
+      if (flusherResult.isDone()) {
+        GoraUtils.releaseDataStore(dataStore);
+      }
+    }
+  }
+
+  /**
+   * Makes sure the flusher is still running, so writers never block on a
+   * queue nobody drains.
+   */
+  private void checkFlusher() {
+    if (flusherResult.isDone()) {
+      try {
+        flusherResult.get();
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(
+            "checkFlusher: Interrupted while checking the flusher", e);
+      } catch (ExecutionException e) {
+        throw new IllegalStateException(
+            "checkFlusher: Writing to the data store failed", e.getCause());
+      }
+      throw new IllegalStateException(
+          "checkFlusher: Flusher stopped before the buffer was closed");
+    }
+  }
+
+  /**
+   * Key and value to be put into the data store.
+   */
+  private static class Record {
+    /** Key */
+    private final Object key;
+    /** Value */
+    private final Persistent value;
+
+    /**
+     * Constructor
+     *
+     * @param key Key
+     * @param value Value
+     */
+    public Record(Object key, Persistent value) {
+      this.key = key;
+      this.value = value;
+    }
+  }
+
+  /**
+   * Puts the queued records into the data store, flushing it every batch
+   * of records or flush interval.
+   */
+  private class Flusher implements Callable<Long> {
+    /** Number of records put between flushes */
+    private final int batchSize;
+    /** Maximum msecs between flushes */
+    private final int flushIntervalMsecs;
+
+    /**
+     * Constructor
+     *
+     * @param batchSize Number of records put between flushes
+     * @param flushIntervalMsecs Maximum msecs between flushes
+     */
+    public Flusher(int batchSize, int flushIntervalMsecs) {
+      this.batchSize = batchSize;
+      this.flushIntervalMsecs = flushIntervalMsecs;
+    }
+
+    @Override
+    public Long call() throws Exception {
+      List<Record> batch = Lists.newArrayListWithCapacity(batchSize);
+      long totalRecords = 0;
+      int unflushedRecords = 0;
+      long lastFlushMsecs = System.currentTimeMillis();
+      boolean done = false;
+      while (!done) {
+        long waitMsecs = Math.max(1, flushIntervalMsecs -
+            (System.currentTimeMillis() - lastFlushMsecs));
+        Record record = queue.poll(waitMsecs, TimeUnit.MILLISECONDS);
+        if (record != null) {
+          batch.add(record);
+          queue.drainTo(batch, batchSize - 1);
+        }
+        for (Record batchRecord : batch) {
+          if (batchRecord == END_OF_RECORDS) {
+            done = true;
+          } else {
+            dataStore.put(batchRecord.key, batchRecord.value);
+            ++unflushedRecords;
+            ++totalRecords;
+          }
+        }
+        batch.clear();
+        if (unflushedRecords >= batchSize || (unflushedRecords > 0 &&
+            System.currentTimeMillis() - lastFlushMsecs >=
+                flushIntervalMsecs)) {
+          dataStore.flush();
+          unflushedRecords = 0;
+          lastFlushMsecs = System.currentTimeMillis();
+        }
+      }
+      dataStore.flush();
+      return totalRecords;
+    }
+  }
+}
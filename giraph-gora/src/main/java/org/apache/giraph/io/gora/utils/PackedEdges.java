@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.giraph.io.gora.utils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encoding of out-edges into byte arrays, used by
+ * {@link org.apache.giraph.io.gora.generated.GPackedVertex}. Target ids are
+ * written as zig-zag varint deltas from the previous id, so sorted ids close
+ * to each other take one or two bytes; weights are written as 4-byte floats.
+ */
+public class PackedEdges {
+  /** Number of bytes of a packed weight */
+  private static final int WEIGHT_BYTES = 4;
+
+  /**
+   * The default constructor is set to be private by default so that the
+   * class is not instantiated.
+   */
+  private PackedEdges() { /* private constructor */ }
+
+  /**
+   * Packs target ids as zig-zag varint deltas.
+   *
+   * @param ids Target ids, sorted for best compression
+   * @param count Number of ids to pack
+   * @return Buffer with the packed ids
+   */
+  public static ByteBuffer packIds(long[] ids, int count) {
+    int size = 0;
+    long previous = 0;
+    for (int i = 0; i < count; ++i) {
+      size += varLongSize(zigZag(ids[i] - previous));
+      previous = ids[i];
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(size);
+    previous = 0;
+    for (int i = 0; i < count; ++i) {
+      long value = zigZag(ids[i] - previous);
+      while ((value & ~0x7FL) != 0) {
+        buffer.put((byte) ((value & 0x7F) | 0x80));
+        value >>>= 7;
+      }
+      buffer.put((byte) value);
+      previous = ids[i];
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * Packs weights as 4-byte floats.
+   *
+   * @param weights Edge weights
+   * @param count Number of weights to pack
+   * @return Buffer with the packed weights
+   */
+  public static ByteBuffer packWeights(float[] weights, int count) {
+    ByteBuffer buffer = ByteBuffer.allocate(count * WEIGHT_BYTES);
+    for (int i = 0; i < count; ++i) {
+      buffer.putFloat(weights[i]);
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * Zig-zag encodes a value, so small negative deltas stay small.
+   *
+   * @param value Value
+   * @return Encoded value
+   */
+  private static long zigZag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  /**
+   * Number of bytes of a varint encoded value.
+   *
+   * @param value Value
+   * @return Number of bytes
+   */
+  private static int varLongSize(long value) {
+    int size = 1;
+    while ((value & ~0x7FL) != 0) {
+      ++size;
+      value >>>= 7;
+    }
+    return size;
+  }
+
+  /**
+   * Sequential reader of packed target ids. Does not modify the position of
+   * the buffer it is created with.
+   */
+  public static class IdReader {
+    /** Packed ids */
+    private final ByteBuffer buffer;
+    /** Last id read */
+    private long previous;
+
+    /**
+     * Constructor
+     *
+     * @param packedIds Packed ids
+     */
+    public IdReader(ByteBuffer packedIds) {
+      buffer = packedIds.duplicate();
+    }
+
+    /**
+     * Reads the next id.
+     *
+     * @return Next id
+     */
+    public long next() {
+      long value = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = buffer.get();
+        value |= (long) (b & 0x7F) << shift;
+        shift += 7;
+      } while ((b & 0x80) != 0);
+      previous += (value >>> 1) ^ -(value & 1);
+      return previous;
+    }
+  }
+
+  /**
+   * Sequential reader of packed weights. Does not modify the position of
+   * the buffer it is created with.
+   */
+  public static class WeightReader {
+    /** Packed weights */
+    private final ByteBuffer buffer;
+
+    /**
+     * Constructor
+     *
+     * @param packedWeights Packed weights
+     */
+    public WeightReader(ByteBuffer packedWeights) {
+      buffer = packedWeights.duplicate();
+    }
+
+    /**
+     * Reads the next weight.
+     *
+     * @return Next weight
+     */
+    public float next() {
+      return buffer.getFloat();
+    }
+  }
+}
@@ -27,6 +27,7 @@ import org.apache.giraph.edge.Edge;
 import org.apache.giraph.edge.EdgeFactory;
 import org.apache.giraph.graph.Vertex;
 import org.apache.giraph.io.gora.generated.GVertex;
+import org.apache.gora.store.DataStore;
 import org.apache.hadoop.io.DoubleWritable;
 import org.apache.hadoop.io.FloatWritable;
 import org.apache.hadoop.io.LongWritable;
@@ -55,19 +56,19 @@ public class GoraTestVertexInputFormat
   @Override
   public GoraVertexReader createVertexReader(
       InputSplit split, TaskAttemptContext context) throws IOException {
-    putArtificialData();
     return new GoraGVertexVertexReader();
   }
 
   /**
    * Writes data into the data store in order to test it out.
+   * @param dataStore data store used by the reader.
    */
   @SuppressWarnings("unchecked")
-  private static void putArtificialData() {
-    getDataStore().put("1", createVertex("1", null));
-    getDataStore().put("10", createVertex("10", null));
-    getDataStore().put("100", createVertex("100", null));
-    getDataStore().flush();
+  private static void putArtificialData(DataStore dataStore) {
+    dataStore.put("1", createVertex("1", null));
+    dataStore.put("10", createVertex("10", null));
+    dataStore.put("100", createVertex("100", null));
+    dataStore.flush();
   }
 
   /**
@@ -91,6 +92,16 @@ public class GoraTestVertexInputFormat
    */
   protected class GoraGVertexVertexReader extends GoraVertexReader {
 
+    /**
+     * Writes the artificial data into the data store of the reader before
+     * querying it.
+     */
+    @Override
+    protected void getResults() {
+      putArtificialData(getDataStore());
+      super.getResults();
+    }
+
     /**
      * Transforms a GoraObject into a Vertex object.
      * @param goraObject Object from Gora to be translated.
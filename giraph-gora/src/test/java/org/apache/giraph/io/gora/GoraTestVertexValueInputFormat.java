@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.giraph.io.gora;
+
+import java.io.IOException;
+
+import org.apache.avro.util.Utf8;
+import org.apache.giraph.io.gora.generated.GVertex;
+import org.apache.gora.store.DataStore;
+import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+/**
+ * Implementation of a specific vertex value reader for a generated data
+ * bean.
+ */
+public class GoraTestVertexValueInputFormat
+  extends GoraGVertexVertexValueInputFormat {
+
+  /**
+   * Default constructor
+   */
+  public GoraTestVertexValueInputFormat() {
+  }
+
+  /**
+   * Creates specific vertex value reader to be used inside Hadoop.
+   * @param split split to be read.
+   * @param context JobContext to be used.
+   * @return GoraVertexValueReader Vertex value reader to be used by Hadoop.
+   */
+  @Override
+  public GoraVertexValueReader createVertexValueReader(
+      InputSplit split, TaskAttemptContext context) throws IOException {
+    return new GoraTestVertexValueReader();
+  }
+
+  /**
+   * Writes data into the data store in order to test it out.
+   * @param dataStore data store used by the reader.
+   */
+  @SuppressWarnings("unchecked")
+  private static void putArtificialData(DataStore dataStore) {
+    dataStore.put("1", createVertex("1", 1.5f));
+    dataStore.put("10", createVertex("10", 10.5f));
+    dataStore.put("100", createVertex("100", 100.5f));
+    dataStore.flush();
+  }
+
+  /**
+   * Creates a vertex using an id and a value.
+   * @param id Vertex id.
+   * @param value Vertex value.
+   * @return GVertex created.
+   */
+  public static GVertex createVertex(String id, float value) {
+    GVertex newVrtx = new GVertex();
+    newVrtx.setVertexId(new Utf8(id));
+    newVrtx.setValue(value);
+    newVrtx.putToEdges(new Utf8("2"), new Utf8("1.0"));
+    return newVrtx;
+  }
+
+  /**
+   * Gora vertex value reader
+   */
+  protected class GoraTestVertexValueReader
+      extends GoraGVertexVertexValueReader {
+
+    /**
+     * Writes the artificial data into the data store of the reader before
+     * querying it.
+     */
+    @Override
+    protected void getResults() {
+      putArtificialData(getDataStore());
+      super.getResults();
+    }
+  }
+}
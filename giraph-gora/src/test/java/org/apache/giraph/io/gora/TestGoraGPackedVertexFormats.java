@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.giraph.io.gora;
+
+import java.io.File;
+import java.util.Iterator;
+
+import org.apache.avro.Schema;
+import org.apache.giraph.conf.GiraphConfiguration;
+import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.giraph.edge.Edge;
+import org.apache.giraph.edge.EdgeFactory;
+import org.apache.giraph.edge.OutEdges;
+import org.apache.giraph.graph.Vertex;
+import org.apache.giraph.io.gora.TestGoraVertexInputFormat.EmptyComputation;
+import org.apache.giraph.io.gora.generated.GPackedVertex;
+import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.FloatWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test class for the Gora packed vertex input and output formats.
+ */
+public class TestGoraGPackedVertexFormats {
+
+  @Test
+  public void testSchemaMatchesAvsc() throws Exception {
+    Schema avscSchema = Schema.parse(new File("conf/packed-vertex.avsc"));
+    Assert.assertEquals(avscSchema, GPackedVertex.OBJ_SCHEMA);
+  }
+
+  @Test
+  public void testRoundTrip() {
+    GiraphConfiguration giraphConf = new GiraphConfiguration();
+    giraphConf.setComputationClass(EmptyComputation.class);
+    ImmutableClassesGiraphConfiguration<LongWritable, DoubleWritable,
+        FloatWritable> conf = new ImmutableClassesGiraphConfiguration<
+        LongWritable, DoubleWritable, FloatWritable>(giraphConf);
+
+    OutEdges<LongWritable, FloatWritable> edges = conf.createOutEdges();
+    edges.initialize(4);
+    edges.add(EdgeFactory.create(new LongWritable(300), new FloatWritable(3)));
+    edges.add(EdgeFactory.create(new LongWritable(-2), new FloatWritable(1)));
+    edges.add(EdgeFactory.create(new LongWritable(7), new FloatWritable(2)));
+    edges.add(EdgeFactory.create(new LongWritable(Long.MAX_VALUE),
+        new FloatWritable(4)));
+    Vertex<LongWritable, DoubleWritable, FloatWritable> vertex =
+        conf.createVertex();
+    // Values which do not fit in a float are kept
+    vertex.initialize(new LongWritable(42), new DoubleWritable(0.1), edges);
+
+    GoraGPackedVertexVertexOutputFormat outputFormat =
+        new GoraGPackedVertexVertexOutputFormat();
+    GPackedVertex packedVertex = (GPackedVertex) outputFormat
+        .new GoraGPackedVertexVertexWriter().getGoraVertex(vertex);
+    Assert.assertEquals(4, packedVertex.getEdgeCount());
+
+    GoraGPackedVertexVertexInputFormat inputFormat =
+        new GoraGPackedVertexVertexInputFormat();
+    GoraGPackedVertexVertexInputFormat.GoraGPackedVertexVertexReader reader =
+        inputFormat.new GoraGPackedVertexVertexReader();
+    reader.setConf(conf);
+    Vertex<LongWritable, DoubleWritable, FloatWritable> readVertex =
+        reader.transformVertex(packedVertex);
+
+    Assert.assertEquals(42, readVertex.getId().get());
+    Assert.assertEquals(0.1, readVertex.getValue().get(), 0);
+    Assert.assertEquals(4, readVertex.getNumEdges());
+    // Edges are packed sorted by target id
+    long[] ids = new long[] {-2, 7, 300, Long.MAX_VALUE};
+    float[] weights = new float[] {1, 2, 3, 4};
+    Iterator<Edge<LongWritable, FloatWritable>> it =
+        readVertex.getEdges().iterator();
+    for (int i = 0; i < ids.length; ++i) {
+      Edge<LongWritable, FloatWritable> edge = it.next();
+      Assert.assertEquals(ids[i], edge.getTargetVertexId().get());
+      Assert.assertEquals(weights[i], edge.getValue().get(), 0);
+    }
+    Assert.assertFalse(it.hasNext());
+  }
+}
@@ -28,8 +28,12 @@ import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GOR
 import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_OUTPUT_PERSISTENT_CLASS;
 
 import org.apache.giraph.conf.GiraphConfiguration;
+import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
 import org.apache.giraph.io.gora.TestGoraVertexInputFormat.EmptyComputation;
 import org.apache.giraph.utils.InternalVertexRunner;
+import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.FloatWritable;
+import org.apache.hadoop.io.LongWritable;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -71,4 +75,37 @@ public class TestGoraVertexOutputFormat {
     results = InternalVertexRunner.run(conf, new String[0], new String[0]);
     Assert.assertNotNull(results);
   }
+
+  @Test
+  public void testWritersHaveOwnDataStore() throws Exception {
+    GiraphConfiguration conf = new GiraphConfiguration();
+    GIRAPH_GORA_OUTPUT_DATASTORE_CLASS.
+    set(conf, "org.apache.gora.memory.store.MemStore");
+    GIRAPH_GORA_OUTPUT_KEY_CLASS.set(conf, "java.lang.String");
+    GIRAPH_GORA_OUTPUT_PERSISTENT_CLASS.
+    set(conf, "org.apache.giraph.io.gora.generated.GVertex");
+    conf.setComputationClass(EmptyComputation.class);
+    ImmutableClassesGiraphConfiguration<LongWritable, DoubleWritable,
+        FloatWritable> immutableConf = new ImmutableClassesGiraphConfiguration<
+        LongWritable, DoubleWritable, FloatWritable>(conf);
+    GoraTestVertexOutputFormat outputFormat = new GoraTestVertexOutputFormat();
+    outputFormat.setConf(immutableConf);
+
+    // Writers used by several threads at once must not share a data store
+    GoraVertexOutputFormat.GoraVertexWriter firstWriter =
+        (GoraVertexOutputFormat.GoraVertexWriter)
+        outputFormat.createVertexWriter(null);
+    firstWriter.setConf(immutableConf);
+    firstWriter.initialize(null);
+    GoraVertexOutputFormat.GoraVertexWriter secondWriter =
+        (GoraVertexOutputFormat.GoraVertexWriter)
+        outputFormat.createVertexWriter(null);
+    secondWriter.setConf(immutableConf);
+    secondWriter.initialize(null);
+    Assert.assertNotNull(firstWriter.getDataStore());
+    Assert.assertNotSame(firstWriter.getDataStore(),
+        secondWriter.getDataStore());
+    firstWriter.close(null);
+    secondWriter.close(null);
+  }
 }
@@ -0,0 +1,297 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.giraph.io.gora.utils;
+
+import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_DATASTORE_CLASS;
+import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_INPUT_CHECKPOINT_FILE;
+import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_END_KEY;
+import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_INPUT_END_TIME;
+import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_INPUT_SCANNER_CACHING;
+import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_INPUT_SNAPSHOT_DATASTORE_CLASS;
+import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_INPUT_START_TIME;
+import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_KEYS_FACTORY_CLASS;
+import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_KEY_CLASS;
+import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_PERSISTENT_CLASS;
+import static org.apache.giraph.io.gora.constants.GiraphGoraConstants.GIRAPH_GORA_START_KEY;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.giraph.conf.GiraphConfiguration;
+import org.apache.giraph.conf.GiraphConstants;
+import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.giraph.io.gora.GoraTestVertexValueInputFormat;
+import org.apache.giraph.io.gora.TestGoraVertexInputFormat.EmptyComputation;
+import org.apache.giraph.io.gora.generated.GVertex;
+import org.apache.giraph.partition.BasicPartitionOwner;
+import org.apache.giraph.partition.PartitionOwner;
+import org.apache.giraph.partition.SimpleLongRangePartitionerFactory;
+import org.apache.giraph.partition.WorkerGraphPartitioner;
+import org.apache.gora.mapreduce.GoraInputSplit;
+import org.apache.gora.memory.store.MemStore;
+import org.apache.gora.persistency.impl.PersistentBase;
+import org.apache.gora.query.PartitionQuery;
+import org.apache.gora.query.Query;
+import org.apache.gora.query.Result;
+import org.apache.gora.query.impl.PartitionQueryImpl;
+import org.apache.gora.store.DataStore;
+import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.FloatWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Test class for the partition range splits and the snapshot merged by the
+ * Gora input helper.
+ */
+public class TestGoraInputHelper {
+  /** Vertex key space size */
+  private static final long KEY_SPACE_SIZE = 1000;
+  /** Partition count */
+  private static final int PARTITION_COUNT = 7;
+  /** Fields read by the queries */
+  private static final String[] FIELDS = new String[] {"vertexId", "value"};
+
+  /**
+   * Creates a configuration reading GVertex objects from a MemStore.
+   * @return the configuration.
+   */
+  private static GiraphConfiguration createConf() {
+    GiraphConfiguration conf = new GiraphConfiguration();
+    GIRAPH_GORA_DATASTORE_CLASS.set(conf,
+        "org.apache.gora.memory.store.MemStore");
+    GIRAPH_GORA_KEYS_FACTORY_CLASS.set(conf,
+        "org.apache.giraph.io.gora.utils.DefaultKeyFactory");
+    GIRAPH_GORA_KEY_CLASS.set(conf, "java.lang.String");
+    GIRAPH_GORA_PERSISTENT_CLASS.set(conf,
+        "org.apache.giraph.io.gora.generated.GVertex");
+    return conf;
+  }
+
+  @Test
+  public void testPadVertexId() {
+    Assert.assertEquals("007", GoraInputHelper.padVertexId(7, 1000));
+    Assert.assertEquals("999", GoraInputHelper.padVertexId(999, 1000));
+    Assert.assertEquals("10", GoraInputHelper.padVertexId(10, 11));
+    Assert.assertEquals("0", GoraInputHelper.padVertexId(0, 1));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testRangesMatchPartitioner() throws Exception {
+    GiraphConfiguration conf = createConf();
+    GiraphConstants.USER_PARTITION_COUNT.set(conf, PARTITION_COUNT);
+    conf.setLong(GiraphConstants.PARTITION_VERTEX_KEY_SPACE_SIZE,
+        KEY_SPACE_SIZE);
+    conf.setComputationClass(EmptyComputation.class);
+
+    GoraInputHelper goraInput = new GoraInputHelper(conf);
+    DataStore dataStore = goraInput.createDataStore();
+    List<PartitionQuery<String, GVertex>> rangeQueries;
+    try {
+      ExtraGoraInputFormat<String, GVertex> goraInputFormat =
+          new ExtraGoraInputFormat<String, GVertex>();
+      Query<String, GVertex> query = GoraUtils.getQuery(dataStore);
+      goraInputFormat.setDataStore(dataStore);
+      goraInputFormat.setQuery(query);
+      goraInput.setKeyRanges(goraInputFormat, dataStore);
+      rangeQueries = goraInputFormat.cutOnKeyRanges(
+          new PartitionQueryImpl<String, GVertex>(query, null, null,
+              new String[0]));
+    } finally {
+      GoraUtils.releaseDataStore(dataStore);
+    }
+    Assert.assertEquals(PARTITION_COUNT, rangeQueries.size());
+
+    SimpleLongRangePartitionerFactory<DoubleWritable, FloatWritable>
+        partitionerFactory =
+        new SimpleLongRangePartitionerFactory<DoubleWritable, FloatWritable>();
+    partitionerFactory.setConf(new ImmutableClassesGiraphConfiguration(conf));
+    WorkerGraphPartitioner<LongWritable, DoubleWritable, FloatWritable>
+        partitioner = partitionerFactory.createWorkerGraphPartitioner();
+    List<PartitionOwner> partitionOwners = Lists.newArrayList();
+    for (int i = 0; i < PARTITION_COUNT; ++i) {
+      partitionOwners.add(new BasicPartitionOwner(i, null));
+    }
+    partitioner.updatePartitionOwners(null, partitionOwners, null);
+
+    // Every stored id has to be read by the split of its partition only
+    for (long id = 0; id < KEY_SPACE_SIZE; ++id) {
+      String key = GoraInputHelper.padVertexId(id, KEY_SPACE_SIZE);
+      int partitionId = partitioner.getPartitionOwner(
+          new LongWritable(id)).getPartitionId();
+      for (int i = 0; i < rangeQueries.size(); ++i) {
+        PartitionQuery<String, GVertex> rangeQuery = rangeQueries.get(i);
+        boolean inRange = (rangeQuery.getStartKey() == null ||
+            rangeQuery.getStartKey().compareTo(key) <= 0) &&
+            (rangeQuery.getEndKey() == null ||
+            rangeQuery.getEndKey().compareTo(key) >= 0);
+        Assert.assertEquals("Id " + id + " in range " + i,
+            i == partitionId, inRange);
+      }
+    }
+  }
+
+  @Test
+  public void testScannerCachingNotSetOnJobConf() {
+    GiraphConfiguration conf = createConf();
+    GIRAPH_GORA_INPUT_SCANNER_CACHING.set(conf, 500);
+    new GoraInputHelper(conf);
+    Assert.assertNull(conf.get(GoraUtils.HBASE_SCANNER_CACHING));
+  }
+
+  @Test
+  public void testRangeQuery() throws Exception {
+    GiraphConfiguration conf = createConf();
+    GIRAPH_GORA_START_KEY.set(conf, "010");
+    GIRAPH_GORA_END_KEY.set(conf, "020");
+    GIRAPH_GORA_INPUT_START_TIME.set(conf, 100);
+    GIRAPH_GORA_INPUT_END_TIME.set(conf, 200);
+
+    GoraInputHelper.Reader reader =
+        new GoraInputHelper(conf).createReader(null);
+    try {
+      Query query = reader.getQuery(FIELDS);
+      Assert.assertEquals("010", query.getStartKey());
+      Assert.assertEquals("020", query.getEndKey());
+      Assert.assertArrayEquals(FIELDS, query.getFields());
+      Assert.assertEquals(100, query.getStartTime());
+      Assert.assertEquals(200, query.getEndTime());
+    } finally {
+      reader.close();
+    }
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testPartitionQuery() throws Exception {
+    GiraphConfiguration conf = createConf();
+    GIRAPH_GORA_START_KEY.set(conf, "010");
+    GIRAPH_GORA_END_KEY.set(conf, "020");
+    GIRAPH_GORA_INPUT_START_TIME.set(conf, 100);
+    GIRAPH_GORA_INPUT_END_TIME.set(conf, 200);
+
+    GoraInputHelper goraInput = new GoraInputHelper(conf);
+    DataStore dataStore = goraInput.createDataStore();
+    try {
+      PartitionQuery<String, GVertex> partitionQuery =
+          new PartitionQueryImpl<String, GVertex>(
+              GoraUtils.getQuery(dataStore), "030", "040", "host");
+      GoraInputHelper.Reader reader = goraInput.createReader(
+          new GoraInputSplit(conf, partitionQuery));
+      try {
+        // The keys of the split are read instead of the configured ones
+        Query query = reader.getQuery(FIELDS);
+        Assert.assertSame(partitionQuery, query);
+        Assert.assertEquals("030", query.getStartKey());
+        Assert.assertEquals("040", query.getEndKey());
+        Assert.assertArrayEquals(FIELDS, query.getFields());
+        Assert.assertEquals(100, query.getStartTime());
+        Assert.assertEquals(200, query.getEndTime());
+      } finally {
+        reader.close();
+      }
+
+      // A split not restricting the keys falls back to the range query
+      reader = goraInput.createReader(new GoraInputSplit(conf,
+          new PartitionQueryImpl<String, GVertex>(
+              GoraUtils.getQuery(dataStore), null, null, "host")));
+      try {
+        Query query = reader.getQuery(null);
+        Assert.assertEquals("010", query.getStartKey());
+        Assert.assertEquals("020", query.getEndKey());
+      } finally {
+        reader.close();
+      }
+    } finally {
+      GoraUtils.releaseDataStore(dataStore);
+    }
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testMergeIntoSnapshot() throws Exception {
+    File checkpointFile = File.createTempFile("gora", ".checkpoint");
+    Assert.assertTrue(checkpointFile.delete());
+    GiraphConfiguration conf = createConf();
+    GIRAPH_GORA_INPUT_SNAPSHOT_DATASTORE_CLASS.set(conf,
+        SnapshotMemStore.class.getName());
+    GIRAPH_GORA_INPUT_CHECKPOINT_FILE.set(conf,
+        checkpointFile.getAbsolutePath());
+    GIRAPH_GORA_INPUT_END_TIME.set(conf, 1234);
+
+    GoraInputHelper goraInput = new GoraInputHelper(conf);
+    Assert.assertEquals(-1, goraInput.getStartTime());
+    DataStore dataStore = goraInput.createDataStore();
+    DataStore snapshotDataStore = GoraUtils.acquireDataStore(
+        SnapshotMemStore.class, String.class, GVertex.class, conf);
+    try {
+      dataStore.put("1", GoraTestVertexValueInputFormat.createVertex("1", 1));
+      dataStore.put("2", GoraTestVertexValueInputFormat.createVertex("2", 2));
+      dataStore.flush();
+      snapshotDataStore.put("1",
+          GoraTestVertexValueInputFormat.createVertex("1", 0));
+      snapshotDataStore.put("3",
+          GoraTestVertexValueInputFormat.createVertex("3", 3));
+      snapshotDataStore.flush();
+
+      goraInput.mergeIntoSnapshot(dataStore, snapshotDataStore);
+
+      // The snapshot keeps its rows, updated with the changed ones
+      Map<String, Float> values = Maps.newHashMap();
+      Result<String, GVertex> results = GoraUtils.getRequest(
+          snapshotDataStore, GoraUtils.getQuery(snapshotDataStore));
+      while (results.next()) {
+        GVertex vertex = results.get();
+        values.put(vertex.getVertexId().toString(), vertex.getValue());
+      }
+      results.close();
+      Assert.assertEquals(3, values.size());
+      Assert.assertEquals(1f, values.get("1"), 0f);
+      Assert.assertEquals(2f, values.get("2"), 0f);
+      Assert.assertEquals(3f, values.get("3"), 0f);
+
+      // Splits are read from the snapshot
+      GoraInputHelper.Reader reader = goraInput.createReader(null);
+      Assert.assertTrue(reader.getDataStore() instanceof SnapshotMemStore);
+      reader.close();
+
+      // The next merge starts where this one ended
+      Assert.assertEquals(1234, new GoraInputHelper(conf).getStartTime());
+    } finally {
+      GoraUtils.releaseDataStore(dataStore);
+      GoraUtils.releaseDataStore(snapshotDataStore);
+      checkpointFile.delete();
+    }
+  }
+
+  /**
+   * Memory store class holding the snapshot, so it is not shared with the
+   * input store.
+   * @param <K> key class
+   * @param <T> persistent class
+   */
+  public static class SnapshotMemStore<K, T extends PersistentBase>
+      extends MemStore<K, T> {
+  }
+}
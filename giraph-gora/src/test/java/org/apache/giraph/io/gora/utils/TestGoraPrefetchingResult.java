@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.giraph.io.gora.utils;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.giraph.io.gora.GoraTestVertexValueInputFormat;
+import org.apache.giraph.io.gora.generated.GVertex;
+import org.apache.gora.memory.store.MemStore;
+import org.apache.gora.query.Result;
+import org.apache.gora.store.DataStore;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Sets;
+
+/**
+ * Test class for the Gora result read ahead on a background thread.
+ */
+public class TestGoraPrefetchingResult {
+  /** Number of vertices in the data store */
+  private static final int NUM_VERTICES = 100;
+
+  /** Data store holding the vertices */
+  private DataStore<String, GVertex> dataStore;
+
+  @Before
+  public void setUp() throws Exception {
+    dataStore = GoraUtils.createSpecificDataStore(MemStore.class,
+        String.class, GVertex.class, new Configuration());
+    for (int i = 0; i < NUM_VERTICES; ++i) {
+      String id = String.valueOf(i);
+      dataStore.put(id, GoraTestVertexValueInputFormat.createVertex(id, i));
+    }
+    dataStore.flush();
+  }
+
+  @After
+  public void tearDown() {
+    dataStore.close();
+  }
+
+  /**
+   * Gets a result reading all the vertices, which calls a handler before
+   * each call to next().
+   * @param beforeNext called before next(), with the number of calls
+   *                   already made.
+   * @return the result.
+   */
+  private Result<String, GVertex> createResult(final BeforeNext beforeNext) {
+    final Result<String, GVertex> result =
+        GoraUtils.getRequest(dataStore, GoraUtils.getQuery(dataStore));
+    return (Result<String, GVertex>) Proxy.newProxyInstance(
+        getClass().getClassLoader(), new Class<?>[] {Result.class},
+        new InvocationHandler() {
+          /** Number of calls to next() */
+          private int nextCalls;
+
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args)
+            throws Throwable {
+            if (method.getName().equals("next")) {
+              beforeNext.call(nextCalls++);
+            }
+            try {
+              return method.invoke(result, args);
+            } catch (InvocationTargetException e) {
+              throw e.getCause();
+            }
+          }
+        });
+  }
+
+  @Test
+  public void testReadsAllRecords() throws Exception {
+    Result<String, GVertex> result = createResult(new BeforeNext());
+    // A buffer smaller than the result makes the fetcher wait
+    GoraPrefetchingResult prefetchingResult =
+        new GoraPrefetchingResult(result, 4);
+    Set<String> ids = Sets.newHashSet();
+    while (prefetchingResult.next()) {
+      GVertex vertex = (GVertex) prefetchingResult.get();
+      Assert.assertEquals(prefetchingResult.getKey(),
+          vertex.getVertexId().toString());
+      Assert.assertTrue(ids.add(vertex.getVertexId().toString()));
+    }
+    Assert.assertFalse(prefetchingResult.next());
+    prefetchingResult.close();
+    result.close();
+    Assert.assertEquals(NUM_VERTICES, ids.size());
+  }
+
+  @Test
+  public void testFetcherErrorIsThrown() throws Exception {
+    Result<String, GVertex> result = createResult(new BeforeNext() {
+      @Override
+      void call(int nextCalls) throws IOException {
+        if (nextCalls == 3) {
+          throw new IOException("next: Failing on purpose");
+        }
+      }
+    });
+    GoraPrefetchingResult prefetchingResult =
+        new GoraPrefetchingResult(result, 10);
+    int records = 0;
+    try {
+      while (prefetchingResult.next()) {
+        ++records;
+      }
+      Assert.fail("Fetcher error was taken as the end of the result");
+    } catch (IOException e) {
+      Assert.assertEquals(3, records);
+    }
+    prefetchingResult.close();
+    result.close();
+  }
+
+  @Test
+  public void testCloseWaitsForFetcher() throws Exception {
+    final CountDownLatch fetching = new CountDownLatch(1);
+    final AtomicBoolean inNext = new AtomicBoolean();
+    Result<String, GVertex> result = createResult(new BeforeNext() {
+      @Override
+      void call(int nextCalls) {
+        if (nextCalls == 0) {
+          inNext.set(true);
+          fetching.countDown();
+          // A data store call ignoring interrupts
+          long endMsecs = System.currentTimeMillis() + 200;
+          while (System.currentTimeMillis() < endMsecs) {
+            try {
+              Thread.sleep(10);
+            } catch (InterruptedException e) {
+              // Keep going
+            }
+          }
+          inNext.set(false);
+        }
+      }
+    });
+    GoraPrefetchingResult prefetchingResult =
+        new GoraPrefetchingResult(result, 10);
+    fetching.await();
+    prefetchingResult.close();
+    // The result can be closed, nobody is using it anymore
+    Assert.assertFalse(inNext.get());
+    result.close();
+  }
+
+  /**
+   * Called before each call to next() of a result.
+   */
+  private static class BeforeNext {
+    /**
+     * Called before next().
+     * @param nextCalls number of calls to next() already made.
+     * @throws IOException to make next() fail.
+     */
+    void call(int nextCalls) throws IOException {
+    }
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.giraph.io.gora.utils;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.giraph.io.gora.generated.GVertex;
+import org.apache.gora.memory.store.MemStore;
+import org.apache.gora.persistency.impl.PersistentBase;
+import org.apache.gora.store.DataStore;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * Test class for the data stores acquired and released through GoraUtils.
+ */
+public class TestGoraUtils {
+  /** Number of threads acquiring data stores */
+  private static final int NUM_THREADS = 8;
+  /** Number of data stores acquired by each thread */
+  private static final int NUM_ACQUIRES = 200;
+
+  /** Configuration the data stores are created with */
+  private Configuration conf;
+
+  @Before
+  public void setUp() {
+    // A new configuration per test, so tests do not share data stores
+    conf = new Configuration();
+    CountingMemStore.CLOSED.set(0);
+  }
+
+  /**
+   * Acquires a counting memory store.
+   * @return the data store.
+   * @throws Exception
+   */
+  private DataStore<String, GVertex> acquire() throws Exception {
+    return GoraUtils.acquireDataStore(CountingMemStore.class, String.class,
+        GVertex.class, conf);
+  }
+
+  @Test
+  public void testReuseAndClose() throws Exception {
+    DataStore<String, GVertex> first = acquire();
+    DataStore<String, GVertex> second = acquire();
+    // A data store is only used by one holder at a time
+    Assert.assertNotSame(first, second);
+
+    // Released data stores are reused while others are acquired
+    GoraUtils.releaseDataStore(first);
+    Assert.assertEquals(0, CountingMemStore.CLOSED.get());
+    DataStore<String, GVertex> third = acquire();
+    Assert.assertSame(first, third);
+
+    // Releasing the last one closes them all
+    GoraUtils.releaseDataStore(second);
+    Assert.assertEquals(0, CountingMemStore.CLOSED.get());
+    GoraUtils.releaseDataStore(third);
+    Assert.assertEquals(2, CountingMemStore.CLOSED.get());
+
+    // Acquiring again creates a new one
+    DataStore<String, GVertex> fourth = acquire();
+    Assert.assertNotSame(first, fourth);
+    Assert.assertNotSame(second, fourth);
+    GoraUtils.releaseDataStore(fourth);
+    Assert.assertEquals(3, CountingMemStore.CLOSED.get());
+  }
+
+  @Test
+  public void testConcurrentAcquire() throws Exception {
+    // Data stores compare equal by their classes, so sets use identity
+    final Set<DataStore> acquired =
+        Collections.synchronizedSet(Sets.<DataStore>newIdentityHashSet());
+    final Set<DataStore> created =
+        Collections.synchronizedSet(Sets.<DataStore>newIdentityHashSet());
+    // Holds one data store for the whole test, so the others are reused
+    DataStore<String, GVertex> held = acquire();
+    created.add(held);
+
+    ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+    List<Future<Void>> results = Lists.newArrayList();
+    for (int i = 0; i < NUM_THREADS; ++i) {
+      results.add(executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          for (int j = 0; j < NUM_ACQUIRES; ++j) {
+            DataStore<String, GVertex> dataStore = acquire();
+            created.add(dataStore);
+            Assert.assertTrue("Data store acquired twice at once",
+                acquired.add(dataStore));
+            Assert.assertTrue(acquired.remove(dataStore));
+            GoraUtils.releaseDataStore(dataStore);
+          }
+          return null;
+        }
+      }));
+    }
+    for (Future<Void> result : results) {
+      result.get();
+    }
+    executor.shutdown();
+
+    // At most one data store per thread, besides the held one
+    Assert.assertTrue(created.size() <= NUM_THREADS + 1);
+    Assert.assertEquals(0, CountingMemStore.CLOSED.get());
+    GoraUtils.releaseDataStore(held);
+    Assert.assertEquals(created.size(), CountingMemStore.CLOSED.get());
+  }
+
+  /**
+   * Memory store counting the times it is closed.
+   * @param <K> key class
+   * @param <T> persistent class
+   */
+  public static class CountingMemStore<K, T extends PersistentBase>
+      extends MemStore<K, T> {
+    /** Number of memory stores closed */
+    private static final AtomicInteger CLOSED = new AtomicInteger();
+
+    @Override
+    public void close() {
+      CLOSED.incrementAndGet();
+      super.close();
+    }
+  }
+}
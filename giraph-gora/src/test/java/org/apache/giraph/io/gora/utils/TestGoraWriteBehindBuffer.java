@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.giraph.io.gora.utils;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.giraph.io.gora.GoraTestVertexValueInputFormat;
+import org.apache.giraph.io.gora.generated.GVertex;
+import org.apache.gora.memory.store.MemStore;
+import org.apache.hadoop.util.Progressable;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test class for the write-behind buffer of the Gora writers.
+ */
+public class TestGoraWriteBehindBuffer {
+  /** Flush interval long enough to never be reached by a test */
+  private static final int NEVER_MSECS = 60 * 60 * 1000;
+  /** Msecs to wait for the flusher before failing */
+  private static final long TIMEOUT_MSECS = 10 * 1000;
+
+  /** Progressable doing nothing */
+  private static final Progressable NO_PROGRESS = new Progressable() {
+    @Override
+    public void progress() { }
+  };
+
+  /**
+   * Puts some vertices into a buffer.
+   * @param buffer buffer to put into.
+   * @param count number of vertices.
+   * @throws InterruptedException
+   */
+  private static void putVertices(GoraWriteBehindBuffer buffer, int count)
+    throws InterruptedException {
+    for (int i = 0; i < count; ++i) {
+      String id = String.valueOf(i);
+      buffer.put(id, GoraTestVertexValueInputFormat.createVertex(id, i));
+    }
+  }
+
+  /**
+   * Waits until a store was flushed with at least some objects put.
+   * @param store store to wait for.
+   * @param puts number of objects put.
+   * @throws InterruptedException
+   */
+  private static void waitForFlushedPuts(RecordingMemStore store, int puts)
+    throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TIMEOUT_MSECS;
+    while (store.flushes.isEmpty() ||
+        store.flushes.get(store.flushes.size() - 1) < puts) {
+      Assert.assertTrue("Store not flushed in time",
+          System.currentTimeMillis() < deadline);
+      Thread.sleep(10);
+    }
+  }
+
+  @Test
+  public void testFlushByBatchSize() throws Exception {
+    RecordingMemStore store = new RecordingMemStore();
+    GoraWriteBehindBuffer buffer =
+        new GoraWriteBehindBuffer(store, 3, 10, NEVER_MSECS);
+    putVertices(buffer, 7);
+    // Full batches are flushed without waiting for the interval, so at
+    // most the last two records are left unflushed
+    waitForFlushedPuts(store, 5);
+    buffer.close(NO_PROGRESS);
+
+    Assert.assertEquals(7, store.puts.get());
+    List<Integer> flushes = store.flushes;
+    int previous = 0;
+    for (int i = 0; i < flushes.size() - 1; ++i) {
+      Assert.assertTrue("Flush after less than a batch: " + flushes,
+          flushes.get(i) - previous >= 3);
+      previous = flushes.get(i);
+    }
+    Assert.assertEquals(7, (int) flushes.get(flushes.size() - 1));
+    Assert.assertTrue(store.closed);
+  }
+
+  @Test
+  public void testFlushByInterval() throws Exception {
+    RecordingMemStore store = new RecordingMemStore();
+    GoraWriteBehindBuffer buffer =
+        new GoraWriteBehindBuffer(store, 1000, 10, 50);
+    putVertices(buffer, 2);
+    // Less than a batch, flushed once the interval elapsed
+    waitForFlushedPuts(store, 2);
+    Assert.assertFalse(store.closed);
+    buffer.close(NO_PROGRESS);
+    Assert.assertTrue(store.closed);
+  }
+
+  @Test
+  public void testCloseDrainsQueue() throws Exception {
+    RecordingMemStore store = new RecordingMemStore();
+    // A queue smaller than the records makes writers wait for the flusher
+    GoraWriteBehindBuffer buffer =
+        new GoraWriteBehindBuffer(store, 1000, 5, NEVER_MSECS);
+    putVertices(buffer, 100);
+    buffer.close(NO_PROGRESS);
+
+    Assert.assertEquals(100, store.puts.get());
+    Assert.assertEquals(1, store.flushes.size());
+    Assert.assertEquals(100, (int) store.flushes.get(0));
+    Assert.assertTrue(store.closed);
+  }
+
+  @Test
+  public void testFlusherErrorReachesClose() throws Exception {
+    RecordingMemStore store = new RecordingMemStore();
+    store.failPuts = true;
+    GoraWriteBehindBuffer buffer =
+        new GoraWriteBehindBuffer(store, 10, 10, NEVER_MSECS);
+    putVertices(buffer, 1);
+    try {
+      buffer.close(NO_PROGRESS);
+      Assert.fail("Flusher error was not thrown by close");
+    } catch (IllegalStateException e) {
+      Throwable cause = e;
+      while (cause != null && !(cause instanceof IllegalArgumentException)) {
+        cause = cause.getCause();
+      }
+      Assert.assertNotNull("Flusher error lost: " + e, cause);
+    }
+    // The flusher stopped, so the store can be released
+    Assert.assertTrue(store.closed);
+  }
+
+  /**
+   * Memory store recording its puts and flushes.
+   */
+  public static class RecordingMemStore extends MemStore<String, GVertex> {
+    /** Number of objects put */
+    private final AtomicInteger puts = new AtomicInteger();
+    /** Number of objects put when each flush happened */
+    private final List<Integer> flushes =
+        new CopyOnWriteArrayList<Integer>();
+    /** Whether puts fail */
+    private volatile boolean failPuts;
+    /** Whether the store was closed */
+    private volatile boolean closed;
+
+    @Override
+    public void put(String key, GVertex obj) {
+      if (failPuts) {
+        throw new IllegalArgumentException("put: Failing on purpose");
+      }
+      puts.incrementAndGet();
+    }
+
+    @Override
+    public void flush() {
+      flushes.add(puts.get());
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.giraph.io.gora.utils;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test class for the packed edges codec.
+ */
+public class TestPackedEdges {
+
+  /**
+   * Packs ids and checks they are read back.
+   * @param ids ids to pack.
+   * @return the packed ids.
+   */
+  private static ByteBuffer checkIds(long... ids) {
+    ByteBuffer packedIds = PackedEdges.packIds(ids, ids.length);
+    PackedEdges.IdReader reader = new PackedEdges.IdReader(packedIds);
+    for (long id : ids) {
+      Assert.assertEquals(id, reader.next());
+    }
+    // Reading does not move the buffer
+    Assert.assertEquals(0, packedIds.position());
+    return packedIds;
+  }
+
+  @Test
+  public void testIdsRoundTrip() {
+    Assert.assertEquals(0, checkIds().remaining());
+    checkIds(0);
+    checkIds(1, 2, 3, 1000, 1000, 1000000000000L);
+    // Unsorted ids have negative deltas
+    checkIds(1000, 3, 999, -5, 0);
+    checkIds(Long.MIN_VALUE, Long.MAX_VALUE, -1, Long.MIN_VALUE);
+  }
+
+  @Test
+  public void testSortedIdsAreSmall() {
+    // Deltas below 64 take one byte
+    Assert.assertEquals(4, checkIds(5, 10, 20, 40).remaining());
+    // Negative deltas as well, thanks to zig-zag encoding
+    Assert.assertEquals(3, checkIds(40, 20, 10).remaining());
+    Assert.assertEquals(10, checkIds(Long.MAX_VALUE).remaining());
+  }
+
+  @Test
+  public void testPackOnlyCount() {
+    long[] ids = new long[] {7, 8, 9};
+    PackedEdges.IdReader reader =
+        new PackedEdges.IdReader(PackedEdges.packIds(ids, 2));
+    Assert.assertEquals(7, reader.next());
+    Assert.assertEquals(8, reader.next());
+    float[] weights = new float[] {1.5f, 2.5f, 3.5f};
+    Assert.assertEquals(8, PackedEdges.packWeights(weights, 2).remaining());
+  }
+
+  @Test
+  public void testWeightsRoundTrip() {
+    float[] weights = new float[] {0f, -1.25f, Float.MAX_VALUE,
+      Float.MIN_VALUE, Float.NaN, Float.NEGATIVE_INFINITY};
+    ByteBuffer packedWeights =
+        PackedEdges.packWeights(weights, weights.length);
+    Assert.assertEquals(weights.length * 4, packedWeights.remaining());
+    PackedEdges.WeightReader reader =
+        new PackedEdges.WeightReader(packedWeights);
+    for (float weight : weights) {
+      Assert.assertEquals(weight, reader.next(), 0f);
+    }
+    Assert.assertEquals(0, packedWeights.position());
+  }
+}